@@ -151,6 +151,15 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 	/** This flag defines if we use compression for the state snapshot data or not. Default: false */
 	private boolean useSnapshotCompression = false;
 
+	/** This flag defines if we compress the data buffers that are shipped or spilled by the network stack. Default: false */
+	private boolean useNetworkCompression = false;
+
+	/** This flag defines if streaming tasks adapt the flushing of their outputs to the data rate. Default: false */
+	private boolean useAdaptiveOutputFlushing = false;
+
+	/** This flag defines if records of immutable types are passed by reference to consumers in the same TaskManager. Default: false */
+	private boolean useLocalObjectHandoff = false;
+
 	/** Determines if a task fails or not if there is an error in writing its checkpoint data. Default: true */
 	private boolean failTaskOnCheckpointError = true;
 
@@ -894,6 +903,50 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 		this.useSnapshotCompression = useSnapshotCompression;
 	}
 
+	public boolean isUseNetworkCompression() {
+		return useNetworkCompression;
+	}
+
+	/**
+	 * Sets whether the data buffers of the result partitions are compressed with Snappy before they
+	 * are sent to remote consumers or spilled to disk. This trades CPU time for network and disk
+	 * bandwidth, which pays off for shuffle-heavy jobs between hosts.
+	 */
+	public void setUseNetworkCompression(boolean useNetworkCompression) {
+		this.useNetworkCompression = useNetworkCompression;
+	}
+
+	public boolean isUseAdaptiveOutputFlushing() {
+		return useAdaptiveOutputFlushing;
+	}
+
+	/**
+	 * Sets whether streaming tasks flush each output channel at an interval adapted to the data
+	 * rate and the backlog of the channel, instead of flushing all channels at the fixed buffer
+	 * timeout. The buffer timeout remains the upper bound of the interval.
+	 */
+	public void setUseAdaptiveOutputFlushing(boolean useAdaptiveOutputFlushing) {
+		this.useAdaptiveOutputFlushing = useAdaptiveOutputFlushing;
+	}
+
+	public boolean isUseLocalObjectHandoff() {
+		return useLocalObjectHandoff;
+	}
+
+	/**
+	 * Sets whether streaming tasks pass records of immutable types by reference to consumers in the
+	 * same TaskManager, instead of serializing them into the network buffers. A small placeholder
+	 * per record still travels in the buffers, so the records stay in order with watermarks and
+	 * checkpoint barriers. The number of records that a consumer has not taken yet is bounded per
+	 * channel; beyond that, records are serialized as usual.
+	 *
+	 * <p>The type is immutable if its serializer says so, see
+	 * {@link org.apache.flink.api.common.typeutils.TypeSerializer#isImmutableType()}.
+	 */
+	public void setUseLocalObjectHandoff(boolean useLocalObjectHandoff) {
+		this.useLocalObjectHandoff = useLocalObjectHandoff;
+	}
+
 	/**
 	 * This method is visible because of the way the configuration is currently forwarded from the checkpoint config to
 	 * the task. This should not be called by the user, please use CheckpointConfig.isFailTaskOnCheckpointError()
@@ -939,7 +992,10 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 				registeredKryoTypes.equals(other.registeredKryoTypes) &&
 				registeredPojoTypes.equals(other.registeredPojoTypes) &&
 				taskCancellationIntervalMillis == other.taskCancellationIntervalMillis &&
-				useSnapshotCompression == other.useSnapshotCompression;
+				useSnapshotCompression == other.useSnapshotCompression &&
+				useNetworkCompression == other.useNetworkCompression &&
+				useAdaptiveOutputFlushing == other.useAdaptiveOutputFlushing &&
+				useLocalObjectHandoff == other.useLocalObjectHandoff;
 
 		} else {
 			return false;
@@ -967,7 +1023,10 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 			registeredKryoTypes,
 			registeredPojoTypes,
 			taskCancellationIntervalMillis,
-			useSnapshotCompression);
+			useSnapshotCompression,
+			useNetworkCompression,
+			useAdaptiveOutputFlushing,
+			useLocalObjectHandoff);
 	}
 
 	public boolean canEqual(Object obj) {
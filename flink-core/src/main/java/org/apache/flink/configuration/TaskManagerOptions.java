@@ -320,6 +320,18 @@ public class TaskManagerOptions {
 			.defaultValue(false)
 			.withDescription("Boolean flag to enable/disable more detailed metrics about inbound/outbound network queue lengths.");
 
+	/**
+	 * Boolean flag to enable/disable the sort-merge blocking shuffle, which writes all
+	 * subpartitions of a blocking result partition into a single file.
+	 */
+	public static final ConfigOption<Boolean> NETWORK_SORT_MERGE_BLOCKING_SHUFFLE =
+			key("taskmanager.network.blocking-shuffle.sort-merge")
+			.defaultValue(false)
+			.withDescription("Boolean flag to enable/disable the sort-merge blocking shuffle. If enabled, each blocking" +
+				" result partition writes the data of all its subpartitions into a single file with an index instead of" +
+				" one file per subpartition, which reduces the number of open files and the random I/O of large batch" +
+				" shuffles.");
+
 	/**
 	 * Boolean flag to enable/disable network credit-based flow control.
 	 *
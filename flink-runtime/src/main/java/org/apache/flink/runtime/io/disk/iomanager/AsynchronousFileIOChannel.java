@@ -371,7 +371,8 @@ final class BufferWriteRequest implements WriteRequest {
 
 		final ByteBuffer header = ByteBuffer.allocateDirect(8);
 
-		header.putInt(buffer.isBuffer() ? 1 : 0);
+		// 0 for events, 1 for buffers, and 2 for compressed buffers
+		header.putInt(buffer.isBuffer() ? (buffer.isCompressed() ? 2 : 1) : 0);
 		header.putInt(nioBufferReadable.remaining());
 		header.flip();
 
@@ -445,10 +446,11 @@ final class FileSegmentReadRequest implements ReadRequest {
 
 			final long position = fileChannel.position();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final int type = header.getInt();
 			final int length = header.getInt();
 
-			fileSegment = new FileSegment(fileChannel, position, length, isBuffer);
+			// same header types as read by the BufferFileChannelReader
+			fileSegment = new FileSegment(fileChannel, position, length, type != 0, type == 2);
 
 			// Skip the binary data
 			fileChannel.position(position + length);
@@ -52,7 +52,7 @@ public class BufferFileChannelReader {
 		fileChannel.read(header);
 		header.flip();
 
-		final boolean isBuffer = header.getInt() == 1;
+		final int type = header.getInt();
 		final int size = header.getInt();
 
 		if (size > buffer.getMaxCapacity()) {
@@ -63,8 +63,10 @@ public class BufferFileChannelReader {
 		fileChannel.read(buffer.getNioBuffer(0, size));
 		buffer.setSize(size);
 
-		if (!isBuffer) {
+		if (type == 0) {
 			buffer.tagAsEvent();
+		} else if (type == 2) {
+			buffer.setCompressed(true);
 		}
 
 		return fileChannel.size() - fileChannel.position() == 0;
@@ -26,12 +26,18 @@ public class FileSegment {
 	private final long position;
 	private final int length;
 	private final boolean isBuffer;
+	private final boolean isCompressed;
 
 	public FileSegment(FileChannel fileChannel, long position, int length, boolean isBuffer) {
+		this(fileChannel, position, length, isBuffer, false);
+	}
+
+	public FileSegment(FileChannel fileChannel, long position, int length, boolean isBuffer, boolean isCompressed) {
 		this.fileChannel = fileChannel;
 		this.position = position;
 		this.length = length;
 		this.isBuffer = isBuffer;
+		this.isCompressed = isCompressed;
 	}
 
 	public FileChannel getFileChannel() {
@@ -49,4 +55,8 @@ public class FileSegment {
 	public boolean isBuffer() {
 		return isBuffer;
 	}
+
+	public boolean isCompressed() {
+		return isCompressed;
+	}
 }
@@ -18,11 +18,14 @@
 
 package org.apache.flink.runtime.io.network;
 
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel.BufferAndAvailability;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannelID;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 
 /**
@@ -69,6 +72,13 @@ public interface NetworkSequenceViewReader {
 
 	Throwable getFailureCause();
 
+	/**
+	 * Returns the compressor for the data buffers of the subpartition or <tt>null</tt>, if they
+	 * are sent as they are.
+	 */
+	@Nullable
+	BufferCompressor getBufferCompressor();
+
 	InputChannelID getReceiverId();
 
 	int getSequenceNumber();
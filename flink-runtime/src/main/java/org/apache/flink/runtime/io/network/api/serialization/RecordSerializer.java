@@ -65,6 +65,38 @@ public interface RecordSerializer<T extends IOReadableWritable> {
 		}
 	}
 
+	/**
+	 * Serializes the complete record to an intermediate data serialization buffer, without
+	 * copying it to a target buffer. The serialized record can then be copied to any number of
+	 * targets with {@link #copyToBufferBuilder(BufferBuilder)}, rewinding with {@link #reset()}
+	 * before each target.
+	 *
+	 * @param record the record to serialize
+	 */
+	void serializeRecord(T record) throws IOException;
+
+	/**
+	 * Copies the remaining data of the intermediate serialization buffer to the given target
+	 * buffer, until the buffer is full or the record is complete.
+	 *
+	 * @param targetBuffer the target buffer to copy to
+	 * @return how much information was written to the target buffer and
+	 *         whether this buffer is full
+	 */
+	SerializationResult copyToBufferBuilder(BufferBuilder targetBuffer);
+
+	/**
+	 * Rewinds the intermediate serialization buffer, so that the last serialized record is
+	 * copied again from its beginning.
+	 */
+	void reset();
+
+	/**
+	 * Releases the intermediate serialization buffer if it grew large, after the last serialized
+	 * record was completely copied to all targets.
+	 */
+	void prune();
+
 	/**
 	 * Starts serializing and copying the given record to the target buffer
 	 * (if available).
@@ -33,6 +33,8 @@ import java.nio.ByteOrder;
  * Record serializer which serializes the complete record to an intermediate
  * data serialization buffer and copies this buffer to target buffers
  * one-by-one using {@link #continueWritingWithNextBufferBuilder(BufferBuilder)}.
+ * A serialized record can also be copied to several targets with
+ * {@link #copyToBufferBuilder(BufferBuilder)}, so that it is only serialized once.
  *
  * @param <T> The type of the records that are serialized.
  */
@@ -65,16 +67,8 @@ public class SpanningRecordSerializer<T extends IOReadableWritable> implements R
 		lengthBuffer.position(4);
 	}
 
-	/**
-	 * Serializes the complete record to an intermediate data serialization
-	 * buffer and starts copying it to the target buffer (if available).
-	 *
-	 * @param record the record to serialize
-	 * @return how much information was written to the target buffer and
-	 *         whether this buffer is full
-	 */
 	@Override
-	public SerializationResult addRecord(T record) throws IOException {
+	public void serializeRecord(T record) throws IOException {
 		if (CHECKED) {
 			if (dataBuffer.hasRemaining()) {
 				throw new IllegalStateException("Pending serialization of previous record.");
@@ -91,49 +85,65 @@ public class SpanningRecordSerializer<T extends IOReadableWritable> implements R
 		lengthBuffer.putInt(0, len);
 
 		dataBuffer = serializationBuffer.wrapAsByteBuffer();
+	}
 
-		// Copy from intermediate buffers to current target memory segment
-		if (targetBuffer != null) {
-			targetBuffer.append(lengthBuffer);
-			targetBuffer.append(dataBuffer);
-			targetBuffer.commit();
-		}
+	@Override
+	public SerializationResult copyToBufferBuilder(BufferBuilder targetBuffer) {
+		targetBuffer.append(lengthBuffer);
+		targetBuffer.append(dataBuffer);
+		targetBuffer.commit();
 
-		return getSerializationResult();
+		return getSerializationResult(targetBuffer);
 	}
 
 	@Override
-	public SerializationResult continueWritingWithNextBufferBuilder(BufferBuilder buffer) throws IOException {
-		targetBuffer = buffer;
+	public void reset() {
+		lengthBuffer.position(0);
+		dataBuffer.position(0);
+	}
 
-		boolean mustCommit = false;
-		if (lengthBuffer.hasRemaining()) {
-			targetBuffer.append(lengthBuffer);
-			mustCommit = true;
-		}
+	@Override
+	public void prune() {
+		serializationBuffer.clear();
+		serializationBuffer.pruneBuffer();
+		dataBuffer = serializationBuffer.wrapAsByteBuffer();
+	}
 
-		if (dataBuffer.hasRemaining()) {
-			targetBuffer.append(dataBuffer);
-			mustCommit = true;
-		}
+	/**
+	 * Serializes the complete record to an intermediate data serialization
+	 * buffer and starts copying it to the target buffer (if available).
+	 *
+	 * @param record the record to serialize
+	 * @return how much information was written to the target buffer and
+	 *         whether this buffer is full
+	 */
+	@Override
+	public SerializationResult addRecord(T record) throws IOException {
+		serializeRecord(record);
 
-		if (mustCommit) {
-			targetBuffer.commit();
+		if (targetBuffer == null) {
+			// the length has not been written yet
+			return SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
 		}
+		// Copy from intermediate buffers to current target memory segment
+		return copyToBufferBuilder(targetBuffer);
+	}
+
+	@Override
+	public SerializationResult continueWritingWithNextBufferBuilder(BufferBuilder buffer) throws IOException {
+		targetBuffer = buffer;
 
-		SerializationResult result = getSerializationResult();
+		SerializationResult result = copyToBufferBuilder(targetBuffer);
 
 		// make sure we don't hold onto the large buffers for too long
 		if (result.isFullRecord()) {
-			serializationBuffer.clear();
-			serializationBuffer.pruneBuffer();
-			dataBuffer = serializationBuffer.wrapAsByteBuffer();
+			prune();
 		}
 
 		return result;
 	}
 
-	private SerializationResult getSerializationResult() {
+	private SerializationResult getSerializationResult(BufferBuilder targetBuffer) {
 		if (dataBuffer.hasRemaining() || lengthBuffer.hasRemaining()) {
 			return SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
 		}
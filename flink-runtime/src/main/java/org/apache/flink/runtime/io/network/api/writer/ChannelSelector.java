@@ -38,4 +38,14 @@ public interface ChannelSelector<T extends IOReadableWritable> {
 	 * which the record shall be forwarded
 	 */
 	int[] selectChannels(T record, int numChannels);
+
+	/**
+	 * Returns whether the channel selector selects all channels for every record. The buffers of
+	 * a broadcasting channel selector are shared between all channels.
+	 *
+	 * @return <tt>true</tt> if every record is written to all channels
+	 */
+	default boolean isBroadcast() {
+		return false;
+	}
 }
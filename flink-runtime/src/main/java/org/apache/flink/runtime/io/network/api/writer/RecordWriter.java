@@ -30,8 +30,11 @@ import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.apache.flink.util.XORShiftRandom;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Random;
 
 import static org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
@@ -43,6 +46,13 @@ import static org.apache.flink.util.Preconditions.checkState;
  * <p>The RecordWriter wraps the runtime's {@link ResultPartitionWriter} and takes care of
  * serializing records into buffers.
  *
+ * <p>Every record is serialized once and the serialized bytes are copied to all channels it is
+ * emitted to. If the {@link ChannelSelector} broadcasts all records, the channels share the same
+ * buffers instead, so that broadcasting a record does not copy it per channel. Records for only
+ * some of the channels, such as latency markers, go to buffers of the individual channels. The
+ * writer only switches between the shared buffer and the buffers of the channels when a record
+ * goes to other channels than the previous one.
+ *
  * <p><strong>Important</strong>: it is necessary to call {@link #flushAll()} after
  * all records have been written with {@link #emit(IOReadableWritable)}. This
  * ensures that all produced records are written to the output stream (incl.
@@ -58,13 +68,23 @@ public class RecordWriter<T extends IOReadableWritable> {
 
 	private final int numChannels;
 
-	/**
-	 * {@link RecordSerializer} per outgoing channel.
-	 */
-	private final RecordSerializer<T>[] serializers;
+	/** Serializes each record once for all channels that it is emitted to. */
+	private final RecordSerializer<T> serializer;
 
 	private final Optional<BufferBuilder>[] bufferBuilders;
 
+	/** Whether the records are written to a buffer that all channels share. */
+	private final boolean sharedBuffers;
+
+	/** The buffer that all channels share, if the channel selector broadcasts all records. */
+	private Optional<BufferBuilder> sharedBufferBuilder = Optional.empty();
+
+	/**
+	 * Whether a channel has a buffer of its own while the buffers are shared, which has to be
+	 * finished before the next record for all channels.
+	 */
+	private boolean hasChannelBufferBuilders;
+
 	private final Random rng = new XORShiftRandom();
 
 	private final boolean flushAlways;
@@ -90,29 +110,83 @@ public class RecordWriter<T extends IOReadableWritable> {
 		/*
 		 * The runtime exposes a channel abstraction for the produced results
 		 * (see {@link ChannelSelector}). Every channel has an independent
-		 * serializer.
+		 * buffer, unless all records go to all channels.
 		 */
-		this.serializers = new SpanningRecordSerializer[numChannels];
+		this.serializer = new SpanningRecordSerializer<T>();
 		this.bufferBuilders = new Optional[numChannels];
 		for (int i = 0; i < numChannels; i++) {
-			serializers[i] = new SpanningRecordSerializer<T>();
 			bufferBuilders[i] = Optional.empty();
 		}
+		this.sharedBuffers = channelSelector.isBroadcast() && numChannels > 1;
 	}
 
 	public void emit(T record) throws IOException, InterruptedException {
-		for (int targetChannel : channelSelector.selectChannels(record, numChannels)) {
-			sendToTarget(record, targetChannel);
+		emit(record, channelSelector.selectChannels(record, numChannels));
+	}
+
+	/**
+	 * Emits the record to the given channel only. This ignores the {@link ChannelSelector}.
+	 */
+	public void emit(T record, int targetChannel) throws IOException, InterruptedException {
+		serializer.serializeRecord(record);
+		if (sendToTarget(targetChannel)) {
+			serializer.prune();
+		}
+	}
+
+	/**
+	 * Emits the record to the given channels only. This ignores the {@link ChannelSelector}.
+	 */
+	public void emit(T record, int[] targetChannels) throws IOException, InterruptedException {
+		if (sharedBuffers && targetChannels.length == numChannels) {
+			broadcastEmit(record);
+			return;
+		}
+
+		serializer.serializeRecord(record);
+		boolean pruneSerializer = false;
+		for (int targetChannel : targetChannels) {
+			pruneSerializer |= sendToTarget(targetChannel);
+		}
+		if (pruneSerializer) {
+			serializer.prune();
 		}
 	}
 
+	/**
+	 * Returns the channels that {@link #emit(IOReadableWritable)} sends the given record to.
+	 */
+	public int[] selectChannels(T record) {
+		return channelSelector.selectChannels(record, numChannels);
+	}
+
+	/**
+	 * Returns the queue to hand over objects by reference to the consumer of the given channel, or
+	 * <tt>null</tt> if the consumer does not accept objects.
+	 *
+	 * @see ResultPartitionWriter#getObjectHandoff(int)
+	 */
+	@Nullable
+	public Queue<Object> getObjectHandoff(int targetChannel) {
+		return targetPartition.getObjectHandoff(targetChannel);
+	}
+
 	/**
 	 * This is used to broadcast Streaming Watermarks in-band with records. This ignores
 	 * the {@link ChannelSelector}.
 	 */
 	public void broadcastEmit(T record) throws IOException, InterruptedException {
-		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
-			sendToTarget(record, targetChannel);
+		serializer.serializeRecord(record);
+		boolean pruneSerializer = false;
+		if (sharedBuffers) {
+			pruneSerializer = sendToAll();
+		} else {
+			for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+				pruneSerializer |= sendToTarget(targetChannel);
+			}
+		}
+		if (pruneSerializer) {
+			serializer.prune();
 		}
 	}
 
@@ -120,16 +194,30 @@ public class RecordWriter<T extends IOReadableWritable> {
 	 * This is used to send LatencyMarks to a random target channel.
 	 */
 	public void randomEmit(T record) throws IOException, InterruptedException {
-		sendToTarget(record, rng.nextInt(numChannels));
+		emit(record, rng.nextInt(numChannels));
 	}
 
-	private void sendToTarget(T record, int targetChannel) throws IOException, InterruptedException {
-		RecordSerializer<T> serializer = serializers[targetChannel];
+	/**
+	 * Copies the serialized record to the given channel.
+	 *
+	 * <p>If the buffers are shared, the record finishes the shared buffer, since the other
+	 * channels must not see it. The buffer of the channel is kept for the following records of
+	 * single channels, until the next record for all channels.
+	 *
+	 * @return whether the record continued in a new buffer, after which the serializer should
+	 * release its memory, once the record has been copied to all its channels
+	 */
+	private boolean sendToTarget(int targetChannel) throws IOException, InterruptedException {
+		tryFinishSharedBufferBuilder();
 
-		SerializationResult result = serializer.addRecord(record);
+		serializer.reset();
+		SerializationResult result = bufferBuilders[targetChannel].isPresent()
+			? serializer.copyToBufferBuilder(bufferBuilders[targetChannel].get())
+			: SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
 
+		boolean continuedInNewBuffer = false;
 		while (result.isFullBuffer()) {
-			if (tryFinishCurrentBufferBuilder(targetChannel, serializer)) {
+			if (tryFinishCurrentBufferBuilder(targetChannel)) {
 				// If this was a full record, we are done. Not breaking
 				// out of the loop at this point will lead to another
 				// buffer request before breaking out (that would not be
@@ -141,21 +229,61 @@ public class RecordWriter<T extends IOReadableWritable> {
 			}
 			BufferBuilder bufferBuilder = requestNewBufferBuilder(targetChannel);
 
-			result = serializer.continueWritingWithNextBufferBuilder(bufferBuilder);
+			result = serializer.copyToBufferBuilder(bufferBuilder);
+			continuedInNewBuffer = true;
 		}
 		checkState(!serializer.hasSerializedData(), "All data should be written at once");
 
 		if (flushAlways) {
 			targetPartition.flush(targetChannel);
 		}
+		return continuedInNewBuffer;
+	}
+
+	/**
+	 * Copies the serialized record once to the buffer that all channels share, after finishing
+	 * the buffers of single channels.
+	 *
+	 * @return whether the record continued in a new buffer
+	 */
+	private boolean sendToAll() throws IOException, InterruptedException {
+		if (hasChannelBufferBuilders) {
+			for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+				tryFinishCurrentBufferBuilder(targetChannel);
+			}
+			hasChannelBufferBuilders = false;
+		}
+
+		serializer.reset();
+		SerializationResult result = sharedBufferBuilder.isPresent()
+			? serializer.copyToBufferBuilder(sharedBufferBuilder.get())
+			: SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
+
+		boolean continuedInNewBuffer = false;
+		while (result.isFullBuffer()) {
+			if (tryFinishSharedBufferBuilder() && result.isFullRecord()) {
+				break;
+			}
+			BufferBuilder bufferBuilder = requestNewSharedBufferBuilder();
+
+			result = serializer.copyToBufferBuilder(bufferBuilder);
+			continuedInNewBuffer = true;
+		}
+		checkState(!serializer.hasSerializedData(), "All data should be written at once");
+
+		if (flushAlways) {
+			flushAll();
+		}
+		return continuedInNewBuffer;
 	}
 
 	public void broadcastEvent(AbstractEvent event) throws IOException {
 		try (BufferConsumer eventBufferConsumer = EventSerializer.toBufferConsumer(event)) {
-			for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
-				RecordSerializer<T> serializer = serializers[targetChannel];
+			tryFinishSharedBufferBuilder();
 
-				tryFinishCurrentBufferBuilder(targetChannel, serializer);
+			hasChannelBufferBuilders = false;
+			for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+				tryFinishCurrentBufferBuilder(targetChannel);
 
 				// retain the buffer so that it can be recycled by each channel of targetPartition
 				targetPartition.addBufferConsumer(eventBufferConsumer.copy(), targetChannel);
@@ -173,10 +301,15 @@ public class RecordWriter<T extends IOReadableWritable> {
 
 	public void clearBuffers() {
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
-			RecordSerializer<?> serializer = serializers[targetChannel];
 			closeBufferBuilder(targetChannel);
-			serializer.clear();
 		}
+		if (sharedBufferBuilder.isPresent()) {
+			sharedBufferBuilder.get().finish();
+			sharedBufferBuilder = Optional.empty();
+		}
+		hasChannelBufferBuilders = false;
+		serializer.clear();
+		serializer.prune();
 	}
 
 	/**
@@ -191,7 +324,7 @@ public class RecordWriter<T extends IOReadableWritable> {
 	 *
 	 * @return true if some data were written
 	 */
-	private boolean tryFinishCurrentBufferBuilder(int targetChannel, RecordSerializer<T> serializer) {
+	private boolean tryFinishCurrentBufferBuilder(int targetChannel) {
 
 		if (!bufferBuilders[targetChannel].isPresent()) {
 			return false;
@@ -200,7 +333,22 @@ public class RecordWriter<T extends IOReadableWritable> {
 		bufferBuilders[targetChannel] = Optional.empty();
 
 		numBytesOut.inc(bufferBuilder.finish());
-		serializer.clear();
+		return true;
+	}
+
+	/**
+	 * Marks the current shared {@link BufferBuilder} as finished for all channels.
+	 *
+	 * @return true if some data were written
+	 */
+	private boolean tryFinishSharedBufferBuilder() {
+		if (!sharedBufferBuilder.isPresent()) {
+			return false;
+		}
+		BufferBuilder bufferBuilder = sharedBufferBuilder.get();
+		sharedBufferBuilder = Optional.empty();
+
+		numBytesOut.inc(bufferBuilder.finish());
 		return true;
 	}
 
@@ -209,6 +357,25 @@ public class RecordWriter<T extends IOReadableWritable> {
 		BufferBuilder bufferBuilder = targetPartition.getBufferProvider().requestBufferBuilderBlocking();
 		bufferBuilders[targetChannel] = Optional.of(bufferBuilder);
 		targetPartition.addBufferConsumer(bufferBuilder.createBufferConsumer(), targetChannel);
+		if (sharedBuffers) {
+			hasChannelBufferBuilders = true;
+		}
+		return bufferBuilder;
+	}
+
+	/**
+	 * Requests a {@link BufferBuilder} whose data is read by all channels, through retained
+	 * copies of the same {@link BufferConsumer}.
+	 */
+	private BufferBuilder requestNewSharedBufferBuilder() throws IOException, InterruptedException {
+		checkState(!sharedBufferBuilder.isPresent());
+		BufferBuilder bufferBuilder = targetPartition.getBufferProvider().requestBufferBuilderBlocking();
+		sharedBufferBuilder = Optional.of(bufferBuilder);
+		try (BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer()) {
+			for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+				targetPartition.addBufferConsumer(bufferConsumer.copy(), targetChannel);
+			}
+		}
 		return bufferBuilder;
 	}
 
@@ -22,7 +22,10 @@ import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
+import java.util.Queue;
 
 /**
  * A buffer-oriented runtime result writer API for producing results.
@@ -60,4 +63,32 @@ public interface ResultPartitionWriter {
 	 * Manually trigger consumption from enqueued {@link BufferConsumer BufferConsumers} in one specified subpartition.
 	 */
 	void flush(int subpartitionIndex);
+
+	/**
+	 * Returns the number of bytes of the subpartition with the given index which only become
+	 * available to the consumer with the next {@link #flush(int)}, or <tt>-1</tt> if unknown.
+	 */
+	default int getNumberOfUnflushedBytes(int subpartitionIndex) {
+		return -1;
+	}
+
+	/**
+	 * Returns the number of finished buffers of the subpartition with the given index which the
+	 * consumer has not taken yet. With credit-based flow control, the backlog grows while the
+	 * consumer has no credit.
+	 */
+	default int getBuffersInBacklog(int subpartitionIndex) {
+		return 0;
+	}
+
+	/**
+	 * Returns the queue through which objects are handed over by reference to the consumer of the
+	 * subpartition with the given index, or <tt>null</tt> if the consumer does not run in the same
+	 * task manager or has not enabled the handoff. The queue is bounded, see
+	 * {@link org.apache.flink.runtime.io.network.partition.ResultSubpartition#getObjectHandoff()}.
+	 */
+	@Nullable
+	default Queue<Object> getObjectHandoff(int subpartitionIndex) {
+		return null;
+	}
 }
@@ -59,6 +59,18 @@ public interface Buffer {
 	 */
 	void tagAsEvent();
 
+	/**
+	 * Returns whether the data of this buffer is compressed, see {@link BufferCompressor}.
+	 *
+	 * @return <tt>true</tt> if the readable bytes of this buffer are compressed
+	 */
+	boolean isCompressed();
+
+	/**
+	 * Tags the data of this buffer as compressed or uncompressed.
+	 */
+	void setCompressed(boolean isCompressed);
+
 	/**
 	 * Returns the underlying memory segment. This method is dangerous since it ignores read only protections and omits
 	 * slices. Use it only along the {@link #getMemorySegmentOffset()}.
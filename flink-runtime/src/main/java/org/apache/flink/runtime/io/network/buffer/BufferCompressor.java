@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBufAllocator;
+
+import org.xerial.snappy.Snappy;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Compresses the data buffers of a result partition with Snappy before they leave the task
+ * manager, i.e. before they are sent to a remote consumer or spilled to disk. Buffers whose
+ * data do not shrink are left uncompressed, and events are never compressed.
+ *
+ * <p>Compressed buffers are tagged via {@link Buffer#setCompressed(boolean)}, and the consumer
+ * side restores them with {@link #decompress(ByteBuffer, ByteBuffer)} or
+ * {@link #decompressToUnpooledBuffer(Buffer)}.
+ *
+ * <p>The compressor counts the bytes before and after compression for the compression ratio
+ * metric. It is thread-safe, because the netty threads of all consumers and the task thread
+ * (when spilling) share it.
+ *
+ * <p>The subpartitions of a broadcast result share their buffers (see
+ * {@link org.apache.flink.runtime.io.network.api.writer.ChannelSelector#isBroadcast()}), so that
+ * the consumers of all subpartitions send the same data. The compressed data of the last sent
+ * slice of a {@link NetworkBuffer} are therefore kept with the buffer until it is recycled, and
+ * the other consumers reuse them instead of compressing the data again.
+ */
+public class BufferCompressor {
+
+	/** The total size of the buffers that were compressed. */
+	private final AtomicLong numBytesBeforeCompression = new AtomicLong();
+
+	/** The total size of the buffers that were compressed, after compression. */
+	private final AtomicLong numBytesAfterCompression = new AtomicLong();
+
+	/** Scratch memory to compress off-heap buffers into on-heap buffers, guarded by this object. */
+	private ByteBuffer directScratchBuffer;
+
+	/**
+	 * Compresses the readable bytes of the given buffer into a new buffer of the allocator, or
+	 * returns the compressed data of the same bytes, if another consumer of the underlying
+	 * network buffer compressed them before.
+	 *
+	 * <p>The given buffer is not recycled.
+	 *
+	 * @return the compressed data or <tt>null</tt>, if compression does not reduce the size
+	 */
+	@Nullable
+	public ByteBuf compress(Buffer buffer, ByteBufAllocator allocator) throws IOException {
+		checkArgument(buffer.isBuffer() && !buffer.isCompressed(), "Only uncompressed data buffers can be compressed.");
+
+		ByteBuffer source = buffer.getNioBufferReadable();
+		NetworkBuffer networkBuffer = buffer instanceof ReadOnlySlicedNetworkBuffer
+			? (NetworkBuffer) ((ReadOnlySlicedNetworkBuffer) buffer).unwrap()
+			: buffer instanceof NetworkBuffer ? (NetworkBuffer) buffer : null;
+		if (networkBuffer == null) {
+			return compress(source, allocator);
+		}
+
+		int index = buffer.getMemorySegmentOffset() + buffer.getReaderIndex();
+		int length = source.remaining();
+		synchronized (networkBuffer) {
+			CompressedSlice slice = networkBuffer.getCompressedSlice();
+			if (slice != null && slice.index == index && slice.length == length) {
+				return slice.data == null ? null : slice.data.duplicate().retain();
+			}
+
+			ByteBuf compressed = compress(source, allocator);
+			networkBuffer.setCompressedSlice(
+				new CompressedSlice(index, length, compressed == null ? null : compressed.duplicate().retain()));
+			return compressed;
+		}
+	}
+
+	@Nullable
+	private ByteBuf compress(ByteBuffer source, ByteBufAllocator allocator) throws IOException {
+		int uncompressedLength = source.remaining();
+		int maxCompressedLength = Snappy.maxCompressedLength(uncompressedLength);
+
+		ByteBuf target = allocator.directBuffer(maxCompressedLength);
+		try {
+			int compressedLength = compress(source, target.nioBuffer(0, maxCompressedLength));
+			if (compressedLength >= uncompressedLength) {
+				target.release();
+				return null;
+			}
+
+			target.writerIndex(compressedLength);
+			recordCompression(uncompressedLength, compressedLength);
+			return target;
+		} catch (Throwable t) {
+			target.release();
+			throw t;
+		}
+	}
+
+	/**
+	 * Compresses the readable bytes of the given buffer into a new on-heap buffer which is freed
+	 * when it is recycled. This is used before spilling buffers, which holds the compressed
+	 * buffer until the write is done.
+	 *
+	 * <p>If compression reduces the size, the given buffer is recycled and the compressed buffer is
+	 * returned. Otherwise, the given buffer is returned as is.
+	 */
+	public Buffer compressToUnpooledBuffer(Buffer buffer) throws IOException {
+		if (!buffer.isBuffer() || buffer.isCompressed()) {
+			return buffer;
+		}
+
+		ByteBuffer source = buffer.getNioBufferReadable();
+		int uncompressedLength = source.remaining();
+		int maxCompressedLength = Snappy.maxCompressedLength(uncompressedLength);
+
+		byte[] compressed;
+		int compressedLength;
+		if (source.isDirect()) {
+			// compress off-heap and copy only the compressed bytes
+			synchronized (this) {
+				if (directScratchBuffer == null || directScratchBuffer.capacity() < maxCompressedLength) {
+					directScratchBuffer = ByteBuffer.allocateDirect(maxCompressedLength);
+				}
+				directScratchBuffer.clear();
+				compressedLength = compress(source, directScratchBuffer);
+				if (compressedLength >= uncompressedLength) {
+					return buffer;
+				}
+				compressed = new byte[compressedLength];
+				directScratchBuffer.position(0);
+				directScratchBuffer.get(compressed, 0, compressedLength);
+			}
+		} else {
+			compressed = new byte[maxCompressedLength];
+			compressedLength = compress(source, ByteBuffer.wrap(compressed));
+			if (compressedLength >= uncompressedLength) {
+				return buffer;
+			}
+		}
+
+		Buffer compressedBuffer = new NetworkBuffer(
+			MemorySegmentFactory.wrap(compressed), FreeingBufferRecycler.INSTANCE, true, compressedLength);
+		compressedBuffer.setCompressed(true);
+
+		buffer.recycleBuffer();
+		recordCompression(uncompressedLength, compressedLength);
+		return compressedBuffer;
+	}
+
+	/**
+	 * Returns the size of the compressed buffers divided by their size before compression, or
+	 * <tt>1.0</tt> if no buffer was compressed yet.
+	 */
+	public double getCompressionRatio() {
+		long before = numBytesBeforeCompression.get();
+		return before == 0 ? 1.0 : ((double) numBytesAfterCompression.get()) / before;
+	}
+
+	public long getNumBytesBeforeCompression() {
+		return numBytesBeforeCompression.get();
+	}
+
+	public long getNumBytesAfterCompression() {
+		return numBytesAfterCompression.get();
+	}
+
+	private void recordCompression(int uncompressedLength, int compressedLength) {
+		numBytesBeforeCompression.addAndGet(uncompressedLength);
+		numBytesAfterCompression.addAndGet(compressedLength);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Decompression
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Decompresses the readable bytes of the given compressed buffer into a new on-heap buffer
+	 * which is freed when it is recycled. The given buffer is recycled.
+	 */
+	public static Buffer decompressToUnpooledBuffer(Buffer buffer) throws IOException {
+		checkArgument(buffer.isCompressed(), "The buffer is not compressed.");
+
+		try {
+			ByteBuffer source = buffer.getNioBufferReadable();
+			int uncompressedLength = uncompressedLength(source);
+
+			MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(uncompressedLength);
+			decompress(source, segment.wrap(0, uncompressedLength));
+
+			return new NetworkBuffer(segment, FreeingBufferRecycler.INSTANCE, true, uncompressedLength);
+		} finally {
+			buffer.recycleBuffer();
+		}
+	}
+
+	/**
+	 * Decompresses the remaining bytes of the source into the target, starting at the position of
+	 * the target. The positions of the buffers are not changed.
+	 *
+	 * @return the number of decompressed bytes
+	 * @throws IOException if the data are corrupt or do not fit into the target
+	 */
+	public static int decompress(ByteBuffer source, ByteBuffer target) throws IOException {
+		checkNotNull(source);
+		checkNotNull(target);
+
+		int uncompressedLength = uncompressedLength(source);
+		if (uncompressedLength > target.remaining()) {
+			throw new IOException("The decompressed buffer of " + uncompressedLength +
+				" bytes does not fit into the target buffer of " + target.remaining() + " bytes.");
+		}
+
+		if (source.isDirect() && target.isDirect()) {
+			return Snappy.uncompress(source.duplicate(), target.duplicate());
+		} else if (source.hasArray() && target.hasArray()) {
+			return Snappy.uncompress(
+				source.array(), source.arrayOffset() + source.position(), source.remaining(),
+				target.array(), target.arrayOffset() + target.position());
+		} else {
+			byte[] uncompressed = Snappy.uncompress(toArray(source));
+			target.duplicate().put(uncompressed);
+			return uncompressed.length;
+		}
+	}
+
+	private static int uncompressedLength(ByteBuffer source) throws IOException {
+		if (source.isDirect()) {
+			return Snappy.uncompressedLength(source);
+		} else if (source.hasArray()) {
+			return Snappy.uncompressedLength(
+				source.array(), source.arrayOffset() + source.position(), source.remaining());
+		} else {
+			return Snappy.uncompressedLength(toArray(source));
+		}
+	}
+
+	/**
+	 * Compresses the remaining bytes of the source into the target, starting at the position of
+	 * the target. The positions of the buffers are not changed.
+	 *
+	 * @return the number of compressed bytes
+	 */
+	private static int compress(ByteBuffer source, ByteBuffer target) throws IOException {
+		if (source.isDirect() && target.isDirect()) {
+			return Snappy.compress(source.duplicate(), target.duplicate());
+		} else if (source.hasArray() && target.hasArray()) {
+			return Snappy.compress(
+				source.array(), source.arrayOffset() + source.position(), source.remaining(),
+				target.array(), target.arrayOffset() + target.position());
+		} else {
+			byte[] compressed = Snappy.compress(toArray(source));
+			target.duplicate().put(compressed);
+			return compressed.length;
+		}
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The compressed data of a slice of a {@link NetworkBuffer}, which the buffer holds until it is
+	 * recycled.
+	 */
+	static final class CompressedSlice {
+
+		/** The index of the first compressed byte in the buffer. */
+		final int index;
+
+		/** The number of compressed bytes of the buffer. */
+		final int length;
+
+		/** The compressed data, or <tt>null</tt> if compression does not reduce the size. */
+		@Nullable
+		final ByteBuf data;
+
+		CompressedSlice(int index, int length, @Nullable ByteBuf data) {
+			this.index = index;
+			this.length = length;
+			this.data = data;
+		}
+
+		void release() {
+			if (data != null) {
+				data.release();
+			}
+		}
+	}
+}
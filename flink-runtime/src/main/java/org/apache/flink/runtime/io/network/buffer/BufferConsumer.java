@@ -119,6 +119,15 @@ public class BufferConsumer implements Closeable {
 		return writerPosition.getCached();
 	}
 
+	/**
+	 * @return the number of bytes written by the {@link BufferBuilder} which have not been returned by
+	 * {@link #build()} yet.
+	 */
+	public int getUnreadBytes() {
+		writerPosition.update();
+		return writerPosition.getCached() - currentReaderPosition;
+	}
+
 	/**
 	 * Cached reading wrapper around {@link PositionMarker}.
 	 *
@@ -25,6 +25,9 @@ import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
 import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBufAllocator;
 import org.apache.flink.shaded.netty4.io.netty.buffer.Unpooled;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -53,6 +56,14 @@ public class NetworkBuffer extends AbstractReferenceCountedByteBuf implements Bu
 	/** Whether this buffer represents a buffer or an event. */
 	private boolean isBuffer;
 
+	/** Whether the data of this buffer is compressed. */
+	private boolean isCompressed;
+
+	/** The compressed data of the last compressed slice of this buffer, see {@link BufferCompressor}. */
+	@GuardedBy("this")
+	@Nullable
+	private BufferCompressor.CompressedSlice compressedSlice;
+
 	/** Allocator for further byte buffers (needed by netty). */
 	private ByteBufAllocator allocator;
 
@@ -124,6 +135,18 @@ public class NetworkBuffer extends AbstractReferenceCountedByteBuf implements Bu
 		isBuffer = false;
 	}
 
+	@Override
+	public boolean isCompressed() {
+		return isCompressed;
+	}
+
+	@Override
+	public void setCompressed(boolean isCompressed) {
+		ensureAccessible();
+
+		this.isCompressed = isCompressed;
+	}
+
 	@Override
 	public MemorySegment getMemorySegment() {
 		ensureAccessible();
@@ -166,8 +189,28 @@ public class NetworkBuffer extends AbstractReferenceCountedByteBuf implements Bu
 		return new ReadOnlySlicedNetworkBuffer(this, index, length);
 	}
 
+	@Nullable
+	BufferCompressor.CompressedSlice getCompressedSlice() {
+		assert Thread.holdsLock(this);
+		return compressedSlice;
+	}
+
+	void setCompressedSlice(BufferCompressor.CompressedSlice compressedSlice) {
+		assert Thread.holdsLock(this);
+		if (this.compressedSlice != null) {
+			this.compressedSlice.release();
+		}
+		this.compressedSlice = compressedSlice;
+	}
+
 	@Override
 	protected void deallocate() {
+		synchronized (this) {
+			if (compressedSlice != null) {
+				compressedSlice.release();
+				compressedSlice = null;
+			}
+		}
 		recycler.recycle(memorySegment);
 	}
 
@@ -88,6 +88,16 @@ public final class ReadOnlySlicedNetworkBuffer extends ReadOnlyByteBuf implement
 		throw new ReadOnlyBufferException();
 	}
 
+	@Override
+	public boolean isCompressed() {
+		return ((Buffer) unwrap()).isCompressed();
+	}
+
+	@Override
+	public void setCompressed(boolean isCompressed) {
+		throw new ReadOnlyBufferException();
+	}
+
 	/**
 	 * Returns the underlying memory segment.
 	 *
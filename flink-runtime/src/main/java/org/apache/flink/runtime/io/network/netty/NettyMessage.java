@@ -22,6 +22,7 @@ import org.apache.flink.runtime.event.TaskEvent;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannelID;
@@ -261,14 +262,18 @@ public abstract class NettyMessage {
 
 		final boolean isBuffer;
 
-		private BufferResponse(
+		final boolean isCompressed;
+
+		BufferResponse(
 				ByteBuf buffer,
 				boolean isBuffer,
+				boolean isCompressed,
 				int sequenceNumber,
 				InputChannelID receiverId,
 				int backlog) {
 			this.buffer = checkNotNull(buffer);
 			this.isBuffer = isBuffer;
+			this.isCompressed = isCompressed;
 			this.sequenceNumber = sequenceNumber;
 			this.receiverId = checkNotNull(receiverId);
 			this.backlog = backlog;
@@ -281,6 +286,7 @@ public abstract class NettyMessage {
 				int backlog) {
 			this.buffer = checkNotNull(buffer).asByteBuf();
 			this.isBuffer = buffer.isBuffer();
+			this.isCompressed = buffer.isCompressed();
 			this.sequenceNumber = sequenceNumber;
 			this.receiverId = checkNotNull(receiverId);
 			this.backlog = backlog;
@@ -290,10 +296,29 @@ public abstract class NettyMessage {
 			return isBuffer;
 		}
 
+		boolean isCompressed() {
+			return isCompressed;
+		}
+
 		ByteBuf getNettyBuffer() {
 			return buffer;
 		}
 
+		/**
+		 * Reads the data of this response into the given buffer, decompressing them if the sender
+		 * compressed them.
+		 */
+		void readInto(Buffer target) throws IOException {
+			if (isCompressed) {
+				int size = BufferCompressor.decompress(
+					buffer.nioBuffer(), target.getMemorySegment().wrap(0, target.getMaxCapacity()));
+				target.setSize(size);
+				buffer.skipBytes(buffer.readableBytes());
+			} else {
+				buffer.readBytes(target.asByteBuf(), buffer.readableBytes());
+			}
+		}
+
 		void releaseBuffer() {
 			buffer.release();
 		}
@@ -304,8 +329,9 @@ public abstract class NettyMessage {
 
 		@Override
 		ByteBuf write(ByteBufAllocator allocator) throws IOException {
-			// receiver ID (16), sequence number (4), backlog (4), isBuffer (1), buffer size (4)
-			final int messageHeaderLength = 16 + 4 + 4 + 1 + 4;
+			// receiver ID (16), sequence number (4), backlog (4), isBuffer (1), isCompressed (1),
+			// buffer size (4)
+			final int messageHeaderLength = 16 + 4 + 4 + 1 + 1 + 4;
 
 			ByteBuf headerBuf = null;
 			try {
@@ -321,6 +347,7 @@ public abstract class NettyMessage {
 				headerBuf.writeInt(sequenceNumber);
 				headerBuf.writeInt(backlog);
 				headerBuf.writeBoolean(isBuffer);
+				headerBuf.writeBoolean(isCompressed);
 				headerBuf.writeInt(buffer.readableBytes());
 
 				CompositeByteBuf composityBuf = allocator.compositeDirectBuffer();
@@ -346,10 +373,11 @@ public abstract class NettyMessage {
 			int sequenceNumber = buffer.readInt();
 			int backlog = buffer.readInt();
 			boolean isBuffer = buffer.readBoolean();
+			boolean isCompressed = buffer.readBoolean();
 			int size = buffer.readInt();
 
 			ByteBuf retainedSlice = buffer.readSlice(size).retain();
-			return new BufferResponse(retainedSlice, isBuffer, sequenceNumber, receiverId, backlog);
+			return new BufferResponse(retainedSlice, isBuffer, isCompressed, sequenceNumber, receiverId, backlog);
 		}
 	}
 
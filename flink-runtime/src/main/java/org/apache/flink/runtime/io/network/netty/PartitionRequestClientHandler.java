@@ -310,7 +310,7 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter impleme
 					Buffer buffer = bufferProvider.requestBuffer();
 
 					if (buffer != null) {
-						nettyBuffer.readBytes(buffer.asByteBuf(), receivedSize);
+						bufferOrEvent.readInto(buffer);
 
 						inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber, -1);
 
@@ -460,8 +460,7 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter impleme
 					throw new IllegalStateException("Running buffer availability task w/o a buffer.");
 				}
 
-				ByteBuf nettyBuffer = stagedBufferResponse.getNettyBuffer();
-				nettyBuffer.readBytes(buffer.asByteBuf(), nettyBuffer.readableBytes());
+				stagedBufferResponse.readInto(buffer);
 				stagedBufferResponse.releaseBuffer();
 
 				RemoteInputChannel inputChannel = inputChannels.get(stagedBufferResponse.receiverId);
@@ -23,12 +23,14 @@ import org.apache.flink.runtime.io.network.NetworkSequenceViewReader;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.netty.NettyMessage.ErrorResponse;
 import org.apache.flink.runtime.io.network.partition.ProducerFailedException;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel.BufferAndAvailability;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannelID;
 
 import org.apache.flink.shaded.guava18.com.google.common.collect.Sets;
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
 import org.apache.flink.shaded.netty4.io.netty.channel.Channel;
 import org.apache.flink.shaded.netty4.io.netty.channel.ChannelFuture;
 import org.apache.flink.shaded.netty4.io.netty.channel.ChannelFutureListener;
@@ -214,6 +216,7 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		// gate and the consumed views as the local input channels.
 
 		BufferAndAvailability next = null;
+		BufferResponse bufferResponse = null;
 		try {
 			while (true) {
 				NetworkSequenceViewReader reader = pollAvailableReader();
@@ -246,13 +249,10 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 						registerAvailableReader(reader);
 					}
 
-					BufferResponse msg = new BufferResponse(
-						next.buffer(),
-						reader.getSequenceNumber(),
-						reader.getReceiverId(),
-						next.buffersInBacklog());
+					boolean isEndOfPartition = isEndOfPartitionEvent(next.buffer());
+					bufferResponse = createBufferResponse(reader, next);
 
-					if (isEndOfPartitionEvent(next.buffer())) {
+					if (isEndOfPartition) {
 						reader.notifySubpartitionConsumed();
 						reader.releaseAllResources();
 
@@ -261,13 +261,16 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 					// Write and flush and wait until this is done before
 					// trying to continue with the next buffer.
-					channel.writeAndFlush(msg).addListener(writeListener);
+					channel.writeAndFlush(bufferResponse).addListener(writeListener);
 
 					return;
 				}
 			}
 		} catch (Throwable t) {
-			if (next != null) {
+			if (bufferResponse != null) {
+				// the response holds the buffer or its compressed copy
+				bufferResponse.releaseBuffer();
+			} else if (next != null) {
 				next.buffer().recycleBuffer();
 			}
 
@@ -289,6 +292,40 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		return reader;
 	}
 
+	/**
+	 * Creates the response for the next buffer of the reader, whose data are compressed if the
+	 * subpartition compresses its buffers and compression reduces their size. The data of a buffer
+	 * that several subpartitions share are only compressed once. The response takes over the buffer.
+	 */
+	private BufferResponse createBufferResponse(
+			NetworkSequenceViewReader reader,
+			BufferAndAvailability next) throws IOException {
+
+		Buffer buffer = next.buffer();
+		BufferCompressor compressor = reader.getBufferCompressor();
+
+		if (compressor != null && buffer.isBuffer() && !buffer.isCompressed()) {
+			ByteBuf compressed = compressor.compress(buffer, ctx.alloc());
+			if (compressed != null) {
+				buffer.recycleBuffer();
+
+				return new BufferResponse(
+					compressed,
+					true,
+					true,
+					reader.getSequenceNumber(),
+					reader.getReceiverId(),
+					next.buffersInBacklog());
+			}
+		}
+
+		return new BufferResponse(
+			buffer,
+			reader.getSequenceNumber(),
+			reader.getReceiverId(),
+			next.buffersInBacklog());
+	}
+
 	private boolean isEndOfPartitionEvent(Buffer buffer) throws IOException {
 		return EventSerializer.isEvent(buffer, EndOfPartitionEvent.class);
 	}
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.io.network.netty;
 
 import org.apache.flink.runtime.io.network.NetworkSequenceViewReader;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.BufferAvailabilityListener;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
@@ -132,6 +133,11 @@ class SequenceNumberingViewReader implements BufferAvailabilityListener, Network
 		return subpartitionView.getFailureCause();
 	}
 
+	@Override
+	public BufferCompressor getBufferCompressor() {
+		return subpartitionView.getBufferCompressor();
+	}
+
 	@Override
 	public void releaseAllResources() throws IOException {
 		subpartitionView.releaseAllResources();
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * The single data file of a sort-merge blocking {@link ResultPartition}, which holds the buffers
+ * of all its subpartitions, together with the index to read the buffers of each subpartition.
+ *
+ * <p>The file is written in regions. Whenever the partition has to release its memory, the
+ * buffers of all subpartitions are appended subpartition by subpartition (see
+ * {@link #writeRegion(ResultSubpartition[])}). Within a region, the buffers of a subpartition
+ * are therefore contiguous, and the index keeps their offset and number for each region. The
+ * readers of the subpartitions read their buffers region by region
+ * ({@link SortMergeSubpartitionView}), with sequential reads within each region, followed by
+ * the buffers that are still in memory. The file is only created with the first region.
+ *
+ * <p>Compared to one spill file per subpartition (see {@link SpillableSubpartition}), this needs
+ * a single file handle per partition and writes the file sequentially.
+ *
+ * <p>The buffers are stored with the header of the {@link org.apache.flink.runtime.io.disk.iomanager.BufferFileWriter},
+ * i.e. the type of the buffer and its size, followed by the data. The index is kept in memory,
+ * since the partition is served by the task manager that produced it.
+ *
+ * <p>Writes are synchronized on this object. Reads happen only after the partition has been
+ * finished and do not lock, because they use positional reads of the file channel. A region
+ * may still be written while the subpartitions are read, if the partition has to release the
+ * memory of the buffers which have not been consumed yet.
+ */
+class PartitionedFile {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionedFile.class);
+
+	/** The size of the header of each buffer: its type and its size. */
+	private static final int BUFFER_HEADER_LENGTH = 8;
+
+	private static final int TYPE_EVENT = 0;
+
+	private static final int TYPE_BUFFER = 1;
+
+	private static final int TYPE_COMPRESSED_BUFFER = 2;
+
+	/** The I/O manager which provides the location of the file. */
+	private final IOManager ioManager;
+
+	private final int numSubpartitions;
+
+	/** The header of the buffer which is written. */
+	@GuardedBy("this")
+	private final ByteBuffer writeHeader = ByteBuffer.allocateDirect(BUFFER_HEADER_LENGTH);
+
+	/** The channel of the file, which is created with the first region. */
+	private volatile FileChannel fileChannel;
+
+	private FileIOChannel.ID channelId;
+
+	/** The offsets of the subpartitions in the regions, region by region. */
+	@GuardedBy("this")
+	private long[] offsets;
+
+	/** The number of buffers of the subpartitions in the regions, region by region. */
+	@GuardedBy("this")
+	private int[] numBuffers;
+
+	@GuardedBy("this")
+	private int numRegions;
+
+	@GuardedBy("this")
+	private long writePosition;
+
+	/** Flag indicating that the partition has been finished. */
+	private volatile boolean isFinished;
+
+	@GuardedBy("this")
+	private boolean isReleased;
+
+	PartitionedFile(IOManager ioManager, int numSubpartitions) {
+		checkArgument(numSubpartitions > 0);
+		this.ioManager = checkNotNull(ioManager);
+		this.numSubpartitions = numSubpartitions;
+		this.offsets = new long[numSubpartitions];
+		this.numBuffers = new int[numSubpartitions];
+	}
+
+	/**
+	 * Appends a region with the buffers of the given subpartitions, which must be the
+	 * {@link SortMergeSubpartition}s of this file in the order of their index.
+	 *
+	 * @param subpartitions the subpartitions to write
+	 * @return the number of written buffers
+	 */
+	synchronized int writeRegion(ResultSubpartition[] subpartitions) throws IOException {
+		checkArgument(subpartitions.length == numSubpartitions);
+
+		if (isReleased) {
+			return 0;
+		}
+
+		if (fileChannel == null) {
+			channelId = ioManager.createChannel();
+			fileChannel = FileChannel.open(
+				channelId.getPathFile().toPath(),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.READ);
+		}
+
+		int regionStart = numRegions * numSubpartitions;
+		if (regionStart + numSubpartitions > offsets.length) {
+			offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+			numBuffers = Arrays.copyOf(numBuffers, 2 * numBuffers.length);
+		}
+
+		int numWrittenBuffers = 0;
+		for (int i = 0; i < numSubpartitions; i++) {
+			SortMergeSubpartition subpartition = (SortMergeSubpartition) subpartitions[i];
+			checkArgument(subpartition.index == i);
+
+			offsets[regionStart + i] = writePosition;
+			numBuffers[regionStart + i] = subpartition.writeBuffers(this);
+			numWrittenBuffers += numBuffers[regionStart + i];
+		}
+
+		if (numWrittenBuffers > 0) {
+			numRegions++;
+			LOG.debug("Wrote region {} with {} buffers to {} ({} bytes).",
+				numRegions - 1, numWrittenBuffers, channelId.getPath(), writePosition);
+		}
+
+		return numWrittenBuffers;
+	}
+
+	/**
+	 * Appends the given buffer to the region that is written and recycles it.
+	 */
+	void writeBuffer(Buffer buffer) throws IOException {
+		assert Thread.holdsLock(this);
+
+		try {
+			ByteBuffer data = buffer.getNioBufferReadable();
+			int size = data.remaining();
+
+			writeHeader.clear();
+			writeHeader.putInt(buffer.isBuffer() ? (buffer.isCompressed() ? TYPE_COMPRESSED_BUFFER : TYPE_BUFFER) : TYPE_EVENT);
+			writeHeader.putInt(size);
+			writeHeader.flip();
+
+			ByteBuffer[] buffers = new ByteBuffer[] {writeHeader, data};
+			while (data.hasRemaining()) {
+				fileChannel.write(buffers);
+			}
+
+			writePosition += BUFFER_HEADER_LENGTH + size;
+		} finally {
+			buffer.recycleBuffer();
+		}
+	}
+
+	/**
+	 * Reads the buffer at the given position of the file into the given empty buffer.
+	 *
+	 * @return the position of the following buffer
+	 */
+	long readBuffer(long position, Buffer target) throws IOException {
+		checkState(isFinished, "The partitioned file has not been finished yet.");
+		checkArgument(target.getSize() == 0, "Buffer not empty");
+
+		ByteBuffer header = ByteBuffer.allocate(BUFFER_HEADER_LENGTH);
+		readFully(header, position);
+		header.flip();
+
+		int type = header.getInt();
+		int size = header.getInt();
+
+		if (size > target.getMaxCapacity()) {
+			throw new IllegalStateException("Buffer is too small for data: " + target.getMaxCapacity() +
+				" bytes available, but " + size + " needed. This is most likely due to an serialized event, " +
+				"which is larger than the buffer size.");
+		}
+
+		readFully(target.getNioBuffer(0, size), position + BUFFER_HEADER_LENGTH);
+		target.setSize(size);
+
+		if (type == TYPE_EVENT) {
+			target.tagAsEvent();
+		} else if (type == TYPE_COMPRESSED_BUFFER) {
+			target.setCompressed(true);
+		}
+
+		return position + BUFFER_HEADER_LENGTH + size;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = fileChannel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of the partitioned file " + channelId.getPath() + '.');
+			}
+			position += read;
+		}
+	}
+
+	synchronized int getNumRegions() {
+		return numRegions;
+	}
+
+	/**
+	 * Returns the offset of the first buffer of the subpartition in the region.
+	 */
+	synchronized long getOffset(int region, int subpartition) {
+		checkArgument(region < numRegions);
+		return offsets[region * numSubpartitions + subpartition];
+	}
+
+	/**
+	 * Returns the number of buffers of the subpartition in the region.
+	 */
+	synchronized int getNumBuffers(int region, int subpartition) {
+		checkArgument(region < numRegions);
+		return numBuffers[region * numSubpartitions + subpartition];
+	}
+
+	/**
+	 * Marks the file as finished after the partition has been finished, which allows to read it.
+	 * The buffers that are still in memory are only written if the partition has to release its
+	 * memory later on.
+	 */
+	void finish() {
+		isFinished = true;
+	}
+
+	boolean isFinished() {
+		return isFinished;
+	}
+
+	/**
+	 * Closes and deletes the file. Readers of the file fail afterwards.
+	 */
+	synchronized void release() throws IOException {
+		if (isReleased) {
+			return;
+		}
+		isReleased = true;
+
+		if (fileChannel != null) {
+			try {
+				fileChannel.close();
+			} finally {
+				ioManager.deleteChannel(channelId);
+			}
+		}
+	}
+}
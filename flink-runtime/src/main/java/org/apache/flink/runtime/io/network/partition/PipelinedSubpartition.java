@@ -30,6 +30,8 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
@@ -55,6 +57,16 @@ class PipelinedSubpartition extends ResultSubpartition {
 	/** Flag indicating whether the subpartition has been released. */
 	private volatile boolean isReleased;
 
+	/**
+	 * The maximum number of objects handed over to the consumer that it has not taken yet. The
+	 * placeholders of many objects fit into a single buffer, so the buffers alone do not limit the
+	 * memory of the objects.
+	 */
+	static final int OBJECT_HANDOFF_CAPACITY = 1024;
+
+	/** The objects handed over to a local consumer, if it has enabled this. */
+	private volatile Queue<Object> objectHandoff;
+
 	// ------------------------------------------------------------------------
 
 	PipelinedSubpartition(int index, ResultPartition parent) {
@@ -128,6 +140,10 @@ class PipelinedSubpartition extends ResultSubpartition {
 			view = readView;
 			readView = null;
 
+			if (objectHandoff != null) {
+				objectHandoff.clear();
+			}
+
 			// Make sure that no further buffers are added to the subpartition
 			isReleased = true;
 		}
@@ -251,6 +267,39 @@ class PipelinedSubpartition extends ResultSubpartition {
 		return buffers.size();
 	}
 
+	@Override
+	public int getNumberOfUnflushedBytes() {
+		synchronized (buffers) {
+			if (flushRequested || buffers.isEmpty()) {
+				return 0;
+			}
+
+			BufferConsumer bufferConsumer = buffers.peekLast();
+			int unreadBytes = bufferConsumer.getUnreadBytes();
+			return bufferConsumer.isFinished() ? 0 : unreadBytes;
+		}
+	}
+
+	@Nullable
+	@Override
+	public Queue<Object> getObjectHandoff() {
+		return objectHandoff;
+	}
+
+	/**
+	 * Creates the queue to hand over objects to the consumer, which must run in the same task
+	 * manager. Once enabled, the handoff stays enabled for the lifetime of the subpartition. The
+	 * queue holds at most {@link #OBJECT_HANDOFF_CAPACITY} objects.
+	 */
+	Queue<Object> enableObjectHandoff() {
+		synchronized (buffers) {
+			if (objectHandoff == null) {
+				objectHandoff = new ArrayBlockingQueue<>(OBJECT_HANDOFF_CAPACITY);
+			}
+			return objectHandoff;
+		}
+	}
+
 	// ------------------------------------------------------------------------
 
 	@Override
@@ -18,10 +18,12 @@
 
 package org.apache.flink.runtime.io.network.partition;
 
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
 
 import javax.annotation.Nullable;
 
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -90,6 +92,16 @@ class PipelinedSubpartitionView implements ResultSubpartitionView {
 		return parent.getFailureCause();
 	}
 
+	@Override
+	public BufferCompressor getBufferCompressor() {
+		return parent.getBufferCompressor();
+	}
+
+	@Override
+	public Queue<Object> enableObjectHandoff() {
+		return parent.enableObjectHandoff();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("PipelinedSubpartitionView(index: %d) of ResultPartition %s",
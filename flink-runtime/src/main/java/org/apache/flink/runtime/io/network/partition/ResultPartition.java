@@ -19,10 +19,12 @@
 package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.runtime.executiongraph.IntermediateResultPartition;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferPoolOwner;
@@ -36,7 +38,10 @@ import org.apache.flink.runtime.taskmanager.TaskManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -102,6 +107,13 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 
 	private final boolean sendScheduleOrUpdateConsumersMessage;
 
+	/**
+	 * The single file of all subpartitions of a sort-merge blocking partition, or <tt>null</tt>
+	 * for other partitions (see {@link TaskManagerOptions#NETWORK_SORT_MERGE_BLOCKING_SHUFFLE}).
+	 */
+	@Nullable
+	private final PartitionedFile partitionedFile;
+
 	// - Runtime state --------------------------------------------------------
 
 	private final AtomicBoolean isReleased = new AtomicBoolean();
@@ -115,6 +127,10 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 
 	private BufferPool bufferPool;
 
+	/** Compresses the buffers that are sent to remote consumers or spilled, if enabled for the job. */
+	@Nullable
+	private volatile BufferCompressor bufferCompressor;
+
 	private boolean hasNotifiedPipelinedConsumers;
 
 	private boolean isFinished;
@@ -134,6 +150,25 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 		IOManager ioManager,
 		boolean sendScheduleOrUpdateConsumersMessage) {
 
+		this(owningTaskName, taskActions, jobId, partitionId, partitionType, numberOfSubpartitions,
+			numTargetKeyGroups, partitionManager, partitionConsumableNotifier, ioManager,
+			sendScheduleOrUpdateConsumersMessage, false);
+	}
+
+	public ResultPartition(
+		String owningTaskName,
+		TaskActions taskActions, // actions on the owning task
+		JobID jobId,
+		ResultPartitionID partitionId,
+		ResultPartitionType partitionType,
+		int numberOfSubpartitions,
+		int numTargetKeyGroups,
+		ResultPartitionManager partitionManager,
+		ResultPartitionConsumableNotifier partitionConsumableNotifier,
+		IOManager ioManager,
+		boolean sendScheduleOrUpdateConsumersMessage,
+		boolean sortMergeBlockingShuffle) {
+
 		this.owningTaskName = checkNotNull(owningTaskName);
 		this.taskActions = checkNotNull(taskActions);
 		this.jobId = checkNotNull(jobId);
@@ -148,14 +183,23 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 		// Create the subpartitions.
 		switch (partitionType) {
 			case BLOCKING:
-				for (int i = 0; i < subpartitions.length; i++) {
-					subpartitions[i] = new SpillableSubpartition(i, this, ioManager);
+				if (sortMergeBlockingShuffle) {
+					this.partitionedFile = new PartitionedFile(ioManager, subpartitions.length);
+					for (int i = 0; i < subpartitions.length; i++) {
+						subpartitions[i] = new SortMergeSubpartition(i, this, partitionedFile);
+					}
+				} else {
+					this.partitionedFile = null;
+					for (int i = 0; i < subpartitions.length; i++) {
+						subpartitions[i] = new SpillableSubpartition(i, this, ioManager);
+					}
 				}
 
 				break;
 
 			case PIPELINED:
 			case PIPELINED_BOUNDED:
+				this.partitionedFile = null;
 				for (int i = 0; i < subpartitions.length; i++) {
 					subpartitions[i] = new PipelinedSubpartition(i, this);
 				}
@@ -195,6 +239,24 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 		}
 	}
 
+	/**
+	 * Enables the compression of the data buffers of this partition, which must happen before the
+	 * partition is registered with the {@link ResultPartitionManager}.
+	 */
+	public void enableCompression() {
+		if (bufferCompressor == null) {
+			bufferCompressor = new BufferCompressor();
+		}
+	}
+
+	/**
+	 * Returns the compressor of the data buffers or <tt>null</tt>, if compression is disabled.
+	 */
+	@Nullable
+	public BufferCompressor getBufferCompressor() {
+		return bufferCompressor;
+	}
+
 	public JobID getJobId() {
 		return jobId;
 	}
@@ -269,6 +331,21 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 		subpartitions[subpartitionIndex].flush();
 	}
 
+	@Override
+	public int getNumberOfUnflushedBytes(int subpartitionIndex) {
+		return subpartitions[subpartitionIndex].getNumberOfUnflushedBytes();
+	}
+
+	@Override
+	public int getBuffersInBacklog(int subpartitionIndex) {
+		return subpartitions[subpartitionIndex].getBuffersInBacklog();
+	}
+
+	@Override
+	public Queue<Object> getObjectHandoff(int subpartitionIndex) {
+		return subpartitions[subpartitionIndex].getObjectHandoff();
+	}
+
 	/**
 	 * Finishes the result partition.
 	 *
@@ -286,6 +363,10 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 				subpartition.finish();
 			}
 
+			if (partitionedFile != null) {
+				partitionedFile.finish();
+			}
+
 			success = true;
 		}
 		finally {
@@ -323,6 +404,15 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 					LOG.error("Error during release of result subpartition: " + t.getMessage(), t);
 				}
 			}
+
+			if (partitionedFile != null) {
+				try {
+					partitionedFile.release();
+				}
+				catch (Throwable t) {
+					LOG.error("Error during release of the partitioned file: " + t.getMessage(), t);
+				}
+			}
 		}
 	}
 
@@ -369,6 +459,12 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 	public void releaseMemory(int toRelease) throws IOException {
 		checkArgument(toRelease > 0);
 
+		if (partitionedFile != null) {
+			// Write the buffers of all subpartitions as one region of the file.
+			partitionedFile.writeRegion(subpartitions);
+			return;
+		}
+
 		for (ResultSubpartition subpartition : subpartitions) {
 			toRelease -= subpartition.releaseMemory();
 
@@ -20,12 +20,15 @@ package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Queue;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -87,6 +90,11 @@ public abstract class ResultSubpartition {
 		return parent.getFailureCause();
 	}
 
+	@Nullable
+	protected BufferCompressor getBufferCompressor() {
+		return parent.getBufferCompressor();
+	}
+
 	/**
 	 * Adds the given buffer.
 	 *
@@ -116,6 +124,34 @@ public abstract class ResultSubpartition {
 
 	abstract public boolean isReleased();
 
+	/**
+	 * Returns the number of bytes which are not available to the consumer before the next
+	 * {@link #flush()}, i.e. the data of the last, unfinished buffer which has not been flushed.
+	 *
+	 * <p>Only pipelined subpartitions are consumed while they are produced, so this is 0 for all
+	 * other subpartitions.
+	 */
+	public int getNumberOfUnflushedBytes() {
+		return 0;
+	}
+
+	/**
+	 * Returns the queue through which the producer hands over objects by reference to a consumer
+	 * in the same task manager, or <tt>null</tt> if the consumer has not enabled this (see
+	 * {@link ResultSubpartitionView#enableObjectHandoff()}).
+	 *
+	 * <p>The objects do not replace the buffers: the producer still adds a (small) record per
+	 * object to the buffers, which tells the consumer to take the next object from the queue.
+	 * Therefore, the objects are consumed in order with the buffers. Since the records of many
+	 * objects fit into one buffer, the queue has a capacity of its own. Producers
+	 * {@link Queue#offer(Object) offer} the objects and serialize an object that the queue
+	 * rejects into the buffers instead.
+	 */
+	@Nullable
+	public Queue<Object> getObjectHandoff() {
+		return null;
+	}
+
 	/**
 	 * Gets the number of non-event buffers in this subpartition.
 	 *
@@ -19,10 +19,12 @@
 package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Queue;
 
 /**
  * A view to consume a {@link ResultSubpartition} instance.
@@ -59,4 +61,25 @@ public interface ResultSubpartitionView {
 	boolean nextBufferIsEvent();
 
 	boolean isAvailable();
+
+	/**
+	 * Returns the compressor for the data buffers that leave the task manager or <tt>null</tt>, if
+	 * the buffers of this view are sent as they are.
+	 */
+	@Nullable
+	default BufferCompressor getBufferCompressor() {
+		return null;
+	}
+
+	/**
+	 * Enables the producer to hand over objects by reference to the consumer of this view, which
+	 * must run in the same task manager, and returns the queue of the objects. Returns
+	 * <tt>null</tt>, if the subpartition does not support this.
+	 *
+	 * @see ResultSubpartition#getObjectHandoff()
+	 */
+	@Nullable
+	default Queue<Object> enableObjectHandoff() {
+		return null;
+	}
 }
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A sub partition of a {@link ResultPartitionType#BLOCKING} result, which writes its buffers
+ * into the {@link PartitionedFile} shared by all subpartitions of the partition.
+ *
+ * <p>In contrast to the {@link SpillableSubpartition}, this subpartition never writes its
+ * buffers by itself. The added buffers are kept in memory until the buffer pool asks the
+ * partition for memory back, which then writes the next region of the file. Therefore, the
+ * buffers of all subpartitions end up in one file which is written sequentially. The
+ * subpartition is consumed from the file first and then from the buffers that are still in
+ * memory (see {@link SortMergeSubpartitionView}). A partition that never has to release memory
+ * does not write a file at all.
+ *
+ * <p>Note on thread safety. Synchronizing on {@code buffers} is used to synchronize the task
+ * thread adding buffers, the partition writing the buffers to the file, and the read view
+ * taking the buffers from memory.
+ */
+class SortMergeSubpartition extends ResultSubpartition {
+
+	/** The file of the partition, which holds the buffers of this subpartition. */
+	private final PartitionedFile partitionedFile;
+
+	/** The number of buffers of this subpartition which have been written to the file. */
+	@GuardedBy("buffers")
+	private long numBuffersInFile;
+
+	/** Flag indicating whether the subpartition has been finished. */
+	private boolean isFinished;
+
+	/** Flag indicating whether the subpartition has been released. */
+	private volatile boolean isReleased;
+
+	/** The read view to consume this subpartition. */
+	private ResultSubpartitionView readView;
+
+	SortMergeSubpartition(int index, ResultPartition parent, PartitionedFile partitionedFile) {
+		super(index, parent);
+
+		this.partitionedFile = checkNotNull(partitionedFile);
+	}
+
+	@Override
+	public boolean add(BufferConsumer bufferConsumer) {
+		checkNotNull(bufferConsumer);
+
+		synchronized (buffers) {
+			if (isFinished || isReleased) {
+				bufferConsumer.close();
+				return false;
+			}
+
+			buffers.add(bufferConsumer);
+			updateStatistics(bufferConsumer);
+			increaseBuffersInBacklog(bufferConsumer);
+		}
+		return true;
+	}
+
+	@Override
+	public void flush() {
+		// Nothing to do, the subpartition can only be consumed after the partition is finished.
+	}
+
+	@Override
+	public void finish() throws IOException {
+		synchronized (buffers) {
+			if (add(EventSerializer.toBufferConsumer(EndOfPartitionEvent.INSTANCE))) {
+				isFinished = true;
+			}
+		}
+	}
+
+	@Override
+	public void release() throws IOException {
+		// view reference accessible outside the lock, but assigned inside the locked scope
+		final ResultSubpartitionView view;
+
+		synchronized (buffers) {
+			if (isReleased) {
+				return;
+			}
+
+			// Release all available buffers
+			for (BufferConsumer buffer : buffers) {
+				buffer.close();
+			}
+			buffers.clear();
+
+			view = readView;
+			isReleased = true;
+		}
+
+		// The file is deleted by the partition, which shares it among all subpartitions.
+		if (view != null) {
+			view.releaseAllResources();
+		}
+	}
+
+	@Override
+	public ResultSubpartitionView createReadView(BufferAvailabilityListener availabilityListener) throws IOException {
+		synchronized (buffers) {
+			if (!isFinished) {
+				throw new IllegalStateException("Subpartition has not been finished yet, " +
+					"but blocking subpartitions can only be consumed after they have " +
+					"been finished.");
+			}
+
+			if (readView != null) {
+				throw new IllegalStateException("Subpartition is being or already has been " +
+					"consumed, but we currently allow subpartitions to only be consumed once.");
+			}
+
+			readView = new SortMergeSubpartitionView(
+				this,
+				partitionedFile,
+				parent.getBufferProvider().getMemorySegmentSize(),
+				availabilityListener);
+			return readView;
+		}
+	}
+
+	@Override
+	int releaseMemory() {
+		// The memory is released by the partition, which writes all subpartitions at once.
+		return 0;
+	}
+
+	/**
+	 * Writes the buffers of this subpartition to the region of the file that is written, which
+	 * must be locked by the caller.
+	 *
+	 * <p>This mirrors {@link SpillableSubpartition#spillFinishedBufferConsumers(boolean)}: an
+	 * unfinished buffer consumer stays in the subpartition after its data so far have been
+	 * written, unless the subpartition has been finished.
+	 *
+	 * @return the number of written buffers
+	 */
+	int writeBuffers(PartitionedFile file) throws IOException {
+		assert Thread.holdsLock(file);
+
+		int numWrittenBuffers = 0;
+
+		synchronized (buffers) {
+			BufferCompressor compressor = getBufferCompressor();
+
+			while (!buffers.isEmpty()) {
+				BufferConsumer bufferConsumer = buffers.getFirst();
+				Buffer buffer = bufferConsumer.build();
+				updateStatistics(buffer);
+				int bufferSize = buffer.getSize();
+
+				boolean isBufferFinished = bufferConsumer.isFinished() || isFinished;
+				if (bufferSize > 0) {
+					file.writeBuffer(compressor != null ? compressor.compressToUnpooledBuffer(buffer) : buffer);
+					numWrittenBuffers++;
+					numBuffersInFile++;
+
+					// BEWARE: by writing the data of an unfinished buffer, we increase the actual
+					// number of buffers in the file!
+					if (!isBufferFinished) {
+						increaseBuffersInBacklog(bufferConsumer);
+					}
+				} else {
+					// If we skip a buffer, we need to adapt the backlog accordingly
+					if (isBufferFinished) {
+						decreaseBuffersInBacklog(buffer);
+					}
+					buffer.recycleBuffer();
+				}
+
+				if (!isBufferFinished) {
+					break;
+				}
+				bufferConsumer.close();
+				buffers.poll();
+			}
+		}
+
+		return numWrittenBuffers;
+	}
+
+	/**
+	 * Returns the number of buffers of this subpartition which have been written to the file.
+	 */
+	long getNumberOfBuffersInFile() {
+		synchronized (buffers) {
+			return numBuffersInFile;
+		}
+	}
+
+	/**
+	 * Takes the next buffer of this finished subpartition from memory.
+	 *
+	 * @param numBuffersReadFromFile the number of buffers that the read view has read from the file
+	 * @return the next buffer in memory, or <tt>null</tt> if there is none or if the read view
+	 * has to read the buffers that have been written to the file in the meantime first
+	 */
+	@Nullable
+	Buffer pollBuffer(long numBuffersReadFromFile) {
+		synchronized (buffers) {
+			BufferConsumer bufferConsumer;
+			while (numBuffersReadFromFile == numBuffersInFile && (bufferConsumer = buffers.poll()) != null) {
+				Buffer buffer = bufferConsumer.build();
+				bufferConsumer.close();
+				updateStatistics(buffer);
+
+				if (buffer.getSize() > 0) {
+					return buffer;
+				}
+				// If we skip a buffer, we need to adapt the backlog accordingly
+				decreaseBuffersInBacklogUnsafe(buffer.isBuffer());
+				buffer.recycleBuffer();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the read view has buffers left to read, in the file or in memory.
+	 */
+	boolean hasBuffersToRead(long numBuffersReadFromFile) {
+		synchronized (buffers) {
+			return numBuffersReadFromFile < numBuffersInFile || !buffers.isEmpty();
+		}
+	}
+
+	@Override
+	public boolean isReleased() {
+		return isReleased;
+	}
+
+	@Override
+	public int unsynchronizedGetNumberOfQueuedBuffers() {
+		// since we do not synchronize, the size may actually be lower than 0!
+		return Math.max(buffers.size(), 0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SortMergeSubpartition [%d number of buffers (%d bytes)," +
+				"%d number of buffers in backlog, finished? %s, read view? %s]",
+			getTotalNumberOfBuffers(), getTotalNumberOfBytes(),
+			getBuffersInBacklog(), isFinished, readView != null);
+	}
+}
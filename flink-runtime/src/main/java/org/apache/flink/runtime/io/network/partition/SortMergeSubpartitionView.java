@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
+import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
+import org.apache.flink.runtime.io.network.partition.SpilledSubpartitionView.SpillReadBufferPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Reader for a {@link SortMergeSubpartition}, which reads the buffers of the subpartition from
+ * the {@link PartitionedFile} of the partition, region by region, and then takes the buffers
+ * which are still in memory from the subpartition.
+ *
+ * <p>The view is only created after the partition has been finished, so the availability
+ * listener is notified right on construction. If the partition has to release memory while the
+ * view reads from memory, the remaining buffers are written as another region of the file, and
+ * the view continues with that region. Reads of the file are done synchronously.
+ *
+ * <p>The buffers read from the file come from a pool of two buffers. The view requests the
+ * buffer to return with {@link #getNextBuffer()} blocking, but only reads the next buffer ahead
+ * if the pool has a buffer left. Therefore, the view holds at most one buffer of the pool, and
+ * requesting a buffer does not wait as long as the consumer has recycled all but one of the
+ * buffers it got from the view.
+ */
+class SortMergeSubpartitionView implements ResultSubpartitionView {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SortMergeSubpartitionView.class);
+
+	/** The subpartition this view belongs to. */
+	private final SortMergeSubpartition parent;
+
+	/** The file to read the buffers from, which is shared with the other subpartitions. */
+	private final PartitionedFile partitionedFile;
+
+	/** The buffer pool to read data into. */
+	private final SpillReadBufferPool bufferPool;
+
+	/** Flag indicating whether all resources have been released. */
+	private final AtomicBoolean isReleased = new AtomicBoolean();
+
+	/** The region of the file which is read. */
+	@GuardedBy("this")
+	private int currentRegion = -1;
+
+	/** The position of the next buffer to read in the file. */
+	@GuardedBy("this")
+	private long readPosition;
+
+	/** The number of buffers left to read in the current region. */
+	@GuardedBy("this")
+	private int numBuffersLeftInRegion;
+
+	/** The number of buffers read from the file. */
+	@GuardedBy("this")
+	private long numBuffersReadFromFile;
+
+	/** The next buffer to hand out. */
+	@GuardedBy("this")
+	private Buffer nextBuffer;
+
+	SortMergeSubpartitionView(
+		SortMergeSubpartition parent,
+		PartitionedFile partitionedFile,
+		int memorySegmentSize,
+		BufferAvailabilityListener availabilityListener) {
+
+		this.parent = checkNotNull(parent);
+		this.partitionedFile = checkNotNull(partitionedFile);
+		this.bufferPool = new SpillReadBufferPool(2, memorySegmentSize);
+
+		availabilityListener.notifyDataAvailable();
+		LOG.debug("Notified about available buffers of {} ({} buffers in the file).",
+			parent, parent.getNumberOfBuffersInFile());
+	}
+
+	@Nullable
+	@Override
+	public BufferAndBacklog getNextBuffer() throws IOException, InterruptedException {
+		Buffer current;
+		boolean nextBufferIsEvent;
+		boolean isMoreAvailable;
+		synchronized (this) {
+			if (nextBuffer == null) {
+				current = requestAndFillBuffer(true);
+			} else {
+				current = nextBuffer;
+			}
+			nextBuffer = requestAndFillBuffer(false);
+			nextBufferIsEvent = nextBuffer != null && !nextBuffer.isBuffer();
+			// the next buffer is not read ahead if the consumer still holds the buffers of the pool
+			isMoreAvailable = isAvailable();
+		}
+
+		if (current == null) {
+			return null;
+		}
+
+		int newBacklog = parent.decreaseBuffersInBacklog(current);
+		return new BufferAndBacklog(current, isMoreAvailable, newBacklog, nextBufferIsEvent);
+	}
+
+	/**
+	 * Returns the next buffer of the subpartition, from the file as long as the view has not read
+	 * all buffers in the file, and from memory afterwards.
+	 *
+	 * @param blocking whether to wait for a buffer of the pool to read the next buffer of the
+	 * file, or to return <tt>null</tt> if there is none
+	 */
+	@Nullable
+	private Buffer requestAndFillBuffer(boolean blocking) throws IOException, InterruptedException {
+		assert Thread.holdsLock(this);
+
+		if (numBuffersReadFromFile == parent.getNumberOfBuffersInFile()) {
+			Buffer buffer = parent.pollBuffer(numBuffersReadFromFile);
+			// the buffers in memory may have been written to the file in the meantime
+			if (buffer != null || numBuffersReadFromFile == parent.getNumberOfBuffersInFile()) {
+				return buffer;
+			}
+		}
+
+		Buffer buffer = blocking ? bufferPool.requestBufferBlocking() : bufferPool.requestBuffer();
+		if (buffer == null) {
+			// no buffer left for reading ahead, or the view has been released concurrently
+			return null;
+		}
+
+		while (numBuffersLeftInRegion == 0) {
+			currentRegion++;
+			readPosition = partitionedFile.getOffset(currentRegion, parent.index);
+			numBuffersLeftInRegion = partitionedFile.getNumBuffers(currentRegion, parent.index);
+		}
+
+		try {
+			readPosition = partitionedFile.readBuffer(readPosition, buffer);
+		} catch (Throwable t) {
+			buffer.recycleBuffer();
+			throw t;
+		}
+
+		numBuffersLeftInRegion--;
+		numBuffersReadFromFile++;
+		return buffer;
+	}
+
+	@Override
+	public void notifyDataAvailable() {
+		// We notify the availability listener on construction of this view, after which no
+		// buffers are added to the subpartition anymore.
+	}
+
+	@Override
+	public void notifySubpartitionConsumed() throws IOException {
+		parent.onConsumedSubpartition();
+	}
+
+	@Override
+	public void releaseAllResources() throws IOException {
+		if (isReleased.compareAndSet(false, true)) {
+			// The file is deleted when the partition is released.
+			synchronized (this) {
+				if (nextBuffer != null) {
+					nextBuffer.recycleBuffer();
+					nextBuffer = null;
+				}
+			}
+
+			bufferPool.destroy();
+		}
+	}
+
+	@Override
+	public boolean isReleased() {
+		return parent.isReleased() || isReleased.get();
+	}
+
+	@Override
+	public boolean nextBufferIsEvent() {
+		synchronized (this) {
+			if (nextBuffer == null) {
+				try {
+					nextBuffer = requestAndFillBuffer(false);
+				} catch (Exception e) {
+					// we can ignore this here (we will get it again once getNextBuffer() is called)
+					return false;
+				}
+			}
+			return nextBuffer != null && !nextBuffer.isBuffer();
+		}
+	}
+
+	@Override
+	public synchronized boolean isAvailable() {
+		return nextBuffer != null || parent.hasBuffersToRead(numBuffersReadFromFile);
+	}
+
+	@Override
+	public Throwable getFailureCause() {
+		return parent.getFailureCause();
+	}
+
+	@Override
+	public BufferCompressor getBufferCompressor() {
+		return parent.getBufferCompressor();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SortMergeSubpartitionView(index: %d, buffers read from file: %d) of ResultPartition %s",
+			parent.index,
+			numBuffersReadFromFile,
+			parent.parent.getPartitionId());
+	}
+}
@@ -25,6 +25,7 @@ import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 
@@ -262,7 +263,7 @@ class SpillableSubpartition extends ResultSubpartition {
 			// be treated as if it was finished!
 			if (bufferConsumer.isFinished() || forceFinishRemainingBuffers) {
 				if (bufferSize > 0) {
-					spillWriter.writeBlock(buffer);
+					spillWriter.writeBlock(compressForSpilling(buffer));
 				} else {
 					// If we skip a buffer for the spill writer, we need to adapt the backlog accordingly
 					decreaseBuffersInBacklog(buffer);
@@ -275,7 +276,7 @@ class SpillableSubpartition extends ResultSubpartition {
 				// slice from the buffer consumer again during the next build.
 				// BEWARE: by doing so, we increase the actual number of buffers in the spill writer!
 				if (bufferSize > 0) {
-					spillWriter.writeBlock(buffer);
+					spillWriter.writeBlock(compressForSpilling(buffer));
 					increaseBuffersInBacklog(bufferConsumer);
 				} else {
 					buffer.recycleBuffer();
@@ -287,6 +288,15 @@ class SpillableSubpartition extends ResultSubpartition {
 		return spilledBytes;
 	}
 
+	/**
+	 * Compresses the given buffer before it is written to disk, if the partition compresses its
+	 * buffers. The given buffer must not be used afterwards.
+	 */
+	Buffer compressForSpilling(Buffer buffer) throws IOException {
+		BufferCompressor compressor = getBufferCompressor();
+		return compressor != null ? compressor.compressToUnpooledBuffer(buffer) : buffer;
+	}
+
 	@Override
 	public boolean isReleased() {
 		return isReleased;
@@ -21,6 +21,7 @@ package org.apache.flink.runtime.io.network.partition;
 import org.apache.flink.runtime.io.disk.iomanager.BufferFileWriter;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
 
@@ -119,7 +120,7 @@ class SpillableSubpartitionView implements ResultSubpartitionView {
 							"be guaranteed by creating ResultSubpartitionView only once Subpartition isFinished.");
 						parent.updateStatistics(buffer);
 						spilledBytes += buffer.getSize();
-						spillWriter.writeBlock(buffer);
+						spillWriter.writeBlock(parent.compressForSpilling(buffer));
 					}
 				}
 
@@ -267,6 +268,11 @@ class SpillableSubpartitionView implements ResultSubpartitionView {
 		}
 	}
 
+	@Override
+	public BufferCompressor getBufferCompressor() {
+		return parent.getBufferCompressor();
+	}
+
 	@Override
 	public String toString() {
 		boolean hasSpilled = spilledView != null;
@@ -24,6 +24,7 @@ import org.apache.flink.runtime.io.disk.iomanager.BufferFileReader;
 import org.apache.flink.runtime.io.disk.iomanager.BufferFileWriter;
 import org.apache.flink.runtime.io.disk.iomanager.SynchronousBufferFileReader;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
 import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
@@ -232,6 +233,11 @@ class SpilledSubpartitionView implements ResultSubpartitionView, NotificationLis
 		return parent.getFailureCause();
 	}
 
+	@Override
+	public BufferCompressor getBufferCompressor() {
+		return parent.getBufferCompressor();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("SpilledSubpartitionView(index: %d, buffers: %d) of ResultPartition %s",
@@ -246,7 +252,7 @@ class SpilledSubpartitionView implements ResultSubpartitionView, NotificationLis
 	 * <p>This pool ensures that a consuming input gate makes progress in all cases, even when all
 	 * buffers of the input gate buffer pool have been requested by remote input channels.
 	 */
-	private static class SpillReadBufferPool implements BufferRecycler {
+	static class SpillReadBufferPool implements BufferRecycler {
 
 		private final Queue<Buffer> buffers;
 
@@ -274,7 +280,14 @@ class SpilledSubpartitionView implements ResultSubpartitionView, NotificationLis
 			}
 		}
 
-		private Buffer requestBufferBlocking() throws InterruptedException {
+		@Nullable
+		Buffer requestBuffer() {
+			synchronized (buffers) {
+				return isDestroyed ? null : buffers.poll();
+			}
+		}
+
+		Buffer requestBufferBlocking() throws InterruptedException {
 			synchronized (buffers) {
 				while (true) {
 					if (isDestroyed) {
@@ -292,7 +305,7 @@ class SpilledSubpartitionView implements ResultSubpartitionView, NotificationLis
 			}
 		}
 
-		private void destroy() {
+		void destroy() {
 			synchronized (buffers) {
 				isDestroyed = true;
 				buffers.notifyAll();
@@ -20,8 +20,11 @@ package org.apache.flink.runtime.io.network.partition.consumer;
 
 import org.apache.flink.runtime.event.TaskEvent;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.Optional;
+import java.util.Queue;
 
 /**
  * An input gate consumes one or more partitions of a single produced intermediate result.
@@ -92,4 +95,13 @@ public interface InputGate {
 	void registerListener(InputGateListener listener);
 
 	int getPageSize();
+
+	/**
+	 * Returns the queue of the objects that a producer in the same task manager hands over to the
+	 * channel with the given index, or <tt>null</tt> if the channel does not receive objects.
+	 */
+	@Nullable
+	default Queue<Object> getObjectHandoff(int channelIndex) {
+		return null;
+	}
 }
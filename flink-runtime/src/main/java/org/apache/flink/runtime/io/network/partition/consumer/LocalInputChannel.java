@@ -21,6 +21,8 @@ package org.apache.flink.runtime.io.network.partition.consumer;
 import org.apache.flink.runtime.event.TaskEvent;
 import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.io.network.TaskEventDispatcher;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.BufferAvailabilityListener;
 import org.apache.flink.runtime.io.network.partition.PartitionNotFoundException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -32,8 +34,11 @@ import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -60,6 +65,9 @@ public class LocalInputChannel extends InputChannel implements BufferAvailabilit
 	/** The consumed subpartition */
 	private volatile ResultSubpartitionView subpartitionView;
 
+	/** The objects that the producer hands over to this channel, if enabled. */
+	private volatile Queue<Object> objectHandoff;
+
 	private volatile boolean isReleased;
 
 	public LocalInputChannel(
@@ -115,6 +123,10 @@ public class LocalInputChannel extends InputChannel implements BufferAvailabilit
 						throw new IOException("Error requesting subpartition.");
 					}
 
+					if (inputGate.isObjectHandoffEnabled()) {
+						objectHandoff = subpartitionView.enableObjectHandoff();
+					}
+
 					// make the subpartition view visible
 					this.subpartitionView = subpartitionView;
 
@@ -193,8 +205,23 @@ public class LocalInputChannel extends InputChannel implements BufferAvailabilit
 			}
 		}
 
-		numBytesIn.inc(next.buffer().getSizeUnsafe());
-		return Optional.of(new BufferAndAvailability(next.buffer(), next.isMoreAvailable(), next.buffersInBacklog()));
+		Buffer buffer = next.buffer();
+		if (buffer.isCompressed()) {
+			// buffers that were spilled by a partition which compresses its buffers
+			buffer = BufferCompressor.decompressToUnpooledBuffer(buffer);
+		}
+
+		numBytesIn.inc(buffer.getSizeUnsafe());
+		return Optional.of(new BufferAndAvailability(buffer, next.isMoreAvailable(), next.buffersInBacklog()));
+	}
+
+	/**
+	 * Returns the queue of the objects that the producer hands over to this channel, or
+	 * <tt>null</tt> if the handoff has not been enabled.
+	 */
+	@Nullable
+	Queue<Object> getObjectHandoff() {
+		return objectHandoff;
 	}
 
 	@Override
@@ -53,6 +53,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Timer;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -162,6 +163,9 @@ public class SingleInputGate implements InputGate {
 
 	private final boolean isCreditBased;
 
+	/** Flag indicating whether local producers may hand over objects to the input channels. */
+	private volatile boolean isObjectHandoffEnabled;
+
 	private boolean hasReceivedAllEndOfPartitionEvents;
 
 	/** Flag indicating whether partitions have been requested. */
@@ -285,6 +289,20 @@ public class SingleInputGate implements InputGate {
 		this.bufferPool = checkNotNull(bufferPool);
 	}
 
+	/**
+	 * Enables producers in the same task manager to hand over objects by reference to the local
+	 * input channels of this gate, which must happen before the partitions are requested.
+	 *
+	 * @see LocalInputChannel#getObjectHandoff()
+	 */
+	public void enableObjectHandoff() {
+		isObjectHandoffEnabled = true;
+	}
+
+	boolean isObjectHandoffEnabled() {
+		return isObjectHandoffEnabled;
+	}
+
 	/**
 	 * Assign the exclusive buffers to all remote input channels directly for credit-based mode.
 	 *
@@ -595,6 +613,21 @@ public class SingleInputGate implements InputGate {
 		}
 	}
 
+	@Override
+	public Queue<Object> getObjectHandoff(int channelIndex) {
+		// the lookup by index is linear, but only needed once per channel
+		synchronized (requestLock) {
+			for (InputChannel channel : inputChannels.values()) {
+				if (channel.getChannelIndex() == channelIndex) {
+					return channel instanceof LocalInputChannel
+						? ((LocalInputChannel) channel).getObjectHandoff()
+						: null;
+				}
+			}
+		}
+		return null;
+	}
+
 	// ------------------------------------------------------------------------
 	// Channel notifications
 	// ------------------------------------------------------------------------
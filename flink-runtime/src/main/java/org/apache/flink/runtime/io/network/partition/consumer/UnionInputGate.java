@@ -29,6 +29,7 @@ import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -258,6 +259,17 @@ public class UnionInputGate implements InputGate, InputGateListener {
 		return pageSize;
 	}
 
+	@Override
+	public Queue<Object> getObjectHandoff(int channelIndex) {
+		for (InputGate inputGate : inputGates) {
+			int offset = inputGateToIndexOffsetMap.get(inputGate);
+			if (channelIndex >= offset && channelIndex < offset + inputGate.getNumberOfInputChannels()) {
+				return inputGate.getObjectHandoff(channelIndex - offset);
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public void notifyInputGateNonEmpty(InputGate inputGate) {
 		queueInputGate(checkNotNull(inputGate));
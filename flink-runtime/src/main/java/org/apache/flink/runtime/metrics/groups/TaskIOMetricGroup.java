@@ -25,6 +25,7 @@ import org.apache.flink.metrics.MeterView;
 import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.metrics.SimpleCounter;
 import org.apache.flink.runtime.executiongraph.IOMetrics;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultPartition;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.apache.flink.runtime.metrics.MetricNames;
@@ -118,6 +119,7 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		buffers.gauge("outputQueueLength", new OutputBuffersGauge(task));
 		buffers.gauge("inPoolUsage", new InputBufferPoolUsageGauge(task));
 		buffers.gauge("outPoolUsage", new OutputBufferPoolUsageGauge(task));
+		buffers.gauge("outputCompressionRatio", new OutputCompressionRatioGauge(task));
 	}
 
 	/**
@@ -224,6 +226,39 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		}
 	}
 
+	/**
+	 * Gauge measuring the size of the compressed output buffers of a task relative to their size
+	 * before compression.
+	 */
+	private static final class OutputCompressionRatioGauge implements Gauge<Double> {
+
+		private final Task task;
+
+		public OutputCompressionRatioGauge(Task task) {
+			this.task = task;
+		}
+
+		@Override
+		public Double getValue() {
+			long bytesBeforeCompression = 0;
+			long bytesAfterCompression = 0;
+
+			for (ResultPartition resultPartition : task.getProducedPartitions()) {
+				BufferCompressor compressor = resultPartition.getBufferCompressor();
+				if (compressor != null) {
+					bytesBeforeCompression += compressor.getNumBytesBeforeCompression();
+					bytesAfterCompression += compressor.getNumBytesAfterCompression();
+				}
+			}
+
+			if (bytesBeforeCompression != 0) {
+				return ((double) bytesAfterCompression) / bytesBeforeCompression;
+			} else {
+				return 1.0;
+			}
+		}
+	}
+
 	// ============================================================================================
 	// Metric Reuse
 	// ============================================================================================
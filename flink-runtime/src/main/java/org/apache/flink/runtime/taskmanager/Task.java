@@ -358,6 +358,8 @@ public class Task implements Runnable, TaskActions, CheckpointListener {
 
 		// Produced intermediate result partitions
 		this.producedPartitions = new ResultPartition[resultPartitionDeploymentDescriptors.size()];
+		final boolean sortMergeBlockingShuffle =
+			tmConfig.getBoolean(TaskManagerOptions.NETWORK_SORT_MERGE_BLOCKING_SHUFFLE);
 
 		int counter = 0;
 
@@ -375,7 +377,8 @@ public class Task implements Runnable, TaskActions, CheckpointListener {
 				networkEnvironment.getResultPartitionManager(),
 				resultPartitionConsumableNotifier,
 				ioManager,
-				desc.sendScheduleOrUpdateConsumersMessage());
+				desc.sendScheduleOrUpdateConsumersMessage(),
+				sortMergeBlockingShuffle);
 
 			++counter;
 		}
@@ -595,6 +598,20 @@ public class Task implements Runnable, TaskActions, CheckpointListener {
 				taskCancellationTimeout = executionConfig.getTaskCancellationTimeout();
 			}
 
+			if (executionConfig.isUseNetworkCompression()) {
+				// must be enabled before the partitions are registered and consumers can connect
+				for (ResultPartition partition : producedPartitions) {
+					partition.enableCompression();
+				}
+			}
+
+			if (executionConfig.isUseLocalObjectHandoff()) {
+				// must be enabled before the partitions are requested
+				for (SingleInputGate gate : inputGates) {
+					gate.enableObjectHandoff();
+				}
+			}
+
 			if (isCanceledOrFailed()) {
 				throw new CancelTaskException();
 			}
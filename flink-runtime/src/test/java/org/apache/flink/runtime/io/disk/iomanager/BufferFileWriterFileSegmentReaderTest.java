@@ -35,6 +35,7 @@ import java.nio.ByteBuffer;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.flink.runtime.io.disk.iomanager.BufferFileWriterReaderTest.fillBufferWithAscendingNumbers;
 import static org.apache.flink.runtime.io.disk.iomanager.BufferFileWriterReaderTest.verifyBufferFilledWithAscendingNumbers;
@@ -162,6 +163,47 @@ public class BufferFileWriterFileSegmentReaderTest {
 		reader.close();
 	}
 
+	/**
+	 * Tests that the file segments keep the type of the written buffers, including compressed
+	 * buffers.
+	 */
+	@Test
+	public void testWriteReadBufferTypes() throws IOException, InterruptedException {
+		Buffer event = createBuffer();
+		event.tagAsEvent();
+		event.setSize(4);
+		Buffer compressed = createBuffer();
+		compressed.setCompressed(true);
+		compressed.setSize(8);
+		Buffer buffer = createBuffer();
+		buffer.setSize(12);
+
+		writer.writeBlock(event);
+		writer.writeBlock(compressed);
+		writer.writeBlock(buffer);
+		writer.close();
+
+		for (int i = 0; i < 3; i++) {
+			reader.read();
+		}
+
+		FileSegment eventSegment = returnedFileSegments.poll(10, TimeUnit.SECONDS);
+		assertFalse(eventSegment.isBuffer());
+		assertFalse(eventSegment.isCompressed());
+
+		FileSegment compressedSegment = returnedFileSegments.poll(10, TimeUnit.SECONDS);
+		assertTrue(compressedSegment.isBuffer());
+		assertTrue(compressedSegment.isCompressed());
+		assertEquals(8, compressedSegment.getLength());
+
+		FileSegment bufferSegment = returnedFileSegments.poll(10, TimeUnit.SECONDS);
+		assertTrue(bufferSegment.isBuffer());
+		assertFalse(bufferSegment.isCompressed());
+		assertEquals(12, bufferSegment.getLength());
+
+		reader.close();
+	}
+
 	// ------------------------------------------------------------------------
 
 	private int getRandomNumberInRange(int min, int max) {
@@ -45,8 +45,11 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
@@ -58,6 +61,7 @@ import java.util.concurrent.Future;
 
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.buildSingleBuffer;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -377,10 +381,149 @@ public class RecordWriterTest {
 		assertEquals("Buffer 2 shares the same reader index as buffer 1", 0, buffer2.getReaderIndex());
 	}
 
+	/**
+	 * Tests that a record is serialized once, no matter to how many channels it is emitted.
+	 */
+	@Test
+	public void testRecordSerializedOncePerEmit() throws Exception {
+		int numChannels = 4;
+
+		@SuppressWarnings("unchecked")
+		Queue<BufferConsumer>[] queues = new Queue[numChannels];
+		for (int i = 0; i < numChannels; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+
+		ResultPartitionWriter partition =
+			new CollectingPartitionWriter(queues, new TestPooledBufferProvider(Integer.MAX_VALUE));
+		RecordWriter<CountingIntValue> writer = new RecordWriter<>(partition);
+
+		CountingIntValue record = new CountingIntValue(42);
+		writer.broadcastEmit(record);
+		writer.emit(record, new int[] {1, 3});
+
+		assertEquals(2, record.getNumWrites());
+
+		for (int i = 0; i < numChannels; i++) {
+			assertEquals(1, queues[i].size());
+			List<Integer> expected = i == 1 || i == 3 ? Arrays.asList(42, 42) : Collections.singletonList(42);
+			assertEquals(expected, parseIntValues(queues[i].remove()));
+		}
+	}
+
+	/**
+	 * Tests that all channels of a broadcasting channel selector read the same buffers, while
+	 * records that are emitted to single channels are not visible to the other channels.
+	 */
+	@Test
+	public void testBroadcastSelectorSharesBuffers() throws Exception {
+		int numChannels = 3;
+		// an int value with its length takes 8 bytes
+		int bufferSize = 32;
+
+		@SuppressWarnings("unchecked")
+		Queue<BufferConsumer>[] queues = new Queue[numChannels];
+		for (int i = 0; i < numChannels; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+
+		TestPooledBufferProvider bufferProvider = new TestPooledBufferProvider(Integer.MAX_VALUE, bufferSize);
+		ResultPartitionWriter partition = new CollectingPartitionWriter(queues, bufferProvider);
+		RecordWriter<IntValue> writer = new RecordWriter<>(partition, new Broadcast<IntValue>());
+
+		writer.emit(new IntValue(1));
+		writer.broadcastEmit(new IntValue(2));
+		writer.emit(new IntValue(3), 1);
+		// fills the next shared buffer exactly
+		for (int i = 4; i <= 7; i++) {
+			writer.emit(new IntValue(i));
+		}
+
+		assertEquals(3, bufferProvider.getNumberOfCreatedBuffers());
+
+		List<Buffer> firstBuffers = new ArrayList<>();
+		for (int i = 0; i < numChannels; i++) {
+			assertEquals(i == 1 ? 3 : 2, queues[i].size());
+
+			firstBuffers.add(buildSingleBuffer(queues[i].peek().copy()));
+			assertEquals(Arrays.asList(1, 2), parseIntValues(queues[i].remove()));
+			if (i == 1) {
+				assertEquals(Collections.singletonList(3), parseIntValues(queues[i].remove()));
+			}
+			assertEquals(Arrays.asList(4, 5, 6, 7), parseIntValues(queues[i].remove()));
+		}
+
+		for (Buffer buffer : firstBuffers) {
+			assertSame(firstBuffers.get(0).getMemorySegment(), buffer.getMemorySegment());
+			buffer.recycleBuffer();
+		}
+		// the shared buffers are only recycled once all channels released them
+		assertEquals(3, bufferProvider.getNumberOfAvailableBuffers());
+	}
+
+	/**
+	 * Tests that a broadcasting record writer keeps the buffers of single channels for following
+	 * records of single channels, and only switches buffers when the target channels change.
+	 */
+	@Test
+	public void testBroadcastSelectorSwitchesBuffersOnlyWhenTargetsChange() throws Exception {
+		int numChannels = 3;
+
+		@SuppressWarnings("unchecked")
+		Queue<BufferConsumer>[] queues = new Queue[numChannels];
+		for (int i = 0; i < numChannels; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+
+		TestPooledBufferProvider bufferProvider = new TestPooledBufferProvider(Integer.MAX_VALUE, 32);
+		ResultPartitionWriter partition = new CollectingPartitionWriter(queues, bufferProvider);
+		RecordWriter<IntValue> writer = new RecordWriter<>(partition, new Broadcast<IntValue>());
+
+		writer.emit(new IntValue(1));
+		writer.emit(new IntValue(2), 0);
+		writer.emit(new IntValue(3), 2);
+		writer.emit(new IntValue(4), 0);
+		writer.emit(new IntValue(5));
+		writer.emit(new IntValue(6));
+
+		assertEquals(4, bufferProvider.getNumberOfCreatedBuffers());
+
+		assertEquals(Collections.singletonList(1), parseIntValues(queues[0].remove()));
+		assertEquals(Arrays.asList(2, 4), parseIntValues(queues[0].remove()));
+		assertEquals(Arrays.asList(5, 6), parseIntValues(queues[0].remove()));
+
+		assertEquals(Collections.singletonList(1), parseIntValues(queues[1].remove()));
+		assertEquals(Arrays.asList(5, 6), parseIntValues(queues[1].remove()));
+
+		assertEquals(Collections.singletonList(1), parseIntValues(queues[2].remove()));
+		assertEquals(Collections.singletonList(3), parseIntValues(queues[2].remove()));
+		assertEquals(Arrays.asList(5, 6), parseIntValues(queues[2].remove()));
+
+		for (Queue<BufferConsumer> queue : queues) {
+			assertTrue(queue.isEmpty());
+		}
+	}
+
 	// ---------------------------------------------------------------------------------------------
 	// Helpers
 	// ---------------------------------------------------------------------------------------------
 
+	/**
+	 * Reads the {@link IntValue IntValues} that were written to the buffer and releases it.
+	 */
+	private static List<Integer> parseIntValues(BufferConsumer bufferConsumer) {
+		Buffer buffer = buildSingleBuffer(bufferConsumer);
+		ByteBuffer bytes = buffer.getNioBufferReadable();
+
+		List<Integer> values = new ArrayList<>();
+		while (bytes.hasRemaining()) {
+			assertEquals(4, bytes.getInt());
+			values.add(bytes.getInt());
+		}
+		buffer.recycleBuffer();
+		return values;
+	}
+
 	/**
 	 * Partition writer that collects the added buffers/events in multiple queue.
 	 */
@@ -510,6 +653,54 @@ public class RecordWriterTest {
 		}
 	}
 
+	/**
+	 * {@link IntValue} that counts how often it was serialized.
+	 */
+	private static class CountingIntValue extends IntValue {
+
+		private static final long serialVersionUID = 1L;
+
+		private int numWrites;
+
+		CountingIntValue(int value) {
+			super(value);
+		}
+
+		@Override
+		public void write(DataOutputView out) throws IOException {
+			numWrites++;
+			super.write(out);
+		}
+
+		int getNumWrites() {
+			return numWrites;
+		}
+	}
+
+	/**
+	 * Channel selector that selects all channels.
+	 */
+	private static class Broadcast<T extends IOReadableWritable> implements ChannelSelector<T> {
+
+		private int[] channels;
+
+		@Override
+		public int[] selectChannels(final T record, final int numberOfOutputChannels) {
+			if (channels == null) {
+				channels = new int[numberOfOutputChannels];
+				for (int i = 0; i < numberOfOutputChannels; i++) {
+					channels[i] = i;
+				}
+			}
+			return channels;
+		}
+
+		@Override
+		public boolean isBroadcast() {
+			return true;
+		}
+	}
+
 	/**
 	 * RoundRobin channel selector starting at 0 ({@link RoundRobinChannelSelector} starts at 1).
 	 */
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
+import org.apache.flink.shaded.netty4.io.netty.buffer.UnpooledByteBufAllocator;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BufferCompressor}.
+ */
+public class BufferCompressorTest {
+
+	private static final int BUFFER_SIZE = 4096;
+
+	@Test
+	public void testCompressToByteBufAndDecompress() throws Exception {
+		for (boolean offHeap : new boolean[] {false, true}) {
+			BufferCompressor compressor = new BufferCompressor();
+			Buffer buffer = createCompressibleBuffer(offHeap);
+
+			ByteBuf compressed = compressor.compress(buffer, UnpooledByteBufAllocator.DEFAULT);
+			assertNotNull(compressed);
+			assertFalse(buffer.isRecycled());
+			assertTrue(compressed.readableBytes() < BUFFER_SIZE);
+			assertEquals(BUFFER_SIZE, compressor.getNumBytesBeforeCompression());
+			assertEquals(compressed.readableBytes(), compressor.getNumBytesAfterCompression());
+			assertTrue(compressor.getCompressionRatio() < 1.0);
+
+			// decompress off-heap and on-heap
+			for (ByteBuffer target : new ByteBuffer[] {
+					ByteBuffer.allocateDirect(BUFFER_SIZE), ByteBuffer.allocate(BUFFER_SIZE)}) {
+				assertEquals(BUFFER_SIZE, BufferCompressor.decompress(compressed.nioBuffer(), target));
+				assertEquals(0, target.position());
+				assertEquals(buffer.getNioBufferReadable(), target);
+			}
+
+			compressed.release();
+			buffer.recycleBuffer();
+		}
+	}
+
+	@Test
+	public void testCompressToUnpooledBufferAndDecompress() throws Exception {
+		for (boolean offHeap : new boolean[] {false, true}) {
+			BufferCompressor compressor = new BufferCompressor();
+			Buffer buffer = createCompressibleBuffer(offHeap);
+			ByteBuffer expected = copy(buffer.getNioBufferReadable());
+
+			Buffer compressed = compressor.compressToUnpooledBuffer(buffer);
+			assertTrue(buffer.isRecycled());
+			assertTrue(compressed.isBuffer());
+			assertTrue(compressed.isCompressed());
+			assertTrue(compressed.getSize() < BUFFER_SIZE);
+
+			Buffer decompressed = BufferCompressor.decompressToUnpooledBuffer(compressed);
+			assertTrue(compressed.isRecycled());
+			assertTrue(decompressed.isBuffer());
+			assertFalse(decompressed.isCompressed());
+			assertEquals(expected, decompressed.getNioBufferReadable());
+
+			decompressed.recycleBuffer();
+		}
+	}
+
+	/**
+	 * Tests that the consumers of a shared broadcast buffer compress its data only once, and that
+	 * the compressed data are released with the buffer.
+	 */
+	@Test
+	public void testSharedBufferIsCompressedOnce() throws Exception {
+		BufferCompressor compressor = new BufferCompressor();
+		BufferBuilder bufferBuilder = new BufferBuilder(
+			MemorySegmentFactory.allocateUnpooledSegment(2 * BUFFER_SIZE), FreeingBufferRecycler.INSTANCE);
+		BufferConsumer first = bufferBuilder.createBufferConsumer();
+		BufferConsumer second = first.copy();
+
+		ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+		while (data.hasRemaining()) {
+			data.putLong(data.position() % 64);
+		}
+		data.flip();
+		bufferBuilder.appendAndCommit(data);
+
+		Buffer firstBuffer = first.build();
+		ByteBuf firstCompressed = compressor.compress(firstBuffer, UnpooledByteBufAllocator.DEFAULT);
+		Buffer secondBuffer = second.build();
+		ByteBuf secondCompressed = compressor.compress(secondBuffer, UnpooledByteBufAllocator.DEFAULT);
+
+		assertEquals(BUFFER_SIZE, compressor.getNumBytesBeforeCompression());
+		assertEquals(firstCompressed, secondCompressed);
+		firstCompressed.release();
+		secondCompressed.release();
+		firstBuffer.recycleBuffer();
+		secondBuffer.recycleBuffer();
+
+		// another slice of the buffer is compressed again and replaces the cached data
+		bufferBuilder.appendAndCommit(ByteBuffer.wrap(new byte[BUFFER_SIZE]));
+		Buffer rest = second.build();
+		ByteBuf restCompressed = compressor.compress(rest, UnpooledByteBufAllocator.DEFAULT);
+		assertEquals(2 * BUFFER_SIZE, compressor.getNumBytesBeforeCompression());
+		assertEquals(0, firstCompressed.refCnt());
+		restCompressed.release();
+		assertEquals(1, restCompressed.refCnt());
+
+		// the last reference to the buffer releases the cached data
+		rest.recycleBuffer();
+		first.close();
+		second.close();
+		assertTrue(rest.isRecycled());
+		assertEquals(0, restCompressed.refCnt());
+	}
+
+	@Test
+	public void testIncompressibleBuffersAreNotCompressed() throws Exception {
+		BufferCompressor compressor = new BufferCompressor();
+
+		byte[] random = new byte[BUFFER_SIZE];
+		new Random(42).nextBytes(random);
+		Buffer buffer = new NetworkBuffer(
+			MemorySegmentFactory.wrap(random), FreeingBufferRecycler.INSTANCE, true, BUFFER_SIZE);
+
+		assertNull(compressor.compress(buffer, UnpooledByteBufAllocator.DEFAULT));
+		assertSame(buffer, compressor.compressToUnpooledBuffer(buffer));
+		assertFalse(buffer.isRecycled());
+		assertFalse(buffer.isCompressed());
+		assertEquals(0, compressor.getNumBytesBeforeCompression());
+		assertEquals(1.0, compressor.getCompressionRatio(), 0.0);
+
+		buffer.recycleBuffer();
+	}
+
+	@Test
+	public void testEventsAreNotCompressed() throws Exception {
+		Buffer event = EventSerializer.toBuffer(EndOfPartitionEvent.INSTANCE);
+
+		assertSame(event, new BufferCompressor().compressToUnpooledBuffer(event));
+		assertFalse(event.isCompressed());
+
+		event.recycleBuffer();
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecompressIntoTooSmallTarget() throws Exception {
+		Buffer buffer = createCompressibleBuffer(false);
+		ByteBuf compressed = new BufferCompressor().compress(buffer, UnpooledByteBufAllocator.DEFAULT);
+		buffer.recycleBuffer();
+
+		try {
+			BufferCompressor.decompress(compressed.nioBuffer(), ByteBuffer.allocate(BUFFER_SIZE - 1));
+		} finally {
+			compressed.release();
+		}
+	}
+
+	private static Buffer createCompressibleBuffer(boolean offHeap) {
+		MemorySegment segment = offHeap
+			? MemorySegmentFactory.wrapPooledOffHeapMemory(ByteBuffer.allocateDirect(BUFFER_SIZE), null)
+			: MemorySegmentFactory.allocateUnpooledSegment(BUFFER_SIZE);
+		NetworkBuffer buffer = new NetworkBuffer(segment, FreeingBufferRecycler.INSTANCE);
+
+		for (int i = 0; i < BUFFER_SIZE; i += 8) {
+			buffer.writeLong(i % 64);
+		}
+		return buffer;
+	}
+
+	private static ByteBuffer copy(ByteBuffer buffer) {
+		ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+		copy.put(buffer.duplicate());
+		copy.flip();
+		return copy;
+	}
+}
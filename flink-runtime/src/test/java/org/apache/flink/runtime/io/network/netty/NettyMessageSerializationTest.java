@@ -22,6 +22,7 @@ import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.runtime.event.task.IntegerTaskEvent;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
 import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -33,9 +34,12 @@ import org.apache.flink.shaded.netty4.io.netty.channel.embedded.EmbeddedChannel;
 
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -55,6 +59,7 @@ public class NettyMessageSerializationTest {
 	public void testEncodeDecode() {
 		testEncodeDecodeBuffer(false);
 		testEncodeDecodeBuffer(true);
+		testEncodeDecodeCompressedBuffer();
 
 		{
 			{
@@ -173,6 +178,43 @@ public class NettyMessageSerializationTest {
 		assertEquals(expected.sequenceNumber, actual.sequenceNumber);
 		assertEquals(expected.receiverId, actual.receiverId);
 		assertEquals(expected.backlog, actual.backlog);
+		assertFalse(actual.isCompressed());
+	}
+
+	private void testEncodeDecodeCompressedBuffer() {
+		NetworkBuffer buffer = new NetworkBuffer(MemorySegmentFactory.allocateUnpooledSegment(1024), FreeingBufferRecycler.INSTANCE);
+
+		for (int i = 0; i < 1024; i += 4) {
+			buffer.writeInt(i % 16);
+		}
+
+		try {
+			ByteBuf compressed = new BufferCompressor().compress(buffer, channel.alloc());
+			assertNotNull(compressed);
+			buffer.recycleBuffer();
+
+			NettyMessage.BufferResponse expected = new NettyMessage.BufferResponse(
+				compressed, true, true, random.nextInt(), new InputChannelID(), random.nextInt());
+			NettyMessage.BufferResponse actual = encodeAndDecode(expected);
+
+			assertTrue(actual.isBuffer());
+			assertTrue(actual.isCompressed());
+			assertEquals(expected.sequenceNumber, actual.sequenceNumber);
+			assertEquals(expected.receiverId, actual.receiverId);
+			assertEquals(expected.backlog, actual.backlog);
+
+			NetworkBuffer target = new NetworkBuffer(MemorySegmentFactory.allocateUnpooledSegment(1024), FreeingBufferRecycler.INSTANCE);
+			actual.readInto(target);
+			actual.releaseBuffer();
+
+			assertEquals(1024, target.readableBytes());
+			for (int i = 0; i < 1024; i += 4) {
+				assertEquals(i % 16, target.readInt());
+			}
+			target.recycleBuffer();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -20,6 +20,7 @@ package org.apache.flink.runtime.io.network.netty;
 
 import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.io.network.NetworkSequenceViewReader;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
@@ -133,7 +134,28 @@ public class PartitionRequestQueueTest {
 		testBufferWriting(new ReadOnlyBufferResultSubpartitionView(1));
 	}
 
-	private void testBufferWriting(ResultSubpartitionView view) throws IOException {
+	/**
+	 * Tests {@link PartitionRequestQueue} buffer writing with a subpartition that compresses its
+	 * buffers.
+	 */
+	@Test
+	public void testCompressedBufferWriting() throws Exception {
+		final BufferCompressor compressor = new BufferCompressor();
+		NettyMessage.BufferResponse response = testBufferWriting(new DefaultBufferResultSubpartitionView(1, 1024) {
+			@Override
+			public BufferCompressor getBufferCompressor() {
+				return compressor;
+			}
+		});
+
+		assertTrue(response.isBuffer());
+		assertTrue(response.isCompressed());
+		assertEquals(compressor.getNumBytesAfterCompression(), response.getNettyBuffer().readableBytes());
+		assertEquals(1024, compressor.getNumBytesBeforeCompression());
+		response.releaseBuffer();
+	}
+
+	private NettyMessage.BufferResponse testBufferWriting(ResultSubpartitionView view) throws IOException {
 		// setup
 		ResultPartitionProvider partitionProvider =
 			(partitionId, index, availabilityListener) -> view;
@@ -156,16 +178,24 @@ public class PartitionRequestQueueTest {
 			((NettyMessage.ErrorResponse) read).cause.printStackTrace();
 		}
 		assertThat(read, instanceOf(NettyMessage.BufferResponse.class));
-		read = channel.readOutbound();
-		assertNull(read);
+		assertNull(channel.readOutbound());
+		return (NettyMessage.BufferResponse) read;
 	}
 
 	private static class DefaultBufferResultSubpartitionView extends NoOpResultSubpartitionView {
 		/** Number of buffer in the backlog to report with every {@link #getNextBuffer()} call. */
 		private final AtomicInteger buffersInBacklog;
 
+		/** Size of the buffers that are returned by {@link #getNextBuffer()}. */
+		private final int bufferSize;
+
 		private DefaultBufferResultSubpartitionView(int buffersInBacklog) {
+			this(buffersInBacklog, 10);
+		}
+
+		private DefaultBufferResultSubpartitionView(int buffersInBacklog, int bufferSize) {
 			this.buffersInBacklog = new AtomicInteger(buffersInBacklog);
+			this.bufferSize = bufferSize;
 		}
 
 		@Nullable
@@ -173,7 +203,7 @@ public class PartitionRequestQueueTest {
 		public BufferAndBacklog getNextBuffer() {
 			int buffers = buffersInBacklog.decrementAndGet();
 			return new BufferAndBacklog(
-				TestBufferFactory.createBuffer(10),
+				TestBufferFactory.createBuffer(bufferSize),
 				buffers > 0,
 				buffers,
 				false);
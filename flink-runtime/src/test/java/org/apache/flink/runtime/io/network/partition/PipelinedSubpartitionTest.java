@@ -37,6 +37,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -52,6 +53,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -241,6 +243,73 @@ public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 		assertEquals(0, listener.getNumNotifications());
 	}
 
+	/**
+	 * Tests that only the data of the last, unfinished buffer count as unflushed, until they are
+	 * flushed or consumed.
+	 */
+	@Test
+	public void testNumberOfUnflushedBytes() throws Exception {
+		final PipelinedSubpartition subpartition = createSubpartition();
+		ResultSubpartitionView readView = subpartition.createReadView(new AwaitableBufferAvailablityListener());
+
+		try {
+			assertEquals(0, subpartition.getNumberOfUnflushedBytes());
+
+			subpartition.add(createFilledBufferConsumer(1025)); // finished
+			assertEquals(0, subpartition.getNumberOfUnflushedBytes());
+
+			BufferBuilder bufferBuilder = createBufferBuilder();
+			subpartition.add(bufferBuilder.createBufferConsumer());
+			bufferBuilder.appendAndCommit(ByteBuffer.allocate(512));
+			assertEquals(512, subpartition.getNumberOfUnflushedBytes());
+
+			subpartition.flush();
+			assertEquals(0, subpartition.getNumberOfUnflushedBytes());
+
+			assertNextBuffer(readView, 1025, true, 1, false, true);
+			assertNextBuffer(readView, 512, false, 1, false, false);
+
+			// data written after the consumer took the flushed data
+			bufferBuilder.appendAndCommit(ByteBuffer.allocate(256));
+			assertEquals(256, subpartition.getNumberOfUnflushedBytes());
+
+			bufferBuilder.finish();
+			assertEquals(0, subpartition.getNumberOfUnflushedBytes());
+		} finally {
+			readView.releaseAllResources();
+			subpartition.release();
+		}
+	}
+
+	@Test
+	public void testObjectHandoff() throws Exception {
+		final PipelinedSubpartition subpartition = createSubpartition();
+		ResultSubpartitionView readView = subpartition.createReadView(new AwaitableBufferAvailablityListener());
+
+		try {
+			assertNull(subpartition.getObjectHandoff());
+
+			Queue<Object> objectHandoff = readView.enableObjectHandoff();
+			assertNotNull(objectHandoff);
+			assertSame(objectHandoff, subpartition.getObjectHandoff());
+			assertSame(objectHandoff, readView.enableObjectHandoff());
+
+			// the objects that the consumer has not taken yet are bounded
+			for (int i = 0; i < PipelinedSubpartition.OBJECT_HANDOFF_CAPACITY; i++) {
+				assertTrue(objectHandoff.offer("object"));
+			}
+			assertFalse(objectHandoff.offer("object"));
+			assertEquals("object", objectHandoff.poll());
+			assertTrue(objectHandoff.offer("object"));
+
+			subpartition.release();
+			assertTrue(objectHandoff.isEmpty());
+		} finally {
+			readView.releaseAllResources();
+			subpartition.release();
+		}
+	}
+
 	@Test
 	public void testBasicPipelinedProduceConsumeLogic() throws Exception {
 		final PipelinedSubpartition subpartition = createSubpartition();
@@ -21,8 +21,12 @@ package org.apache.flink.runtime.io.network.partition;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.taskmanager.TaskActions;
 
 import org.junit.AfterClass;
@@ -30,7 +34,12 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferConsumer;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -38,6 +47,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link ResultPartition}.
@@ -205,6 +215,64 @@ public class ResultPartitionTest {
 		}
 	}
 
+	/**
+	 * Tests that a sort-merge blocking partition writes the buffers of all subpartitions when it
+	 * releases memory, and that each subpartition reads its own buffers from the file and from
+	 * memory.
+	 */
+	@Test
+	public void testSortMergeBlockingPartition() throws Exception {
+		ResultPartition partition = new ResultPartition(
+			"TestTask",
+			mock(TaskActions.class),
+			new JobID(),
+			new ResultPartitionID(),
+			ResultPartitionType.BLOCKING,
+			2,
+			2,
+			mock(ResultPartitionManager.class),
+			mock(ResultPartitionConsumableNotifier.class),
+			ioManager,
+			true,
+			true);
+
+		BufferPool bufferPool = mock(BufferPool.class);
+		when(bufferPool.getNumberOfRequiredMemorySegments()).thenReturn(2);
+		when(bufferPool.getMemorySegmentSize()).thenReturn(BufferBuilderTestUtils.BUFFER_SIZE);
+		partition.registerBufferPool(bufferPool);
+		// the partition is asked to release memory by the buffer pool
+		verify(bufferPool).setBufferPoolOwner(partition);
+
+		partition.addBufferConsumer(createFilledBufferConsumer(1024), 0);
+		partition.addBufferConsumer(createFilledBufferConsumer(2048), 1);
+		partition.releaseMemory(1);
+		assertEquals(0, partition.getNumberOfQueuedBuffers());
+
+		partition.addBufferConsumer(createFilledBufferConsumer(512), 1);
+		partition.finish();
+		// the buffers added afterwards and the end of partition events stay in memory
+		assertEquals(3, partition.getNumberOfQueuedBuffers());
+
+		int[][] expectedSizes = new int[][] {{1024}, {2048, 512}};
+		for (int i = 0; i < expectedSizes.length; i++) {
+			ResultSubpartitionView view = partition.createSubpartitionView(
+				i, mock(BufferAvailabilityListener.class));
+			assertThat(view, instanceOf(SortMergeSubpartitionView.class));
+
+			for (int expectedSize : expectedSizes[i]) {
+				Buffer buffer = view.getNextBuffer().buffer();
+				assertEquals(expectedSize, buffer.getSize());
+				buffer.recycleBuffer();
+			}
+			Buffer endOfPartition = view.getNextBuffer().buffer();
+			assertTrue(EventSerializer.isEvent(endOfPartition, EndOfPartitionEvent.class));
+			endOfPartition.recycleBuffer();
+			assertNull(view.getNextBuffer());
+		}
+
+		partition.release();
+	}
+
 	// ------------------------------------------------------------------------
 
 	private static ResultPartition createPartition(
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createBufferBuilder;
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferConsumer;
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.fillBufferBuilder;
+import static org.apache.flink.runtime.io.network.partition.SubpartitionTestBase.assertNextBuffer;
+import static org.apache.flink.runtime.io.network.partition.SubpartitionTestBase.assertNextEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link SortMergeSubpartition} and the {@link PartitionedFile} shared by the
+ * subpartitions of a partition.
+ */
+public class SortMergeSubpartitionTest extends TestLogger {
+
+	private static final int BUFFER_DATA_SIZE = 4096;
+
+	/** Asynchronous I/O manager. */
+	private static IOManager ioManager;
+
+	@BeforeClass
+	public static void setup() {
+		ioManager = new IOManagerAsync();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		ioManager.shutdown();
+	}
+
+	/**
+	 * Tests that the buffers of several subpartitions written in several regions are read back
+	 * per subpartition in the order they were added.
+	 */
+	@Test
+	public void testConsumeMultipleRegions() throws Exception {
+		ResultPartition parent = createParent(null);
+		PartitionedFile file = new PartitionedFile(ioManager, 2);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(parent, file, 2);
+
+		BufferConsumer eventBufferConsumer = EventSerializer.toBufferConsumer(new CancelCheckpointMarker(1));
+		final int eventSize = eventBufferConsumer.getWrittenBytes();
+
+		// first region
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 1024));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 2048));
+		subpartitions[1].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 512));
+		assertEquals(3, file.writeRegion(subpartitions));
+		assertEquals(0, subpartitions[0].unsynchronizedGetNumberOfQueuedBuffers());
+		assertEquals(2, subpartitions[0].getBuffersInBacklog());
+
+		// second region after finishing, nothing for the second subpartition except the end of partition
+		subpartitions[0].add(eventBufferConsumer);
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 256));
+		for (SortMergeSubpartition subpartition : subpartitions) {
+			subpartition.finish();
+		}
+		file.finish();
+		assertEquals(4, file.writeRegion(subpartitions));
+		assertEquals(2, file.getNumRegions());
+		assertEquals(1, file.getNumBuffers(0, 1));
+		assertEquals(1, file.getNumBuffers(1, 1));
+
+		// nothing is left in memory
+		assertEquals(0, file.writeRegion(subpartitions));
+
+		AwaitableBufferAvailablityListener listener = new AwaitableBufferAvailablityListener();
+		ResultSubpartitionView reader = subpartitions[0].createReadView(listener);
+		assertEquals(1, listener.getNumNotifications());
+
+		assertFalse(reader.nextBufferIsEvent());
+		assertNextBuffer(reader, 1024, true, 2, false, true);
+		assertNextBuffer(reader, 2048, true, 1, true, true);
+		assertNextEvent(reader, eventSize, CancelCheckpointMarker.class, true, 1, false, true);
+		assertNextBuffer(reader, 256, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertFalse(reader.isAvailable());
+		assertNull(reader.getNextBuffer());
+
+		reader = subpartitions[1].createReadView(new AwaitableBufferAvailablityListener());
+		assertNextBuffer(reader, 512, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertNull(reader.getNextBuffer());
+
+		releaseAll(subpartitions, file);
+	}
+
+	/**
+	 * Tests that the data of an unfinished buffer are written with the region and the rest of the
+	 * buffer with a later region.
+	 */
+	@Test
+	public void testConsumeUnfinishedBufferWrittenInSeveralRegions() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 1);
+
+		BufferBuilder bufferBuilder = createBufferBuilder(BUFFER_DATA_SIZE);
+		subpartitions[0].add(bufferBuilder.createBufferConsumer());
+		fillBufferBuilder(bufferBuilder, 1024);
+
+		assertEquals(1, file.writeRegion(subpartitions));
+		assertEquals(1, subpartitions[0].unsynchronizedGetNumberOfQueuedBuffers());
+		// the unfinished buffer is counted once more
+		assertEquals(2, subpartitions[0].getBuffersInBacklog());
+
+		// an empty region is not recorded
+		assertEquals(0, file.writeRegion(subpartitions));
+		assertEquals(1, file.getNumRegions());
+
+		fillBufferBuilder(bufferBuilder, 512).finish();
+		subpartitions[0].finish();
+		file.finish();
+		assertEquals(2, file.writeRegion(subpartitions));
+		assertEquals(2, subpartitions[0].getBuffersInBacklog());
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		assertNextBuffer(reader, 1024, true, 1, false, true);
+		assertNextBuffer(reader, 512, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertNull(reader.getNextBuffer());
+
+		releaseAll(subpartitions, file);
+	}
+
+	@Test
+	public void testConsumeCompressedRegions() throws Exception {
+		BufferCompressor compressor = new BufferCompressor();
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(compressor), file, 1);
+
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, BUFFER_DATA_SIZE));
+		subpartitions[0].add(EventSerializer.toBufferConsumer(new CancelCheckpointMarker(1)));
+		subpartitions[0].finish();
+		file.finish();
+		assertEquals(3, file.writeRegion(subpartitions));
+
+		assertEquals(BUFFER_DATA_SIZE, compressor.getNumBytesBeforeCompression());
+		assertTrue(compressor.getCompressionRatio() < 1.0);
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		assertSame(compressor, reader.getBufferCompressor());
+
+		Buffer buffer = reader.getNextBuffer().buffer();
+		assertTrue(buffer.isBuffer());
+		assertTrue(buffer.isCompressed());
+		Buffer decompressed = BufferCompressor.decompressToUnpooledBuffer(buffer);
+		assertEquals(BUFFER_DATA_SIZE, decompressed.getSize());
+		decompressed.recycleBuffer();
+
+		Buffer event = reader.getNextBuffer().buffer();
+		assertFalse(event.isCompressed());
+		assertTrue(EventSerializer.fromBuffer(event, getClass().getClassLoader()) instanceof CancelCheckpointMarker);
+		event.recycleBuffer();
+
+		Buffer endOfPartition = reader.getNextBuffer().buffer();
+		assertFalse(endOfPartition.isCompressed());
+		assertTrue(EventSerializer.isEvent(endOfPartition, EndOfPartitionEvent.class));
+		endOfPartition.recycleBuffer();
+
+		releaseAll(subpartitions, file);
+	}
+
+	/**
+	 * Tests that the buffers are consumed from memory if the partition never has to release
+	 * memory, without writing a file.
+	 */
+	@Test
+	public void testConsumeFromMemory() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 1);
+
+		File spillDir = ioManager.getSpillingDirectories()[0];
+		int numFilesBefore = spillDir.list().length;
+
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 1024));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 0));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 2048));
+		subpartitions[0].finish();
+		file.finish();
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		// the empty buffer is skipped when reading ahead
+		assertNextBuffer(reader, 1024, true, 1, false, true);
+		assertNextBuffer(reader, 2048, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertFalse(reader.isAvailable());
+		assertNull(reader.getNextBuffer());
+
+		assertEquals(0, file.getNumRegions());
+		assertEquals(numFilesBefore, spillDir.list().length);
+
+		releaseAll(subpartitions, file);
+	}
+
+	/**
+	 * Tests that the view continues with the file if the partition releases memory while the
+	 * view consumes the buffers in memory.
+	 */
+	@Test
+	public void testReleaseMemoryWhileConsumingFromMemory() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 1);
+
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 1024));
+		assertEquals(1, file.writeRegion(subpartitions));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 2048));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 512));
+		subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, 256));
+		subpartitions[0].finish();
+		file.finish();
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		// from the file, reading the next buffer ahead from memory
+		assertNextBuffer(reader, 1024, true, 3, false, true);
+		assertNextBuffer(reader, 2048, true, 2, false, true);
+
+		// the buffer read ahead stays with the view
+		assertEquals(2, file.writeRegion(subpartitions));
+		assertEquals(0, subpartitions[0].unsynchronizedGetNumberOfQueuedBuffers());
+
+		assertNextBuffer(reader, 512, true, 1, false, true);
+		assertNextBuffer(reader, 256, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertNull(reader.getNextBuffer());
+
+		releaseAll(subpartitions, file);
+	}
+
+	/**
+	 * Tests that the view does not wait for a buffer to read ahead if the consumer still holds
+	 * the buffers read from the file.
+	 */
+	@Test
+	public void testReadAheadDoesNotWaitForBuffers() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 1);
+
+		for (int i = 0; i < 3; i++) {
+			subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, BUFFER_DATA_SIZE));
+		}
+		subpartitions[0].finish();
+		file.finish();
+		assertEquals(4, file.writeRegion(subpartitions));
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		ResultSubpartition.BufferAndBacklog first = reader.getNextBuffer();
+		ResultSubpartition.BufferAndBacklog second = reader.getNextBuffer();
+		assertTrue(second.isMoreAvailable());
+		assertTrue(reader.isAvailable());
+		assertFalse(reader.nextBufferIsEvent());
+
+		first.buffer().recycleBuffer();
+		second.buffer().recycleBuffer();
+		assertNextBuffer(reader, BUFFER_DATA_SIZE, true, 0, true, true);
+		assertNextEvent(reader, 4, EndOfPartitionEvent.class, false, 0, false, true);
+		assertNull(reader.getNextBuffer());
+
+		releaseAll(subpartitions, file);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCreateReadViewBeforeFinished() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 1);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 1);
+
+		try {
+			subpartitions[0].add(createFilledBufferConsumer(BUFFER_DATA_SIZE, BUFFER_DATA_SIZE));
+			file.writeRegion(subpartitions);
+
+			subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		} finally {
+			releaseAll(subpartitions, file);
+		}
+	}
+
+	/**
+	 * Tests that the sort-merge partition writes a single file, which is deleted on release.
+	 */
+	@Test
+	public void testReleaseDeletesFile() throws Exception {
+		PartitionedFile file = new PartitionedFile(ioManager, 2);
+		SortMergeSubpartition[] subpartitions = createSubpartitions(createParent(null), file, 2);
+
+		File spillDir = ioManager.getSpillingDirectories()[0];
+		int numFilesBefore = spillDir.list().length;
+
+		for (SortMergeSubpartition subpartition : subpartitions) {
+			subpartition.add(createFilledBufferConsumer(BUFFER_DATA_SIZE, BUFFER_DATA_SIZE));
+			subpartition.finish();
+		}
+		file.finish();
+		file.writeRegion(subpartitions);
+		assertEquals(numFilesBefore + 1, spillDir.list().length);
+
+		ResultSubpartitionView reader = subpartitions[0].createReadView(new AwaitableBufferAvailablityListener());
+		releaseAll(subpartitions, file);
+
+		assertTrue(reader.isReleased());
+		assertEquals(numFilesBefore, spillDir.list().length);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static ResultPartition createParent(BufferCompressor compressor) {
+		ResultPartition parent = mock(ResultPartition.class);
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+		when(parent.getBufferProvider()).thenReturn(bufferProvider);
+		when(parent.getBufferCompressor()).thenReturn(compressor);
+		when(bufferProvider.getMemorySegmentSize()).thenReturn(32 * 1024);
+		return parent;
+	}
+
+	private static SortMergeSubpartition[] createSubpartitions(
+			ResultPartition parent, PartitionedFile file, int numSubpartitions) {
+		SortMergeSubpartition[] subpartitions = new SortMergeSubpartition[numSubpartitions];
+		for (int i = 0; i < numSubpartitions; i++) {
+			subpartitions[i] = new SortMergeSubpartition(i, parent, file);
+		}
+		return subpartitions;
+	}
+
+	private static void releaseAll(SortMergeSubpartition[] subpartitions, PartitionedFile file) throws Exception {
+		for (SortMergeSubpartition subpartition : subpartitions) {
+			subpartition.release();
+		}
+		file.release();
+	}
+}
@@ -29,6 +29,7 @@ import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 
@@ -55,6 +56,7 @@ import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
@@ -257,6 +259,61 @@ public class SpillableSubpartitionTest extends SubpartitionTestBase {
 		assertTrue(bufferConsumer.isRecycled());
 	}
 
+	/**
+	 * Tests that the buffers of a partition which compresses its buffers are spilled compressed
+	 * and read back as compressed buffers, while events stay uncompressed.
+	 */
+	@Test
+	public void testConsumeCompressedSpilledPartition() throws Exception {
+		BufferCompressor compressor = new BufferCompressor();
+		ResultPartition parent = mock(ResultPartition.class);
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+		when(parent.getBufferProvider()).thenReturn(bufferProvider);
+		when(parent.getBufferCompressor()).thenReturn(compressor);
+		when(bufferProvider.getMemorySegmentSize()).thenReturn(32 * 1024);
+		SpillableSubpartition partition = new SpillableSubpartition(0, parent, ioManager);
+
+		BufferConsumer bufferConsumer = createFilledBufferConsumer(BUFFER_DATA_SIZE, BUFFER_DATA_SIZE);
+		partition.add(bufferConsumer.copy());
+		partition.add(EventSerializer.toBufferConsumer(new CancelCheckpointMarker(1)));
+		partition.add(bufferConsumer);
+
+		assertEquals(3, partition.releaseMemory());
+		partition.finish();
+
+		assertEquals(2 * BUFFER_DATA_SIZE, compressor.getNumBytesBeforeCompression());
+		assertTrue(compressor.getCompressionRatio() < 1.0);
+
+		SpilledSubpartitionView reader = (SpilledSubpartitionView) partition.createReadView(
+			new AwaitableBufferAvailablityListener());
+		assertSame(compressor, reader.getBufferCompressor());
+
+		for (int i = 0; i < 3; i++) {
+			Buffer buffer = reader.getNextBuffer().buffer();
+			if (i == 1) {
+				assertFalse(buffer.isBuffer());
+				assertFalse(buffer.isCompressed());
+				assertTrue(EventSerializer.fromBuffer(buffer, getClass().getClassLoader()) instanceof CancelCheckpointMarker);
+				buffer.recycleBuffer();
+			} else {
+				assertTrue(buffer.isBuffer());
+				assertTrue(buffer.isCompressed());
+				assertTrue(buffer.getSize() < BUFFER_DATA_SIZE);
+
+				Buffer decompressed = BufferCompressor.decompressToUnpooledBuffer(buffer);
+				assertEquals(BUFFER_DATA_SIZE, decompressed.getSize());
+				decompressed.recycleBuffer();
+			}
+		}
+
+		Buffer endOfPartition = reader.getNextBuffer().buffer();
+		assertFalse(endOfPartition.isCompressed());
+		assertTrue(EventSerializer.isEvent(endOfPartition, EndOfPartitionEvent.class));
+		endOfPartition.recycleBuffer();
+
+		reader.releaseAllResources();
+	}
+
 	/**
 	 * Tests that a spilled partition is correctly read back in via a spilled read view. The
 	 * partition went into spilled state before adding buffers and the access pattern resembles
@@ -53,9 +53,11 @@ import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -65,6 +67,8 @@ import scala.Tuple2;
 import static org.apache.flink.util.FutureUtil.waitForAll;
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -72,6 +76,7 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -397,6 +402,36 @@ public class LocalInputChannelTest {
 		assertFalse(channel.getNextBuffer().isPresent());
 	}
 
+	/**
+	 * Tests that the channel only enables the object handoff of the subpartition if the input gate
+	 * has enabled it.
+	 */
+	@Test
+	public void testObjectHandoffEnabledByInputGate() throws Exception {
+		Queue<Object> objectHandoff = new ConcurrentLinkedQueue<>();
+		ResultSubpartitionView reader = mock(ResultSubpartitionView.class);
+		when(reader.enableObjectHandoff()).thenReturn(objectHandoff);
+
+		ResultPartitionManager partitionManager = mock(ResultPartitionManager.class);
+		when(partitionManager.createSubpartitionView(
+			any(ResultPartitionID.class),
+			anyInt(),
+			any(BufferAvailabilityListener.class))).thenReturn(reader);
+
+		SingleInputGate gate = mock(SingleInputGate.class);
+		LocalInputChannel channel = createLocalInputChannel(gate, partitionManager, new Tuple2<>(0, 0));
+		channel.requestSubpartition(0);
+
+		assertNull(channel.getObjectHandoff());
+		verify(reader, never()).enableObjectHandoff();
+
+		when(gate.isObjectHandoffEnabled()).thenReturn(true);
+		channel = createLocalInputChannel(gate, partitionManager, new Tuple2<>(0, 0));
+		channel.requestSubpartition(0);
+
+		assertSame(objectHandoff, channel.getObjectHandoff());
+	}
+
 	// ---------------------------------------------------------------------------------------------
 
 	private LocalInputChannel createLocalInputChannel(
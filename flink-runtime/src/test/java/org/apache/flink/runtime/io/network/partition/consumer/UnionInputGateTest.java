@@ -26,11 +26,17 @@ import org.apache.flink.runtime.taskmanager.TaskActions;
 
 import org.junit.Test;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import static org.apache.flink.runtime.io.network.partition.consumer.SingleInputGateTest.verifyBufferOrEvent;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class UnionInputGateTest {
 
@@ -117,4 +123,24 @@ public class UnionInputGateTest {
 		assertTrue(union.isFinished());
 		assertFalse(union.getNextBufferOrEvent().isPresent());
 	}
+
+	/**
+	 * Tests that the object handoff of a channel is looked up at the input gate of the channel.
+	 */
+	@Test
+	public void testGetObjectHandoff() throws Exception {
+		final InputGate ig1 = mock(InputGate.class);
+		final InputGate ig2 = mock(InputGate.class);
+		when(ig1.getNumberOfInputChannels()).thenReturn(3);
+		when(ig2.getNumberOfInputChannels()).thenReturn(5);
+
+		final Queue<Object> objectHandoff = new ConcurrentLinkedQueue<>();
+		when(ig2.getObjectHandoff(1)).thenReturn(objectHandoff);
+
+		final UnionInputGate union = new UnionInputGate(ig1, ig2);
+
+		assertNull(union.getObjectHandoff(1));
+		assertSame(objectHandoff, union.getObjectHandoff(4));
+		assertNull(union.getObjectHandoff(5));
+	}
 }
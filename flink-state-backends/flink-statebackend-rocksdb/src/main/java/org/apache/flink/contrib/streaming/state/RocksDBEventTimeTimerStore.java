@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.streaming.api.operators.EventTimeTimerStore;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteOptions;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link EventTimeTimerStore} that keeps the timers in RocksDB instead of on the Java heap.
+ *
+ * <p>Every timer is kept in two column families. In the first one the timers are ordered by
+ * context and timestamp, with keys of the form
+ * {@code context | timestamp | key-group | key | namespace}, so the earliest timer of a context is
+ * found with a single seek and all timers of a context form one range. In the second one the
+ * timers are ordered by key-group, with keys of the form
+ * {@code key-group | context | timestamp | key | namespace}, which are iterated to snapshot the
+ * timers of a key-group. The timestamp is stored with a flipped sign bit so that the byte-wise
+ * order of RocksDB matches the order of the timestamps.
+ *
+ * <p>Only the number of timers per context is kept on the heap.
+ */
+public class RocksDBEventTimeTimerStore<K, N> implements EventTimeTimerStore<K, N> {
+
+	private static final byte[] EMPTY_VALUE = new byte[0];
+
+	/** Number of bytes of the key-group in the keys. */
+	private static final int KEY_GROUP_BYTES = 2;
+
+	private static final int TIMESTAMP_BYTES = 8;
+
+	private final RocksDB db;
+
+	private final ColumnFamilyHandle timersByTime;
+
+	private final ColumnFamilyHandle timersByKeyGroup;
+
+	private final WriteOptions writeOptions;
+
+	private final int totalKeyGroups;
+
+	private final KeyGroupsList localKeyGroupRange;
+
+	private final Map<List<Long>, Integer> numTimersPerContext = new HashMap<>();
+
+	private final DataOutputSerializer keyOutView = new DataOutputSerializer(128);
+
+	private final DataInputDeserializer keyInView = new DataInputDeserializer();
+
+	private TypeSerializer<K> keySerializer;
+
+	private TypeSerializer<N> namespaceSerializer;
+
+	private int size;
+
+	public RocksDBEventTimeTimerStore(
+			RocksDB db,
+			ColumnFamilyHandle timersByTime,
+			ColumnFamilyHandle timersByKeyGroup,
+			WriteOptions writeOptions,
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange) {
+
+		this.db = Preconditions.checkNotNull(db);
+		this.timersByTime = Preconditions.checkNotNull(timersByTime);
+		this.timersByKeyGroup = Preconditions.checkNotNull(timersByKeyGroup);
+		this.writeOptions = Preconditions.checkNotNull(writeOptions);
+		this.totalKeyGroups = totalKeyGroups;
+		this.localKeyGroupRange = Preconditions.checkNotNull(localKeyGroupRange);
+	}
+
+	@Override
+	public void open(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer) {
+		this.keySerializer = Preconditions.checkNotNull(keySerializer);
+		this.namespaceSerializer = Preconditions.checkNotNull(namespaceSerializer);
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) {
+		try {
+			byte[] timeKey = serializeTimeKey(timer);
+			if (db.get(timersByTime, timeKey) != null) {
+				return false;
+			}
+			db.put(timersByTime, writeOptions, timeKey, EMPTY_VALUE);
+			db.put(timersByKeyGroup, writeOptions, serializeKeyGroupKey(timer), EMPTY_VALUE);
+		} catch (IOException | RocksDBException e) {
+			throw new RuntimeException("Error while adding a timer to RocksDB.", e);
+		}
+
+		Integer numTimers = numTimersPerContext.get(timer.getTimeContext());
+		numTimersPerContext.put(timer.getTimeContext(), numTimers == null ? 1 : numTimers + 1);
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) {
+		try {
+			byte[] timeKey = serializeTimeKey(timer);
+			if (db.get(timersByTime, timeKey) == null) {
+				return false;
+			}
+			db.delete(timersByTime, writeOptions, timeKey);
+			db.delete(timersByKeyGroup, writeOptions, serializeKeyGroupKey(timer));
+		} catch (IOException | RocksDBException e) {
+			throw new RuntimeException("Error while removing a timer from RocksDB.", e);
+		}
+
+		decrementTimers(timer.getTimeContext(), 1);
+		return true;
+	}
+
+	@Override
+	public InternalTimer<K, N> poll(List<Long> timeContext, long time) {
+		if (!numTimersPerContext.containsKey(timeContext)) {
+			return null;
+		}
+
+		try (RocksIterator iterator = db.newIterator(timersByTime)) {
+			byte[] prefix = serializeContextPrefix(timeContext);
+			iterator.seek(prefix);
+			if (!iterator.isValid() || !startsWith(iterator.key(), prefix)) {
+				return null;
+			}
+
+			byte[] timeKey = iterator.key();
+			keyInView.setBuffer(timeKey, prefix.length, timeKey.length - prefix.length);
+			long timestamp = keyInView.readLong() ^ Long.MIN_VALUE;
+			if (timestamp > time) {
+				return null;
+			}
+			int keyGroup = keyInView.readUnsignedShort();
+			K key = keySerializer.deserialize(keyInView);
+			N namespace = namespaceSerializer.deserialize(keyInView);
+			InternalTimer<K, N> timer = new InternalTimer<>(timeContext, timestamp, key, namespace);
+
+			db.delete(timersByTime, writeOptions, timeKey);
+			db.delete(timersByKeyGroup, writeOptions, serializeKeyGroupKey(timer, keyGroup));
+
+			decrementTimers(timeContext, 1);
+			return timer;
+		} catch (IOException | RocksDBException e) {
+			throw new RuntimeException("Error while polling a timer from RocksDB.", e);
+		}
+	}
+
+	@Override
+	public void retire(List<Long> timeContext) {
+		if (!numTimersPerContext.containsKey(timeContext)) {
+			return;
+		}
+
+		int retired = 0;
+		try (RocksIterator iterator = db.newIterator(timersByTime)) {
+			byte[] prefix = serializeContextPrefix(timeContext);
+			for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+				byte[] timeKey = iterator.key();
+
+				// the key-group key holds the same fields, starting with the key-group
+				int keyGroupOffset = prefix.length + TIMESTAMP_BYTES;
+				byte[] keyGroupKey = new byte[timeKey.length];
+				System.arraycopy(timeKey, keyGroupOffset, keyGroupKey, 0, KEY_GROUP_BYTES);
+				System.arraycopy(timeKey, 0, keyGroupKey, KEY_GROUP_BYTES, keyGroupOffset);
+				System.arraycopy(timeKey, keyGroupOffset + KEY_GROUP_BYTES, keyGroupKey, keyGroupOffset + KEY_GROUP_BYTES,
+					timeKey.length - keyGroupOffset - KEY_GROUP_BYTES);
+
+				db.delete(timersByTime, writeOptions, timeKey);
+				db.delete(timersByKeyGroup, writeOptions, keyGroupKey);
+				retired++;
+			}
+		} catch (IOException | RocksDBException e) {
+			throw new RuntimeException("Error while retiring the timers of a context in RocksDB.", e);
+		}
+
+		decrementTimers(timeContext, retired);
+		numTimersPerContext.remove(timeContext);
+	}
+
+	@Override
+	public Set<InternalTimer<K, N>> getTimersForKeyGroup(int keyGroupIdx) {
+		Preconditions.checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+		Set<InternalTimer<K, N>> timers = new HashSet<>();
+		try (RocksIterator iterator = db.newIterator(timersByKeyGroup)) {
+			byte[] prefix = new byte[] {(byte) (keyGroupIdx >>> 8), (byte) keyGroupIdx};
+			for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+				timers.add(deserializeKeyGroupKey(iterator.key()));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error while reading the timers of a key-group from RocksDB.", e);
+		}
+		return timers;
+	}
+
+	@Override
+	public int numContexts() {
+		return numTimersPerContext.size();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@VisibleForTesting
+	@Override
+	public int size(N namespace) {
+		int count = 0;
+		try (RocksIterator iterator = db.newIterator(timersByKeyGroup)) {
+			for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+				if (deserializeKeyGroupKey(iterator.key()).getNamespace().equals(namespace)) {
+					count++;
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error while counting the timers in RocksDB.", e);
+		}
+		return count;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void decrementTimers(List<Long> timeContext, int retired) {
+		Integer numTimers = numTimersPerContext.get(timeContext);
+		if (numTimers != null) {
+			if (numTimers <= retired) {
+				numTimersPerContext.remove(timeContext);
+			} else {
+				numTimersPerContext.put(timeContext, numTimers - retired);
+			}
+		}
+		size -= retired;
+	}
+
+	private byte[] serializeContextPrefix(List<Long> timeContext) throws IOException {
+		keyOutView.clear();
+		writeContext(timeContext);
+		return keyOutView.getCopyOfBuffer();
+	}
+
+	private byte[] serializeTimeKey(InternalTimer<K, N> timer) throws IOException {
+		keyOutView.clear();
+		writeContext(timer.getTimeContext());
+		keyOutView.writeLong(timer.getTimestamp() ^ Long.MIN_VALUE);
+		keyOutView.writeShort(getKeyGroup(timer));
+		keySerializer.serialize(timer.getKey(), keyOutView);
+		namespaceSerializer.serialize(timer.getNamespace(), keyOutView);
+		return keyOutView.getCopyOfBuffer();
+	}
+
+	private byte[] serializeKeyGroupKey(InternalTimer<K, N> timer) throws IOException {
+		return serializeKeyGroupKey(timer, getKeyGroup(timer));
+	}
+
+	private byte[] serializeKeyGroupKey(InternalTimer<K, N> timer, int keyGroup) throws IOException {
+		keyOutView.clear();
+		keyOutView.writeShort(keyGroup);
+		writeContext(timer.getTimeContext());
+		keyOutView.writeLong(timer.getTimestamp() ^ Long.MIN_VALUE);
+		keySerializer.serialize(timer.getKey(), keyOutView);
+		namespaceSerializer.serialize(timer.getNamespace(), keyOutView);
+		return keyOutView.getCopyOfBuffer();
+	}
+
+	private InternalTimer<K, N> deserializeKeyGroupKey(byte[] keyGroupKey) throws IOException {
+		keyInView.setBuffer(keyGroupKey, KEY_GROUP_BYTES, keyGroupKey.length - KEY_GROUP_BYTES);
+		TimeContext timeContext = TimeContext.read(keyInView, null);
+		long timestamp = keyInView.readLong() ^ Long.MIN_VALUE;
+		K key = keySerializer.deserialize(keyInView);
+		N namespace = namespaceSerializer.deserialize(keyInView);
+		return new InternalTimer<>(timeContext, timestamp, key, namespace);
+	}
+
+	private void writeContext(List<Long> timeContext) throws IOException {
+		TimeContext.of(timeContext).write(keyOutView);
+	}
+
+	private int getKeyGroup(InternalTimer<K, N> timer) {
+		return KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), totalKeyGroups);
+	}
+
+	private static boolean startsWith(byte[] bytes, byte[] prefix) {
+		if (bytes.length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -59,6 +59,7 @@ import org.apache.flink.runtime.state.IncrementalKeyedStateHandle;
 import org.apache.flink.runtime.state.IncrementalLocalKeyedStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
+import org.apache.flink.runtime.state.KeyGroupsList;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
 import org.apache.flink.runtime.state.KeyedStateHandle;
@@ -82,6 +83,9 @@ import org.apache.flink.runtime.state.internal.InternalListState;
 import org.apache.flink.runtime.state.internal.InternalMapState;
 import org.apache.flink.runtime.state.internal.InternalReducingState;
 import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.streaming.api.operators.EventTimeTimerStore;
+import org.apache.flink.streaming.api.operators.EventTimeTimerStoreFactory;
+import org.apache.flink.streaming.api.operators.HeapEventTimeTimerStore;
 import org.apache.flink.util.ExceptionUtils;
 import org.apache.flink.util.FileUtils;
 import org.apache.flink.util.FlinkRuntimeException;
@@ -147,7 +151,7 @@ import java.util.stream.StreamSupport;
  + <a href="https://github.com/facebook/rocksdb/wiki/RocksJava-Basics#opening-a-database-with-column-families">
  * this document</a>.
  */
-public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> implements EventTimeTimerStoreFactory<K> {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBKeyedStateBackend.class);
 
@@ -172,6 +176,9 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	/** Path where this configured instance stores its RocksDB database. */
 	private final File instanceRocksDBPath;
 
+	/** Path where this configured instance stores the RocksDB database of its event time timers. */
+	private final File instanceTimersRocksDBPath;
+
 	/**
 	 * Protects access to RocksDB in other threads, like the checkpointing thread from parallel call that disposes the
 	 * RocksDb object.
@@ -222,6 +229,19 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	/** The identifier of the last completed checkpoint. */
 	private long lastCompletedCheckpointId = -1L;
 
+	/** True if the event time timers of the operator are kept in RocksDB instead of on the heap. */
+	private final boolean eventTimeTimersInRocksDB;
+
+	/**
+	 * The database of the event time timers, created with the first timer service. The timers are
+	 * snapshotted by their timer services, so they are kept apart from the database of the k/v
+	 * states, whose checkpoints only cover the column families of these states.
+	 */
+	private RocksDB timersDb;
+
+	/** The column families of the timers, including the default one. */
+	private final List<ColumnFamilyHandle> timersColumnFamilies = new ArrayList<>();
+
 	/** Unique ID of this backend. */
 	private UUID backendUID;
 
@@ -246,6 +266,27 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		LocalRecoveryConfig localRecoveryConfig
 	) throws IOException {
 
+		this(operatorIdentifier, userCodeClassLoader, instanceBasePath, dbOptions, columnFamilyOptions,
+			kvStateRegistry, keySerializer, numberOfKeyGroups, keyGroupRange, executionConfig,
+			enableIncrementalCheckpointing, localRecoveryConfig, false);
+	}
+
+	public RocksDBKeyedStateBackend(
+		String operatorIdentifier,
+		ClassLoader userCodeClassLoader,
+		File instanceBasePath,
+		DBOptions dbOptions,
+		ColumnFamilyOptions columnFamilyOptions,
+		TaskKvStateRegistry kvStateRegistry,
+		TypeSerializer<K> keySerializer,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange,
+		ExecutionConfig executionConfig,
+		boolean enableIncrementalCheckpointing,
+		LocalRecoveryConfig localRecoveryConfig,
+		boolean eventTimeTimersInRocksDB
+	) throws IOException {
+
 		super(kvStateRegistry, keySerializer, userCodeClassLoader, numberOfKeyGroups, keyGroupRange, executionConfig);
 
 		this.operatorIdentifier = Preconditions.checkNotNull(operatorIdentifier);
@@ -261,6 +302,8 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 
 		this.instanceBasePath = Preconditions.checkNotNull(instanceBasePath);
 		this.instanceRocksDBPath = new File(instanceBasePath, "db");
+		this.instanceTimersRocksDBPath = new File(instanceBasePath, "timers");
+		this.eventTimeTimersInRocksDB = eventTimeTimersInRocksDB;
 
 		checkAndCreateDirectory(instanceBasePath);
 
@@ -349,6 +392,16 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		// so that we cannot release the native resources while clients are still working with it in parallel.
 		rocksDBResourceGuard.close();
 
+		if (timersDb != null) {
+			// as for the db of the states, all CFs are closed before the DB
+			for (ColumnFamilyHandle columnFamily : timersColumnFamilies) {
+				IOUtils.closeQuietly(columnFamily);
+			}
+			IOUtils.closeQuietly(timersDb);
+			timersDb = null;
+			timersColumnFamilies.clear();
+		}
+
 		// IMPORTANT: null reference to signal potential async checkpoint workers that the db was disposed, as
 		// working on the disposed object results in SEGFAULTS.
 		if (db != null) {
@@ -381,6 +434,35 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	@Override
+	public <N> EventTimeTimerStore<K, N> createEventTimeTimerStore(
+			String timerServiceName,
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange) {
+
+		if (!eventTimeTimersInRocksDB) {
+			return new HeapEventTimeTimerStore<>(totalKeyGroups, localKeyGroupRange);
+		}
+
+		try {
+			if (timersDb == null) {
+				timersDb = openDB(instanceTimersRocksDBPath.getAbsolutePath(), Collections.emptyList(), timersColumnFamilies);
+			}
+
+			ColumnFamilyHandle timersByTime = timersDb.createColumnFamily(new ColumnFamilyDescriptor(
+				(timerServiceName + "-by-time").getBytes(ConfigConstants.DEFAULT_CHARSET), columnOptions));
+			timersColumnFamilies.add(timersByTime);
+			ColumnFamilyHandle timersByKeyGroup = timersDb.createColumnFamily(new ColumnFamilyDescriptor(
+				(timerServiceName + "-by-key-group").getBytes(ConfigConstants.DEFAULT_CHARSET), columnOptions));
+			timersColumnFamilies.add(timersByKeyGroup);
+
+			return new RocksDBEventTimeTimerStore<>(
+				timersDb, timersByTime, timersByKeyGroup, writeOptions, totalKeyGroups, localKeyGroupRange);
+		} catch (IOException | RocksDBException e) {
+			throw new FlinkRuntimeException("Error while creating the timer store " + timerServiceName + " in RocksDB.", e);
+		}
+	}
+
 	private void cleanInstanceBasePath() {
 		LOG.info("Deleting existing instance base directory {}.", instanceBasePath);
 
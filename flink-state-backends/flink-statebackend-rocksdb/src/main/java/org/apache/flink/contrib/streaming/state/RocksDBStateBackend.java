@@ -109,6 +109,9 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	/** This determines if incremental checkpointing is enabled. */
 	private final TernaryBoolean enableIncrementalCheckpointing;
 
+	/** This determines if the event time timers are kept in RocksDB instead of on the heap. */
+	private boolean eventTimeTimersInRocksDB;
+
 	// -- runtime values, set on TaskManager when initializing / using the backend
 
 	/** Base paths for RocksDB directory, as initialized. */
@@ -278,6 +281,7 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		// copy remaining settings
 		this.predefinedOptions = original.predefinedOptions;
 		this.optionsFactory = original.optionsFactory;
+		this.eventTimeTimersInRocksDB = original.eventTimeTimersInRocksDB;
 	}
 
 	// ------------------------------------------------------------------------
@@ -422,7 +426,8 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 				keyGroupRange,
 				env.getExecutionConfig(),
 				isIncrementalCheckpointsEnabled(),
-				localRecoveryConfig);
+				localRecoveryConfig,
+				eventTimeTimersInRocksDB);
 	}
 
 	@Override
@@ -553,6 +558,25 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		return enableIncrementalCheckpointing.getOrDefault(CheckpointingOptions.INCREMENTAL_CHECKPOINTS.defaultValue());
 	}
 
+	/**
+	 * Sets whether the event time timers of keyed operators are kept in RocksDB instead of on the
+	 * Java heap. This is useful for operators that register timers for many keys, as the window
+	 * operators inside of iterations do for every key in every iteration context. The timers are
+	 * still checkpointed synchronously, as part of the raw keyed state of the operator.
+	 *
+	 * @param eventTimeTimersInRocksDB True to keep the event time timers in RocksDB.
+	 */
+	public void setEventTimeTimersInRocksDB(boolean eventTimeTimersInRocksDB) {
+		this.eventTimeTimersInRocksDB = eventTimeTimersInRocksDB;
+	}
+
+	/**
+	 * Gets whether the event time timers of keyed operators are kept in RocksDB.
+	 */
+	public boolean isEventTimeTimersInRocksDB() {
+		return eventTimeTimersInRocksDB;
+	}
+
 	// ------------------------------------------------------------------------
 	//  Parametrize with RocksDB Options
 	// ------------------------------------------------------------------------
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.streaming.api.operators.HeapEventTimeTimerStore;
+import org.apache.flink.streaming.api.operators.HeapInternalTimerService;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerServiceSerializationProxy;
+import org.apache.flink.streaming.api.operators.InternalTimersSnapshot;
+import org.apache.flink.streaming.api.operators.InternalTimersSnapshotReaderWriters;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.runtime.tasks.TestProcessingTimeService;
+import org.apache.flink.util.IOUtils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link RocksDBEventTimeTimerStore}, through the {@link HeapInternalTimerService}
+ * that uses it for its event time timers.
+ */
+public class RocksDBEventTimeTimerStoreTest {
+
+	private static final int MAX_PARALLELISM = 10;
+
+	private static final KeyGroupRange KEY_GROUP_RANGE = new KeyGroupRange(0, MAX_PARALLELISM - 1);
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final List<RocksDBKeyedStateBackend<Integer>> backends = new ArrayList<>();
+
+	@After
+	public void disposeBackends() {
+		for (RocksDBKeyedStateBackend<Integer> backend : backends) {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+		backends.clear();
+	}
+
+	/**
+	 * Verify that timers with the same key, namespace and timestamp in different
+	 * contexts are kept and fired separately.
+	 */
+	@Test
+	public void testEventTimeTimersArePartitionedByContext() throws Exception {
+		RecordingTriggerable fired = new RecordingTriggerable();
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService = createTimerService(fired, keyContext);
+
+		List<Long> context1 = Collections.singletonList(1L);
+		List<Long> context2 = Collections.singletonList(2L);
+
+		keyContext.setCurrentKey(7);
+		timerService.registerEventTimeTimer("hello", context1, 10);
+		timerService.registerEventTimeTimer("hello", context2, 10);
+		timerService.registerEventTimeTimer("hello", context2, 20);
+		// contained already
+		timerService.registerEventTimeTimer("hello", context2, 20);
+
+		assertEquals(3, timerService.numEventTimeTimers());
+		assertEquals(3, timerService.numEventTimeTimers("hello"));
+		assertEquals(2, timerService.numEventTimeTimerContexts());
+
+		timerService.deleteEventTimeTimer("hello", context2, 20);
+		timerService.advanceWatermark(context1, 20);
+
+		assertEquals(Collections.singletonList(new InternalTimer<>(context1, 10, 7, "hello")), fired.timers);
+		assertEquals(20, timerService.currentWatermark(context1));
+		assertEquals(Long.MIN_VALUE, timerService.currentWatermark(context2));
+
+		timerService.advanceWatermark(context2, 10);
+
+		assertEquals(2, fired.timers.size());
+		assertEquals(new InternalTimer<>(context2, 10, 7, "hello"), fired.timers.get(1));
+		assertEquals(0, timerService.numEventTimeTimers());
+		assertEquals(0, timerService.numEventTimeTimerContexts());
+	}
+
+	/**
+	 * Verify that the timers of a context fire in the order of their timestamps, also when the
+	 * timestamps are negative.
+	 */
+	@Test
+	public void testTimersFireInOrderOfTimestamps() throws Exception {
+		RecordingTriggerable fired = new RecordingTriggerable();
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService = createTimerService(fired, keyContext);
+
+		List<Long> context = Arrays.asList(1L, 2L);
+		long[] timestamps = {300, -5, 20, Long.MIN_VALUE + 1, 0, 256};
+		for (int i = 0; i < timestamps.length; i++) {
+			keyContext.setCurrentKey(i);
+			timerService.registerEventTimeTimer("hello", context, timestamps[i]);
+		}
+
+		timerService.advanceWatermark(context, 256);
+
+		List<Long> firedTimestamps = new ArrayList<>();
+		for (InternalTimer<Integer, String> timer : fired.timers) {
+			firedTimestamps.add(timer.getTimestamp());
+		}
+		assertEquals(Arrays.asList(Long.MIN_VALUE + 1, -5L, 0L, 20L, 256L), firedTimestamps);
+		assertEquals(1, timerService.numEventTimeTimers());
+	}
+
+	/**
+	 * Verify that the final watermark of an iteration context fires its timers and
+	 * then drops the context, while the context outside of any iteration is kept.
+	 */
+	@Test
+	public void testFinishedContextIsRetired() throws Exception {
+		RecordingTriggerable fired = new RecordingTriggerable();
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService = createTimerService(fired, keyContext);
+
+		List<Long> context = Collections.singletonList(1L);
+		keyContext.setCurrentKey(7);
+		timerService.registerEventTimeTimer("hello", context, 10);
+		timerService.registerEventTimeTimer("ciao", context, 20);
+		timerService.registerEventTimeTimer("hello", new LinkedList<Long>(), 10);
+
+		timerService.advanceWatermark(context, 10);
+		timerService.advanceWatermark(new LinkedList<Long>(), Long.MAX_VALUE);
+		assertEquals(2, timerService.numTimeContexts());
+
+		timerService.advanceWatermark(context, Long.MAX_VALUE);
+
+		assertEquals(3, fired.timers.size());
+		assertEquals(new InternalTimer<>(context, 20, 7, "ciao"), fired.timers.get(2));
+		assertEquals(0, timerService.numEventTimeTimers());
+		assertEquals(0, timerService.numEventTimeTimerContexts());
+		assertEquals(1, timerService.numTimeContexts());
+		assertEquals(Long.MAX_VALUE, timerService.currentWatermark(new LinkedList<Long>()));
+	}
+
+	/**
+	 * Verify that the timers are assigned to the key-groups of their keys, which the snapshots
+	 * of the key-groups are taken from.
+	 */
+	@Test
+	public void testTimerAssignmentToKeyGroups() throws Exception {
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService =
+			createTimerService(new RecordingTriggerable(), keyContext);
+
+		List<Long> context = Collections.singletonList(1L);
+		for (int key = 0; key < 100; key++) {
+			keyContext.setCurrentKey(key);
+			timerService.registerEventTimeTimer("hello", context, key);
+		}
+
+		Set<InternalTimer<Integer, String>>[] timersPerKeyGroup = timerService.getEventTimeTimersPerKeyGroup();
+		int numTimers = 0;
+		for (int keyGroupIdx = 0; keyGroupIdx < MAX_PARALLELISM; keyGroupIdx++) {
+			if (timersPerKeyGroup[keyGroupIdx] == null) {
+				continue;
+			}
+			for (InternalTimer<Integer, String> timer : timersPerKeyGroup[keyGroupIdx]) {
+				assertEquals(keyGroupIdx, KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), MAX_PARALLELISM));
+				assertEquals(context, timer.getTimeContext());
+				assertEquals((long) timer.getKey(), timer.getTimestamp());
+				numTimers++;
+			}
+		}
+		assertEquals(100, numTimers);
+	}
+
+	/**
+	 * Verify that restored event time timers fire in the context they were registered in.
+	 */
+	@Test
+	public void testSnapshotAndRestoreKeepsContexts() throws Exception {
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService =
+			createTimerService(new RecordingTriggerable(), keyContext);
+
+		List<Long> context = Arrays.asList(1L, 2L);
+		keyContext.setCurrentKey(7);
+		timerService.registerEventTimeTimer("hello", context, 10);
+		timerService.registerEventTimeTimer("hello", new LinkedList<Long>(), 20);
+
+		Map<Integer, byte[]> snapshot = new HashMap<>();
+		for (Integer keyGroupIndex : KEY_GROUP_RANGE) {
+			try (ByteArrayOutputStream outStream = new ByteArrayOutputStream()) {
+				InternalTimersSnapshotReaderWriters
+					.getWriterForVersion(InternalTimerServiceSerializationProxy.VERSION, timerService.snapshotTimersForKeyGroup(keyGroupIndex))
+					.writeTimersSnapshot(new DataOutputViewStreamWrapper(outStream));
+				snapshot.put(keyGroupIndex, outStream.toByteArray());
+			}
+		}
+
+		RecordingTriggerable fired = new RecordingTriggerable();
+		HeapInternalTimerService<Integer, String> restored = createTimerService(new TestKeyContext());
+		for (Integer keyGroupIndex : KEY_GROUP_RANGE) {
+			try (ByteArrayInputStream inputStream = new ByteArrayInputStream(snapshot.get(keyGroupIndex))) {
+				InternalTimersSnapshot<?, ?> restoredTimersSnapshot =
+					InternalTimersSnapshotReaderWriters
+						.getReaderForVersion(InternalTimerServiceSerializationProxy.VERSION, getClass().getClassLoader())
+						.readTimersSnapshot(new DataInputViewStreamWrapper(inputStream));
+				restored.restoreTimersForKeyGroup(restoredTimersSnapshot, keyGroupIndex);
+			}
+		}
+		restored.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, fired);
+
+		assertEquals(2, restored.numEventTimeTimers());
+		assertEquals(2, restored.numEventTimeTimerContexts());
+
+		restored.advanceWatermark(new LinkedList<Long>(), 10);
+		assertTrue(fired.timers.isEmpty());
+
+		restored.advanceWatermark(context, 10);
+		assertEquals(Collections.singletonList(new InternalTimer<>(context, 10, 7, "hello")), fired.timers);
+
+		restored.advanceWatermark(new LinkedList<Long>(), 20);
+		assertEquals(new InternalTimer<>(new LinkedList<Long>(), 20, 7, "hello"), fired.timers.get(1));
+		assertEquals(0, restored.numEventTimeTimers());
+	}
+
+	@Test
+	public void testTimersAreOnTheHeapUnlessEnabled() throws Exception {
+		assertTrue(createBackend(false).createEventTimeTimerStore("timers", MAX_PARALLELISM, KEY_GROUP_RANGE)
+			instanceof HeapEventTimeTimerStore);
+		assertTrue(createBackend(true).createEventTimeTimerStore("timers", MAX_PARALLELISM, KEY_GROUP_RANGE)
+			instanceof RocksDBEventTimeTimerStore);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private HeapInternalTimerService<Integer, String> createTimerService(
+			Triggerable<Integer, String> triggerable,
+			KeyContext keyContext) throws Exception {
+
+		HeapInternalTimerService<Integer, String> service = createTimerService(keyContext);
+		service.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+		return service;
+	}
+
+	private HeapInternalTimerService<Integer, String> createTimerService(KeyContext keyContext) throws Exception {
+		RocksDBKeyedStateBackend<Integer> backend = createBackend(true);
+		return new HeapInternalTimerService<>(
+			MAX_PARALLELISM,
+			KEY_GROUP_RANGE,
+			keyContext,
+			new TestProcessingTimeService(),
+			backend.<String>createEventTimeTimerStore("timers", MAX_PARALLELISM, KEY_GROUP_RANGE));
+	}
+
+	private RocksDBKeyedStateBackend<Integer> createBackend(boolean eventTimeTimersInRocksDB) throws Exception {
+		RocksDBStateBackend stateBackend = new RocksDBStateBackend(new FsStateBackend(tempFolder.newFolder().toURI()));
+		stateBackend.setDbStoragePath(tempFolder.newFolder().getAbsolutePath());
+		stateBackend.setEventTimeTimersInRocksDB(eventTimeTimersInRocksDB);
+
+		RocksDBKeyedStateBackend<Integer> backend = (RocksDBKeyedStateBackend<Integer>) stateBackend.createKeyedStateBackend(
+			new DummyEnvironment("TestTask", 1, 0),
+			new JobID(),
+			"Test",
+			IntSerializer.INSTANCE,
+			MAX_PARALLELISM,
+			KEY_GROUP_RANGE,
+			mock(TaskKvStateRegistry.class));
+		backend.restore(null);
+		backends.add(backend);
+		return backend;
+	}
+
+	private static class RecordingTriggerable implements Triggerable<Integer, String> {
+
+		private final List<InternalTimer<Integer, String>> timers = new ArrayList<>();
+
+		@Override
+		public void onEventTime(InternalTimer<Integer, String> timer) {
+			timers.add(timer);
+		}
+
+		@Override
+		public void onProcessingTime(InternalTimer<Integer, String> timer) {
+		}
+	}
+
+	private static class TestKeyContext implements KeyContext {
+
+		private Object key;
+
+		@Override
+		public void setCurrentKey(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public Object getCurrentKey() {
+			return key;
+		}
+	}
+}
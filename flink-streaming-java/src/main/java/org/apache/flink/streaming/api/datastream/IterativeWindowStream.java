@@ -2,7 +2,8 @@ package org.apache.flink.streaming.api.datastream;
 
 
 import org.apache.flink.annotation.Public;
-import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.aggregators.AggregatorRegistry;
+import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
@@ -11,32 +12,48 @@ import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.EitherTypeInfo;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
-import org.apache.flink.streaming.api.collector.selector.OutputSelector;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.windowing.LoopContext;
 import org.apache.flink.streaming.api.functions.windowing.WindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.WindowLoopFunction;
+import org.apache.flink.streaming.api.operators.IterationProgressCoordinator;
 import org.apache.flink.streaming.api.transformations.CoFeedbackTransformation;
+import org.apache.flink.streaming.api.transformations.OneInputTransformation;
+import org.apache.flink.streaming.api.transformations.PartitionTransformation;
+import org.apache.flink.streaming.api.transformations.StreamTransformation;
 import org.apache.flink.streaming.api.transformations.TwoInputTransformation;
+import org.apache.flink.streaming.api.transformations.UnionTransformation;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.PurgingTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
 import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.EvictingWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.FeedbackCombiner;
+import org.apache.flink.streaming.runtime.operators.windowing.LoopAggregators;
+import org.apache.flink.streaming.runtime.operators.windowing.LoopSolutions;
+import org.apache.flink.streaming.runtime.operators.windowing.LoopStates;
 import org.apache.flink.streaming.runtime.operators.windowing.TwoWindowTerminateOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.WindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableWindowFunction;
+import org.apache.flink.streaming.runtime.partitioner.BroadcastPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.GlobalPartitioner;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
 import org.apache.flink.types.Either;
 import org.apache.flink.util.Collector;
 import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 
@@ -55,11 +72,73 @@ import java.util.Collections;
 @Public
 public class IterativeWindowStream<IN, IN_W extends Window, F, K, R, S> {
 	private DataStream<S> outStream;
+	private LoopAggregators aggregators;
+	private LoopSolutions solutions;
+	private FeedbackCombiner<K, R> feedbackCombiner;
+	private final LoopStates<K> states = new LoopStates<>();
+	private long slack;
+	private StreamTransformation progressTransformation;
 	public IterativeWindowStream(WindowedStream<IN, K, IN_W> input, WindowLoopFunction<IN, F, S, R, K, IN_W> coWinTerm, 
 		StreamIterationTermination terminationStrategy, 
 		FeedbackBuilder<R, K> feedbackBuilder, 
 		TypeInformation<R> feedbackType, long waitTime) throws Exception {
-		
+		this(input, coWinTerm, terminationStrategy, null, feedbackBuilder, feedbackType, waitTime);
+	}
+
+	public IterativeWindowStream(WindowedStream<IN, K, IN_W> input, WindowLoopFunction<IN, F, S, R, K, IN_W> coWinTerm,
+		StreamIterationTermination terminationStrategy,
+		AggregatorRegistry aggregators,
+		FeedbackBuilder<R, K> feedbackBuilder,
+		TypeInformation<R> feedbackType, long waitTime) throws Exception {
+		this(input, coWinTerm, terminationStrategy, aggregators, false, 0L, feedbackBuilder, feedbackType, waitTime);
+	}
+
+	/**
+	 * Creates the loop. In asynchronous mode, the step function is applied to every feedback record
+	 * as soon as it arrives instead of once per key and superstep, so feedback records do not wait
+	 * for the watermark that completes their superstep. Watermarks still travel around the loop and
+	 * the termination strategy alone decides when a context is done.
+	 *
+	 * <p>In synchronous mode, a slack larger than zero lets the windows of a context fire up to that
+	 * many supersteps ahead of the slowest iteration head (stale synchronous parallel). Feedback
+	 * records that arrive for a superstep whose window already fired are passed to the step
+	 * function on arrival.
+	 */
+	public IterativeWindowStream(WindowedStream<IN, K, IN_W> input, WindowLoopFunction<IN, F, S, R, K, IN_W> coWinTerm,
+		StreamIterationTermination terminationStrategy,
+		AggregatorRegistry aggregators,
+		boolean asynchronous,
+		long slack,
+		FeedbackBuilder<R, K> feedbackBuilder,
+		TypeInformation<R> feedbackType, long waitTime) throws Exception {
+		this(input, coWinTerm, terminationStrategy, aggregators, asynchronous, slack, null, null, feedbackBuilder, feedbackType, waitTime);
+	}
+
+	/**
+	 * Creates the loop. If a solution type is given, the loop is incremental: the solution of every
+	 * key that the loop functions keep through the {@link LoopContext} carries over from one context
+	 * to the next, and the entry function is only applied to the keys whose input changed.
+	 *
+	 * <p>If a feedback combiner is given, the feedback records that the loop functions emit for the
+	 * same context, superstep and key are combined before they are sent over the feedback edge. This
+	 * requires the feedback builder to only key the feedback, and a synchronous iteration.
+	 */
+	public IterativeWindowStream(WindowedStream<IN, K, IN_W> input, WindowLoopFunction<IN, F, S, R, K, IN_W> coWinTerm,
+		StreamIterationTermination terminationStrategy,
+		AggregatorRegistry aggregators,
+		boolean asynchronous,
+		long slack,
+		TypeInformation<?> solutionType,
+		ReduceFunction<R> feedbackCombiner,
+		FeedbackBuilder<R, K> feedbackBuilder,
+		TypeInformation<R> feedbackType, long waitTime) throws Exception {
+
+		if (aggregators != null) {
+			this.aggregators = new LoopAggregators(aggregators);
+		}
+		if (solutionType != null) {
+			this.solutions = new LoopSolutions<>(solutionType.createSerializer(input.getExecutionEnvironment().getConfig()));
+		}
 		WindowedStream<IN, K, IN_W> windowedStream1 = input;
 		
 		// create feedback edge
@@ -68,8 +147,36 @@ public class IterativeWindowStream<IN, IN_W extends Window, F, K, R, S> {
 
 		// create feedback source
 		KeyedStream<R, K> feedbackSourceStream = feedbackBuilder.feedback(new DataStream<>(windowedStream1.getExecutionEnvironment(), coFeedbackTransformation));
+		boolean feedbackOnlyKeyed = feedbackSourceStream.getTransformation() instanceof PartitionTransformation
+			&& ((PartitionTransformation<R>) feedbackSourceStream.getTransformation()).getInput() == coFeedbackTransformation;
+		if (feedbackCombiner != null) {
+			Preconditions.checkArgument(!asynchronous, "The feedback of asynchronous iterations cannot be combined.");
+			// the records are combined by the key that the heads partition them by
+			Preconditions.checkArgument(feedbackOnlyKeyed, "A feedback combiner requires a feedback builder that only keys the feedback.");
+			this.feedbackCombiner = new FeedbackCombiner<>(
+				windowedStream1.getExecutionEnvironment().clean(feedbackCombiner),
+				feedbackSourceStream.getKeySelector(),
+				feedbackType.createSerializer(windowedStream1.getExecutionEnvironment().getConfig()));
+		}
+		if (windowedStream1.getExecutionEnvironment().isIterationProgressCoordinated() && feedbackOnlyKeyed) {
+			// the heads send all their watermarks to a single coordinator, which is only possible
+			// if the heads are directly connected to the loop operator
+			progressTransformation = new OneInputTransformation<>(
+				new PartitionTransformation<>(coFeedbackTransformation, new GlobalPartitioner<>()),
+				"IterationProgressCoordinator",
+				new IterationProgressCoordinator<>(),
+				feedbackType,
+				1);
+		}
 		WindowAssigner assigner = TumblingEventTimeWindows.of(Time.milliseconds(1));
 		WindowedStream<F, K, TimeWindow> windowedStream2 = new WindowedStream<>(feedbackSourceStream, assigner);
+		if (asynchronous) {
+			windowedStream2.trigger(new FeedbackRecordTrigger());
+		} else if (slack > 0) {
+			// windows that fired ahead of the slowest head still accept its records
+			windowedStream2.allowedLateness(Time.milliseconds(slack)).trigger(PurgingTrigger.of(EventTimeTrigger.create()));
+		}
+		this.slack = asynchronous ? 0L : slack;
 
 		// create feedback sink
 		Tuple2<DataStream<R>, DataStream<S>> streams = applyCoWinTerm(coWinTerm, windowedStream1, windowedStream2);
@@ -86,69 +193,56 @@ public class IterativeWindowStream<IN, IN_W extends Window, F, K, R, S> {
 		TypeInformation<R> intermediateFeedbackTypeInfo = TypeExtractor.createTypeInfo(WindowLoopFunction.class,
 			coWinTerm.getClass(), 1, windowedStream1.getInputType(), windowedStream2.getInputType());
 		
-		TwoInputTransformation<IN, F, Either<R, S>> transformation = getTransformation(
+		// the loop operator emits the feedback to a side output, so no operators are needed to split it up
+		OutputTag<R> feedbackTag = new OutputTag<>("loop-feedback", intermediateFeedbackTypeInfo);
+		TwoInputTransformation<IN, F, S> transformation = getTransformation(
 			coWinTerm,
 			windowedStream1,
 			windowedStream2,
 			outTypeInfo,
-			intermediateFeedbackTypeInfo);
+			intermediateFeedbackTypeInfo,
+			feedbackTag);
 		// TODO check if this is necessary
 		transformation.setStateKeySelectors(windowedStream1.getInput().getKeySelector(), windowedStream2.getInput().getKeySelector());
 		transformation.setStateKeyType(windowedStream1.getInput().getKeyType());
 
-		DataStream<Either<R, S>> combinedOutputStream = new SingleOutputStreamOperator<Either<R, S>>(windowedStream1.getExecutionEnvironment(), transformation);
-
-		SplitStream<Either<R, S>> splitStream = combinedOutputStream.split(new OutputSelector<Either<R, S>>() {
-			@Override
-			public Iterable<String> select(Either<R, S> value) {
-				return value.isLeft() ? Collections.singletonList("FEEDBACK") : Collections.singletonList("FORWARD");
-			}
-		});
-		DataStream<R> feedbackStream = splitStream.select("FEEDBACK").map(new MapFunction<Either<R, S>, R>() {
-			@Override
-			public R map(Either<R, S> value) throws Exception {
-				return value.left();
-			}
-		});
-		DataStream<S> forwardStream = splitStream.select("FORWARD").map(new MapFunction<Either<R, S>, S>() {
-			@Override
-			public S map(Either<R, S> value) throws Exception {
-				return value.right();
-			}
-		}); //
-
-		feedbackStream.getTransformation().setParallelism(transformation.getParallelism());
-		feedbackStream.getTransformation().setOutputType(intermediateFeedbackTypeInfo);
-		forwardStream.getTransformation().setParallelism(transformation.getParallelism());
-		forwardStream.getTransformation().setOutputType(outTypeInfo);
-
-		return new Tuple2(feedbackStream, forwardStream);
+		SingleOutputStreamOperator<S> forwardStream = new SingleOutputStreamOperator<>(windowedStream1.getExecutionEnvironment(), transformation);
+		DataStream<R> feedbackStream = forwardStream.getSideOutput(feedbackTag);
+
+		return new Tuple2<>(feedbackStream, forwardStream);
 	}
 
 	public DataStream<S> loop() throws Exception {
 		return outStream;
 	}
 
-	public TwoInputTransformation<IN, F, Either<R, S>> getTransformation(
+	public TwoInputTransformation<IN, F, S> getTransformation(
 		final WindowLoopFunction<IN, F, S, R, K, IN_W> coWinTerm,
 		WindowedStream<IN, K, IN_W> windowedStream1,
 		WindowedStream<F, K, TimeWindow> windowedStream2,
 		TypeInformation<S> outTypeInfo,
-		TypeInformation<R> intermediateFeedbackTypeInfo) throws Exception {
+		TypeInformation<R> intermediateFeedbackTypeInfo,
+		OutputTag<R> feedbackTag) throws Exception {
 
 		TypeInformation<Either<R, S>> eitherTypeInfo = new EitherTypeInfo<>(intermediateFeedbackTypeInfo, outTypeInfo);
 		
 		Tuple2<String, WindowOperator> stepDiscretizer =
-			getWindowOperator(windowedStream2, new WrappedWindowFunction2<F, Either<R, S>, K, TimeWindow>(coWinTerm), eitherTypeInfo);
+			getWindowOperator(windowedStream2, new WrappedWindowFunction2<F, Either<R, S>, K, TimeWindow>(coWinTerm, aggregators, solutions, states), eitherTypeInfo);
 
 		String opName = "TwoWindowTerminate(" + stepDiscretizer.f0 + ")";
-		TwoWindowTerminateOperator combinedOperator = new TwoWindowTerminateOperator(windowedStream1.getInput().getKeySelector(), stepDiscretizer.f1, coWinTerm);
+		TwoWindowTerminateOperator combinedOperator = new TwoWindowTerminateOperator(windowedStream1.getInput().getKeySelector(), stepDiscretizer.f1, coWinTerm, feedbackTag, aggregators, slack, solutions, feedbackCombiner, states);
+		StreamTransformation<F> feedbackInput = windowedStream2.getInput().getTransformation();
+		if (progressTransformation != null) {
+			feedbackInput = new UnionTransformation<F>(Arrays.asList(
+				feedbackInput,
+				new PartitionTransformation<F>(progressTransformation, new BroadcastPartitioner<>())));
+		}
 		return new TwoInputTransformation<>(
 			windowedStream1.getInput().getTransformation(),
-			windowedStream2.getInput().getTransformation(),
+			feedbackInput,
 			opName,
 			combinedOperator,
-			eitherTypeInfo,
+			outTypeInfo,
 			windowedStream1.getInput().getParallelism()
 		);
 	}
@@ -219,13 +313,56 @@ public class IterativeWindowStream<IN, IN_W extends Window, F, K, R, S> {
 	private static class WrappedWindowFunction2<IN, OUT, K, W extends TimeWindow> implements WindowFunction<IN, OUT, K, W> {
 
 		WindowLoopFunction coWinTerm;
+		LoopAggregators aggregators;
+		LoopSolutions<K, ?, ?> solutions;
+		LoopStates<K> states;
 
-		public WrappedWindowFunction2(WindowLoopFunction coWinTerm) {
+		public WrappedWindowFunction2(WindowLoopFunction coWinTerm, LoopAggregators aggregators, LoopSolutions<K, ?, ?> solutions,
+									LoopStates<K> states) {
 			this.coWinTerm = coWinTerm;
+			this.aggregators = aggregators;
+			this.solutions = solutions;
+			this.states = states;
 		}
 
 		public void apply(K key, W window, Iterable<IN> input, Collector<OUT> out) throws Exception {
-			coWinTerm.step(new LoopContext(window.getTimeContext(), window.getEnd(), key), input, out);
+			LoopContext<K> loopContext = aggregators == null ?
+				new LoopContext<>(window.getTimeContext(), window.getEnd(), key, solutions, states) :
+				aggregators.createLoopContext(window.getTimeContext(), window.getEnd(), key, solutions, states);
+			coWinTerm.step(loopContext, input, out);
+		}
+	}
+
+	/**
+	 * Fires the feedback window of a superstep for each record, which passes every feedback record
+	 * to the step function right away.
+	 */
+	private static class FeedbackRecordTrigger extends Trigger<Object, TimeWindow> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public TriggerResult onElement(Object element, List<Long> timeContext, long timestamp, TimeWindow window, TriggerContext ctx) {
+			return TriggerResult.FIRE_AND_PURGE;
+		}
+
+		@Override
+		public TriggerResult onEventTime(List<Long> timeContext, long time, TimeWindow window, TriggerContext ctx) {
+			return TriggerResult.CONTINUE;
+		}
+
+		@Override
+		public TriggerResult onProcessingTime(long time, TimeWindow window, TriggerContext ctx) {
+			return TriggerResult.CONTINUE;
+		}
+
+		@Override
+		public void clear(TimeWindow window, TriggerContext ctx) {
+		}
+
+		@Override
+		public String toString() {
+			return "FeedbackRecordTrigger()";
 		}
 	}
 }
@@ -21,6 +21,9 @@ package org.apache.flink.streaming.api.datastream;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.Public;
 import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.aggregators.Aggregator;
+import org.apache.flink.api.common.aggregators.AggregatorRegistry;
+import org.apache.flink.api.common.aggregators.ConvergenceCriterion;
 import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.functions.Function;
@@ -67,9 +70,11 @@ import org.apache.flink.streaming.runtime.operators.windowing.functions.Internal
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.progress.ConvergenceIterationTermination;
 import org.apache.flink.streaming.runtime.tasks.progress.FixpointIterationTermination;
 import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
 import org.apache.flink.streaming.runtime.tasks.progress.StructuredIterationTermination;
+import org.apache.flink.types.Value;
 import org.apache.flink.util.Collector;
 
 import org.apache.flink.util.OutputTag;
@@ -1565,6 +1570,34 @@ public class WindowedStream<T, K, W extends Window> {
 			feedbackType);
 	}
 
+	/**
+	 * Bulk synchronous iteration that terminates as soon as the combined value of the given
+	 * aggregator satisfies the convergence criterion, e.g. when the sum of the deltas of a superstep
+	 * drops below a threshold. The loop functions update the aggregator through
+	 * {@link LoopContext#getIterationAggregator(String)}.
+	 *
+	 * @param aggregatorName The name under which the aggregator is registered.
+	 * @param aggregator The aggregator that is combined over all parallel instances per superstep.
+	 * @param convergenceCheck Decides on the combined value whether the iteration has converged.
+	 * @return The output DataStream.
+	 */
+	public <OUT,F,R,V extends Value> DataStream<OUT> iterateSyncUntilConverged(
+		String aggregatorName,
+		Aggregator<V> aggregator,
+		ConvergenceCriterion<V> convergenceCheck,
+		WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+		FeedbackBuilder<R, K> feedbackBuilder,
+		TypeInformation<R> feedbackType) throws Exception {
+		AggregatorRegistry aggregators = new AggregatorRegistry();
+		aggregators.registerAggregationConvergenceCriterion(aggregatorName, aggregator, convergenceCheck);
+		return iterateSync(
+			coWinTermFun,
+			new ConvergenceIterationTermination(aggregatorName, convergenceCheck),
+			aggregators,
+			feedbackBuilder,
+			feedbackType);
+	}
+
 	/**
 	 * Bulk synchronous iteration
 	 *
@@ -1587,6 +1620,124 @@ public class WindowedStream<T, K, W extends Window> {
 								StreamIterationTermination terminationStrategy, 
 								FeedbackBuilder<R, K> feedbackBuilder, 
 								TypeInformation<R> feedbackType) throws Exception {
+		return iterateSync(coWinTermFun, terminationStrategy, null, feedbackBuilder, feedbackType);
+	}
+
+	/**
+	 * Bulk synchronous iteration with aggregators. The aggregators are available to the loop
+	 * functions per context through {@link LoopContext#getIterationAggregator(String)}, their values
+	 * are combined over all parallel instances once per superstep.
+	 *
+	 * @see #iterateSync(WindowLoopFunction, StreamIterationTermination, FeedbackBuilder, TypeInformation)
+	 */
+	public <OUT,F,R> DataStream<OUT> iterateSync(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								@Nullable AggregatorRegistry aggregators,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								TypeInformation<R> feedbackType) throws Exception {
+		return iterate(coWinTermFun, terminationStrategy, aggregators, false, 0L, null, null, feedbackBuilder, feedbackType);
+	}
+
+	/**
+	 * Stale synchronous iteration. Like {@link #iterateSync(WindowLoopFunction, StreamIterationTermination,
+	 * FeedbackBuilder, TypeInformation)}, but the feedback of a key is processed up to {@code slack}
+	 * supersteps ahead of the slowest parallel instance of the loop, so that stragglers do not stall
+	 * the whole iteration. Feedback records of a superstep that was already processed for their key
+	 * are passed to the step function as they arrive.
+	 *
+	 * <p>A slack of zero is the same as the bulk synchronous iteration.
+	 *
+	 * @param slack The number of supersteps that keys may run ahead of the slowest instance.
+	 * @see #iterateSync(WindowLoopFunction, StreamIterationTermination, FeedbackBuilder, TypeInformation)
+	 */
+	public <OUT,F,R> DataStream<OUT> iterateSync(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								long slack,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								TypeInformation<R> feedbackType) throws Exception {
+		checkArgument(slack >= 0, "The slack of an iteration cannot be negative.");
+		return iterate(coWinTermFun, terminationStrategy, null, false, slack, null, null, feedbackBuilder, feedbackType);
+	}
+
+	/**
+	 * Asynchronous iteration. Unlike {@link #iterateSync(WindowLoopFunction, StreamIterationTermination,
+	 * FeedbackBuilder, TypeInformation)}, feedback records are not collected per superstep: the step
+	 * function is called for every feedback record as soon as it arrives, with the number of hops of
+	 * the record as superstep of the {@link LoopContext}. Loop functions therefore keep their own
+	 * per-key state, and supersteps only matter to the termination strategy, which decides per
+	 * context when the iteration is over.
+	 *
+	 * <p>This suits algorithms that converge under asynchronous updates, such as label propagation
+	 * or connected components, and removes the latency of the superstep barriers.
+	 *
+	 * @see #iterateSync(WindowLoopFunction, StreamIterationTermination, FeedbackBuilder, TypeInformation)
+	 */
+	public <OUT,F,R> DataStream<OUT> iterateAsync(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								TypeInformation<R> feedbackType) throws Exception {
+		return iterate(coWinTermFun, terminationStrategy, null, true, 0L, null, null, feedbackBuilder, feedbackType);
+	}
+
+	/**
+	 * Bulk synchronous iteration with a feedback combiner. Like {@link #iterateSync(WindowLoopFunction,
+	 * StreamIterationTermination, FeedbackBuilder, TypeInformation)}, but the feedback records that the
+	 * loop functions emit for the same key in a superstep are combined with the given function before
+	 * they are sent over the feedback edge, so that the step function sees one record per key and
+	 * sending instance. This cuts the network traffic and window state of loops that send many
+	 * messages to the same key, such as PageRank.
+	 *
+	 * <p>The feedback builder may only key the feedback, since the records are combined by its key.
+	 *
+	 * @param feedbackCombiner Combines two feedback records for the same key and superstep.
+	 * @see #iterateSync(WindowLoopFunction, StreamIterationTermination, FeedbackBuilder, TypeInformation)
+	 */
+	public <OUT,F,R> DataStream<OUT> iterateSync(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								ReduceFunction<R> feedbackCombiner,
+								TypeInformation<R> feedbackType) throws Exception {
+		checkNotNull(feedbackCombiner, "The feedback combiner cannot be null.");
+		return iterate(coWinTermFun, terminationStrategy, null, false, 0L, null, feedbackCombiner, feedbackBuilder, feedbackType);
+	}
+
+	/**
+	 * Incremental synchronous iteration. Like {@link #iterateSync(WindowLoopFunction, StreamIterationTermination,
+	 * FeedbackBuilder, TypeInformation)}, but every key keeps a solution of the given type in managed
+	 * state that carries over from one window to the next: the loop functions read the solution of
+	 * the last converged window with {@link LoopContext#getPreviousSolution()} and store the new one
+	 * with {@link LoopContext#updateSolution(Object)}, which becomes visible to later windows once the
+	 * iteration of the window terminates.
+	 *
+	 * <p>The entry function is only called for the keys whose input differs from their input in the
+	 * previous window, keys without input in a window are passed to it with an empty input. All other
+	 * keys keep their solution without being activated, so that slowly changing inputs are not
+	 * recomputed from scratch. The inputs of a key are compared regardless of the order of their
+	 * records, using {@code equals} and {@code hashCode} of the input type, which therefore have to
+	 * compare the records by value. A window whose entry runs before the previous window terminated starts
+	 * from the solutions of the most recently terminated window.
+	 *
+	 * @param solutionType The type of the solution of a key.
+	 * @see #iterateSync(WindowLoopFunction, StreamIterationTermination, FeedbackBuilder, TypeInformation)
+	 */
+	public <OUT,F,R,V> DataStream<OUT> iterateSyncIncremental(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								TypeInformation<R> feedbackType,
+								TypeInformation<V> solutionType) throws Exception {
+		checkNotNull(solutionType, "The solution type of an incremental iteration cannot be null.");
+		return iterate(coWinTermFun, terminationStrategy, null, false, 0L, solutionType, null, feedbackBuilder, feedbackType);
+	}
+
+	private <OUT,F,R> DataStream<OUT> iterate(WindowLoopFunction<T,F,OUT,R,K,W> coWinTermFun,
+								StreamIterationTermination terminationStrategy,
+								@Nullable AggregatorRegistry aggregators,
+								boolean asynchronous,
+								long slack,
+								@Nullable TypeInformation<?> solutionType,
+								@Nullable ReduceFunction<R> feedbackCombiner,
+								FeedbackBuilder<R, K> feedbackBuilder,
+								TypeInformation<R> feedbackType) throws Exception {
 
 
 		//we pre-window to ensure outer window assigners operation on the right scope
@@ -1607,7 +1758,7 @@ public class WindowedStream<T, K, W extends Window> {
 				preWindowedStream.getKeySelector(), preWindowedStream.getKeyType()), getWindowAssigner());
 
 		IterativeWindowStream<T,W,F,K,R,OUT> iterativeStream = new IterativeWindowStream<>(
-			scopedWindowStream, coWinTermFun, terminationStrategy, feedbackBuilder, feedbackType, 15000);
+			scopedWindowStream, coWinTermFun, terminationStrategy, aggregators, asynchronous, slack, solutionType, feedbackCombiner, feedbackBuilder, feedbackType, 15000);
 
 		DataStream<OUT> outStream = iterativeStream.loop();
 
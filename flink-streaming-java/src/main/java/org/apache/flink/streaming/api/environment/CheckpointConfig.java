@@ -211,7 +211,7 @@ public class CheckpointConfig implements java.io.Serializable {
 	 *
 	 * @return True, if checkpointing is forced, false otherwise.
 	 *
-	 * @deprecated This will be removed once iterations properly participate in checkpointing.
+	 * @deprecated Iterations participate in checkpointing, the flag has no effect anymore.
 	 */
 	@Deprecated
 	@PublicEvolving
@@ -224,7 +224,7 @@ public class CheckpointConfig implements java.io.Serializable {
 	 *
 	 * @param forceCheckpointing The flag to force checkpointing.
 	 *
-	 * @deprecated This will be removed once iterations properly participate in checkpointing.
+	 * @deprecated Iterations participate in checkpointing, the flag has no effect anymore.
 	 */
 	@Deprecated
 	@PublicEvolving
@@ -76,6 +76,7 @@ import org.apache.flink.streaming.api.graph.StreamGraphGenerator;
 import org.apache.flink.streaming.api.operators.StoppableStreamSource;
 import org.apache.flink.streaming.api.operators.StreamSource;
 import org.apache.flink.streaming.api.transformations.StreamTransformation;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
 import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.SplittableIterator;
 
@@ -136,6 +137,16 @@ public abstract class StreamExecutionEnvironment {
 
 	protected boolean isChainingEnabled = true;
 
+	private int iterationFeedbackCapacity = FeedbackChannel.DEFAULT_CAPACITY;
+
+	private int iterationFeedbackBatchSize = 1;
+
+	private long iterationFeedbackBatchTimeout = DEFAULT_NETWORK_BUFFER_TIMEOUT;
+
+	private boolean isIterationFeedbackSerialized;
+
+	private boolean isIterationProgressCoordinated;
+
 	/** The state backend used for storing k/v state and state snapshots. */
 	private StateBackend defaultStateBackend;
 
@@ -260,6 +271,133 @@ public abstract class StreamExecutionEnvironment {
 		return this.bufferTimeout;
 	}
 
+	/**
+	 * Sets the number of elements that the feedback edge of an iteration keeps in memory per
+	 * parallel instance. If the iteration head falls behind, elements beyond this capacity are
+	 * spilled to disk instead of blocking the iteration tail.
+	 *
+	 * @param capacity The number of feedback elements to keep in memory.
+	 */
+	@PublicEvolving
+	public StreamExecutionEnvironment setIterationFeedbackCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The feedback capacity must be positive.");
+		}
+
+		this.iterationFeedbackCapacity = capacity;
+		return this;
+	}
+
+	/**
+	 * Gets the number of elements that the feedback edge of an iteration keeps in memory per
+	 * parallel instance, see {@link #setIterationFeedbackCapacity(int)}.
+	 *
+	 * @return The number of feedback elements to keep in memory.
+	 */
+	@PublicEvolving
+	public int getIterationFeedbackCapacity() {
+		return this.iterationFeedbackCapacity;
+	}
+
+	/**
+	 * Enables batching on the feedback edges of iterations. The iteration tail collects up to
+	 * {@code batchSize} feedback elements and hands them to the iteration head at once, which
+	 * amortizes the synchronization between the two over the batch. A batch is handed over when
+	 * it is full, after every watermark, and at the latest after {@code timeoutMillis}
+	 * milliseconds.
+	 *
+	 * @param batchSize The maximum number of elements in a batch, 1 disables batching.
+	 * @param timeoutMillis The maximum time elements wait in an incomplete batch, or -1 to only
+	 *                      hand over full batches and batches ending with a watermark.
+	 */
+	@PublicEvolving
+	public StreamExecutionEnvironment setIterationFeedbackBatching(int batchSize, long timeoutMillis) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("The feedback batch size must be positive.");
+		}
+		if (timeoutMillis == 0 || timeoutMillis < -1) {
+			throw new IllegalArgumentException("The feedback batch timeout must be positive or -1.");
+		}
+
+		this.iterationFeedbackBatchSize = batchSize;
+		this.iterationFeedbackBatchTimeout = timeoutMillis;
+		return this;
+	}
+
+	/**
+	 * Gets the maximum number of elements in a batch on the feedback edges of iterations, see
+	 * {@link #setIterationFeedbackBatching(int, long)}.
+	 *
+	 * @return The feedback batch size.
+	 */
+	@PublicEvolving
+	public int getIterationFeedbackBatchSize() {
+		return this.iterationFeedbackBatchSize;
+	}
+
+	/**
+	 * Gets the maximum time elements wait in an incomplete batch on the feedback edges of
+	 * iterations, see {@link #setIterationFeedbackBatching(int, long)}.
+	 *
+	 * @return The feedback batch timeout.
+	 */
+	@PublicEvolving
+	public long getIterationFeedbackBatchTimeout() {
+		return this.iterationFeedbackBatchTimeout;
+	}
+
+	/**
+	 * Enables serialized feedback edges for iterations. The iteration tail serializes every
+	 * feedback record once and the iteration head writes the serialized record as it is to all
+	 * outputs whose partitioning does not depend on the record, e.g. forward, rebalance or
+	 * broadcast outputs. Records are only deserialized again for key-partitioned outputs.
+	 *
+	 * @return StreamExecutionEnvironment with serialized feedback edges enabled.
+	 */
+	@PublicEvolving
+	public StreamExecutionEnvironment enableSerializedIterationFeedback() {
+		this.isIterationFeedbackSerialized = true;
+		return this;
+	}
+
+	/**
+	 * Returns whether the feedback edges of iterations carry serialized records, see
+	 * {@link #enableSerializedIterationFeedback()}.
+	 *
+	 * @return {@code true} if serialized feedback edges are enabled, false otherwise.
+	 */
+	@PublicEvolving
+	public boolean isIterationFeedbackSerialized() {
+		return isIterationFeedbackSerialized;
+	}
+
+	/**
+	 * Lets a single coordinator align the superstep watermarks of the iteration heads of windowed
+	 * stream iterations. The heads send their watermarks to the coordinator, which broadcasts the
+	 * aligned watermark to the loop operator, and only send them directly to the instances of the
+	 * loop operator that they sent feedback records to. Without the coordinator, every head
+	 * broadcasts every watermark to every instance of the loop operator, which takes a number of
+	 * messages per superstep that is quadratic in the parallelism.
+	 *
+	 * @return StreamExecutionEnvironment with coordinated iteration progress enabled.
+	 */
+	@PublicEvolving
+	public StreamExecutionEnvironment enableCoordinatedIterationProgress() {
+		this.isIterationProgressCoordinated = true;
+		return this;
+	}
+
+	/**
+	 * Returns whether the progress of iterations is aligned by a coordinator, see
+	 * {@link #enableCoordinatedIterationProgress()}.
+	 *
+	 * @return {@code true} if coordinated iteration progress is enabled, false otherwise.
+	 */
+	@PublicEvolving
+	public boolean isIterationProgressCoordinated() {
+		return isIterationProgressCoordinated;
+	}
+
 	/**
 	 * Disables operator chaining for streaming operators. Operator chaining
 	 * allows non-shuffle operations to be co-located in the same thread fully
@@ -306,10 +444,8 @@ public abstract class StreamExecutionEnvironment {
 	 * <p>The job draws checkpoints periodically, in the given interval. The state will be
 	 * stored in the configured state backend.
 	 *
-	 * <p>NOTE: Checkpointing iterative streaming dataflows in not properly supported at
-	 * the moment. For that reason, iterative jobs will not be started if used
-	 * with enabled checkpointing. To override this mechanism, use the
-	 * {@link #enableCheckpointing(long, CheckpointingMode, boolean)} method.
+	 * <p>Iterative streaming dataflows are checkpointed as well. The iteration heads keep the
+	 * feedback records that are in transit during a checkpoint in their state.
 	 *
 	 * @param interval Time interval between state checkpoints in milliseconds.
 	 */
@@ -327,10 +463,8 @@ public abstract class StreamExecutionEnvironment {
 	 * given {@link CheckpointingMode} for the checkpointing ("exactly once" vs "at least once").
 	 * The state will be stored in the configured state backend.
 	 *
-	 * <p>NOTE: Checkpointing iterative streaming dataflows in not properly supported at
-	 * the moment. For that reason, iterative jobs will not be started if used
-	 * with enabled checkpointing. To override this mechanism, use the
-	 * {@link #enableCheckpointing(long, CheckpointingMode, boolean)} method.
+	 * <p>Iterative streaming dataflows are checkpointed as well. The iteration heads keep the
+	 * feedback records that are in transit during a checkpoint in their state.
 	 *
 	 * @param interval
 	 *             Time interval between state checkpoints in milliseconds.
@@ -351,16 +485,15 @@ public abstract class StreamExecutionEnvironment {
 	 * <p>The job draws checkpoints periodically, in the given interval. The state will be
 	 * stored in the configured state backend.
 	 *
-	 * <p>NOTE: Checkpointing iterative streaming dataflows in not properly supported at
-	 * the moment. If the "force" parameter is set to true, the system will execute the
-	 * job nonetheless.
+	 * <p>Iterative streaming dataflows are checkpointed as well, the "force" parameter is
+	 * not needed for them anymore.
 	 *
 	 * @param interval
 	 *            Time interval between state checkpoints in millis.
 	 * @param mode
 	 *            The checkpointing mode, selecting between "exactly once" and "at least once" guaranteed.
 	 * @param force
-	 *            If true checkpointing will be enabled for iterative jobs as well.
+	 *            Ignored, checkpointing is enabled for iterative jobs as well.
 	 *
 	 * @deprecated Use {@link #enableCheckpointing(long, CheckpointingMode)} instead.
 	 * Forcing checkpoints will be removed in the future.
@@ -384,10 +517,8 @@ public abstract class StreamExecutionEnvironment {
 	 * <p>The job draws checkpoints periodically, in the default interval. The state will be
 	 * stored in the configured state backend.
 	 *
-	 * <p>NOTE: Checkpointing iterative streaming dataflows in not properly supported at
-	 * the moment. For that reason, iterative jobs will not be started if used
-	 * with enabled checkpointing. To override this mechanism, use the
-	 * {@link #enableCheckpointing(long, CheckpointingMode, boolean)} method.
+	 * <p>Iterative streaming dataflows are checkpointed as well. The iteration heads keep the
+	 * feedback records that are in transit during a checkpoint in their state.
 	 *
 	 * @deprecated Use {@link #enableCheckpointing(long)} instead.
 	 */
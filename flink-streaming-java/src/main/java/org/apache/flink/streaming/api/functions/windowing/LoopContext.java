@@ -1,17 +1,68 @@
 package org.apache.flink.streaming.api.functions.windowing;
 
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.aggregators.Aggregator;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.types.Value;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class LoopContext<K> {
 	
 	final List<Long> context;
 	final long superstep;
 	final K key;
+	final Map<String, Aggregator<?>> aggregators;
+	final Map<String, Value> previousAggregates;
+
+	/** The solutions of an incremental iteration, or {@code null} if the iteration is not incremental. */
+	final Solutions<K> solutions;
+
+	/** The keyed state of the loop, or {@code null} if the loop functions cannot access state. */
+	final States<K> states;
 
 	public LoopContext(List<Long> context, long superstep, K key) {
+		this(context, superstep, key, null);
+	}
+
+	public LoopContext(List<Long> context, long superstep, K key, Solutions<K> solutions) {
+		this(context, superstep, key, solutions, null);
+	}
+
+	public LoopContext(List<Long> context, long superstep, K key, Solutions<K> solutions, States<K> states) {
+		this(context, superstep, key, Collections.<String, Aggregator<?>>emptyMap(), Collections.<String, Value>emptyMap(), solutions, states);
+	}
+
+	public LoopContext(List<Long> context, long superstep, K key,
+					Map<String, Aggregator<?>> aggregators, Map<String, Value> previousAggregates) {
+		this(context, superstep, key, aggregators, previousAggregates, null);
+	}
+
+	public LoopContext(List<Long> context, long superstep, K key,
+					Map<String, Aggregator<?>> aggregators, Map<String, Value> previousAggregates,
+					Solutions<K> solutions) {
+		this(context, superstep, key, aggregators, previousAggregates, solutions, null);
+	}
+
+	public LoopContext(List<Long> context, long superstep, K key,
+					Map<String, Aggregator<?>> aggregators, Map<String, Value> previousAggregates,
+					Solutions<K> solutions, States<K> states) {
 		this.context = context;
 		this.superstep = superstep;
 		this.key = key;
+		this.aggregators = aggregators;
+		this.previousAggregates = previousAggregates;
+		this.solutions = solutions;
+		this.states = states;
 	}
 
 	public K getKey() {
@@ -26,8 +77,136 @@ public class LoopContext<K> {
 		return superstep;
 	}
 
+	/**
+	 * Returns the aggregator registered under the given name for the current superstep of this
+	 * context. The aggregators of all parallel instances are combined once the superstep is
+	 * complete.
+	 *
+	 * @param name The name under which the aggregator was registered with the iteration.
+	 * @return The aggregator, or {@code null} if none is registered under the name.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Aggregator<?>> T getIterationAggregator(String name) {
+		return (T) aggregators.get(name);
+	}
+
+	/**
+	 * Returns the combined value of the aggregator registered under the given name in the previous
+	 * superstep of this context.
+	 *
+	 * @param name The name under which the aggregator was registered with the iteration.
+	 * @return The combined value, or {@code null} in the first superstep.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Value> T getPreviousIterationAggregate(String name) {
+		return (T) previousAggregates.get(name);
+	}
+
+	/**
+	 * Returns the solution of the key in the most recently converged context of an incremental
+	 * iteration. The first superstep of a context starts from this solution instead of from
+	 * scratch, keys whose input did not change are not activated at all.
+	 *
+	 * @return The solution, or {@code null} if no context produced a solution for the key yet.
+	 * @throws IllegalStateException If the iteration is not incremental.
+	 */
+	public <V> V getPreviousSolution() throws Exception {
+		return getSolutions().getPrevious(key);
+	}
+
+	/**
+	 * Updates the solution of the key in this context. The solution becomes the starting point of
+	 * the following contexts once this context terminates.
+	 *
+	 * @param solution The new solution of the key.
+	 * @throws IllegalStateException If the iteration is not incremental.
+	 */
+	public <V> void updateSolution(V solution) throws Exception {
+		getSolutions().update(context, key, solution);
+	}
+
+	private Solutions<K> getSolutions() {
+		if (solutions == null) {
+			throw new IllegalStateException("Solutions are only kept by incremental iterations.");
+		}
+		return solutions;
+	}
+
+	/**
+	 * Returns the value state of the key in this context. The state of a context is kept by the
+	 * state backend of the loop and is dropped once the iteration of the context terminates.
+	 *
+	 * @param descriptor The descriptor of the state.
+	 * @throws IllegalStateException If the loop does not provide state to its functions.
+	 */
+	public <T> ValueState<T> getState(ValueStateDescriptor<T> descriptor) throws Exception {
+		return getPartitionedState(descriptor);
+	}
+
+	/**
+	 * Returns the list state of the key in this context. The state of a context is kept by the
+	 * state backend of the loop and is dropped once the iteration of the context terminates.
+	 *
+	 * @param descriptor The descriptor of the state.
+	 * @throws IllegalStateException If the loop does not provide state to its functions.
+	 */
+	public <T> ListState<T> getListState(ListStateDescriptor<T> descriptor) throws Exception {
+		return getPartitionedState(descriptor);
+	}
+
+	/**
+	 * Returns the map state of the key in this context. The state of a context is kept by the
+	 * state backend of the loop and is dropped once the iteration of the context terminates.
+	 *
+	 * @param descriptor The descriptor of the state.
+	 * @throws IllegalStateException If the loop does not provide state to its functions.
+	 */
+	public <UK, UV> MapState<UK, UV> getMapState(MapStateDescriptor<UK, UV> descriptor) throws Exception {
+		return getPartitionedState(descriptor);
+	}
+
+	private <S extends State> S getPartitionedState(StateDescriptor<S, ?> descriptor) throws Exception {
+		if (states == null) {
+			throw new IllegalStateException("The loop does not provide state to its functions.");
+		}
+		return states.getState(context, key, descriptor);
+	}
+
 	@Override
 	public String toString() {
 		return super.toString()+" :: [ctx: "+ context +", step: "+ superstep +", key: "+key+"]";
 	}
+
+	/**
+	 * The per-key solutions of an incremental iteration.
+	 *
+	 * @param <K> The type of the keys.
+	 */
+	@Internal
+	public interface Solutions<K> {
+
+		/**
+		 * Returns the solution of the key in the most recently converged context.
+		 */
+		<V> V getPrevious(K key) throws Exception;
+
+		/**
+		 * Updates the solution of the key in the given context.
+		 */
+		<V> void update(List<Long> context, K key, V solution) throws Exception;
+	}
+
+	/**
+	 * The keyed state of a loop, namespaced by context.
+	 *
+	 * @param <K> The type of the keys.
+	 */
+	@Internal
+	public interface States<K> {
+
+		/**
+		 * Returns the state of the key in the given context.
+		 */
+		<S extends State> S getState(List<Long> context, K key, StateDescriptor<S, ?> descriptor) throws Exception;
+	}
 }
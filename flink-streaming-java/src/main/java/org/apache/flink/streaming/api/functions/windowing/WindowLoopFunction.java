@@ -24,6 +24,10 @@ import java.util.List;
  *  - StreamIterationTermination decides that the iteration is over -> onTermination gets called
  *  - on Termination reads local state and puts out final results
  *
+ * The per-key local state of entry and step is best kept in the state of the {@link LoopContext}
+ * (getState, getListState, getMapState), which is checkpointed with the loop and dropped once the
+ * iteration of its context terminated, after onTermination was called.
+ *
  * @param <IN>	  The input data type (goes into entry function)
  * @param <F_IN>  The feedback input data type (goes into step function)
  * @param <OUT>   The type of the iteration output (likely produced by onTermination, but also entry&step can output)
@@ -29,6 +29,7 @@ import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.collector.selector.OutputSelector;
 import org.apache.flink.streaming.api.operators.StreamOperator;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
 import org.apache.flink.streaming.runtime.tasks.StreamTaskException;
 import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
 import org.apache.flink.util.InstantiationUtil;
@@ -73,6 +74,12 @@ public class StreamConfig implements Serializable {
 	private static final String TYPE_SERIALIZER_OUT_1 = "typeSerializer_out";
 	private static final String TYPE_SERIALIZER_SIDEOUT_PREFIX = "typeSerializer_sideout_";
 	private static final String ITERATON_WAIT = "iterationWait";
+	private static final String ITERATION_FEEDBACK_CAPACITY = "iterationFeedbackCapacity";
+	private static final String ITERATION_FEEDBACK_BATCH_SIZE = "iterationFeedbackBatchSize";
+	private static final String ITERATION_FEEDBACK_BATCH_TIMEOUT = "iterationFeedbackBatchTimeout";
+	private static final String ITERATION_FEEDBACK_SERIALIZED = "iterationFeedbackSerialized";
+	private static final String ITERATION_PROGRESS_COORDINATOR = "iterationProgressCoordinator";
+	private static final String ITERATION_PROGRESS_RECEIVER = "iterationProgressReceiver";
 	private static final String NONCHAINED_OUTPUTS = "nonChainedOutputs";
 	private static final String EDGES_IN_ORDER = "edgesInOrder";
 	private static final String OUT_STREAM_EDGES = "outStreamEdges";
@@ -312,6 +319,62 @@ public class StreamConfig implements Serializable {
 		return config.getLong(ITERATON_WAIT, 0);
 	}
 
+	public void setIterationFeedbackCapacity(int capacity) {
+		config.setInteger(ITERATION_FEEDBACK_CAPACITY, capacity);
+	}
+
+	public int getIterationFeedbackCapacity() {
+		return config.getInteger(ITERATION_FEEDBACK_CAPACITY, FeedbackChannel.DEFAULT_CAPACITY);
+	}
+
+	public void setIterationFeedbackBatchSize(int batchSize) {
+		config.setInteger(ITERATION_FEEDBACK_BATCH_SIZE, batchSize);
+	}
+
+	public int getIterationFeedbackBatchSize() {
+		return config.getInteger(ITERATION_FEEDBACK_BATCH_SIZE, 1);
+	}
+
+	public void setIterationFeedbackBatchTimeout(long timeout) {
+		config.setLong(ITERATION_FEEDBACK_BATCH_TIMEOUT, timeout);
+	}
+
+	public long getIterationFeedbackBatchTimeout() {
+		return config.getLong(ITERATION_FEEDBACK_BATCH_TIMEOUT, 0);
+	}
+
+	public void setIterationFeedbackSerialized(boolean serialized) {
+		config.setBoolean(ITERATION_FEEDBACK_SERIALIZED, serialized);
+	}
+
+	public boolean isIterationFeedbackSerialized() {
+		return config.getBoolean(ITERATION_FEEDBACK_SERIALIZED, false);
+	}
+
+	/**
+	 * Sets the vertex that aligns the watermarks of the iteration heads, see
+	 * {@link org.apache.flink.streaming.api.operators.IterationProgressCoordinator}.
+	 */
+	public void setIterationProgressCoordinator(int vertexId) {
+		config.setInteger(ITERATION_PROGRESS_COORDINATOR, vertexId);
+	}
+
+	public int getIterationProgressCoordinator() {
+		return config.getInteger(ITERATION_PROGRESS_COORDINATOR, -1);
+	}
+
+	/**
+	 * Sets the vertex to which an iteration head only sends the watermarks of the channels that
+	 * it sent records to, because all of its watermarks are aligned by the coordinator.
+	 */
+	public void setIterationProgressReceiver(int vertexId) {
+		config.setInteger(ITERATION_PROGRESS_RECEIVER, vertexId);
+	}
+
+	public int getIterationProgressReceiver() {
+		return config.getInteger(ITERATION_PROGRESS_RECEIVER, -1);
+	}
+
 	public void setNumberOfInputs(int numberOfInputs) {
 		config.setInteger(NUMBER_OF_INPUTS, numberOfInputs);
 	}
@@ -42,6 +42,7 @@ import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
 import org.apache.flink.streaming.runtime.partitioner.ForwardPartitioner;
 import org.apache.flink.streaming.runtime.partitioner.RebalancePartitioner;
 import org.apache.flink.streaming.runtime.partitioner.StreamPartitioner;
+import org.apache.flink.streaming.runtime.tasks.FeedbackLogOperator;
 import org.apache.flink.streaming.runtime.tasks.OneInputStreamTask;
 import org.apache.flink.streaming.runtime.tasks.SourceStreamTask;
 import org.apache.flink.streaming.runtime.tasks.StoppableSourceStreamTask;
@@ -600,10 +601,11 @@ public class StreamGraph extends StreamingPlan {
 		StreamIterationTermination iterationTermination,
 		ResourceSpec minResources,
 		ResourceSpec preferredResources) {
+		// the operator of the head keeps the feedback that is in transit during checkpoints
 		StreamNode source = this.addNode(sourceId,
 			null,
 			StreamIterationHead.class,
-			null,
+			new FeedbackLogOperator<>(),
 			"IterationSource-" + loopId,
 			scope);
 		sources.add(source.getId());
@@ -657,16 +659,7 @@ public class StreamGraph extends StreamingPlan {
 	/**
 	 * Gets the assembled {@link JobGraph}.
 	 */
-	@SuppressWarnings("deprecation")
 	public JobGraph getJobGraph() {
-		// temporarily forbid checkpointing for iterative jobs
-		if (isIterative() && checkpointConfig.isCheckpointingEnabled() && !checkpointConfig.isForceCheckpointing()) {
-			throw new UnsupportedOperationException(
-					"Checkpointing is currently not supported by default for iterative jobs, as we cannot guarantee exactly once semantics. "
-							+ "State checkpoints happen normally, but records in-transit during the snapshot will be lost upon failure. "
-							+ "\nThe user can force enable state checkpoints with the reduced guarantees by calling: env.enableCheckpointing(interval,true)");
-		}
-
 		return StreamingJobGraphGenerator.createJobGraph(this);
 	}
 
@@ -50,6 +50,7 @@ import org.apache.flink.streaming.api.checkpoint.WithMasterCheckpointHook;
 import org.apache.flink.streaming.api.environment.CheckpointConfig;
 import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
 import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.IterationProgressCoordinator;
 import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.runtime.partitioner.ForwardPartitioner;
 import org.apache.flink.streaming.runtime.partitioner.RescalePartitioner;
@@ -486,9 +487,31 @@ public class StreamingJobGraphGenerator {
 				|| vertexClass.equals(StreamIterationTail.class)) {
 			config.setIterationId(streamGraph.getBrokerID(vertexID));
 			config.setIterationWaitTime(streamGraph.getLoopTimeout(vertexID));
+			config.setIterationFeedbackCapacity(streamGraph.getEnvironment().getIterationFeedbackCapacity());
+			config.setIterationFeedbackBatchSize(streamGraph.getEnvironment().getIterationFeedbackBatchSize());
+			config.setIterationFeedbackBatchTimeout(streamGraph.getEnvironment().getIterationFeedbackBatchTimeout());
+			config.setIterationFeedbackSerialized(streamGraph.getEnvironment().isIterationFeedbackSerialized());
 			config.setTerminationFunction(vertex.getIterationTermination());
 		}
 
+		if (vertexClass.equals(StreamIterationHead.class)) {
+			for (StreamEdge output : vertex.getOutEdges()) {
+				StreamNode target = streamGraph.getStreamNode(output.getTargetId());
+				if (target.getOperator() instanceof IterationProgressCoordinator) {
+					config.setIterationProgressCoordinator(target.getId());
+					for (StreamEdge coordinatorOutput : target.getOutEdges()) {
+						config.setIterationProgressReceiver(coordinatorOutput.getTargetId());
+					}
+				}
+			}
+		}
+		for (StreamEdge input : vertex.getInEdges()) {
+			StreamNode source = streamGraph.getStreamNode(input.getSourceId());
+			if (source.getOperator() instanceof IterationProgressCoordinator) {
+				config.setIterationProgressCoordinator(source.getId());
+			}
+		}
+
 		List<StreamEdge> allOutputs = new ArrayList<StreamEdge>(chainableOutputs);
 		allOutputs.addAll(nonChainableOutputs);
 		config.setScope(vertex.getScope());
@@ -547,7 +570,8 @@ public class StreamingJobGraphGenerator {
 					headOperator.getChainingStrategy() == ChainingStrategy.ALWAYS)
 				&& (edge.getPartitioner() instanceof ForwardPartitioner)
 				&& upStreamVertex.getParallelism() == downStreamVertex.getParallelism()
-				&& upStreamVertex.getScope() == downStreamVertex.getScope()
+				// chained operators see the elements as they are, without adapting their context
+				&& upStreamVertex.getScope().equals(downStreamVertex.getScope())
 				&& streamGraph.isChainingEnabled();
 	}
 
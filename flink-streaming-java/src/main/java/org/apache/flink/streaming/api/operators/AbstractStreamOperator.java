@@ -19,6 +19,7 @@
 package org.apache.flink.streaming.api.operators;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.ExecutionConfig;
@@ -157,6 +158,9 @@ public abstract class AbstractStreamOperator<OUT>
 
 	protected transient InternalTimeServiceManager<?, ?> timeServiceManager;
 
+	/** Whether the state backends and timer services belong to another operator, see {@link #initializeStateFrom}. */
+	private transient boolean sharesStateOfOwner;
+
 	// ---------------- two-input operator watermarks ------------------
 
 	// We keep track of watermarks from both inputs, the combined input is the minimum
@@ -304,6 +308,10 @@ public abstract class AbstractStreamOperator<OUT>
 	 */
 	@Override
 	public void dispose() throws Exception {
+		if (sharesStateOfOwner) {
+			// the owner disposes the state backends
+			return;
+		}
 
 		Exception exception = null;
 
@@ -433,6 +441,21 @@ public abstract class AbstractStreamOperator<OUT>
 		}
 	}
 
+	/**
+	 * Makes this operator use the state backends and the timer services of the given operator. This is
+	 * for operators that another operator runs internally, which are not part of the operator chain and
+	 * are therefore not initialized by the task. Their state and timers are part of the snapshots of the
+	 * given operator, which also disposes them.
+	 */
+	@Internal
+	public void initializeStateFrom(AbstractStreamOperator<?> owner) {
+		this.operatorStateBackend = owner.operatorStateBackend;
+		this.keyedStateBackend = owner.keyedStateBackend;
+		this.keyedStateStore = owner.keyedStateStore;
+		this.timeServiceManager = owner.timeServiceManager;
+		this.sharesStateOfOwner = true;
+	}
+
 	/**
 	 * Stream operators with state which can be restored need to override this hook method.
 	 *
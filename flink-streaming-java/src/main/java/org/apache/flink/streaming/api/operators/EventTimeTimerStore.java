@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The event time timers of a {@link HeapInternalTimerService}, indexed by time context and
+ * timestamp.
+ *
+ * <p>Every timer is contained at most once. Since the timers of one context are ordered by their
+ * timestamp, firing and deleting a timer does not depend on the timers of other contexts, and a
+ * context can be dropped as a whole once it is finished.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public interface EventTimeTimerStore<K, N> {
+
+	/**
+	 * Sets the serializers of the timers. This is called before the first timer is added and may
+	 * be called again with compatible serializers, e.g. after restoring timers.
+	 */
+	void open(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer);
+
+	/**
+	 * Adds the timer, returns {@code false} if it is already contained.
+	 */
+	boolean add(InternalTimer<K, N> timer);
+
+	/**
+	 * Removes the timer, returns {@code false} if it is not contained.
+	 */
+	boolean remove(InternalTimer<K, N> timer);
+
+	/**
+	 * Removes and returns the earliest timer of the given context if it is not after the given
+	 * time, otherwise returns {@code null}.
+	 */
+	@Nullable
+	InternalTimer<K, N> poll(List<Long> timeContext, long time);
+
+	/**
+	 * Removes all timers of the given context.
+	 */
+	void retire(List<Long> timeContext);
+
+	/**
+	 * Returns the timers of the given key-group. The returned set may not be modified.
+	 */
+	Set<InternalTimer<K, N>> getTimersForKeyGroup(int keyGroupIdx);
+
+	/**
+	 * Returns the number of contexts that have timers.
+	 */
+	int numContexts();
+
+	/**
+	 * Returns the number of timers.
+	 */
+	int size();
+
+	/**
+	 * Returns the number of timers with the given namespace. This iterates over all timers and is
+	 * only meant for tests.
+	 */
+	@VisibleForTesting
+	int size(N namespace);
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.state.KeyGroupsList;
+
+/**
+ * Creates the {@link EventTimeTimerStore event time timer stores} of the timer services of an
+ * operator. Keyed state backends that keep their state off the Java heap implement this
+ * interface to keep the event time timers next to the state. Otherwise the timers are kept in a
+ * {@link HeapEventTimeTimerStore}.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ */
+@Internal
+public interface EventTimeTimerStoreFactory<K> {
+
+	/**
+	 * Creates the store for the event time timers of the timer service with the given name.
+	 */
+	<N> EventTimeTimerStore<K, N> createEventTimeTimerStore(
+		String timerServiceName,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange);
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsList;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link EventTimeTimerStore} that keeps the timers on the Java heap.
+ *
+ * <p>The timers of every context are kept in a {@link TreeMap} from timestamp to the timers with
+ * that timestamp, so adding, firing and deleting a timer costs {@code O(log t)} for {@code t}
+ * distinct timestamps of the context. Additionally, the timers are kept in a set per key-group
+ * for deduplication and snapshots.
+ */
+@Internal
+public class HeapEventTimeTimerStore<K, N> implements EventTimeTimerStore<K, N> {
+
+	private final int totalKeyGroups;
+
+	private final KeyGroupsList localKeyGroupRange;
+
+	private final int localKeyGroupRangeStartIdx;
+
+	private final Set<InternalTimer<K, N>>[] timersByKeyGroup;
+
+	private final Map<List<Long>, NavigableMap<Long, Set<InternalTimer<K, N>>>> timersByContext;
+
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public HeapEventTimeTimerStore(int totalKeyGroups, KeyGroupsList localKeyGroupRange) {
+		this.totalKeyGroups = totalKeyGroups;
+		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
+
+		// find the starting index of the local key-group range
+		int startIdx = Integer.MAX_VALUE;
+		for (Integer keyGroupIdx : localKeyGroupRange) {
+			startIdx = Math.min(keyGroupIdx, startIdx);
+		}
+		this.localKeyGroupRangeStartIdx = startIdx;
+
+		this.timersByKeyGroup = new HashSet[localKeyGroupRange.getNumberOfKeyGroups()];
+		this.timersByContext = new HashMap<>();
+	}
+
+	@Override
+	public void open(TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer) {
+		// the timers are kept as objects
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) {
+		if (!getTimerSetForKeyGroup(getKeyGroupForTimer(timer)).add(timer)) {
+			return false;
+		}
+
+		NavigableMap<Long, Set<InternalTimer<K, N>>> timers = timersByContext.get(timer.getTimeContext());
+		if (timers == null) {
+			timers = new TreeMap<>();
+			timersByContext.put(timer.getTimeContext(), timers);
+		}
+		Set<InternalTimer<K, N>> timersWithSameTimestamp = timers.get(timer.getTimestamp());
+		if (timersWithSameTimestamp == null) {
+			timersWithSameTimestamp = new LinkedHashSet<>();
+			timers.put(timer.getTimestamp(), timersWithSameTimestamp);
+		}
+		timersWithSameTimestamp.add(timer);
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) {
+		if (!getTimerSetForKeyGroup(getKeyGroupForTimer(timer)).remove(timer)) {
+			return false;
+		}
+
+		NavigableMap<Long, Set<InternalTimer<K, N>>> timers = timersByContext.get(timer.getTimeContext());
+		Set<InternalTimer<K, N>> timersWithSameTimestamp = timers.get(timer.getTimestamp());
+		timersWithSameTimestamp.remove(timer);
+		if (timersWithSameTimestamp.isEmpty()) {
+			timers.remove(timer.getTimestamp());
+			if (timers.isEmpty()) {
+				timersByContext.remove(timer.getTimeContext());
+			}
+		}
+		size--;
+		return true;
+	}
+
+	@Override
+	public InternalTimer<K, N> poll(List<Long> timeContext, long time) {
+		NavigableMap<Long, Set<InternalTimer<K, N>>> timers = timersByContext.get(timeContext);
+		if (timers == null || timers.firstKey() > time) {
+			return null;
+		}
+
+		Map.Entry<Long, Set<InternalTimer<K, N>>> first = timers.firstEntry();
+		Iterator<InternalTimer<K, N>> iterator = first.getValue().iterator();
+		InternalTimer<K, N> timer = iterator.next();
+		iterator.remove();
+		if (first.getValue().isEmpty()) {
+			timers.remove(first.getKey());
+			if (timers.isEmpty()) {
+				timersByContext.remove(timeContext);
+			}
+		}
+
+		getTimerSetForKeyGroup(getKeyGroupForTimer(timer)).remove(timer);
+		size--;
+		return timer;
+	}
+
+	@Override
+	public void retire(List<Long> timeContext) {
+		NavigableMap<Long, Set<InternalTimer<K, N>>> timers = timersByContext.remove(timeContext);
+		if (timers == null) {
+			return;
+		}
+		for (Set<InternalTimer<K, N>> timersWithSameTimestamp : timers.values()) {
+			for (InternalTimer<K, N> timer : timersWithSameTimestamp) {
+				getTimerSetForKeyGroup(getKeyGroupForTimer(timer)).remove(timer);
+				size--;
+			}
+		}
+	}
+
+	@Override
+	public Set<InternalTimer<K, N>> getTimersForKeyGroup(int keyGroupIdx) {
+		Set<InternalTimer<K, N>> timers = timersByKeyGroup[getIndexForKeyGroup(keyGroupIdx)];
+		return timers != null ? timers : Collections.<InternalTimer<K, N>>emptySet();
+	}
+
+	@Override
+	public int numContexts() {
+		return timersByContext.size();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@VisibleForTesting
+	@Override
+	public int size(N namespace) {
+		int count = 0;
+		for (Set<InternalTimer<K, N>> timers : timersByKeyGroup) {
+			if (timers != null) {
+				for (InternalTimer<K, N> timer : timers) {
+					if (timer.getNamespace().equals(namespace)) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private int getKeyGroupForTimer(InternalTimer<K, N> timer) {
+		return KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), totalKeyGroups);
+	}
+
+	private Set<InternalTimer<K, N>> getTimerSetForKeyGroup(int keyGroupIdx) {
+		int localIdx = getIndexForKeyGroup(keyGroupIdx);
+		Set<InternalTimer<K, N>> timers = timersByKeyGroup[localIdx];
+		if (timers == null) {
+			timers = new HashSet<>();
+			timersByKeyGroup[localIdx] = timers;
+		}
+		return timers;
+	}
+
+	private int getIndexForKeyGroup(int keyGroupIdx) {
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+		return keyGroupIdx - this.localKeyGroupRangeStartIdx;
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.flink.api.common.typeutils.CompatibilityUtil;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 import org.apache.flink.util.Preconditions;
@@ -34,7 +35,6 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.HashSet;
 import java.util.concurrent.ScheduledFuture;
 
@@ -42,7 +42,13 @@ import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
- * {@link InternalTimerService} that stores timers on the Java heap.
+ * {@link InternalTimerService} that stores processing time timers on the Java heap and event
+ * time timers in an {@link EventTimeTimerStore}, on the Java heap unless the keyed state backend
+ * provides another store.
+ *
+ * <p>The event time of every context is tracked separately. Once the final watermark of a context
+ * inside an iteration has been processed, the context is retired together with its remaining
+ * timers, so finished iteration contexts do not accumulate.
  */
 public class HeapInternalTimerService<K, N> implements InternalTimerService<N>, ProcessingTimeCallback {
 
@@ -59,8 +65,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	/**
 	 * Event time timers that are currently in-flight.
 	 */
-	private final Set<InternalTimer<K, N>>[] eventTimeTimersByKeyGroup;
-	private final Map<List<Long>,PriorityQueue<InternalTimer<K, N>>> eventTimeTimersQueuePerTimeContext;
+	private final EventTimeTimerStore<K, N> eventTimeTimers;
 
 	/**
 	 * Information concerning the local key-group range.
@@ -70,10 +75,10 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	private final int localKeyGroupRangeStartIdx;
 
 	/**
-	 * The local event time, as denoted by the last received
+	 * The local event time per context, as denoted by the last received
 	 * {@link org.apache.flink.streaming.api.watermark.Watermark Watermark}.
 	 */
-	private Map<List<Long>, Long> currentWatermarks = new HashMap<>();
+	private final Map<List<Long>, Long> currentWatermarks = new HashMap<>();
 
 	/**
 	 * The one and only Future (if any) registered to execute the
@@ -104,6 +109,20 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		KeyContext keyContext,
 		ProcessingTimeService processingTimeService) {
 
+		this(totalKeyGroups,
+			localKeyGroupRange,
+			keyContext,
+			processingTimeService,
+			new HeapEventTimeTimerStore<K, N>(totalKeyGroups, localKeyGroupRange));
+	}
+
+	public HeapInternalTimerService(
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService,
+		EventTimeTimerStore<K, N> eventTimeTimers) {
+
 		this.keyContext = checkNotNull(keyContext);
 		this.processingTimeService = checkNotNull(processingTimeService);
 
@@ -120,8 +139,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		// the list of ids of the key-groups this task is responsible for
 		int localKeyGroups = this.localKeyGroupRange.getNumberOfKeyGroups();
 
-		this.eventTimeTimersQueuePerTimeContext = new HashMap<>();
-		this.eventTimeTimersByKeyGroup = new HashSet[localKeyGroups];
+		this.eventTimeTimers = checkNotNull(eventTimeTimers);
 
 		this.processingTimeTimersQueue = new PriorityQueue<>(100);
 		this.processingTimeTimersByKeyGroup = new HashSet[localKeyGroups];
@@ -177,6 +195,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 			this.namespaceDeserializer = null;
 
 			this.triggerTarget = Preconditions.checkNotNull(triggerTarget);
+			this.eventTimeTimers.open(keySerializer, namespaceSerializer);
 
 			// re-register the restored timers (if any)
 			if (processingTimeTimersQueue.size() > 0) {
@@ -204,8 +223,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 	@Override
 	public void registerProcessingTimeTimer(N namespace, long time) {
-		// TODO what to do instead of new LinkedList? (ignore for now)
-		InternalTimer<K, N> timer = new InternalTimer<>(new LinkedList<Long>(), time, (K) keyContext.getCurrentKey(), namespace);
+		InternalTimer<K, N> timer = new InternalTimer<>(TimeContext.EMPTY, time, (K) keyContext.getCurrentKey(), namespace);
 
 		// make sure we only put one timer per key into the queue
 		Set<InternalTimer<K, N>> timerSet = getProcessingTimeTimerSetForTimer(timer);
@@ -228,17 +246,12 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 	@Override
 	public void registerEventTimeTimer(N namespace, List<Long> timeContext, long time) {
-		InternalTimer<K, N> timer = new InternalTimer<>(timeContext, time, (K) keyContext.getCurrentKey(), namespace);
-		Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-		if (timerSet.add(timer)) {
-			getEventTimeTimersQueue(timeContext).add(timer);
-		}
+		eventTimeTimers.add(new InternalTimer<>(timeContext, time, (K) keyContext.getCurrentKey(), namespace));
 	}
 
 	@Override
 	public void deleteProcessingTimeTimer(N namespace, long time) {
-		// TODO what to do instead of new LinkedList? (ignore for now)
-		InternalTimer<K, N> timer = new InternalTimer<>(new LinkedList<Long>(), time, (K) keyContext.getCurrentKey(), namespace);
+		InternalTimer<K, N> timer = new InternalTimer<>(TimeContext.EMPTY, time, (K) keyContext.getCurrentKey(), namespace);
 		Set<InternalTimer<K, N>> timerSet = getProcessingTimeTimerSetForTimer(timer);
 		if (timerSet.remove(timer)) {
 			processingTimeTimersQueue.remove(timer);
@@ -247,11 +260,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 	@Override
 	public void deleteEventTimeTimer(N namespace, List<Long> timeContext, long time) {
-		InternalTimer<K, N> timer = new InternalTimer<>(timeContext, time, (K) keyContext.getCurrentKey(), namespace);
-		Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-		if (timerSet.remove(timer)) {
-			getEventTimeTimersQueue(timeContext).remove(timer);
-		}
+		eventTimeTimers.remove(new InternalTimer<>(timeContext, time, (K) keyContext.getCurrentKey(), namespace));
 	}
 
 	@Override
@@ -285,15 +294,17 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 		InternalTimer<K, N> timer;
 
-		PriorityQueue<InternalTimer<K, N>> eventTimeTimersQueue = getEventTimeTimersQueue(timeContext);
-		while ((timer = eventTimeTimersQueue.peek()) != null && timer.getTimestamp() <= time) {
-			Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-			timerSet.remove(timer);
-			eventTimeTimersQueue.remove();
-
+		while ((timer = eventTimeTimers.poll(timeContext, time)) != null) {
 			keyContext.setCurrentKey(timer.getKey());
 			triggerTarget.onEventTime(timer);
 		}
+
+		// nothing follows the end of an iteration context, the context outside
+		// of any iteration however lives as long as the job
+		if (time == Long.MAX_VALUE && !timeContext.isEmpty()) {
+			eventTimeTimers.retire(timeContext);
+			currentWatermarks.remove(timeContext);
+		}
 	}
 
 	/**
@@ -308,7 +319,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 				keySerializer.snapshotConfiguration(),
 				namespaceSerializer,
 				namespaceSerializer.snapshotConfiguration(),
-				getEventTimeTimerSetForKeyGroup(keyGroupIdx),
+				eventTimeTimers.getTimersForKeyGroup(keyGroupIdx),
 				getProcessingTimeTimerSetForKeyGroup(keyGroupIdx));
 	}
 
@@ -336,14 +347,11 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
 			"Key Group " + keyGroupIdx + " does not belong to the local range.");
 
-		// restore the event time timers
-		
-			Set<InternalTimer<K, N>> eventTimers = getEventTimeTimerSetForKeyGroup(keyGroupIdx);
-			
-				eventTimers.addAll(this.restoredTimersSnapshot.getEventTimeTimers());
-				// TODO this is only a workaround to make this compile,
-				// the new LinkedList should be replaced by a timeContext parameter of the method
-				getEventTimeTimersQueue(new LinkedList<Long>()).addAll(this.restoredTimersSnapshot.getEventTimeTimers());
+		// restore the event time timers, each into the context it was registered in
+		eventTimeTimers.open(keyDeserializer, namespaceDeserializer);
+		for (InternalTimer<K, N> timer : this.restoredTimersSnapshot.getEventTimeTimers()) {
+			eventTimeTimers.add(timer);
+		}
 
 		// restore the processing time timers
 		Set<InternalTimer<K, N>> processingTimers = getProcessingTimeTimerSetForKeyGroup(keyGroupIdx);
@@ -351,43 +359,6 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		processingTimeTimersQueue.addAll(this.restoredTimersSnapshot.getProcessingTimeTimers());
 	}
 
-	private PriorityQueue<InternalTimer<K, N>> getEventTimeTimersQueue(List<Long> timeContext) {
-		PriorityQueue<InternalTimer<K,N>> result = eventTimeTimersQueuePerTimeContext.get(timeContext);
-		if(result == null) {
-			result = new PriorityQueue<InternalTimer<K,N>>(100);
-			eventTimeTimersQueuePerTimeContext.put(timeContext, result);
-		}
-		return result;
-	}
-
-	/**
-	 * Retrieve the set of event time timers for the key-group this timer belongs to.
-	 *
-	 * @param timer the timer whose key-group we are searching.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getEventTimeTimerSetForTimer(InternalTimer<K, N> timer) {
-		checkArgument(localKeyGroupRange != null, "The operator has not been initialized.");
-		int keyGroupIdx = KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), this.totalKeyGroups);
-		return getEventTimeTimerSetForKeyGroup(keyGroupIdx);
-	}
-
-	/**
-	 * Retrieve the set of event time timers for the requested key-group.
-	 *
-	 * @param keyGroupIdx the index of the key group we are interested in.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getEventTimeTimerSetForKeyGroup(int keyGroupIdx) {
-		int localIdx = getIndexForKeyGroup(keyGroupIdx);
-		Set<InternalTimer<K, N>> timers = eventTimeTimersByKeyGroup[localIdx];
-		if (timers == null) {
-			timers = new HashSet<>();
-			eventTimeTimersByKeyGroup[localIdx] = timers;
-		}
-		return timers;
-	}
-
 	/**
 	 * Retrieve the set of processing time timers for the key-group this timer belongs to.
 	 *
@@ -436,11 +407,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	}
 
 	public int numEventTimeTimers() {
-		int count = 0;
-		for(PriorityQueue<InternalTimer<K, N>> eventTimeTimersQueue : eventTimeTimersQueuePerTimeContext.values()) {
-			count += eventTimeTimersQueue.size();
-		}
-		return count;
+		return eventTimeTimers.size();
 	}
 
 	public int numProcessingTimeTimers(N namespace) {
@@ -453,16 +420,19 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		return count;
 	}
 
+	@VisibleForTesting
 	public int numEventTimeTimers(N namespace) {
-		int count = 0;
-		for(PriorityQueue<InternalTimer<K, N>> eventTimeTimersQueue : eventTimeTimersQueuePerTimeContext.values()) {
-			for (InternalTimer<K, N> timer : eventTimeTimersQueue) {
-				if (timer.getNamespace().equals(namespace)) {
-					count++;
-				}
-			}
-		}
-		return count;
+		return eventTimeTimers.size(namespace);
+	}
+
+	@VisibleForTesting
+	public int numTimeContexts() {
+		return currentWatermarks.size();
+	}
+
+	@VisibleForTesting
+	public int numEventTimeTimerContexts() {
+		return eventTimeTimers.numContexts();
 	}
 
 	@VisibleForTesting
@@ -471,8 +441,16 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	}
 
 	@VisibleForTesting
+	@SuppressWarnings("unchecked")
 	public Set<InternalTimer<K, N>>[] getEventTimeTimersPerKeyGroup() {
-		return this.eventTimeTimersByKeyGroup;
+		Set<InternalTimer<K, N>>[] timersPerKeyGroup = new Set[localKeyGroupRange.getNumberOfKeyGroups()];
+		for (int keyGroupIdx : localKeyGroupRange) {
+			Set<InternalTimer<K, N>> timers = eventTimeTimers.getTimersForKeyGroup(keyGroupIdx);
+			if (!timers.isEmpty()) {
+				timersPerKeyGroup[keyGroupIdx - localKeyGroupRangeStartIdx] = timers;
+			}
+		}
+		return timersPerKeyGroup;
 	}
 
 	@VisibleForTesting
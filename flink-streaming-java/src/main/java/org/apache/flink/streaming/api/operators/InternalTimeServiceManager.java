@@ -28,6 +28,8 @@ import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 import org.apache.flink.util.Preconditions;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -52,6 +54,10 @@ public class InternalTimeServiceManager<K, N> {
 
 	private final ProcessingTimeService processingTimeService;
 
+	/** Creates the stores of the event time timers, if not kept on the heap. */
+	@Nullable
+	private final EventTimeTimerStoreFactory<K> timerStoreFactory;
+
 	private final Map<String, HeapInternalTimerService<K, N>> timerServices;
 
 	InternalTimeServiceManager(
@@ -59,6 +65,15 @@ public class InternalTimeServiceManager<K, N> {
 			KeyGroupsList localKeyGroupRange,
 			KeyContext keyContext,
 			ProcessingTimeService processingTimeService) {
+		this(totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, null);
+	}
+
+	InternalTimeServiceManager(
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange,
+			KeyContext keyContext,
+			ProcessingTimeService processingTimeService,
+			@Nullable EventTimeTimerStoreFactory<K> timerStoreFactory) {
 
 		Preconditions.checkArgument(totalKeyGroups > 0);
 		this.totalKeyGroups = totalKeyGroups;
@@ -66,6 +81,7 @@ public class InternalTimeServiceManager<K, N> {
 
 		this.keyContext = Preconditions.checkNotNull(keyContext);
 		this.processingTimeService = Preconditions.checkNotNull(processingTimeService);
+		this.timerStoreFactory = timerStoreFactory;
 
 		this.timerServices = new HashMap<>();
 	}
@@ -95,14 +111,22 @@ public class InternalTimeServiceManager<K, N> {
 
 		HeapInternalTimerService<K, N> timerService = timerServices.get(name);
 		if (timerService == null) {
-			timerService = new HeapInternalTimerService<>(totalKeyGroups,
-				localKeyGroupRange, keyContext, processingTimeService);
+			timerService = createTimerService(name);
 			timerServices.put(name, timerService);
 		}
 		timerService.startTimerService(keySerializer, namespaceSerializer, triggerable);
 		return timerService;
 	}
 
+	HeapInternalTimerService<K, N> createTimerService(String name) {
+		EventTimeTimerStore<K, N> eventTimeTimers = timerStoreFactory != null ?
+			timerStoreFactory.<N>createEventTimeTimerStore(name, totalKeyGroups, localKeyGroupRange) :
+			new HeapEventTimeTimerStore<K, N>(totalKeyGroups, localKeyGroupRange);
+
+		return new HeapInternalTimerService<>(
+			totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, eventTimeTimers);
+	}
+
 	public void advanceWatermark(Watermark watermark) throws Exception {
 		for (HeapInternalTimerService<?, ?> service : timerServices.values()) {
 			service.advanceWatermark(watermark.getContext(), watermark.getTimestamp());
@@ -125,12 +149,9 @@ public class InternalTimeServiceManager<K, N> {
 
 		InternalTimerServiceSerializationProxy<K, N> serializationProxy =
 			new InternalTimerServiceSerializationProxy<>(
+				this,
 				timerServices,
 				userCodeClassLoader,
-				totalKeyGroups,
-				localKeyGroupRange,
-				keyContext,
-				processingTimeService,
 				keyGroupIdx);
 
 		serializationProxy.read(stream);
@@ -21,14 +21,13 @@ package org.apache.flink.streaming.api.operators;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
-import org.apache.flink.api.common.typeutils.base.IntSerializer;
 import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -40,12 +39,12 @@ import java.util.List;
 @Internal
 public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 	private final long timestamp;
-	private final List<Long> timeContext;
+	private final TimeContext timeContext;
 	private final K key;
 	private final N namespace;
 
 	public InternalTimer(List<Long> timeContext, long timestamp, K key, N namespace) {
-		this.timeContext = timeContext;
+		this.timeContext = TimeContext.of(timeContext);
 		this.timestamp = timestamp;
 		this.key = key;
 		this.namespace = namespace;
@@ -81,6 +80,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 		InternalTimer<?, ?> timer = (InternalTimer<?, ?>) o;
 
 		return timestamp == timer.timestamp
+				&& timeContext.equals(timer.timeContext)
 				&& key.equals(timer.key)
 				&& namespace.equals(timer.namespace);
 
@@ -89,6 +89,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 	@Override
 	public int hashCode() {
 		int result = (int) (timestamp ^ (timestamp >>> 32));
+		result = 31 * result + timeContext.hashCode();
 		result = 31 * result + key.hashCode();
 		result = 31 * result + namespace.hashCode();
 		return result;
@@ -98,6 +99,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 	public String toString() {
 		return "Timer{" +
 				"timestamp=" + timestamp +
+				", timeContext=" + timeContext +
 				", key=" + key +
 				", namespace=" + namespace +
 				'}';
@@ -155,10 +157,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 			keySerializer.serialize(record.key, target);
 			namespaceSerializer.serialize(record.namespace, target);
 			LongSerializer.INSTANCE.serialize(record.timestamp, target);
-			IntSerializer.INSTANCE.serialize(record.timeContext.size(), target);
-			for(long timestamp : record.timeContext) {
-				LongSerializer.INSTANCE.serialize(timestamp, target);
-			}
+			record.timeContext.write(target);
 		}
 
 		@Override
@@ -166,11 +165,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 			K key = keySerializer.deserialize(source);
 			N namespace = namespaceSerializer.deserialize(source);
 			Long timestamp = LongSerializer.INSTANCE.deserialize(source);
-			int timeContextSize = IntSerializer.INSTANCE.deserialize(source);
-			List<Long> timeContext = new LinkedList<>();
-			for(int i=0; i<timeContextSize; i++) {
-				timeContext.add(LongSerializer.INSTANCE.deserialize(source));
-			}
+			TimeContext timeContext = TimeContext.read(source, null);
 			return new InternalTimer<>(timeContext, timestamp, key, namespace);
 		}
 
@@ -184,6 +179,7 @@ public class InternalTimer<K, N> implements Comparable<InternalTimer<K, N>> {
 			keySerializer.copy(source, target);
 			namespaceSerializer.copy(source, target);
 			LongSerializer.INSTANCE.copy(source, target);
+			TimeContext.copy(source, target);
 		}
 
 		@Override
@@ -22,8 +22,6 @@ import org.apache.flink.annotation.Internal;
 import org.apache.flink.core.io.PostVersionedIOReadableWritable;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataOutputView;
-import org.apache.flink.runtime.state.KeyGroupsList;
-import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 
 import java.io.IOException;
 import java.util.Map;
@@ -44,31 +42,23 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 	/** The user classloader; only relevant if the proxy is used to restore timer services. */
 	private ClassLoader userCodeClassLoader;
 
-	/** Properties of restored timer services. */
+	/** The manager that creates restored timer services. */
+	private InternalTimeServiceManager<K, N> timeServiceManager;
+
 	private int keyGroupIdx;
-	private int totalKeyGroups;
-	private KeyGroupsList localKeyGroupRange;
-	private KeyContext keyContext;
-	private ProcessingTimeService processingTimeService;
 
 	/**
 	 * Constructor to use when restoring timer services.
 	 */
 	public InternalTimerServiceSerializationProxy(
+			InternalTimeServiceManager<K, N> timeServiceManager,
 			Map<String, HeapInternalTimerService<K, N>> timerServicesMapToPopulate,
 			ClassLoader userCodeClassLoader,
-			int totalKeyGroups,
-			KeyGroupsList localKeyGroupRange,
-			KeyContext keyContext,
-			ProcessingTimeService processingTimeService,
 			int keyGroupIdx) {
 
+		this.timeServiceManager = checkNotNull(timeServiceManager);
 		this.timerServices = checkNotNull(timerServicesMapToPopulate);
 		this.userCodeClassLoader = checkNotNull(userCodeClassLoader);
-		this.totalKeyGroups = totalKeyGroups;
-		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
-		this.keyContext = checkNotNull(keyContext);
-		this.processingTimeService = checkNotNull(processingTimeService);
 		this.keyGroupIdx = keyGroupIdx;
 	}
 
@@ -113,11 +103,7 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 
 			HeapInternalTimerService<K, N> timerService = timerServices.get(serviceName);
 			if (timerService == null) {
-				timerService = new HeapInternalTimerService<>(
-					totalKeyGroups,
-					localKeyGroupRange,
-					keyContext,
-					processingTimeService);
+				timerService = timeServiceManager.createTimerService(serviceName);
 				timerServices.put(serviceName, timerService);
 			}
 
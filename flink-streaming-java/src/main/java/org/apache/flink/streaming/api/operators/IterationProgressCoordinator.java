@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+/**
+ * Aligns the superstep watermarks of all parallel iteration heads of a loop in a single place.
+ *
+ * <p>The operator runs with a parallelism of one and receives every watermark of every head,
+ * but none of their records. Its input aligns the watermarks per context like the input of
+ * any other operator, merging the {@link org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates}
+ * of the heads, and the operator broadcasts the aligned watermark to all instances of the loop
+ * operator. There, a {@link org.apache.flink.streaming.runtime.io.CoordinatedProgressTrackingHandler}
+ * only waits for the heads that sent records to the instance. This replaces the all-to-all
+ * exchange of watermarks between heads and loop operator with {@code O(p)} watermarks per
+ * superstep.
+ */
+@Internal
+public class IterationProgressCoordinator<T> extends AbstractStreamOperator<T> implements OneInputStreamOperator<T, T> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public void processElement(StreamRecord<T> element) throws Exception {
+		throw new IllegalStateException("The iteration progress coordinator does not receive records.");
+	}
+}
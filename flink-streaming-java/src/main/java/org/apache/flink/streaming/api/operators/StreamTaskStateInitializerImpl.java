@@ -203,11 +203,17 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 
 		final KeyGroupRange keyGroupRange = keyedStatedBackend.getKeyGroupRange();
 
+		// keyed state backends may keep the event time timers next to their state
+		@SuppressWarnings("unchecked")
+		final EventTimeTimerStoreFactory<K> timerStoreFactory = keyedStatedBackend instanceof EventTimeTimerStoreFactory ?
+			(EventTimeTimerStoreFactory<K>) keyedStatedBackend : null;
+
 		final InternalTimeServiceManager<?, K> timeServiceManager = new InternalTimeServiceManager<>(
 			keyedStatedBackend.getNumberOfKeyGroups(),
 			keyGroupRange,
 			keyContext,
-			processingTimeService);
+			processingTimeService,
+			timerStoreFactory);
 
 		// and then initialize the timer services
 		for (KeyGroupStatePartitionStreamProvider streamProvider : rawKeyedStates) {
@@ -1,22 +1,83 @@
 package org.apache.flink.streaming.api.operators;
 
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
 import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.Iterator;
-
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
+/**
+ * Emits the watermarks of every context in the order of their timestamps, one timestamp after
+ * the other. Watermarks that arrive ahead of their time are buffered in a sorted index per
+ * context, so the cost of emitting them only depends on the number of buffered watermarks.
+ * The {@code Long.MAX_VALUE} watermark ends its context once all watermarks that were buffered
+ * before it are emitted.
+ *
+ * <p>The buffered watermarks are kept in operator state when taking a snapshot.
+ */
 public class WatermarkResequencializer<IN>
 	extends AbstractStreamOperator<IN>
 	implements OneInputStreamOperator<IN, IN> {
 
-	private Map<List<Long>,SortedSet<Watermark>> watermarksPerContext = new HashMap<>();
-	private Map<List<Long>,Long> currentTimestampPerContext = new HashMap<>();
+	private static final long serialVersionUID = 1L;
+
+	private transient Map<List<Long>, NavigableMap<Long, Watermark>> watermarksPerContext;
+	private transient Map<List<Long>, Long> currentTimestampPerContext;
+
+	private transient ListState<StreamElement> bufferedWatermarksState;
+	private transient ListState<StreamElement> currentTimestampsState;
+
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		watermarksPerContext = new HashMap<>();
+		currentTimestampPerContext = new HashMap<>();
+
+		// watermarks only, so the serializer of the records is never used
+		TypeSerializer<StreamElement> serializer = new StreamElementSerializer<>(getOperatorConfig().<IN>getTypeSerializerIn1(getUserCodeClassloader()));
+		bufferedWatermarksState = context.getOperatorStateStore().getListState(
+			new ListStateDescriptor<>("resequencer-watermarks", serializer));
+		currentTimestampsState = context.getOperatorStateStore().getListState(
+			new ListStateDescriptor<>("resequencer-timestamps", serializer));
+
+		if (context.isRestored()) {
+			for (StreamElement element : bufferedWatermarksState.get()) {
+				Watermark watermark = element.asWatermark();
+				getWatermarks(watermark.getContext()).putIfAbsent(watermark.getTimestamp(), watermark);
+			}
+			for (StreamElement element : currentTimestampsState.get()) {
+				Watermark current = element.asWatermark();
+				currentTimestampPerContext.put(current.getContext(), current.getTimestamp());
+			}
+		}
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+
+		bufferedWatermarksState.clear();
+		for (NavigableMap<Long, Watermark> watermarks : watermarksPerContext.values()) {
+			for (Watermark watermark : watermarks.values()) {
+				bufferedWatermarksState.add(watermark);
+			}
+		}
+		currentTimestampsState.clear();
+		for (Map.Entry<List<Long>, Long> current : currentTimestampPerContext.entrySet()) {
+			currentTimestampsState.add(new Watermark(current.getKey(), current.getValue()));
+		}
+	}
 
 	@Override
 	public void processElement(StreamRecord<IN> record) throws Exception {
@@ -25,24 +86,42 @@ public class WatermarkResequencializer<IN>
 
 	@Override
 	public void processWatermark(Watermark watermark) {
-		SortedSet<Watermark> watermarks = watermarksPerContext.get(watermark.getContext());
-		if(watermarks == null) {
-			watermarks = new TreeSet<>();
-			watermarksPerContext.put(watermark.getContext(), watermarks);
-		}
-		watermarks.add(watermark);
-
-		// move forward one timestamp if possible (otherwise watermark must wait until its time)
-		Long current = currentTimestampPerContext.get(watermark.getContext());
-		if (current == null || watermark.getTimestamp() == current + 1) {
-			currentTimestampPerContext.put(watermark.getContext(), watermark.getTimestamp());
-			for(Iterator<Watermark> it = watermarks.iterator(); it.hasNext();) {
-				Watermark mark = it.next();
-				if(mark.getTimestamp() <= watermark.getTimestamp()) {
-					output.emitWatermark(mark);
-					it.remove();
-				}
-			}
+		List<Long> context = watermark.getContext();
+		Long current = currentTimestampPerContext.get(context);
+		if (current != null && watermark.getTimestamp() <= current) {
+			// emitted already
+			return;
+		}
+		NavigableMap<Long, Watermark> watermarks = getWatermarks(context);
+		watermarks.putIfAbsent(watermark.getTimestamp(), watermark);
+
+		// move forward one timestamp after the other, as long as the next one arrived
+		while (!watermarks.isEmpty() && (current == null || watermarks.firstKey() == current + 1)) {
+			Watermark next = watermarks.pollFirstEntry().getValue();
+			output.emitWatermark(next);
+			current = next.getTimestamp();
+		}
+		if (watermarks.size() == 1 && watermarks.firstKey() == Long.MAX_VALUE) {
+			// the end of the context follows the last superstep, whatever its timestamp
+			output.emitWatermark(watermarks.pollFirstEntry().getValue());
+			current = Long.MAX_VALUE;
+		}
+
+		if (current == Long.MAX_VALUE) {
+			// nothing follows the end of a context
+			watermarksPerContext.remove(context);
+			currentTimestampPerContext.remove(context);
+		} else {
+			currentTimestampPerContext.put(context, current);
+		}
+	}
+
+	private NavigableMap<Long, Watermark> getWatermarks(List<Long> context) {
+		NavigableMap<Long, Watermark> watermarks = watermarksPerContext.get(context);
+		if (watermarks == null) {
+			watermarks = new TreeMap<>();
+			watermarksPerContext.put(context, watermarks);
 		}
+		return watermarks;
 	}
 }
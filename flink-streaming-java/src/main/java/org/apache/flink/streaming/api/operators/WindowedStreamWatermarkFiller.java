@@ -1,37 +1,81 @@
 package org.apache.flink.streaming.api.operators;
 
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
 import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
-
+/**
+ * Buffers the records of every context until a watermark passes their timestamp, and then emits
+ * them followed by a watermark for their timestamp. The records are kept in a sorted index per
+ * context, so the cost of a watermark only depends on the number of buffered timestamps, not on
+ * the time that passed since the previous one.
+ *
+ * <p>The buffered records are kept in operator state when taking a snapshot.
+ */
 public class WindowedStreamWatermarkFiller<IN>
 	extends AbstractStreamOperator<IN>
 	implements OneInputStreamOperator<IN, IN> {
 
 	private static final long serialVersionUID = 1L;
 
-	private Map<List<Long>,Map<Long,List<StreamRecord<IN>>>> recordsByContext = new HashMap<>();
+	private transient Map<List<Long>, NavigableMap<Long, List<StreamRecord<IN>>>> recordsByContext;
 	private long currentTimestamp = 0;
 
+	private transient ListState<StreamElement> bufferedRecordsState;
+
 	public WindowedStreamWatermarkFiller() {
 		chainingStrategy = ChainingStrategy.ALWAYS;
 	}
 
 	@Override
-	public void processElement(StreamRecord<IN> element) throws Exception {
-		if(element.getContext().get(0) > 0) {
-			System.out.println(element);
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		recordsByContext = new HashMap<>();
+		bufferedRecordsState = context.getOperatorStateStore().getListState(new ListStateDescriptor<>(
+			"filler-records",
+			new StreamElementSerializer<>(getOperatorConfig().<IN>getTypeSerializerIn1(getUserCodeClassloader()))));
+
+		if (context.isRestored()) {
+			for (StreamElement element : bufferedRecordsState.get()) {
+				processElement(element.<IN>asRecord());
+			}
 		}
-		Map<Long, List<StreamRecord<IN>>> elements = getElements(element.getContext());
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+
+		bufferedRecordsState.clear();
+		for (NavigableMap<Long, List<StreamRecord<IN>>> elements : recordsByContext.values()) {
+			for (List<StreamRecord<IN>> elementsWithSameTimestamp : elements.values()) {
+				for (StreamRecord<IN> element : elementsWithSameTimestamp) {
+					bufferedRecordsState.add(element);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		NavigableMap<Long, List<StreamRecord<IN>>> elements = getElements(element.getContext());
 
 		List<StreamRecord<IN>> elementsWithSameTimestamp = elements.get(element.getTimestamp());
-		if(elementsWithSameTimestamp == null) {
-			elementsWithSameTimestamp = new LinkedList<>();
+		if (elementsWithSameTimestamp == null) {
+			elementsWithSameTimestamp = new ArrayList<>();
 			elements.put(element.getTimestamp(), elementsWithSameTimestamp);
 		}
 		elementsWithSameTimestamp.add(element);
@@ -39,41 +83,30 @@ public class WindowedStreamWatermarkFiller<IN>
 
 	@Override
 	public void processWatermark(Watermark watermark) {
-		Map<Long,List<StreamRecord<IN>>> elements = getElements(watermark.getContext());
-
-		for(long i=currentTimestamp; i<=watermark.getTimestamp(); i++) {
-			if(elements.get(i) != null) {
-				boolean iterationOnly = false;
-				if(currentTimestamp < watermark.getTimestamp()) {
-					iterationOnly = true;
-				}
-				for(StreamRecord<IN> record : elements.get(i)) {
-					output.collect(record);
-				}
-				//System.out.println("Filler: " + new Watermark(watermark.getContext(), i, false, iterationOnly));
-				output.emitWatermark(new Watermark(watermark.getContext(), i, false, iterationOnly));
-				elements.remove(i);
-			}
+		NavigableMap<Long, List<StreamRecord<IN>>> elements = recordsByContext.get(watermark.getContext());
+		if (elements == null || watermark.getTimestamp() < currentTimestamp) {
+			return;
 		}
-/*		for(Iterator<Map.Entry<Long,List<StreamRecord<IN>>>> it = elements.entrySet().iterator(); it.hasNext();) {
-			Map.Entry<Long,List<StreamRecord<IN>>> current = it.next();
-			if(current.getKey() > watermark.getTimestamp()) continue;
 
-			for(StreamRecord<IN> record : current.getValue()) {
+		boolean iterationOnly = currentTimestamp < watermark.getTimestamp();
+		NavigableMap<Long, List<StreamRecord<IN>>> ready = elements.subMap(currentTimestamp, true, watermark.getTimestamp(), true);
+		for (Map.Entry<Long, List<StreamRecord<IN>>> elementsWithSameTimestamp : ready.entrySet()) {
+			for (StreamRecord<IN> record : elementsWithSameTimestamp.getValue()) {
 				output.collect(record);
 			}
-			if(current.getKey() != watermark.getTimestamp()) {
-				output.emitWatermark(new Watermark(watermark.getContext(), current.getKey(), true));
-			}
-			it.remove();
-		}*/
-		//output.emitWatermark(watermark);
+			output.emitWatermark(new Watermark(watermark.getContext(), elementsWithSameTimestamp.getKey(), false, iterationOnly));
+		}
+		ready.clear();
+
+		if (elements.isEmpty()) {
+			recordsByContext.remove(watermark.getContext());
+		}
 	}
 
-	private Map<Long, List<StreamRecord<IN>>> getElements(List<Long> context) {
-		Map<Long, List<StreamRecord<IN>>> elements = recordsByContext.get(context);
-		if(elements == null) {
-			elements = new HashMap();
+	private NavigableMap<Long, List<StreamRecord<IN>>> getElements(List<Long> context) {
+		NavigableMap<Long, List<StreamRecord<IN>>> elements = recordsByContext.get(context);
+		if (elements == null) {
+			elements = new TreeMap<>();
 			recordsByContext.put(context, elements);
 		}
 		return elements;
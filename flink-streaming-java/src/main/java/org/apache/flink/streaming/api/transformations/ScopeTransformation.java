@@ -17,10 +17,11 @@
  */
 package org.apache.flink.streaming.api.transformations;
 
-import com.google.common.collect.Lists;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.streaming.api.operators.ChainingStrategy;
 
+import org.apache.flink.shaded.guava18.com.google.common.collect.Lists;
+
 import java.util.Collection;
 import java.util.List;
 
@@ -20,9 +20,10 @@ package org.apache.flink.streaming.api.watermark;
 
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -52,16 +53,17 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 	
 	/** The timestamp of the watermark in milliseconds*/
 	private long timestamp;
-	private final List<Long> context;
+	private TimeContext context;
 	private boolean iterationDone = false;
 	private boolean iterationOnly = false;
+	private IterationAggregates aggregates;
 
 	/**
 	 * Creates a new watermark with the given timestamp in milliseconds.
 	 */
 	public Watermark(long timestamp) {
 		this.timestamp = timestamp;
-		this.context = new LinkedList<>();
+		this.context = TimeContext.EMPTY;
 	}
 
 	/**
@@ -69,7 +71,7 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 	 */
 	public Watermark(Watermark watermark) {
 		this.timestamp = watermark.getTimestamp();
-		this.context = new LinkedList<>(watermark.getContext());
+		this.context = watermark.context;
 	}
 
 	/**
@@ -77,7 +79,7 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 	 */
 	public Watermark(List<Long> context, long timestamp) {
 		this.timestamp = timestamp;
-		this.context = new LinkedList(context);
+		this.context = TimeContext.of(context);
 	}
 
 	/**
@@ -85,7 +87,7 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 	 */
 	public Watermark(List<Long> context, long timestamp, boolean iterationDone) {
 		this.timestamp = timestamp;
-		this.context = new LinkedList(context);
+		this.context = TimeContext.of(context);
 		this.iterationDone = iterationDone;
 	}
 
@@ -94,7 +96,7 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 	 */
 	public Watermark(List<Long> context, long timestamp, boolean iterationDone, boolean iterationOnly) {
 		this.timestamp = timestamp;
-		this.context = new LinkedList(context);
+		this.context = TimeContext.of(context);
 		this.iterationDone = iterationDone;
 		this.iterationOnly = iterationOnly;
 	}
@@ -106,19 +108,20 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 		return timestamp;
 	}
 	public List<Long> getFullTimestamp() {
-		List<Long> fullTimestamp = new LinkedList<>(context);
-		fullTimestamp.add(timestamp);
-		return fullTimestamp;
+		return context.append(timestamp);
 	}
 	public List<Long> getContext() {return context; }
 
 	public void addNestedTimestamp(long timestamp) {
-		this.context.add(this.timestamp);
+		this.context = this.context.append(this.timestamp);
 		this.timestamp = timestamp;
 	}
 	public void removeNestedTimestamp() {
 		if(this.context.size() > 0) {
-			this.timestamp = this.context.remove(this.context.size()-1);
+			this.timestamp = this.context.getLast();
+			this.context = this.context.removeLast();
+			// the aggregates belong to the iteration that is left
+			this.aggregates = null;
 		}
 	}
 
@@ -133,6 +136,14 @@ public final class Watermark extends StreamElement implements Comparable<Waterma
 
 	public boolean iterationOnly() { return iterationOnly; }
 
+	/**
+	 * Returns the aggregates of the iteration that travel with this watermark, or {@code null}.
+	 */
+	public IterationAggregates getAggregates() { return aggregates; }
+	public void setAggregates(IterationAggregates aggregates) {
+		this.aggregates = aggregates;
+	}
+
 	// ------------------------------------------------------------------------
 
 	@Override
@@ -48,7 +48,7 @@ public class EventTimeTrigger extends Trigger<Object, TimeWindow> {
 
 	@Override
 	public TriggerResult onEventTime(List<Long> timeContext, long time, TimeWindow window, TriggerContext ctx) {
-		return timeContext == window.getTimeContext() && time == window.maxTimestamp() ?
+		return timeContext.equals(window.getTimeContext()) && time == window.maxTimestamp() ?
 			TriggerResult.FIRE :
 			TriggerResult.CONTINUE;
 	}
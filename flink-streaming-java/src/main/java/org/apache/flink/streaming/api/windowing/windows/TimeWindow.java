@@ -24,12 +24,12 @@ import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
 import org.apache.flink.util.MathUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Collections;
 import java.util.Set;
@@ -43,18 +43,18 @@ import java.util.Comparator;
 @PublicEvolving
 public class TimeWindow extends Window {
 
-	private final List<Long> timeContext;
+	private final TimeContext timeContext;
 	private final long start;
 	private final long end;
 
 	public TimeWindow(long start, long end) {
-		this(new LinkedList<Long>(), start, end);
+		this(TimeContext.EMPTY, start, end);
 	}
 
 	public TimeWindow(List<Long> timeContext, long start, long end) {
 		this.start = start;
 		this.end = end;
-		this.timeContext = timeContext;
+		this.timeContext = TimeContext.of(timeContext);
 	}
 
 	/**
@@ -179,21 +179,14 @@ public class TimeWindow extends Window {
 		public void serialize(TimeWindow record, DataOutputView target) throws IOException {
 			target.writeLong(record.start);
 			target.writeLong(record.end);
-			target.writeInt(record.getTimeContext().size());
-			for (Long timestamp : record.getTimeContext()) {
-				target.writeLong(timestamp);
-			}
+			record.timeContext.write(target);
 		}
 
 		@Override
 		public TimeWindow deserialize(DataInputView source) throws IOException {
 			long start = source.readLong();
 			long end = source.readLong();
-			long timeContextSize = source.readInt();
-			List<Long> timeContext = new LinkedList<>();
-			for (int i = 0; i < timeContextSize; i++) {
-				timeContext.add(source.readLong());
-			}
+			TimeContext timeContext = TimeContext.read(source, null);
 			return new TimeWindow(timeContext, start, end);
 		}
 
@@ -206,11 +199,7 @@ public class TimeWindow extends Window {
 		public void copy(DataInputView source, DataOutputView target) throws IOException {
 			target.writeLong(source.readLong());
 			target.writeLong(source.readLong());
-			int timeContextSize = source.readInt();
-			target.writeInt(timeContextSize);
-			for (int i = 0; i < timeContextSize; i++) {
-				target.writeLong(source.readLong());
-			}
+			TimeContext.copy(source, target);
 		}
 
 		@Override
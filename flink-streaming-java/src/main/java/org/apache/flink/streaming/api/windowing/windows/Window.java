@@ -19,8 +19,8 @@
 package org.apache.flink.streaming.api.windowing.windows;
 
 import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -40,6 +40,6 @@ public abstract class Window {
 	 */
 	public abstract long maxTimestamp();
 	public List<Long> getTimeContext() {
-		return new LinkedList<Long>();
+		return TimeContext.EMPTY;
 	}
 }
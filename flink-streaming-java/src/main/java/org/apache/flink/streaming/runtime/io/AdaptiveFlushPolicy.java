@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Decides per channel when the {@link StreamRecordWriter} flushes the unfinished buffer of the
+ * channel, instead of flushing all channels at a fixed buffer timeout.
+ *
+ * <p>The policy is checked periodically by the output flusher thread. For every channel with
+ * unflushed data, it keeps a flush interval between the check interval and the buffer timeout:
+ * <ul>
+ *     <li>While the consumer of the channel has a backlog of finished buffers (because it is busy
+ *     or, with credit-based flow control, has no credit), a flush would only queue a small buffer
+ *     behind the backlog. The interval is doubled to batch more data.</li>
+ *     <li>While the consumer has taken all finished buffers, it waits for data. The interval is
+ *     halved to reduce the latency.</li>
+ * </ul>
+ * Once the unflushed data are older than the interval, the channel is flushed, unless the data
+ * rate of the channel fills the buffer within the interval anyway. Data older than the buffer
+ * timeout are always flushed, so the timeout keeps bounding the latency.
+ *
+ * <p>The policy is only used by the output flusher thread and is not thread-safe, except for
+ * {@link #getFlushInterval(int)}, which may return a stale value.
+ */
+class AdaptiveFlushPolicy {
+
+	/** The weight of the latest sample in the moving average of the data rate of a channel. */
+	private static final double RATE_SMOOTHING = 0.25;
+
+	/** The number of checks within the buffer timeout. */
+	private static final int CHECKS_PER_TIMEOUT = 10;
+
+	private final ResultPartitionWriter writer;
+
+	/** The interval of the checks, which is also the minimum flush interval. */
+	private final long checkInterval;
+
+	/** The buffer timeout, which is the maximum flush interval. */
+	private final long maxFlushInterval;
+
+	/** The current flush interval of each channel. */
+	private final long[] flushIntervals;
+
+	/** The time of the check that first saw the unflushed data of each channel, or -1. */
+	private final long[] pendingSince;
+
+	/** The number of unflushed bytes of each channel at the last check. */
+	private final int[] lastUnflushedBytes;
+
+	/** The moving average of the bytes written to each channel per millisecond. */
+	private final double[] bytesPerMillisecond;
+
+	private int bufferSize = -1;
+
+	private long lastCheckTime = -1;
+
+	AdaptiveFlushPolicy(ResultPartitionWriter writer, long maxFlushInterval) {
+		checkArgument(maxFlushInterval > 0);
+		this.writer = checkNotNull(writer);
+		this.maxFlushInterval = maxFlushInterval;
+		this.checkInterval = Math.max(1, maxFlushInterval / CHECKS_PER_TIMEOUT);
+
+		int numChannels = writer.getNumberOfSubpartitions();
+		this.flushIntervals = new long[numChannels];
+		this.pendingSince = new long[numChannels];
+		this.lastUnflushedBytes = new int[numChannels];
+		this.bytesPerMillisecond = new double[numChannels];
+
+		Arrays.fill(flushIntervals, maxFlushInterval);
+		Arrays.fill(pendingSince, -1);
+	}
+
+	/**
+	 * Returns the interval in which {@link #checkAndFlush(long)} should be called.
+	 */
+	long getCheckInterval() {
+		return checkInterval;
+	}
+
+	/**
+	 * Returns the current flush interval of the channel in milliseconds.
+	 */
+	long getFlushInterval(int channel) {
+		return flushIntervals[channel];
+	}
+
+	/**
+	 * Checks all channels and flushes the ones whose unflushed data should be sent.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	void checkAndFlush(long now) {
+		if (bufferSize < 0) {
+			// the buffer pool is registered after the writer is created
+			bufferSize = writer.getBufferProvider().getMemorySegmentSize();
+		}
+
+		long elapsed = lastCheckTime < 0 ? checkInterval : Math.max(1, now - lastCheckTime);
+		lastCheckTime = now;
+
+		for (int channel = 0; channel < flushIntervals.length; channel++) {
+			int unflushedBytes = writer.getNumberOfUnflushedBytes(channel);
+			if (unflushedBytes < 0) {
+				// unknown, flush at the buffer timeout
+				if (pendingSince[channel] < 0) {
+					pendingSince[channel] = now;
+				} else if (now - pendingSince[channel] >= maxFlushInterval) {
+					flush(channel);
+				}
+				continue;
+			}
+
+			// if the data are less than at the last check, a buffer has been finished in between
+			boolean isNewBuffer = unflushedBytes < lastUnflushedBytes[channel];
+			int writtenBytes = isNewBuffer
+				? Math.max(0, bufferSize - lastUnflushedBytes[channel]) + unflushedBytes
+				: unflushedBytes - lastUnflushedBytes[channel];
+			bytesPerMillisecond[channel] = (1 - RATE_SMOOTHING) * bytesPerMillisecond[channel]
+				+ RATE_SMOOTHING * writtenBytes / elapsed;
+			lastUnflushedBytes[channel] = unflushedBytes;
+
+			if (unflushedBytes == 0) {
+				pendingSince[channel] = -1;
+				continue;
+			}
+			if (pendingSince[channel] < 0 || isNewBuffer) {
+				pendingSince[channel] = now;
+			}
+
+			long interval = adaptFlushInterval(channel);
+			long age = now - pendingSince[channel];
+
+			if (age >= maxFlushInterval) {
+				flush(channel);
+			} else if (age >= interval && !fillsBufferWithin(channel, unflushedBytes, interval)) {
+				flush(channel);
+			}
+		}
+	}
+
+	private long adaptFlushInterval(int channel) {
+		long interval = writer.getBuffersInBacklog(channel) > 0
+			? Math.min(maxFlushInterval, 2 * flushIntervals[channel])
+			: Math.max(checkInterval, flushIntervals[channel] / 2);
+		flushIntervals[channel] = interval;
+		return interval;
+	}
+
+	/**
+	 * Returns whether the data rate of the channel fills the rest of the buffer within the given
+	 * time, in which case the buffer is sent without a flush.
+	 */
+	private boolean fillsBufferWithin(int channel, int unflushedBytes, long time) {
+		return (bufferSize - unflushedBytes) < bytesPerMillisecond[channel] * time;
+	}
+
+	private void flush(int channel) {
+		writer.flush(channel);
+		pendingSince[channel] = -1;
+		lastUnflushedBytes[channel] = 0;
+	}
+}
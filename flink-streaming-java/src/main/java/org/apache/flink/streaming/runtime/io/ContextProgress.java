@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The progress of a single context over all input channels of a task.
+ *
+ * <p>The watermark of every channel is kept in a slot indexed by the channel. The minimum over
+ * all channels is maintained incrementally in an array based segment tree, so that updating the
+ * watermark of a channel and retrieving the new minimum costs {@code O(log channels)} and does
+ * not allocate. Instances can be {@link #reset() reset} and reused for other contexts.
+ */
+@Internal
+public final class ContextProgress implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int numberOfChannels;
+
+	/**
+	 * Min segment tree over the channel watermarks. The watermark of channel {@code i} is stored
+	 * at {@code numberOfChannels + i}, node {@code j} holds the minimum of nodes {@code 2j} and
+	 * {@code 2j + 1}, so node 1 holds the minimum over all channels.
+	 */
+	private final long[] tree;
+
+	/** Whether a channel has reported a watermark for this context yet. */
+	private final boolean[] seen;
+
+	/** Whether the last watermark of a channel flagged the iteration as done. */
+	private final boolean[] done;
+
+	private int numSeen;
+
+	private int numDone;
+
+	private int numFinished;
+
+	private long lastEmitted;
+
+	private boolean hasEmitted;
+
+	/** The iteration aggregates received since the last emitted watermark, if any. */
+	private transient IterationAggregates aggregates;
+
+	public ContextProgress(int numberOfChannels) {
+		if (numberOfChannels <= 0) {
+			throw new IllegalArgumentException("The number of channels must be positive.");
+		}
+		this.numberOfChannels = numberOfChannels;
+		this.tree = new long[2 * numberOfChannels];
+		this.seen = new boolean[numberOfChannels];
+		this.done = new boolean[numberOfChannels];
+		reset();
+	}
+
+	/**
+	 * Clears all progress so that the instance can be reused for another context.
+	 */
+	public void reset() {
+		Arrays.fill(tree, Long.MIN_VALUE);
+		Arrays.fill(seen, false);
+		Arrays.fill(done, false);
+		numSeen = 0;
+		numDone = 0;
+		numFinished = 0;
+		lastEmitted = Long.MIN_VALUE;
+		hasEmitted = false;
+		aggregates = null;
+	}
+
+	/**
+	 * Advances the watermark of the given channel. Watermarks that do not advance the channel are
+	 * ignored.
+	 *
+	 * @return {@code true} if the watermark of the channel advanced, {@code false} otherwise
+	 */
+	public boolean advance(int channel, long timestamp, boolean iterationDone) {
+		int node = numberOfChannels + channel;
+		if (seen[channel]) {
+			if (timestamp <= tree[node]) {
+				return false;
+			}
+		} else {
+			seen[channel] = true;
+			numSeen++;
+		}
+
+		if (timestamp == Long.MAX_VALUE) {
+			numFinished++;
+		}
+		if (done[channel] != iterationDone) {
+			done[channel] = iterationDone;
+			numDone += iterationDone ? 1 : -1;
+		}
+
+		tree[node] = timestamp;
+		for (node >>>= 1; node >= 1; node >>>= 1) {
+			long min = Math.min(tree[2 * node], tree[2 * node + 1]);
+			if (tree[node] == min) {
+				break;
+			}
+			tree[node] = min;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether every channel has reported a watermark for this context.
+	 */
+	public boolean allChannelsSeen() {
+		return numSeen == numberOfChannels;
+	}
+
+	/**
+	 * Returns whether the last watermark of every channel flagged the iteration as done.
+	 */
+	public boolean allChannelsDone() {
+		return numDone == numberOfChannels;
+	}
+
+	/**
+	 * Returns whether every channel has finished this context, i.e. sent a watermark with
+	 * timestamp {@code Long.MAX_VALUE}.
+	 */
+	public boolean allChannelsFinished() {
+		return numFinished == numberOfChannels;
+	}
+
+	/**
+	 * Returns the minimum watermark over all channels. Only meaningful if
+	 * {@link #allChannelsSeen()} holds.
+	 */
+	public long getMinWatermark() {
+		return tree[1];
+	}
+
+	/**
+	 * Records the given watermark as emitted if it is larger than the last emitted one.
+	 *
+	 * @return {@code true} if the watermark should be emitted, {@code false} otherwise
+	 */
+	public boolean tryEmit(long timestamp) {
+		if (!hasEmitted || timestamp > lastEmitted) {
+			hasEmitted = true;
+			lastEmitted = timestamp;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Merges the iteration aggregates of a channel watermark into the aggregates that are
+	 * collected for the next emitted watermark.
+	 */
+	public void collectAggregates(IterationAggregates channelAggregates) {
+		if (aggregates == null) {
+			aggregates = new IterationAggregates();
+		}
+		aggregates.merge(channelAggregates);
+	}
+
+	/**
+	 * Returns the collected iteration aggregates, or {@code null} if there are none, and starts
+	 * collecting anew.
+	 */
+	public IterationAggregates takeAggregates() {
+		IterationAggregates collected = aggregates;
+		aggregates = null;
+		return collected;
+	}
+
+	public int getNumberOfChannels() {
+		return numberOfChannels;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aligns the feedback input of a loop operator whose iteration heads are aligned by an
+ * {@link org.apache.flink.streaming.api.operators.IterationProgressCoordinator}.
+ *
+ * <p>In that mode the heads do not broadcast their superstep watermarks. A head only sends its
+ * watermark on the channels it sent feedback records on since its last watermark, and reports
+ * these channels to the coordinator. The coordinator aligns the watermarks of all heads and
+ * broadcasts the aligned watermark together with the reported routes. Since the records and the
+ * watermarks of a head travel in order, the aligned watermark is complete at this input once the
+ * watermarks of all heads that sent records here have arrived. A superstep therefore costs
+ * {@code O(p)} watermarks plus one per pair of head and loop operator that exchanged records,
+ * instead of {@code O(p²)}.
+ */
+public class CoordinatedProgressTrackingHandler extends ProgressTrackingHandler {
+
+	private static final long[] NO_REQUIREMENTS = new long[0];
+
+	/** The head that sends on each input channel, or -1 for the channel of the coordinator. */
+	private final int[] headOfChannel;
+
+	private final int numberOfHeads;
+
+	/** The index of the channel that leads from every head to this input. */
+	private final int subtaskIndex;
+
+	private final Map<List<Long>, HeadProgress> progressPerContext = new HashMap<>();
+
+	private final ArrayDeque<Watermark> ready = new ArrayDeque<>();
+
+	/**
+	 * Creates the handler.
+	 *
+	 * @param headOfChannel The index of the head that sends on each input channel, -1 for the
+	 *                      channel of the coordinator.
+	 * @param subtaskIndex The index of the subtask of the loop operator.
+	 */
+	public CoordinatedProgressTrackingHandler(int[] headOfChannel, int subtaskIndex) {
+		super(headOfChannel.length);
+		this.headOfChannel = headOfChannel;
+		this.subtaskIndex = subtaskIndex;
+
+		int heads = 0;
+		for (int head : headOfChannel) {
+			heads = Math.max(heads, head + 1);
+		}
+		this.numberOfHeads = heads;
+	}
+
+	@Override
+	public Watermark getNextWatermark(Watermark watermark, int currentChannel) {
+		List<Long> context = watermark.getContext();
+		int head = headOfChannel[currentChannel];
+
+		if (head < 0) {
+			HeadProgress progress = getProgress(context);
+			IterationAggregates aggregates = watermark.getAggregates();
+			long[] required = NO_REQUIREMENTS;
+			if (aggregates != null) {
+				required = aggregates.getRequiredWatermarks(subtaskIndex, numberOfHeads);
+				aggregates.clearRoutes();
+				if (aggregates.isEmpty()) {
+					watermark.setAggregates(null);
+				}
+			}
+			progress.pending.add(watermark);
+			progress.required.add(required);
+			release(context, progress);
+		} else {
+			HeadProgress progress = getProgress(context);
+			progress.received[head] = Math.max(progress.received[head], watermark.getTimestamp());
+			release(context, progress);
+		}
+		return ready.poll();
+	}
+
+	@Override
+	public Watermark pollWatermark() {
+		return ready.poll();
+	}
+
+	@Override
+	public int getNumberOfActiveContexts() {
+		return progressPerContext.size();
+	}
+
+	private void release(List<Long> context, HeadProgress progress) {
+		while (!progress.pending.isEmpty() && progress.isComplete(progress.required.peek())) {
+			Watermark next = progress.pending.poll();
+			progress.required.poll();
+			ready.add(next);
+
+			if (next.iterationDone() || next.getTimestamp() == Long.MAX_VALUE) {
+				// nothing follows the end of an iteration context
+				progressPerContext.remove(context);
+				return;
+			}
+		}
+	}
+
+	private HeadProgress getProgress(List<Long> context) {
+		HeadProgress progress = progressPerContext.get(context);
+		if (progress == null) {
+			progress = new HeadProgress(numberOfHeads);
+			progressPerContext.put(context, progress);
+		}
+		return progress;
+	}
+
+	/**
+	 * The watermarks that arrived from the heads for a context, and the aligned watermarks of the
+	 * coordinator that wait for them.
+	 */
+	private static final class HeadProgress {
+
+		final long[] received;
+
+		final ArrayDeque<Watermark> pending = new ArrayDeque<>();
+
+		/** The required watermarks per head of each pending watermark. */
+		final ArrayDeque<long[]> required = new ArrayDeque<>();
+
+		HeadProgress(int numberOfHeads) {
+			this.received = new long[numberOfHeads];
+			Arrays.fill(received, Long.MIN_VALUE);
+		}
+
+		boolean isComplete(long[] requiredPerHead) {
+			for (int head = 0; head < requiredPerHead.length; head++) {
+				if (received[head] < requiredPerHead[head]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
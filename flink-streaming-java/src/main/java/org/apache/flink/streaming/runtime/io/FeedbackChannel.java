@@ -0,0 +1,680 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.disk.iomanager.BlockChannelReader;
+import org.apache.flink.runtime.io.disk.iomanager.BlockChannelWriter;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelReaderInputView;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelWriterOutputView;
+import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * The channel that carries the elements of a feedback edge from a
+ * {@link org.apache.flink.streaming.runtime.tasks.StreamIterationTail} to the
+ * {@link org.apache.flink.streaming.runtime.tasks.StreamIterationHead} of the same parallel
+ * instance.
+ *
+ * <p>The channel is a bounded single-producer/single-consumer ring buffer. The tail is the only
+ * producer and the head the only consumer, so handing over an element only costs an ordered write
+ * of the producer index and never takes a lock.
+ *
+ * <p>If the ring buffer is full, the producer does not block (which could deadlock the loop) and
+ * does not drop elements. Instead the overflow is serialized into {@link MemorySegment}s that are
+ * written to a spill file of the {@link IOManager}. Once the consumer has drained the ring buffer
+ * it takes over the spill file and reads it back, so the order of the elements is preserved. Only
+ * the hand over of the spill file is synchronized.
+ *
+ * <p>Elements can also be handed over in batches with {@link #putAll(Object[], int)} and
+ * {@link #drainTo(Collection, int)}, which publish a whole batch with a single write of the
+ * respective index, so that the synchronization cost is amortized over the batch.
+ *
+ * <p>For checkpoints of the loop, the producer marks the position of a checkpoint barrier in the
+ * sequence of elements with {@link #markCheckpoint(long)}. The consumer learns from
+ * {@link #getNextCheckpointPosition()} which of the elements it takes precede the barrier, and the
+ * waiting methods return early once the consumer reached a barrier.
+ *
+ * @param <T> The type of the elements in the channel.
+ */
+@Internal
+public class FeedbackChannel<T> {
+
+	/** The default number of elements that are kept in memory. */
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	/** The size of the memory segments used to write and read spill files. */
+	private static final int SPILL_SEGMENT_SIZE = 32 * 1024;
+
+	/** The number of memory segments used to write and read spill files. */
+	private static final int NUM_SPILL_SEGMENTS = 2;
+
+	/** The maximum time the consumer parks before re-checking the channel. */
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final Object[] ring;
+
+	private final int mask;
+
+	/** The index of the next element to consume, written only by the consumer. */
+	private final AtomicLong head = new AtomicLong();
+
+	/** The index of the next element to produce, written only by the producer. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The producer's cached view of {@link #head}, to avoid reading it on every element. */
+	private long cachedHead;
+
+	/** The consumer thread if it is parked waiting for elements. */
+	private volatile Thread parkedConsumer;
+
+	/** The serializer of the producer, which spills elements. */
+	private final TypeSerializer<T> spillSerializer;
+
+	/** The serializer of the consumer, which reads the spilled elements. */
+	private final TypeSerializer<T> readSerializer;
+
+	private final IOManager ioManager;
+
+	/** Guards the hand over of the spill file from the producer to the consumer. */
+	private final Object spillLock = new Object();
+
+	/** Whether the producer currently appends to a spill file instead of the ring buffer. */
+	private volatile boolean spilling;
+
+	private volatile boolean closed;
+
+	// ------------------------------------------------------------------------
+	//  Spilling state, guarded by the spill lock
+	// ------------------------------------------------------------------------
+
+	private FileIOChannel.ID spillChannel;
+
+	private BlockChannelWriter<MemorySegment> spillChannelWriter;
+
+	private ChannelWriterOutputView spillWriter;
+
+	private int numSpilled;
+
+	private List<MemorySegment> writeMemory;
+
+	// ------------------------------------------------------------------------
+	//  Reading state, owned by the consumer
+	// ------------------------------------------------------------------------
+
+	private BlockChannelReader<MemorySegment> spillChannelReader;
+
+	private ChannelReaderInputView spillReader;
+
+	private int numToRead;
+
+	private List<MemorySegment> readMemory;
+
+	/** Total number of elements that were spilled since the channel was created. */
+	private volatile long totalSpilled;
+
+	// ------------------------------------------------------------------------
+	//  Checkpoint barriers
+	// ------------------------------------------------------------------------
+
+	/** The number of elements that were added, written only by the producer. */
+	private long numProduced;
+
+	/** The number of elements that were removed, written only by the consumer. */
+	private long numConsumed;
+
+	/** The barriers that passed the producer and were not yet taken by the consumer. */
+	private final ConcurrentLinkedQueue<CheckpointMark> checkpointMarks = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Creates a new feedback channel.
+	 *
+	 * @param capacity The number of elements that are kept in memory, rounded up to the next
+	 *                 power of two.
+	 * @param serializer The serializer used to spill elements. The channel duplicates it for the
+	 *                   producer and the consumer thread, so the caller may keep using it.
+	 * @param ioManager The I/O manager providing the spill files.
+	 */
+	public FeedbackChannel(int capacity, TypeSerializer<T> serializer, IOManager ioManager) {
+		checkArgument(capacity > 0 && capacity <= (1 << 30), "Capacity must be in (0, 2^30].");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.ring = new Object[size];
+		this.mask = size - 1;
+		checkNotNull(serializer);
+		this.spillSerializer = serializer.duplicate();
+		this.readSerializer = serializer.duplicate();
+		this.ioManager = checkNotNull(ioManager);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Producer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Adds an element to the channel. This method never blocks on a slow consumer: if the ring
+	 * buffer is full, the element is spilled. Elements added after the channel was closed are
+	 * discarded, because there is nobody left to consume them.
+	 *
+	 * <p>Must only be called by the single producer.
+	 */
+	public void put(T element) throws IOException {
+		if (closed) {
+			return;
+		}
+		numProduced++;
+
+		if (spilling) {
+			synchronized (spillLock) {
+				if (spilling) {
+					spill(element);
+					return;
+				}
+			}
+		}
+
+		if (!offer(element)) {
+			synchronized (spillLock) {
+				if (closed) {
+					return;
+				}
+				if (spillWriter == null) {
+					openSpillFile();
+				}
+				spill(element);
+				spilling = true;
+			}
+			// the consumer may be waiting to take over the spilled elements
+			signalConsumer();
+		}
+	}
+
+	/**
+	 * Adds the first {@code count} elements of the given array to the channel, publishing them to
+	 * the consumer at once. Like {@link #put(Object)}, this method never blocks on a slow consumer
+	 * and spills the elements that do not fit into the ring buffer.
+	 *
+	 * <p>Must only be called by the single producer.
+	 */
+	public void putAll(T[] elements, int count) throws IOException {
+		if (closed || count == 0) {
+			return;
+		}
+		numProduced += count;
+
+		int offset = spilling ? 0 : offerAll(elements, 0, count);
+		if (offset == count) {
+			return;
+		}
+
+		synchronized (spillLock) {
+			if (closed) {
+				return;
+			}
+			if (!spilling) {
+				offset += offerAll(elements, offset, count);
+				if (offset == count) {
+					return;
+				}
+				if (spillWriter == null) {
+					openSpillFile();
+				}
+			}
+			while (offset < count) {
+				spill(elements[offset++]);
+			}
+			spilling = true;
+		}
+		signalConsumer();
+	}
+
+	private boolean offer(T element) {
+		final long currentTail = tail.get();
+		if (currentTail - cachedHead >= ring.length) {
+			cachedHead = head.get();
+			if (currentTail - cachedHead >= ring.length) {
+				return false;
+			}
+		}
+		ring[(int) currentTail & mask] = element;
+		tail.set(currentTail + 1);
+		signalConsumer();
+		return true;
+	}
+
+	private int offerAll(T[] elements, int from, int to) {
+		final long currentTail = tail.get();
+		long free = ring.length - (currentTail - cachedHead);
+		if (free < to - from) {
+			cachedHead = head.get();
+			free = ring.length - (currentTail - cachedHead);
+		}
+		final int count = (int) Math.min(free, to - from);
+		for (int i = 0; i < count; i++) {
+			ring[(int) (currentTail + i) & mask] = elements[from + i];
+		}
+		if (count > 0) {
+			tail.set(currentTail + count);
+			signalConsumer();
+		}
+		return count;
+	}
+
+	private void signalConsumer() {
+		Thread consumer = parkedConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	/**
+	 * Marks that the barrier of the given checkpoint follows the elements that were added so far.
+	 *
+	 * <p>Must only be called by the single producer.
+	 */
+	public void markCheckpoint(long checkpointId) {
+		checkpointMarks.add(new CheckpointMark(checkpointId, numProduced));
+		// the consumer may be waiting for elements while the barrier is already complete
+		signalConsumer();
+	}
+
+	private void openSpillFile() throws IOException {
+		if (writeMemory == null) {
+			writeMemory = allocateSegments();
+		}
+		spillChannel = ioManager.createChannel();
+		spillChannelWriter = ioManager.createBlockChannelWriter(spillChannel);
+		spillWriter = new ChannelWriterOutputView(spillChannelWriter, writeMemory, SPILL_SEGMENT_SIZE);
+		numSpilled = 0;
+	}
+
+	private void spill(T element) throws IOException {
+		spillSerializer.serialize(element, spillWriter);
+		numSpilled++;
+		totalSpilled++;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Consumer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Retrieves and removes the next element, or returns {@code null} if the channel is empty.
+	 *
+	 * <p>Must only be called by the single consumer.
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() throws IOException {
+		if (spillReader != null) {
+			return readSpilled();
+		}
+
+		final long currentHead = head.get();
+		if (currentHead != tail.get()) {
+			return take(currentHead);
+		}
+
+		if (spilling) {
+			synchronized (spillLock) {
+				// the ring buffer may have received elements before the producer started spilling
+				if (currentHead != tail.get()) {
+					return take(currentHead);
+				}
+				if (!spilling) {
+					return null;
+				}
+				takeOverSpillFile();
+			}
+			return readSpilled();
+		}
+		return null;
+	}
+
+	/**
+	 * Removes up to {@code maxElements} available elements and adds them to the given collection.
+	 * All elements that are in the ring buffer are released to the producer at once.
+	 *
+	 * <p>Must only be called by the single consumer.
+	 *
+	 * @return The number of elements added to the collection, 0 if the channel is empty.
+	 */
+	public int drainTo(Collection<? super T> target, int maxElements) throws IOException {
+		checkArgument(maxElements > 0, "The maximum number of elements must be positive.");
+
+		if (spillReader != null) {
+			return drainSpilled(target, maxElements);
+		}
+
+		final long currentHead = head.get();
+		long available = tail.get() - currentHead;
+		if (available > 0) {
+			return drainRing(target, currentHead, available, maxElements);
+		}
+
+		if (spilling) {
+			synchronized (spillLock) {
+				available = tail.get() - currentHead;
+				if (available > 0) {
+					return drainRing(target, currentHead, available, maxElements);
+				}
+				if (!spilling) {
+					return 0;
+				}
+				takeOverSpillFile();
+			}
+			return drainSpilled(target, maxElements);
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes up to {@code maxElements} elements and adds them to the given collection, waiting up
+	 * to the given time for at least one element to become available.
+	 *
+	 * @return The number of elements added to the collection, 0 if the waiting time elapsed or the
+	 *         consumer reached a checkpoint barrier.
+	 */
+	public int drainTo(Collection<? super T> target, int maxElements, long timeout, TimeUnit unit)
+			throws IOException, InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int drained;
+		while ((drained = drainTo(target, maxElements)) == 0) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || isCheckpointReached()) {
+				return 0;
+			}
+			park(remaining);
+		}
+		return drained;
+	}
+
+	/**
+	 * Removes up to {@code maxElements} elements and adds them to the given collection, waiting
+	 * until at least one element becomes available or the consumer reached a checkpoint barrier.
+	 *
+	 * @return The number of elements added to the collection, 0 if the consumer reached a
+	 *         checkpoint barrier.
+	 */
+	public int takeAll(Collection<? super T> target, int maxElements) throws IOException, InterruptedException {
+		int drained;
+		while ((drained = drainTo(target, maxElements)) == 0) {
+			if (isCheckpointReached()) {
+				return 0;
+			}
+			park(MAX_PARK_NANOS);
+		}
+		return drained;
+	}
+
+	/**
+	 * Retrieves and removes the next element, waiting up to the given time for an element to
+	 * become available.
+	 *
+	 * @return The next element, or {@code null} if the waiting time elapsed.
+	 */
+	public T poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		T element;
+		while ((element = poll()) == null) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			park(remaining);
+		}
+		return element;
+	}
+
+	/**
+	 * Retrieves and removes the next element, waiting until an element becomes available.
+	 */
+	public T take() throws IOException, InterruptedException {
+		T element;
+		while ((element = poll()) == null) {
+			park(MAX_PARK_NANOS);
+		}
+		return element;
+	}
+
+	private void park(long nanos) throws InterruptedException {
+		parkedConsumer = Thread.currentThread();
+		try {
+			// re-check after publishing the parked thread, the producer may have missed it
+			if (head.get() == tail.get() && !spilling && !isCheckpointReached()) {
+				LockSupport.parkNanos(this, Math.min(nanos, MAX_PARK_NANOS));
+			}
+		} finally {
+			parkedConsumer = null;
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T take(long currentHead) {
+		final int index = (int) currentHead & mask;
+		T element = (T) ring[index];
+		ring[index] = null;
+		head.set(currentHead + 1);
+		numConsumed++;
+		return element;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int drainRing(Collection<? super T> target, long currentHead, long available, int maxElements) {
+		final int count = (int) Math.min(available, maxElements);
+		for (int i = 0; i < count; i++) {
+			final int index = (int) (currentHead + i) & mask;
+			target.add((T) ring[index]);
+			ring[index] = null;
+		}
+		head.set(currentHead + count);
+		numConsumed += count;
+		return count;
+	}
+
+	private int drainSpilled(Collection<? super T> target, int maxElements) throws IOException {
+		final int count = Math.min(numToRead, maxElements);
+		for (int i = 0; i < count; i++) {
+			target.add(readSpilled());
+		}
+		return count;
+	}
+
+	private void takeOverSpillFile() throws IOException {
+		final FileIOChannel.ID channel = spillChannel;
+		final int numElements = numSpilled;
+		final int numBlocks;
+
+		writeMemory = spillWriter.close();
+		numBlocks = spillWriter.getBlockCount();
+		spillWriter = null;
+		spillChannelWriter = null;
+		spillChannel = null;
+		numSpilled = 0;
+		spilling = false;
+
+		if (readMemory == null) {
+			readMemory = allocateSegments();
+		}
+		spillChannelReader = ioManager.createBlockChannelReader(channel);
+		spillReader = new ChannelReaderInputView(spillChannelReader, readMemory, numBlocks, false);
+		numToRead = numElements;
+	}
+
+	private T readSpilled() throws IOException {
+		T element = readSerializer.deserialize(spillReader);
+		numConsumed++;
+		if (--numToRead == 0) {
+			closeSpillReader();
+		}
+		return element;
+	}
+
+	private void closeSpillReader() throws IOException {
+		readMemory = spillReader.close();
+		spillChannelReader.deleteChannel();
+		spillReader = null;
+		spillChannelReader = null;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Lifecycle and properties
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Closes the channel and deletes all spill files. Elements that are added afterwards are
+	 * discarded. Must be called by the consumer.
+	 */
+	public void close() throws IOException {
+		closed = true;
+		IOException exception = null;
+
+		synchronized (spillLock) {
+			if (spillWriter != null) {
+				try {
+					spillWriter.close();
+					spillChannelWriter.deleteChannel();
+				} catch (IOException e) {
+					exception = e;
+				}
+				spillWriter = null;
+				spillChannelWriter = null;
+				spilling = false;
+			}
+		}
+
+		if (spillReader != null) {
+			try {
+				closeSpillReader();
+			} catch (IOException e) {
+				exception = exception == null ? e : exception;
+			}
+		}
+
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = null;
+		}
+		head.set(tail.get());
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Returns the number of elements that are currently kept in memory.
+	 */
+	public int getNumberOfBufferedElements() {
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Returns the number of elements that were spilled since the channel was created.
+	 */
+	public long getNumberOfSpilledElements() {
+		return totalSpilled;
+	}
+
+	/**
+	 * Returns the number of elements that are kept in memory before elements are spilled.
+	 */
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	/**
+	 * Returns the number of elements that the consumer removed since the channel was created.
+	 *
+	 * <p>Must only be called by the single consumer.
+	 */
+	public long getNumberOfConsumedElements() {
+		return numConsumed;
+	}
+
+	/**
+	 * Returns the number of elements that precede the oldest checkpoint barrier that the consumer
+	 * did not take yet, or {@link Long#MAX_VALUE} if there is none.
+	 *
+	 * <p>Must only be called by the single consumer.
+	 */
+	public long getNextCheckpointPosition() {
+		CheckpointMark mark = checkpointMarks.peek();
+		return mark != null ? mark.position : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Removes the oldest checkpoint barrier and returns the ID of its checkpoint.
+	 *
+	 * <p>Must only be called by the single consumer, after it took all elements preceding the
+	 * barrier.
+	 */
+	public long takeCheckpoint() {
+		CheckpointMark mark = checkpointMarks.poll();
+		checkState(mark != null && mark.position <= numConsumed, "No checkpoint barrier was reached.");
+		return mark.checkpointId;
+	}
+
+	private boolean isCheckpointReached() {
+		return getNextCheckpointPosition() <= numConsumed;
+	}
+
+	private static List<MemorySegment> allocateSegments() {
+		List<MemorySegment> segments = new ArrayList<>(NUM_SPILL_SEGMENTS);
+		for (int i = 0; i < NUM_SPILL_SEGMENTS; i++) {
+			segments.add(MemorySegmentFactory.allocateUnpooledSegment(SPILL_SEGMENT_SIZE));
+		}
+		return segments;
+	}
+
+	/**
+	 * The position of a checkpoint barrier in the sequence of elements.
+	 */
+	private static final class CheckpointMark {
+
+		final long checkpointId;
+
+		/** The number of elements that were added before the barrier. */
+		final long position;
+
+		CheckpointMark(long checkpointId, long position) {
+			this.checkpointId = checkpointId;
+			this.position = position;
+		}
+	}
+}
@@ -20,20 +20,18 @@ package org.apache.flink.streaming.runtime.io;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.runtime.iterative.concurrent.Broker;
 
-import java.util.concurrent.BlockingQueue;
-
 /**
- * {@link Broker} for the {@link BlockingQueue} used in
+ * {@link Broker} for the {@link FeedbackChannel} used in
  * {@link org.apache.flink.streaming.runtime.tasks.StreamIterationHead} and
  * {@link org.apache.flink.streaming.runtime.tasks.StreamIterationTail} for implementing feedback
  * streams.
  */
 @Internal
-public class BlockingQueueBroker extends Broker<BlockingQueue<?>> {
+public class FeedbackChannelBroker extends Broker<FeedbackChannel<?>> {
 
 	/** Singleton instance. */
-	public static final BlockingQueueBroker INSTANCE = new BlockingQueueBroker();
+	public static final FeedbackChannelBroker INSTANCE = new FeedbackChannelBroker();
 
 	/** Cannot instantiate. */
-	private BlockingQueueBroker() {}
+	private FeedbackChannelBroker() {}
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.streaming.runtime.streamrecord.HandedOverRecord;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+
+import java.util.Queue;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Resolves the {@link HandedOverRecord placeholders} that the input processors deserialize from
+ * the channels of an input gate to the records that producers in the same task manager handed
+ * over by reference (see {@link RecordWriterOutput}).
+ *
+ * <p>The object handoff of a channel is looked up when the channel delivers its first placeholder,
+ * and it does not change afterwards.
+ */
+class HandedOverRecords {
+
+	private final InputGate inputGate;
+
+	private final Queue<Object>[] objectHandoffs;
+
+	@SuppressWarnings("unchecked")
+	HandedOverRecords(InputGate inputGate) {
+		this.inputGate = checkNotNull(inputGate);
+		this.objectHandoffs = new Queue[inputGate.getNumberOfInputChannels()];
+	}
+
+	/**
+	 * Returns the handed over record if the given element is a placeholder, or the element itself.
+	 */
+	StreamElement resolve(StreamElement element, int channel) {
+		if (element != HandedOverRecord.INSTANCE) {
+			return element;
+		}
+
+		Queue<Object> objectHandoff = objectHandoffs[channel];
+		if (objectHandoff == null) {
+			objectHandoff = inputGate.getObjectHandoff(channel);
+			if (objectHandoff == null) {
+				throw new IllegalStateException("Received a handed over record on channel " + channel +
+					", which does not receive objects.");
+			}
+			objectHandoffs[channel] = objectHandoff;
+		}
+
+		// the producer hands over the record before it writes the placeholder
+		Object record = objectHandoff.poll();
+		if (record == null) {
+			throw new IllegalStateException("Missing handed over record on channel " + channel + '.');
+		}
+		return (StreamElement) record;
+	}
+}
@@ -19,88 +19,118 @@
 package org.apache.flink.streaming.runtime.io;
 
 
-import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Aligns the watermarks of all input channels per context. The progress of every context is
+ * kept in a {@link ContextProgress}, so a watermark costs one lookup of its context plus a
+ * {@code O(log channels)} update, independent of the number of input channels.
+ *
+ * <p>The {@link IterationAggregates} carried by the watermarks of a context are merged and travel
+ * with the next watermark that is emitted for the context. If they show that none of the
+ * iteration heads received a feedback record in the superstep, that watermark is flagged as
+ * {@link Watermark#iterationDone() done}.
+ */
 public class ProgressTrackingHandler implements Serializable {
-	private int numberOfInputChannels;
 
-	private Map<List<Long>, Tuple2<Long, Boolean>>[] watermarks;
-	private Map<List<Long>, Long> lastEmittedWatermarks = new HashMap<>();
+	/** Maximum number of retired {@link ContextProgress} instances kept for reuse. */
+	private static final int MAX_POOLED_CONTEXTS = 16;
+
+	private final int numberOfInputChannels;
+
+	private final Map<List<Long>, ContextProgress> progressPerContext = new HashMap<>();
+
+	private final ArrayDeque<ContextProgress> pool = new ArrayDeque<>();
 
 	public ProgressTrackingHandler(int numberOfInputChannels) {
 		this.numberOfInputChannels = numberOfInputChannels;
-		watermarks = new HashMap[numberOfInputChannels];
-		for (int i = 0; i < numberOfInputChannels; i++) {
-			watermarks[i] = new HashMap<>();
-		}
 	}
 
 	public Watermark getNextWatermark(Watermark watermark, int currentChannel) {
-		Long timestamp = watermark.getTimestamp();
+		long timestamp = watermark.getTimestamp();
 		List<Long> context = watermark.getContext();
+		ContextProgress progress = getProgress(context);
 
 		// Check if whole context is finished and clean up
-		if (watermark.getTimestamp() == Long.MAX_VALUE) {
-			watermarks[currentChannel].put(context, new Tuple2<>(Long.MAX_VALUE, false));
-			for (int i = 0; i < numberOfInputChannels; i++) {
-				Tuple2<Long, Boolean> entry = watermarks[i].get(context);
-				if (entry == null || entry.f0 != Long.MAX_VALUE) {
-					return null;
-				}
+		if (timestamp == Long.MAX_VALUE) {
+			progress.advance(currentChannel, Long.MAX_VALUE, false);
+			if (progress.allChannelsFinished()) {
+				retire(context, progress);
 			}
-			watermarks[currentChannel].remove(context);
-			lastEmittedWatermarks.remove(context);
 			return null;
 		}
-		// Update local watermarks and eventually send out a new
-		Long currentMax = watermarks[currentChannel].get(context) != null ?
-			watermarks[currentChannel].get(context).f0 : null;
+
 		// Only go on if the current timestamp is actually higher for this context
-		if (currentMax == null || timestamp > currentMax) {
-			watermarks[currentChannel].put(context, new Tuple2<>(timestamp, watermark.iterationDone()));
-
-			// find out the minimum over all input channels for this context
-			Long newMin = Long.MAX_VALUE;
-			boolean isDone = true;
-			//if(taskIndex == 0) {
-			//	System.out.println(watermarks[0].get(context) + " - " +
-			//		watermarks[1].get(context) + " - " +
-			//		watermarks[2].get(context) + " - " +
-			//		watermarks[3].get(context) + " - ");
-			//}
-			for (int i = 0; i < numberOfInputChannels; i++) {
-				Long channelMax = watermarks[i].get(context) != null ? watermarks[i].get(context).f0 : null;
-				if (channelMax == null) {
-					return null;
-				}
-
-				if (!watermarks[i].get(context).f1) {
-					isDone = false;
-				}
-				if (channelMax < newMin) {
-					newMin = channelMax;
-				}
+		if (!progress.advance(currentChannel, timestamp, watermark.iterationDone())) {
+			return null;
+		}
+		if (watermark.getAggregates() != null) {
+			// supersteps are aligned, so everything collected belongs to the next emitted watermark
+			progress.collectAggregates(watermark.getAggregates());
+		}
+
+		if (progress.allChannelsSeen()) {
+			if (progress.allChannelsDone()) {
+				return withAggregates(new Watermark(context, Long.MAX_VALUE, true, watermark.iterationOnly()), progress);
 			}
 
-			if (isDone) {
-				return new Watermark(context, Long.MAX_VALUE, true, watermark.iterationOnly());
-			} else {
-				// if the new minimum of all channels is larger than the last emitted watermark
-				// put out a new one
-				Long lastEmitted = lastEmittedWatermarks.get(context);
-				if (lastEmitted == null || newMin > lastEmitted) {
-					lastEmittedWatermarks.put(context, newMin);
-					return new Watermark(context, newMin, false, watermark.iterationOnly());
-				}
+			// if the new minimum of all channels is larger than the last emitted watermark
+			// put out a new one
+			long newMin = progress.getMinWatermark();
+			if (progress.tryEmit(newMin)) {
+				IterationAggregates aggregates = progress.takeAggregates();
+				// once all heads are aligned, a superstep without feedback records ends the iteration
+				boolean quiescent = aggregates != null && aggregates.isQuiescent();
+				Watermark next = new Watermark(context, newMin, quiescent, watermark.iterationOnly());
+				next.setAggregates(aggregates);
+				return next;
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Returns a further watermark that is ready to be emitted after the last call of
+	 * {@link #getNextWatermark(Watermark, int)}, or {@code null} if there is none. Watermarks are
+	 * emitted one at a time, so this only returns {@code null} here.
+	 */
+	public Watermark pollWatermark() {
+		return null;
+	}
+
+	private static Watermark withAggregates(Watermark watermark, ContextProgress progress) {
+		watermark.setAggregates(progress.takeAggregates());
+		return watermark;
+	}
+
+	/**
+	 * Returns the number of contexts that are currently tracked.
+	 */
+	public int getNumberOfActiveContexts() {
+		return progressPerContext.size();
+	}
+
+	private ContextProgress getProgress(List<Long> context) {
+		ContextProgress progress = progressPerContext.get(context);
+		if (progress == null) {
+			progress = pool.isEmpty() ? new ContextProgress(numberOfInputChannels) : pool.poll();
+			progressPerContext.put(context, progress);
+		}
+		return progress;
+	}
+
+	private void retire(List<Long> context, ContextProgress progress) {
+		progressPerContext.remove(context);
+		if (pool.size() < MAX_POOLED_CONTEXTS) {
+			progress.reset();
+			pool.add(progress);
+		}
+	}
 }
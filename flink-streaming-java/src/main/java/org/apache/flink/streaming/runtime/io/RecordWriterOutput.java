@@ -26,7 +26,9 @@ import org.apache.flink.runtime.plugable.SerializationDelegate;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.metrics.WatermarkGauge;
+import org.apache.flink.streaming.runtime.streamrecord.HandedOverRecord;
 import org.apache.flink.streaming.runtime.streamrecord.LatencyMarker;
+import org.apache.flink.streaming.runtime.streamrecord.SerializedStreamRecord;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -36,6 +38,8 @@ import org.apache.flink.streaming.runtime.tasks.OperatorChain;
 import org.apache.flink.util.OutputTag;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.Queue;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -55,15 +59,48 @@ public class RecordWriterOutput<OUT> implements OperatorChain.WatermarkGaugeExpo
 
 	private final WatermarkGauge watermarkGauge = new WatermarkGauge();
 
-	@SuppressWarnings("unchecked")
+	/** Whether the partitioning of this output allows to write serialized records as they are. */
+	private final boolean forwardsSerializedRecords;
+
+	/** Whether records are handed over by reference to consumers in the same task manager. */
+	private final boolean handsOverRecords;
+
 	public RecordWriterOutput(
 			StreamRecordWriter<SerializationDelegate<StreamRecord<OUT>>> recordWriter,
 			TypeSerializer<OUT> outSerializer,
 			OutputTag outputTag,
 			StreamStatusProvider streamStatusProvider) {
+		this(recordWriter, outSerializer, outputTag, streamStatusProvider, false);
+	}
+
+	public RecordWriterOutput(
+			StreamRecordWriter<SerializationDelegate<StreamRecord<OUT>>> recordWriter,
+			TypeSerializer<OUT> outSerializer,
+			OutputTag outputTag,
+			StreamStatusProvider streamStatusProvider,
+			boolean forwardsSerializedRecords) {
+		this(recordWriter, outSerializer, outputTag, streamStatusProvider, forwardsSerializedRecords, false);
+	}
+
+	/**
+	 * Creates an output which, if <tt>localObjectHandoff</tt> is set and the records are of an
+	 * immutable type, hands over the records by reference to consumers in the same task manager
+	 * that accept objects. In the network buffers, a {@link HandedOverRecord} takes the place of
+	 * such a record. Records that do not fit into the bounded queue of the consumer are serialized.
+	 */
+	@SuppressWarnings("unchecked")
+	public RecordWriterOutput(
+			StreamRecordWriter<SerializationDelegate<StreamRecord<OUT>>> recordWriter,
+			TypeSerializer<OUT> outSerializer,
+			OutputTag outputTag,
+			StreamStatusProvider streamStatusProvider,
+			boolean forwardsSerializedRecords,
+			boolean localObjectHandoff) {
 
 		checkNotNull(recordWriter);
 		this.outputTag = outputTag;
+		this.forwardsSerializedRecords = forwardsSerializedRecords;
+		this.handsOverRecords = localObjectHandoff && outSerializer != null && outSerializer.isImmutableType();
 		// generic hack: cast the writer to generic Object type so we can use it
 		// with multiplexed records and watermarks
 		this.recordWriter = (StreamRecordWriter<SerializationDelegate<StreamElement>>)
@@ -100,7 +137,19 @@ public class RecordWriterOutput<OUT> implements OperatorChain.WatermarkGaugeExpo
 		pushToRecordWriter(record);
 	}
 
-	private <X> void pushToRecordWriter(StreamRecord<X> record) {
+	/**
+	 * Returns whether {@link #collectSerialized(SerializedStreamRecord)} can be used, i.e. whether
+	 * this is a main output whose partitioning does not depend on the record.
+	 */
+	public boolean forwardsSerializedRecords() {
+		return forwardsSerializedRecords && outputTag == null;
+	}
+
+	/**
+	 * Emits a record that is already serialized without deserializing it. Must only be called if
+	 * {@link #forwardsSerializedRecords()} holds.
+	 */
+	public void collectSerialized(SerializedStreamRecord record) {
 		serializationDelegate.setInstance(record);
 
 		try {
@@ -111,6 +160,58 @@ public class RecordWriterOutput<OUT> implements OperatorChain.WatermarkGaugeExpo
 		}
 	}
 
+	/**
+	 * Emits a record like {@link #collect(StreamRecord)} and marks the channels that it is sent to
+	 * in the given set.
+	 */
+	public void collect(StreamRecord<OUT> record, BitSet targetChannels) {
+		if (this.outputTag != null) {
+			return;
+		}
+
+		serializationDelegate.setInstance(record);
+
+		try {
+			int[] channels = recordWriter.selectChannels(serializationDelegate);
+			for (int channel : channels) {
+				targetChannels.set(channel);
+			}
+			recordWriter.emit(serializationDelegate, channels);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+
+	private <X> void pushToRecordWriter(StreamRecord<X> record) {
+		serializationDelegate.setInstance(record);
+
+		try {
+			if (handsOverRecords) {
+				handOverOrEmit(record);
+			} else {
+				recordWriter.emit(serializationDelegate);
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+
+	private <X> void handOverOrEmit(StreamRecord<X> record) throws IOException, InterruptedException {
+		int[] channels = recordWriter.selectChannels(serializationDelegate);
+		Queue<Object> objectHandoff = channels.length == 1 ? recordWriter.getObjectHandoff(channels[0]) : null;
+
+		// the caller may reuse the record, but the value is immutable. If the consumer has not taken
+		// enough of the objects yet, the record is serialized instead.
+		if (objectHandoff != null && objectHandoff.offer(record.copy(record.getValue()))) {
+			serializationDelegate.setInstance(HandedOverRecord.INSTANCE);
+			recordWriter.emit(serializationDelegate, channels[0]);
+		} else {
+			recordWriter.emit(serializationDelegate, channels);
+		}
+	}
+
 	@Override
 	public void emitWatermark(Watermark mark) {
 		watermarkGauge.setCurrentWatermark(mark.getTimestamp());
@@ -125,6 +226,22 @@ public class RecordWriterOutput<OUT> implements OperatorChain.WatermarkGaugeExpo
 		}
 	}
 
+	/**
+	 * Emits a watermark to the given channels only, instead of broadcasting it.
+	 */
+	public void emitWatermark(Watermark mark, BitSet targetChannels) {
+		watermarkGauge.setCurrentWatermark(mark.getTimestamp());
+		serializationDelegate.setInstance(mark);
+
+		if (streamStatusProvider.getStreamStatus().isActive()) {
+			try {
+				recordWriter.emit(serializationDelegate, targetChannels.stream().toArray());
+			} catch (Exception e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+	}
+
 	public void emitStreamStatus(StreamStatus streamStatus) {
 		serializationDelegate.setInstance(streamStatus);
 
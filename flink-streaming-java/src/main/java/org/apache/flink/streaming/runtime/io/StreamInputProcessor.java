@@ -80,6 +80,9 @@ public class StreamInputProcessor<IN> {
 
 	private final DeserializationDelegate<StreamElement> deserializationDelegate;
 
+	/** Resolves the records that local producers hand over by reference. */
+	private final HandedOverRecords handedOverRecords;
+
 	private final CheckpointBarrierHandler barrierHandler;
 
 	private final Object lock;
@@ -132,6 +135,7 @@ public class StreamInputProcessor<IN> {
 
 		StreamElementSerializer<IN> ser = new StreamElementSerializer<>(inputSerializer);
 		this.deserializationDelegate = new NonReusingDeserializationDelegate<>(ser);
+		this.handedOverRecords = new HandedOverRecords(inputGate);
 
 		// Initialize one deserializer per input channel
 		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
@@ -177,7 +181,9 @@ public class StreamInputProcessor<IN> {
 				}
 
 				if (result.isFullRecord()) {
-					StreamElement recordOrMark = ProgressTrackingUtils.adaptTimestamp(deserializationDelegate.getInstance(), streamOperator.getContextLevel());
+					StreamElement recordOrMark = ProgressTrackingUtils.adaptTimestamp(
+						handedOverRecords.resolve(deserializationDelegate.getInstance(), currentChannel),
+						streamOperator.getContextLevel());
 
 					if (recordOrMark.isWatermark()) {
 						// handle watermark
@@ -19,10 +19,14 @@ package org.apache.flink.streaming.runtime.io;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.io.network.api.writer.ChannelSelector;
 import org.apache.flink.runtime.io.network.api.writer.RecordWriter;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -31,6 +35,10 @@ import static org.apache.flink.util.Preconditions.checkArgument;
  * This record writer keeps data in buffers at most for a certain timeout. It spawns a separate thread
  * that flushes the outputs in a defined interval, to make sure data does not linger in the buffers for too long.
  *
+ * <p>With adaptive flushing, the thread flushes each channel at its own interval instead, which
+ * the {@link AdaptiveFlushPolicy} adapts to the data rate and the backlog of the channel. The
+ * timeout remains the upper bound of the interval.
+ *
  * @param <T> The type of elements written.
  */
 @Internal
@@ -55,6 +63,15 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 			ChannelSelector<T> channelSelector,
 			long timeout,
 			String taskName) {
+		this(writer, channelSelector, timeout, taskName, false);
+	}
+
+	public StreamRecordWriter(
+			ResultPartitionWriter writer,
+			ChannelSelector<T> channelSelector,
+			long timeout,
+			String taskName,
+			boolean adaptiveFlushing) {
 		super(writer, channelSelector, timeout == 0);
 
 		checkArgument(timeout >= -1);
@@ -70,7 +87,8 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 				DEFAULT_OUTPUT_FLUSH_THREAD_NAME :
 				DEFAULT_OUTPUT_FLUSH_THREAD_NAME + " for " + taskName;
 
-			outputFlusher = new OutputFlusher(threadName, timeout);
+			outputFlusher = new OutputFlusher(
+				threadName, timeout, adaptiveFlushing ? new AdaptiveFlushPolicy(writer, timeout) : null);
 			outputFlusher.start();
 		}
 	}
@@ -81,6 +99,18 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 		super.emit(record);
 	}
 
+	@Override
+	public void emit(T record, int targetChannel) throws IOException, InterruptedException {
+		checkErroneous();
+		super.emit(record, targetChannel);
+	}
+
+	@Override
+	public void emit(T record, int[] targetChannels) throws IOException, InterruptedException {
+		checkErroneous();
+		super.emit(record, targetChannels);
+	}
+
 	@Override
 	public void broadcastEmit(T record) throws IOException, InterruptedException {
 		checkErroneous();
@@ -93,6 +123,23 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 		super.randomEmit(record);
 	}
 
+	/**
+	 * Registers the flush interval of each channel as a metric, if the outputs are flushed
+	 * adaptively.
+	 */
+	public void registerFlushIntervalMetrics(MetricGroup group) {
+		if (outputFlusher == null || outputFlusher.flushPolicy == null) {
+			return;
+		}
+
+		AdaptiveFlushPolicy flushPolicy = outputFlusher.flushPolicy;
+		MetricGroup channelGroup = group.addGroup("Channel");
+		for (int channel = 0; channel < targetPartition.getNumberOfSubpartitions(); channel++) {
+			final int channelIndex = channel;
+			channelGroup.addGroup(channel).gauge("flushInterval", (Gauge<Long>) () -> flushPolicy.getFlushInterval(channelIndex));
+		}
+	}
+
 	/**
 	 * Closes the writer. This stops the flushing thread (if there is one).
 	 */
@@ -138,12 +185,17 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 
 		private final long timeout;
 
+		/** Decides which channels to flush, or <tt>null</tt> to flush all channels at the timeout. */
+		@Nullable
+		private final AdaptiveFlushPolicy flushPolicy;
+
 		private volatile boolean running = true;
 
-		OutputFlusher(String name, long timeout) {
+		OutputFlusher(String name, long timeout, @Nullable AdaptiveFlushPolicy flushPolicy) {
 			super(name);
 			setDaemon(true);
 			this.timeout = timeout;
+			this.flushPolicy = flushPolicy;
 		}
 
 		public void terminate() {
@@ -156,7 +208,7 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 			try {
 				while (running) {
 					try {
-						Thread.sleep(timeout);
+						Thread.sleep(flushPolicy == null ? timeout : flushPolicy.getCheckInterval());
 					}
 					catch (InterruptedException e) {
 						// propagate this if we are still running, because it should not happen
@@ -168,7 +220,11 @@ public class StreamRecordWriter<T extends IOReadableWritable> extends RecordWrit
 
 					// any errors here should let the thread come to a halt and be
 					// recognized by the writer
-					flushAll();
+					if (flushPolicy == null) {
+						flushAll();
+					} else {
+						flushPolicy.checkAndFlush(System.currentTimeMillis());
+					}
 				}
 			}
 			catch (Throwable t) {
@@ -83,6 +83,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 	private final DeserializationDelegate<StreamElement> deserializationDelegate1;
 	private final DeserializationDelegate<StreamElement> deserializationDelegate2;
 
+	/** Resolves the records that local producers hand over by reference. */
+	private final HandedOverRecords handedOverRecords;
+
 	private final CheckpointBarrierHandler barrierHandler;
 
 	private final Object lock;
@@ -125,7 +128,6 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 	private boolean isFinished;
 
-	@SuppressWarnings("unchecked")
 	public StreamTwoInputProcessor(
 			Collection<InputGate> inputGates1,
 			Collection<InputGate> inputGates2,
@@ -141,6 +143,32 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			TaskIOMetricGroup metrics,
 			WatermarkGauge input1WatermarkGauge,
 			WatermarkGauge input2WatermarkGauge) throws IOException {
+		this(inputGates1, inputGates2, inputSerializer1, inputSerializer2, checkpointedTask, checkpointMode, lock,
+			ioManager, taskManagerConfig, streamStatusMaintainer, streamOperator, metrics,
+			input1WatermarkGauge, input2WatermarkGauge, null);
+	}
+
+	/**
+	 * Creates the processor. The watermarks of the second input are aligned by the given
+	 * {@link ProgressTrackingHandler}, or by a default one if it is {@code null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public StreamTwoInputProcessor(
+			Collection<InputGate> inputGates1,
+			Collection<InputGate> inputGates2,
+			TypeSerializer<IN1> inputSerializer1,
+			TypeSerializer<IN2> inputSerializer2,
+			TwoInputStreamTask<IN1, IN2, ?> checkpointedTask,
+			CheckpointingMode checkpointMode,
+			Object lock,
+			IOManager ioManager,
+			Configuration taskManagerConfig,
+			StreamStatusMaintainer streamStatusMaintainer,
+			TwoInputStreamOperator<IN1, IN2, ?> streamOperator,
+			TaskIOMetricGroup metrics,
+			WatermarkGauge input1WatermarkGauge,
+			WatermarkGauge input2WatermarkGauge,
+			ProgressTrackingHandler progressHandler2) throws IOException {
 
 		final InputGate inputGate = InputGateUtil.createInputGate(inputGates1, inputGates2);
 
@@ -155,6 +183,8 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		StreamElementSerializer<IN2> ser2 = new StreamElementSerializer<>(inputSerializer2);
 		this.deserializationDelegate2 = new NonReusingDeserializationDelegate<>(ser2);
 
+		this.handedOverRecords = new HandedOverRecords(inputGate);
+
 		// Initialize one deserializer per input channel
 		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
 
@@ -179,7 +209,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		this.streamOperator = checkNotNull(streamOperator);
 
 		this.statusWatermarkValve1 = new StatusWatermarkValve(numInputChannels1, new ForwardingValveOutputHandler1(streamOperator, lock));
-		this.statusWatermarkValve2 = new StatusWatermarkValve(numInputChannels2, new ForwardingValveOutputHandler2(streamOperator, lock));
+		this.statusWatermarkValve2 = progressHandler2 == null ?
+			new StatusWatermarkValve(numInputChannels2, new ForwardingValveOutputHandler2(streamOperator, lock)) :
+			new StatusWatermarkValve(numInputChannels2, new ForwardingValveOutputHandler2(streamOperator, lock), progressHandler2);
 
 		this.input1WatermarkGauge = input1WatermarkGauge;
 		this.input2WatermarkGauge = input2WatermarkGauge;
@@ -215,7 +247,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 				if (result.isFullRecord()) {
 					if (currentChannel < numInputChannels1) {
-						StreamElement recordOrWatermark = ProgressTrackingUtils.adaptTimestamp(deserializationDelegate1.getInstance(), streamOperator.getContextLevel());
+						StreamElement recordOrWatermark = ProgressTrackingUtils.adaptTimestamp(
+							handedOverRecords.resolve(deserializationDelegate1.getInstance(), currentChannel),
+							streamOperator.getContextLevel());
 						if (recordOrWatermark.isWatermark()) {
 							statusWatermarkValve1.inputWatermark(recordOrWatermark.asWatermark(), currentChannel);
 							continue;
@@ -242,7 +276,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 						}
 					}
 					else {
-						StreamElement recordOrWatermark = ProgressTrackingUtils.adaptTimestamp(deserializationDelegate2.getInstance(), streamOperator.getContextLevel());
+						StreamElement recordOrWatermark = ProgressTrackingUtils.adaptTimestamp(
+							handedOverRecords.resolve(deserializationDelegate2.getInstance(), currentChannel),
+							streamOperator.getContextLevel());
 						if (recordOrWatermark.isWatermark()) {
 							statusWatermarkValve2.inputWatermark(recordOrWatermark.asWatermark(), currentChannel - numInputChannels1);
 							continue;
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.api.common.functions.util.FunctionUtils;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Combines the feedback records of a loop per context, superstep and key before they are sent
+ * over the feedback edge, like the message combiners of vertex-centric iterations.
+ *
+ * <p>The {@link TwoWindowTerminateOperator} adds the feedback records that the loop functions
+ * emit while it processes a watermark and emits the combined records before the watermark, so no
+ * records are held back across watermarks or checkpoints.
+ *
+ * @param <K> The type of the keys of the feedback.
+ * @param <R> The type of the feedback records.
+ */
+@Internal
+public class FeedbackCombiner<K, R> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ReduceFunction<R> combineFunction;
+
+	private final KeySelector<R, K> keySelector;
+
+	private final TypeSerializer<R> serializer;
+
+	/** The combined records per context, then superstep and key. */
+	private transient Map<List<Long>, Map<Long, Map<K, R>>> combined;
+
+	public FeedbackCombiner(ReduceFunction<R> combineFunction, KeySelector<R, K> keySelector, TypeSerializer<R> serializer) {
+		this.combineFunction = checkNotNull(combineFunction);
+		this.keySelector = checkNotNull(keySelector);
+		this.serializer = checkNotNull(serializer);
+	}
+
+	public void open(RuntimeContext runtimeContext) throws Exception {
+		combined = new HashMap<>();
+		FunctionUtils.setFunctionRuntimeContext(combineFunction, runtimeContext);
+		FunctionUtils.openFunction(combineFunction, new Configuration());
+	}
+
+	public void close() throws Exception {
+		FunctionUtils.closeFunction(combineFunction);
+	}
+
+	/**
+	 * Combines the record with the earlier records of its context, superstep and key.
+	 */
+	public void add(StreamRecord<R> record) throws Exception {
+		Map<K, R> perKey = combined
+			.computeIfAbsent(record.getContext(), context -> new LinkedHashMap<>())
+			.computeIfAbsent(record.getTimestamp(), timestamp -> new LinkedHashMap<>());
+
+		R value = record.getValue();
+		K key = keySelector.getKey(value);
+		R previous = perKey.get(key);
+		// the loop functions may reuse their records, so keep a copy of the first one
+		perKey.put(key, previous == null ? serializer.copy(value) : combineFunction.reduce(previous, value));
+	}
+
+	/**
+	 * Emits and forgets the combined records of the given context.
+	 */
+	public void emit(List<Long> context, Consumer<StreamRecord<R>> output) {
+		Map<Long, Map<K, R>> perTimestamp = combined.remove(context);
+		if (perTimestamp == null) {
+			return;
+		}
+		for (Map.Entry<Long, Map<K, R>> timestamp : perTimestamp.entrySet()) {
+			for (R value : timestamp.getValue().values()) {
+				output.accept(new StreamRecord<>(value, context, timestamp.getKey()));
+			}
+		}
+	}
+
+	/**
+	 * Emits and forgets the combined records of all contexts.
+	 */
+	public void emitAll(Consumer<StreamRecord<R>> output) {
+		while (!combined.isEmpty()) {
+			emit(combined.keySet().iterator().next(), output);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.aggregators.Aggregator;
+import org.apache.flink.api.common.aggregators.AggregatorRegistry;
+import org.apache.flink.api.common.aggregators.AggregatorWithName;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+import org.apache.flink.types.Value;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregators of a loop, kept per context of the {@link TwoWindowTerminateOperator}.
+ *
+ * <p>The loop functions update the aggregators of the current superstep through the
+ * {@link LoopContext}. When the operator forwards the watermark that completes the superstep, the
+ * values are attached to it as partial {@link IterationAggregates} and the aggregators are reset.
+ * Once the watermarks of all iteration heads are aligned at the operator, the partials of all
+ * parallel instances are combined, which yields the same values on every instance.
+ */
+@Internal
+public class LoopAggregators implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<String, Aggregator<?>> registered = new HashMap<>();
+
+	private transient ClassLoader userCodeClassLoader;
+
+	private transient int subtaskIndex;
+
+	private transient Map<List<Long>, ContextAggregators> perContext;
+
+	public LoopAggregators(AggregatorRegistry registry) {
+		for (AggregatorWithName<?> aggregator : registry.getAllRegisteredAggregators()) {
+			registered.put(aggregator.getName(), aggregator.getAggregator());
+		}
+	}
+
+	public void open(ClassLoader userCodeClassLoader, int subtaskIndex) {
+		this.userCodeClassLoader = userCodeClassLoader;
+		this.subtaskIndex = subtaskIndex;
+		this.perContext = new HashMap<>();
+	}
+
+	public boolean isEmpty() {
+		return registered.isEmpty();
+	}
+
+	/**
+	 * Creates the {@link LoopContext} for a key in the given superstep of a context.
+	 */
+	public <K> LoopContext<K> createLoopContext(List<Long> context, long superstep, K key) {
+		return createLoopContext(context, superstep, key, null, null);
+	}
+
+	/**
+	 * Creates the {@link LoopContext} for a key in the given superstep of a context, with access to
+	 * the solutions of an incremental iteration and the keyed state of the loop.
+	 */
+	public <K> LoopContext<K> createLoopContext(List<Long> context, long superstep, K key,
+												LoopContext.Solutions<K> solutions, LoopContext.States<K> states) {
+		ContextAggregators aggregators = getContextAggregators(context);
+		return new LoopContext<>(context, superstep, key, aggregators.current, aggregators.previous, solutions, states);
+	}
+
+	/**
+	 * Combines the partial aggregates of all parallel instances for the superstep that is
+	 * completed by the watermark carrying them.
+	 */
+	public void combine(List<Long> context, IterationAggregates aggregates) throws IOException {
+		ContextAggregators contextAggregators = getContextAggregators(context);
+		Map<String, Aggregator<?>> combiners = contextAggregators.combiners;
+
+		aggregates.aggregatePartials(combiners, userCodeClassLoader);
+		for (Map.Entry<String, Aggregator<?>> combiner : combiners.entrySet()) {
+			// aggregators may return a reused object, so keep a copy
+			contextAggregators.previous.put(
+				combiner.getKey(), InstantiationUtil.createCopyWritable(combiner.getValue().getAggregate()));
+			combiner.getValue().reset();
+		}
+	}
+
+	/**
+	 * Takes the values of the current superstep as partial aggregates, together with the combined
+	 * aggregates of the previous superstep, and resets the aggregators for the next superstep.
+	 *
+	 * @param context The context of the superstep.
+	 * @param timestamp The timestamp of the watermark that completes the superstep.
+	 */
+	public IterationAggregates snapshot(List<Long> context, long timestamp) throws IOException {
+		ContextAggregators contextAggregators = getContextAggregators(context);
+		IterationAggregates aggregates = new IterationAggregates();
+
+		for (Map.Entry<String, Aggregator<?>> aggregator : contextAggregators.current.entrySet()) {
+			aggregates.addPartial(subtaskIndex, timestamp, aggregator.getKey(), aggregator.getValue().getAggregate());
+			aggregator.getValue().reset();
+		}
+		for (Map.Entry<String, Value> previous : contextAggregators.previous.entrySet()) {
+			aggregates.setCombined(previous.getKey(), previous.getValue());
+		}
+		return aggregates;
+	}
+
+	/**
+	 * Drops the aggregators of a finished context.
+	 */
+	public void remove(List<Long> context) {
+		perContext.remove(context);
+	}
+
+	private ContextAggregators getContextAggregators(List<Long> context) {
+		ContextAggregators aggregators = perContext.get(context);
+		if (aggregators == null) {
+			aggregators = new ContextAggregators(copyRegistered(), copyRegistered());
+			perContext.put(context, aggregators);
+		}
+		return aggregators;
+	}
+
+	private Map<String, Aggregator<?>> copyRegistered() {
+		Map<String, Aggregator<?>> copy = new HashMap<>(registered.size());
+		for (Map.Entry<String, Aggregator<?>> aggregator : registered.entrySet()) {
+			try {
+				copy.put(aggregator.getKey(), InstantiationUtil.clone(aggregator.getValue(), userCodeClassLoader));
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException("Could not copy the aggregator " + aggregator.getKey(), e);
+			}
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	private static final class ContextAggregators {
+
+		/** The aggregators that are updated by the loop functions in the current superstep. */
+		final Map<String, Aggregator<?>> current;
+
+		/** The aggregators that combine the partials of all parallel instances. */
+		final Map<String, Aggregator<?>> combiners;
+
+		/** The combined values of the previous superstep. */
+		final Map<String, Value> previous = new HashMap<>();
+
+		ContextAggregators(Map<String, Aggregator<?>> current, Map<String, Aggregator<?>> combiners) {
+			this.current = current;
+			this.combiners = combiners;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.runtime.metrics.DescriptiveStatisticsHistogram;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of a loop, which the {@link TwoWindowTerminateOperator} registers in its metric
+ * group.
+ *
+ * <p>The values of a context are only kept while it iterates. They are reported as histograms
+ * over the supersteps and contexts, so that the number of metrics does not grow with the number
+ * of contexts. Durations are in milliseconds.
+ */
+@Internal
+public final class LoopMetrics {
+
+	/** The number of supersteps that completed, over all contexts. */
+	public static final String SUPERSTEPS = "loopSupersteps";
+
+	/** The number of contexts that are iterating. */
+	public static final String ACTIVE_CONTEXTS = "loopActiveContexts";
+
+	/** The number of supersteps that terminated contexts ran. */
+	public static final String SUPERSTEPS_PER_CONTEXT = "loopSuperstepsPerContext";
+
+	/** The time between the ends of consecutive supersteps of a context. */
+	public static final String SUPERSTEP_DURATION = "loopSuperstepDuration";
+
+	/** The number of feedback records that a superstep received. */
+	public static final String RECORDS_PER_SUPERSTEP = "loopRecordsPerSuperstep";
+
+	/** The time from the end of the entry of a context to its termination. */
+	public static final String TIME_TO_TERMINATION = "loopTimeToTermination";
+
+	private static final int HISTORY_SIZE = 128;
+
+	private final Counter supersteps;
+
+	private final Histogram superstepsPerContext;
+
+	private final Histogram superstepDuration;
+
+	private final Histogram recordsPerSuperstep;
+
+	private final Histogram timeToTermination;
+
+	private final Map<List<Long>, ContextMetrics> contexts = new HashMap<>();
+
+	/** The context of the last feedback record, which mostly repeats between records. */
+	private List<Long> lastContext;
+
+	private ContextMetrics lastContextMetrics;
+
+	public LoopMetrics(MetricGroup metricGroup, Gauge<Integer> activeContexts) {
+		this.supersteps = metricGroup.counter(SUPERSTEPS, new SimpleCounter());
+		metricGroup.gauge(ACTIVE_CONTEXTS, activeContexts);
+		this.superstepsPerContext = metricGroup.histogram(
+			SUPERSTEPS_PER_CONTEXT, new DescriptiveStatisticsHistogram(HISTORY_SIZE));
+		this.superstepDuration = metricGroup.histogram(
+			SUPERSTEP_DURATION, new DescriptiveStatisticsHistogram(HISTORY_SIZE));
+		this.recordsPerSuperstep = metricGroup.histogram(
+			RECORDS_PER_SUPERSTEP, new DescriptiveStatisticsHistogram(HISTORY_SIZE));
+		this.timeToTermination = metricGroup.histogram(
+			TIME_TO_TERMINATION, new DescriptiveStatisticsHistogram(HISTORY_SIZE));
+	}
+
+	/**
+	 * Starts to measure a context whose entry is complete.
+	 */
+	public void entered(List<Long> context) {
+		getContextMetrics(context);
+	}
+
+	/**
+	 * Counts a feedback record of the current superstep of the context.
+	 */
+	public void recordFeedback(List<Long> context) {
+		if (context != lastContext) {
+			lastContextMetrics = getContextMetrics(context);
+			lastContext = context;
+		}
+		lastContextMetrics.numRecords++;
+	}
+
+	/**
+	 * Records the superstep of the context that completed.
+	 */
+	public void superstepCompleted(List<Long> context) {
+		ContextMetrics metrics = getContextMetrics(context);
+		long now = System.currentTimeMillis();
+
+		supersteps.inc();
+		superstepDuration.update(now - metrics.superstepStart);
+		recordsPerSuperstep.update(metrics.numRecords);
+
+		metrics.numSupersteps++;
+		metrics.numRecords = 0;
+		metrics.superstepStart = now;
+	}
+
+	/**
+	 * Records the iteration of the context that terminated and forgets the context.
+	 */
+	public void terminated(List<Long> context) {
+		ContextMetrics metrics = contexts.remove(context);
+		if (metrics != null) {
+			superstepsPerContext.update(metrics.numSupersteps);
+			timeToTermination.update(System.currentTimeMillis() - metrics.start);
+		}
+		lastContext = null;
+		lastContextMetrics = null;
+	}
+
+	private ContextMetrics getContextMetrics(List<Long> context) {
+		ContextMetrics metrics = contexts.get(context);
+		if (metrics == null) {
+			// contexts that were restored start with the first superstep that is measured
+			metrics = new ContextMetrics(System.currentTimeMillis());
+			contexts.put(context, metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * The values of a context that is iterating.
+	 */
+	private static final class ContextMetrics {
+
+		final long start;
+
+		long superstepStart;
+
+		long numSupersteps;
+
+		long numRecords;
+
+		ContextMetrics(long start) {
+			this.start = start;
+			this.superstepStart = start;
+		}
+	}
+}
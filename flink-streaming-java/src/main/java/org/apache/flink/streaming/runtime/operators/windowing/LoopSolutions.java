@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The per-key solutions of an incremental iteration, kept in the keyed state of the
+ * {@link TwoWindowTerminateOperator}.
+ *
+ * <p>The loop functions update the solution of a key in the namespace of the current context.
+ * When a context terminates, the solutions that were updated in it replace the converged
+ * solutions, which are kept in the namespace of the empty context since every context inside of
+ * the loop has at least one timestamp. The next context starts from the converged solutions, so
+ * keys whose input did not change keep their solution without being activated.
+ *
+ * <p>To find the keys whose input changed, the entry input of every key is kept until the next
+ * context. Keys whose input is equal to the previous one are not passed to the entry function,
+ * keys without input in the new context are passed to it with an empty input. The inputs are
+ * compared as multisets, since the order in which the records of a window arrive is not
+ * deterministic. This relies on {@code equals} and {@code hashCode} of the input type: records
+ * that do not implement them by value always count as changed.
+ *
+ * @param <K> The type of the keys.
+ * @param <IN> The type of the entry input.
+ * @param <V> The type of the solution of a key.
+ */
+@Internal
+public class LoopSolutions<K, IN, V> implements LoopContext.Solutions<K>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The namespace of the converged solutions and of the previous entry inputs. */
+	private static final List<Long> CONVERGED = Collections.emptyList();
+
+	private static final TypeSerializer<List<Long>> CONTEXT_SERIALIZER = new ListSerializer<>(LongSerializer.INSTANCE);
+
+	private final TypeSerializer<V> solutionSerializer;
+
+	private transient KeyedStateBackend<K> backend;
+
+	private transient ValueStateDescriptor<V> solutionDescriptor;
+
+	private transient ListStateDescriptor<IN> previousEntryDescriptor;
+
+	public LoopSolutions(TypeSerializer<V> solutionSerializer) {
+		this.solutionSerializer = solutionSerializer;
+	}
+
+	public void open(KeyedStateBackend<K> backend, TypeSerializer<IN> entrySerializer) {
+		this.backend = backend;
+		this.solutionDescriptor = new ValueStateDescriptor<>("loop-solutions", solutionSerializer);
+		this.previousEntryDescriptor = new ListStateDescriptor<>("loop-previous-entry", entrySerializer);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getPrevious(K key) throws Exception {
+		backend.setCurrentKey(key);
+		return (T) getSolution(CONVERGED).value();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> void update(List<Long> context, K key, T solution) throws Exception {
+		backend.setCurrentKey(key);
+		getSolution(context).update((V) solution);
+	}
+
+	/**
+	 * Returns the keys that had entry input in the previous context.
+	 */
+	public List<K> getKeysWithPreviousEntry() {
+		try (Stream<K> keys = backend.getKeys(previousEntryDescriptor.getName(), CONVERGED)) {
+			return keys.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Replaces the previous entry input of the current key with the given one and returns whether
+	 * they differ, i.e. whether the key needs to be activated. The inputs are equal if they contain
+	 * equal records equally often, in any order.
+	 */
+	public boolean updateEntry(List<IN> input) throws Exception {
+		ListState<IN> previousEntry = backend.getPartitionedState(CONVERGED, CONTEXT_SERIALIZER, previousEntryDescriptor);
+		if (containsSameRecords(previousEntry.get(), input)) {
+			return false;
+		}
+
+		previousEntry.clear();
+		for (IN element : input) {
+			previousEntry.add(element);
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the solutions that were updated in the given context the converged solutions.
+	 */
+	public void promote(List<Long> context) throws Exception {
+		List<K> keys;
+		try (Stream<K> keyStream = backend.getKeys(solutionDescriptor.getName(), context)) {
+			// collect first, the solutions are cleared while going over the keys
+			keys = keyStream.collect(Collectors.toList());
+		}
+		for (K key : keys) {
+			backend.setCurrentKey(key);
+			// the backend returns the same state object for all namespaces
+			ValueState<V> solution = getSolution(context);
+			V value = solution.value();
+			solution.clear();
+			getSolution(CONVERGED).update(value);
+		}
+	}
+
+	private static <T> boolean containsSameRecords(Iterable<T> previous, List<T> input) {
+		Map<T, Integer> counts = new HashMap<>();
+		for (T element : input) {
+			counts.merge(element, 1, Integer::sum);
+		}
+		if (previous != null) {
+			for (T element : previous) {
+				Integer count = counts.get(element);
+				if (count == null) {
+					return false;
+				}
+				if (count == 1) {
+					counts.remove(element);
+				} else {
+					counts.put(element, count - 1);
+				}
+			}
+		}
+		return counts.isEmpty();
+	}
+
+	private ValueState<V> getSolution(List<Long> context) throws Exception {
+		return backend.getPartitionedState(context, CONTEXT_SERIALIZER, solutionDescriptor);
+	}
+}
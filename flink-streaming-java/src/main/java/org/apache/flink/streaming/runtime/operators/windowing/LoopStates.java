@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.OperatorStateStore;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The keyed state that the loop functions access through their {@link LoopContext}, kept in the
+ * keyed state backend of the {@link TwoWindowTerminateOperator} in the namespace of the context.
+ *
+ * <p>The state of a context is cleared once its iteration terminates, so the state of the loop
+ * only grows with the number of contexts that are iterating. The descriptors of the states that
+ * the loop functions accessed are kept in operator state, so that the states of a context are
+ * also cleared when they were not accessed since the operator was restored. Every instance keeps
+ * the descriptors of all instances, as the keys of a state may move to any instance when
+ * rescaling.
+ *
+ * @param <K> The type of the keys.
+ */
+@Internal
+public class LoopStates<K> implements LoopContext.States<K>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final TypeSerializer<List<Long>> CONTEXT_SERIALIZER = new ListSerializer<>(LongSerializer.INSTANCE);
+
+	private transient KeyedStateBackend<K> backend;
+
+	private transient ExecutionConfig executionConfig;
+
+	/** The states that were accessed by the loop functions, by name. */
+	private transient Map<String, StateDescriptor<?, ?>> descriptors;
+
+	/** The serialized descriptors of all states that were accessed by the loop functions. */
+	private transient ListState<byte[]> descriptorsState;
+
+	public void open(
+			KeyedStateBackend<K> backend,
+			OperatorStateStore operatorStateStore,
+			ExecutionConfig executionConfig,
+			ClassLoader userCodeClassLoader) throws Exception {
+
+		this.backend = backend;
+		this.executionConfig = executionConfig;
+		this.descriptors = new HashMap<>();
+
+		descriptorsState = operatorStateStore.getUnionListState(
+			new ListStateDescriptor<>("loop-state-descriptors", BytePrimitiveArraySerializer.INSTANCE));
+		List<byte[]> distinct = new ArrayList<>();
+		for (byte[] serialized : descriptorsState.get()) {
+			StateDescriptor<?, ?> descriptor = InstantiationUtil.deserializeObject(serialized, userCodeClassLoader);
+			if (descriptors.putIfAbsent(descriptor.getName(), descriptor) == null) {
+				distinct.add(serialized);
+			}
+		}
+		// the union of the instances holds every descriptor once per instance
+		descriptorsState.clear();
+		descriptorsState.addAll(distinct);
+	}
+
+	@Override
+	public <S extends State> S getState(List<Long> context, K key, StateDescriptor<S, ?> descriptor) throws Exception {
+		if (!descriptors.containsKey(descriptor.getName())) {
+			descriptor.initializeSerializerUnlessSet(executionConfig);
+			descriptors.put(descriptor.getName(), descriptor);
+			descriptorsState.add(InstantiationUtil.serializeObject(descriptor));
+		}
+		backend.setCurrentKey(key);
+		return backend.getPartitionedState(context, CONTEXT_SERIALIZER, descriptor);
+	}
+
+	/**
+	 * Clears all states of the given context.
+	 */
+	public void clear(List<Long> context) throws Exception {
+		for (StateDescriptor<?, ?> descriptor : descriptors.values()) {
+			List<K> keys;
+			try (Stream<K> keyStream = backend.getKeys(descriptor.getName(), context)) {
+				// collect first, the states are cleared while going over the keys
+				keys = keyStream.collect(Collectors.toList());
+			}
+			for (K key : keys) {
+				backend.setCurrentKey(key);
+				backend.getPartitionedState(context, CONTEXT_SERIALIZER, descriptor).clear();
+			}
+		}
+	}
+}
@@ -1,9 +1,14 @@
 package org.apache.flink.streaming.runtime.operators.windowing;
 
-import akka.actor.ActorRef;
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
-import org.apache.flink.runtime.progress.messages.ProgressMetricsReport;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
 import org.apache.flink.streaming.api.functions.windowing.LoopContext;
 import org.apache.flink.streaming.api.functions.windowing.WindowLoopFunction;
 import org.apache.flink.streaming.api.graph.StreamConfig;
@@ -17,66 +22,188 @@ import org.apache.flink.streaming.runtime.streamrecord.LatencyMarker;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.streaming.runtime.tasks.StreamTask;
 import org.apache.flink.types.Either;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Internal
 public class TwoWindowTerminateOperator<K, IN1, IN2, ACC1, ACC2, R, S, W1 extends Window, W2 extends Window>
-	extends AbstractStreamOperator<Either<R,S>>
-	implements TwoInputStreamOperator<IN1, IN2, Either<R,S>>, Serializable {
+	extends AbstractStreamOperator<S>
+	implements TwoInputStreamOperator<IN1, IN2, S>, Serializable {
 
 	public final static Logger logger = LoggerFactory.getLogger(TwoWindowTerminateOperator.class);
+
+	/** Serializer for the contexts, which are the namespaces of the entry buffers. */
+	private static final TypeSerializer<List<Long>> CONTEXT_SERIALIZER = new ListSerializer<>(LongSerializer.INSTANCE);
+
 	private final KeySelector<IN1, K> entryKeying;
 	WindowOperator<K, IN2, ACC2, Either<R,S>, W2> winOp2;
 	WindowLoopFunction loopFunction;
+
+	/** The aggregators of the loop, or {@code null} if none are registered. */
+	final LoopAggregators aggregators;
+
+	/** The number of supersteps that windows of a context may run ahead of the slowest head. */
+	final long slack;
+
+	/** The solutions of an incremental iteration, or {@code null} if the iteration is not incremental. */
+	final LoopSolutions<K, IN1, ?> solutions;
+
+	/** The keyed state of the loop functions. */
+	final LoopStates<K> states;
+
+	/** Combines the feedback per context, superstep and key, or {@code null} if it is sent as is. */
+	final FeedbackCombiner<?, R> feedbackCombiner;
+
+	/** The side output of the feedback records, the results of the loop go to the main output. */
+	private final OutputTag<R> feedbackTag;
+
+	/** The output of the loop functions, which splits their results into feedback and results. */
+	transient Output<StreamRecord<Either<R,S>>> loopOutput;
+
+	/** The output of the feedback window operator. */
+	transient Output<StreamRecord<Either<R,S>>> winOp2Output;
+
+	/** Whether the feedback is combined, which is only the case while processing watermarks. */
+	transient boolean combiningFeedback;
 	
 	Set<List<Long>> activeIterations = new HashSet<>();
 	StreamTask<?, ?> containingTask;
 
 	TimestampedCollector<Either<R,S>> collector;
 
-	//TODO implement this properly in a ProcessFunction and managed state
-	Map<List<Long>, Map<K, List<IN1>>> entryBuffer;
+	/** The contexts for which entry records are buffered. */
+	Set<List<Long>> entryContexts = new HashSet<>();
 
-	// MY METRICS
-	private Map<List<Long>, Long> lastWinStartPerContext = new HashMap<>();
-	private Map<List<Long>, Long> lastLocalEndPerContext = new HashMap<>();
+	/** The entry records per key, in the namespace of their context. */
+	private transient ListStateDescriptor<IN1> entryBufferDescriptor;
 
-	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction) {
+	private transient ListState<List<Long>> activeIterationsState;
+	private transient ListState<List<Long>> entryContextsState;
+
+	transient LoopMetrics metrics;
+
+	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction,
+									OutputTag<R> feedbackTag) {
+		this(entryKeySelector, winOp2, loopFunction, feedbackTag, null);
+	}
+
+	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction,
+									OutputTag<R> feedbackTag, LoopAggregators aggregators) {
+		this(entryKeySelector, winOp2, loopFunction, feedbackTag, aggregators, 0L);
+	}
+
+	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction,
+									OutputTag<R> feedbackTag, LoopAggregators aggregators, long slack) {
+		this(entryKeySelector, winOp2, loopFunction, feedbackTag, aggregators, slack, null);
+	}
+
+	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction,
+									OutputTag<R> feedbackTag, LoopAggregators aggregators, long slack,
+									LoopSolutions<K, IN1, ?> solutions) {
+		this(entryKeySelector, winOp2, loopFunction, feedbackTag, aggregators, slack, solutions, null, new LoopStates<>());
+	}
+
+	public TwoWindowTerminateOperator(KeySelector<IN1,K> entryKeySelector, WindowOperator winOp2, WindowLoopFunction loopFunction,
+									OutputTag<R> feedbackTag, LoopAggregators aggregators, long slack,
+									LoopSolutions<K, IN1, ?> solutions, FeedbackCombiner<?, R> feedbackCombiner,
+									LoopStates<K> states) {
+		Preconditions.checkArgument(slack >= 0, "The slack of an iteration cannot be negative.");
 		this.entryKeying = entryKeySelector;
 		this.winOp2 = winOp2;
 		this.loopFunction = loopFunction;
+		this.feedbackTag = Preconditions.checkNotNull(feedbackTag);
+		this.aggregators = aggregators;
+		this.slack = slack;
+		this.solutions = solutions;
+		this.feedbackCombiner = feedbackCombiner;
+		this.states = Preconditions.checkNotNull(states);
 	}
 
 	@Override
-	public void setup(StreamTask<?, ?> containingTask, StreamConfig config, Output<StreamRecord<Either<R,S>>> output) {
+	public void setup(StreamTask<?, ?> containingTask, StreamConfig config, Output<StreamRecord<S>> output) {
 		super.setup(containingTask, config, output);
 
 		// setup() both with own output
 		StreamConfig config2 = new StreamConfig(config.getConfiguration().clone());
 		config2.setOperatorName("WinOp2");
-		winOp2.setup(containingTask, config2, output);
+		loopOutput = new LoopOutput(output);
+		winOp2Output = aggregators == null ? loopOutput : new AggregatesOutput(loopOutput);
+		winOp2.setup(containingTask, config2, winOp2Output);
 		this.containingTask = containingTask;
-		this.entryBuffer = new HashMap<>();
+	}
+
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+		// the window operator of the loop keeps its windows and timers in the state of this operator
+		winOp2.initializeStateFrom(this);
+
+		TypeSerializer<IN1> entrySerializer = config.getTypeSerializerIn1(containingTask.getUserCodeClassLoader());
+		entryBufferDescriptor = new ListStateDescriptor<>("loop-entry-buffer", entrySerializer);
+		if (solutions != null) {
+			solutions.open(this.<K>getKeyedStateBackend(), entrySerializer);
+		}
+		states.open(this.<K>getKeyedStateBackend(), context.getOperatorStateStore(), getExecutionConfig(),
+			containingTask.getUserCodeClassLoader());
+
+		// every instance keeps all contexts, so that they are not lost when rescaling
+		activeIterationsState = context.getOperatorStateStore().getUnionListState(
+			new ListStateDescriptor<>("loop-active-iterations", CONTEXT_SERIALIZER));
+		entryContextsState = context.getOperatorStateStore().getUnionListState(
+			new ListStateDescriptor<>("loop-entry-contexts", CONTEXT_SERIALIZER));
+
+		if (context.isRestored()) {
+			for (List<Long> iteration : activeIterationsState.get()) {
+				activeIterations.add(iteration);
+			}
+			for (List<Long> entryContext : entryContextsState.get()) {
+				entryContexts.add(entryContext);
+			}
+		}
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+
+		activeIterationsState.clear();
+		activeIterationsState.addAll(new ArrayList<>(activeIterations));
+		entryContextsState.clear();
+		entryContextsState.addAll(new ArrayList<>(entryContexts));
 	}
 
 	@Override
 	public final void open() throws Exception {
-		collector = new TimestampedCollector<>(output);
+		collector = new TimestampedCollector<>(loopOutput);
 
 		winOp2.getOperatorConfig().setStateKeySerializer(config.getStateKeySerializer(containingTask.getUserCodeClassLoader()));
+		if (aggregators != null) {
+			aggregators.open(containingTask.getUserCodeClassLoader(), getRuntimeContext().getIndexOfThisSubtask());
+		}
 
 		super.open();
+		metrics = new LoopMetrics(getMetricGroup(), () -> activeIterations.size());
 		winOp2.open("window-timers");
+		if (feedbackCombiner != null) {
+			feedbackCombiner.open(getRuntimeContext());
+		}
 	}
 
 	@Override
 	public final void close() throws Exception {
 		super.close();
 		winOp2.close();
+		if (feedbackCombiner != null) {
+			feedbackCombiner.close();
+		}
 	}
 
 	@Override
@@ -86,69 +213,216 @@ public class TwoWindowTerminateOperator<K, IN1, IN2, ACC1, ACC2, R, S, W1 extend
 	}
 
 	public void processElement1(StreamRecord<IN1> element) throws Exception {
-		logger.info(getRuntimeContext().getIndexOfThisSubtask() +":: TWOWIN Received e from IN - "+ element);
 		activeIterations.add(element.getContext());
+		entryContexts.add(element.getContext());
 
-		if(!entryBuffer.containsKey(element.getContext())){
-			entryBuffer.put(element.getContext(), new HashMap<K, List<IN1>>());
-		}
-		
-		Map<K, List<IN1>> tmp = entryBuffer.get(element.getContext());
-		K key = entryKeying.getKey(element.getValue());
-		if(!tmp.containsKey(key)){
-			tmp.put(key, new ArrayList<IN1>());
-		}
-		tmp.get(key).add(element.getValue());
+		setCurrentKey(entryKeying.getKey(element.getValue()));
+		getPartitionedState(element.getContext(), CONTEXT_SERIALIZER, entryBufferDescriptor).add(element.getValue());
 	}
 	
 	public void processElement2(StreamRecord<IN2> element) throws Exception {
-		logger.info(getRuntimeContext().getIndexOfThisSubtask() +":: TWOWIN Received e from FEEDBACK - "+ element);
 		if(activeIterations.contains(element.getContext())) {
+			metrics.recordFeedback(element.getContext());
 			winOp2.processElement(element);
 		}
 	}
 	
 	public void processWatermark1(Watermark mark) throws Exception {
-		logger.info(getRuntimeContext().getIndexOfThisSubtask() +":: TWOWIN Received from IN - "+ mark);
-		lastWinStartPerContext.put(mark.getContext(), System.currentTimeMillis());
-		if(entryBuffer.containsKey(mark.getContext())){
-			for(Map.Entry<K, List<IN1>> entry : entryBuffer.get(mark.getContext()).entrySet()){
+		logger.debug("Loop entry received {}", mark);
+		combiningFeedback = feedbackCombiner != null;
+		if(entryContexts.remove(mark.getContext())){ //entry is done for that context
+			Set<K> keys;
+			try (Stream<K> keyStream = this.<K>getKeyedStateBackend().getKeys(entryBufferDescriptor.getName(), mark.getContext())) {
+				// collect first, the buffers are cleared while going over the keys
+				keys = keyStream.collect(Collectors.toCollection(LinkedHashSet::new));
+			}
+			if (solutions != null) {
+				// keys without input in this context changed as well
+				keys.addAll(solutions.getKeysWithPreviousEntry());
+			}
+			for(K key : keys){
+				setCurrentKey(key);
+				ListState<IN1> entryBuffer = getPartitionedState(mark.getContext(), CONTEXT_SERIALIZER, entryBufferDescriptor);
+				Iterable<IN1> input = entryBuffer.get();
+				if (solutions != null) {
+					List<IN1> entryInput = new ArrayList<>();
+					if (input != null) {
+						input.forEach(entryInput::add);
+					}
+					input = entryInput;
+					if (!solutions.updateEntry(entryInput)) {
+						// the key keeps its solution from the previous context
+						entryBuffer.clear();
+						continue;
+					}
+				}
 				collector.setAbsoluteTimestamp(mark.getContext(),0);
-				loopFunction.entry(new LoopContext(mark.getContext(), 0, entry.getKey()), entry.getValue(), collector);
+				LoopContext<K> loopContext = aggregators == null ?
+					new LoopContext<>(mark.getContext(), 0, key, solutions, states) :
+					aggregators.createLoopContext(mark.getContext(), 0, key, solutions, states);
+				loopFunction.entry(loopContext, input, collector);
+				entryBuffer.clear();
 			}
-			entryBuffer.remove(mark.getContext()); //entry is done for that context
-			output.emitWatermark(mark);
+			if (aggregators != null) {
+				mark.setAggregates(aggregators.snapshot(mark.getContext(), mark.getTimestamp()));
+			}
+			loopOutput.emitWatermark(mark);
+			metrics.entered(mark.getContext());
 		}
-		lastLocalEndPerContext.put(mark.getContext(), System.currentTimeMillis());
+		emitCombinedFeedback();
 	}
 	
 	public void processWatermark2(Watermark mark) throws Exception {
-		logger.info(getRuntimeContext().getIndexOfThisSubtask() +":: TWOWIN Received from FEEDBACK - "+ mark);
-		lastWinStartPerContext.put(mark.getContext(), System.currentTimeMillis());
+		logger.debug("Loop feedback received {}", mark);
+		combiningFeedback = feedbackCombiner != null;
 		if(mark.iterationDone()) {
 			activeIterations.remove(mark.getContext());
 			if(mark.getContext().get(mark.getContext().size()-1) != Long.MAX_VALUE ) {
 				loopFunction.onTermination(mark.getContext(), mark.getTimestamp(), collector);
 			}
 			winOp2.processWatermark(new Watermark(mark.getContext(), Long.MAX_VALUE, false, mark.iterationOnly()));
+			// after the last windows of the context fired
+			if (solutions != null) {
+				solutions.promote(mark.getContext());
+			}
+			states.clear(mark.getContext());
+			metrics.terminated(mark.getContext());
 		} else {
-			winOp2.processWatermark(mark);
+			if (mark.getTimestamp() != Long.MAX_VALUE) {
+				metrics.superstepCompleted(mark.getContext());
+			}
+			if (aggregators != null && mark.getAggregates() != null) {
+				// the partials of all heads for the superstep that is complete now
+				aggregators.combine(mark.getContext(), mark.getAggregates());
+			} else {
+				// the progress of the heads is consumed, do not send it back to them
+				mark.setAggregates(null);
+			}
+			if (slack > 0) {
+				// windows up to slack supersteps ahead of the slowest head fire, the heads still
+				// see the aligned superstep. The final watermark of a context must not overflow.
+				long ahead = mark.getTimestamp() > Long.MAX_VALUE - slack ? Long.MAX_VALUE : mark.getTimestamp() + slack;
+				winOp2.advanceEventTime(new Watermark(mark.getContext(), ahead, false, mark.iterationOnly()));
+				winOp2Output.emitWatermark(mark);
+			} else {
+				winOp2.processWatermark(mark);
+			}
+		}
+		emitCombinedFeedback();
+	}
+
+	/**
+	 * Emits the feedback that is still combined and sends the feedback on as is until the next
+	 * watermark, so that no feedback is held back while records or checkpoints are processed.
+	 */
+	private void emitCombinedFeedback() {
+		if (feedbackCombiner != null) {
+			combiningFeedback = false;
+			feedbackCombiner.emitAll(record -> output.collect(feedbackTag, record));
 		}
-		lastLocalEndPerContext.put(mark.getContext(), System.currentTimeMillis());
 	}
 
 	public void processLatencyMarker1(LatencyMarker latencyMarker) throws Exception {}
 	public void processLatencyMarker2(LatencyMarker latencyMarker) throws Exception {}
 
-	@Override
-	public void sendMetrics(long windowEnd, List<Long> context) {
-//		if (getContainingTask().getEnvironment().getExecutionConfig().isExperimentMetricsEnabled()) {
-//			getContainingTask().getEnvironment().getJobManagerRef().tell(
-//				new ProgressMetricsReport(getContainingTask().getEnvironment().getJobID(),
-//					getOperatorConfig().getVertexID(),
-//					getRuntimeContext().getIndexOfThisSubtask(),
-//					context, lastWinStartPerContext.get(context), lastLocalEndPerContext.get(context), windowEnd
-//				), ActorRef.noSender());
-//		}
+	/**
+	 * Emits the feedback records of the loop functions to the side output of the feedback and
+	 * their results to the main output, so that no operators are needed to split them up.
+	 */
+	private final class LoopOutput implements Output<StreamRecord<Either<R,S>>> {
+
+		private final Output<StreamRecord<S>> output;
+
+		LoopOutput(Output<StreamRecord<S>> output) {
+			this.output = output;
+		}
+
+		@Override
+		public void emitWatermark(Watermark mark) {
+			if (feedbackCombiner != null) {
+				// the combined feedback of the context belongs to the supersteps before the watermark
+				feedbackCombiner.emit(mark.getContext(), record -> output.collect(feedbackTag, record));
+			}
+			output.emitWatermark(mark);
+		}
+
+		@Override
+		public <X> void collect(OutputTag<X> outputTag, StreamRecord<X> record) {
+			output.collect(outputTag, record);
+		}
+
+		@Override
+		public void emitLatencyMarker(LatencyMarker latencyMarker) {
+			output.emitLatencyMarker(latencyMarker);
+		}
+
+		@Override
+		public void collect(StreamRecord<Either<R,S>> record) {
+			Either<R,S> value = record.getValue();
+			if (value.isLeft() && combiningFeedback) {
+				try {
+					feedbackCombiner.add(record.replace(value.left()));
+				} catch (Exception e) {
+					throw new FlinkRuntimeException("Could not combine the feedback " + value.left(), e);
+				}
+			} else if (value.isLeft()) {
+				output.collect(feedbackTag, record.replace(value.left()));
+			} else {
+				output.collect(record.replace(value.right()));
+			}
+		}
+
+		@Override
+		public void close() {
+			output.close();
+		}
+	}
+
+	/**
+	 * Attaches the aggregates of the completed superstep to the watermarks that the step windows
+	 * forward to the iteration tail.
+	 */
+	private final class AggregatesOutput implements Output<StreamRecord<Either<R,S>>> {
+
+		private final Output<StreamRecord<Either<R,S>>> output;
+
+		AggregatesOutput(Output<StreamRecord<Either<R,S>>> output) {
+			this.output = output;
+		}
+
+		@Override
+		public void emitWatermark(Watermark mark) {
+			if (mark.getTimestamp() == Long.MAX_VALUE) {
+				aggregators.remove(mark.getContext());
+				mark.setAggregates(null);
+			} else {
+				try {
+					mark.setAggregates(aggregators.snapshot(mark.getContext(), mark.getTimestamp()));
+				} catch (Exception e) {
+					throw new FlinkRuntimeException("Could not attach the loop aggregates to " + mark, e);
+				}
+			}
+			output.emitWatermark(mark);
+		}
+
+		@Override
+		public <X> void collect(OutputTag<X> outputTag, StreamRecord<X> record) {
+			output.collect(outputTag, record);
+		}
+
+		@Override
+		public void emitLatencyMarker(LatencyMarker latencyMarker) {
+			output.emitLatencyMarker(latencyMarker);
+		}
+
+		@Override
+		public void collect(StreamRecord<Either<R,S>> record) {
+			output.collect(record);
+		}
+
+		@Override
+		public void close() {
+			output.close();
+		}
 	}
 }
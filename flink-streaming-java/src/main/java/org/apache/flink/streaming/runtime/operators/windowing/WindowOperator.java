@@ -58,6 +58,7 @@ import org.apache.flink.streaming.api.operators.InternalTimerService;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.TimestampedCollector;
 import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.api.windowing.assigners.BaseAlignedWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
@@ -578,6 +579,14 @@ if (contents != null) {		TriggerResult triggerResult = triggerContext.onEventTim
 		return new MergingWindowSet<>(mergingAssigner, mergingSetsState);
 	}
 
+	/**
+	 * Advances the event time of the windows to the given watermark, without forwarding the
+	 * watermark.
+	 */
+	void advanceEventTime(Watermark mark) throws Exception {
+		timeServiceManager.advanceWatermark(mark);
+	}
+
 	/**
 	 * Returns {@code true} if the watermark is after the end timestamp plus the allowed lateness
 	 * of the given window.
@@ -50,6 +50,16 @@ public class BroadcastPartitioner<T> extends StreamPartitioner<T> {
 		}
 	}
 
+	@Override
+	public boolean isBroadcast() {
+		return true;
+	}
+
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	@Override
 	public StreamPartitioner<T> copy() {
 		return this;
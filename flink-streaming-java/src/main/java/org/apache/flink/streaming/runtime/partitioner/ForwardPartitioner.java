@@ -37,6 +37,11 @@ public class ForwardPartitioner<T> extends StreamPartitioner<T> {
 		return returnArray;
 	}
 
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	public StreamPartitioner<T> copy() {
 		return this;
 	}
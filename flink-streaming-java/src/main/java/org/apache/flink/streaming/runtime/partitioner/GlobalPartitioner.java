@@ -38,6 +38,11 @@ public class GlobalPartitioner<T> extends StreamPartitioner<T> {
 		return returnArray;
 	}
 
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	@Override
 	public StreamPartitioner<T> copy() {
 		return this;
@@ -43,6 +43,11 @@ public class RebalancePartitioner<T> extends StreamPartitioner<T> {
 		return this.returnArray;
 	}
 
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	public StreamPartitioner<T> copy() {
 		return this;
 	}
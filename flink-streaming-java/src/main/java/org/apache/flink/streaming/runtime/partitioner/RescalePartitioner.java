@@ -59,6 +59,11 @@ public class RescalePartitioner<T> extends StreamPartitioner<T> {
 		return this.returnArray;
 	}
 
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	public StreamPartitioner<T> copy() {
 		return this;
 	}
@@ -45,6 +45,11 @@ public class ShufflePartitioner<T> extends StreamPartitioner<T> {
 		return returnArray;
 	}
 
+	@Override
+	public boolean isRecordDependent() {
+		return false;
+	}
+
 	@Override
 	public StreamPartitioner<T> copy() {
 		return new ShufflePartitioner<T>();
@@ -33,4 +33,13 @@ public abstract class StreamPartitioner<T> implements
 	private static final long serialVersionUID = 1L;
 
 	public abstract StreamPartitioner<T> copy();
+
+	/**
+	 * Returns whether the channels that this partitioner selects depend on the record. Partitioners
+	 * that do not look at the record can also route records that are only available in serialized
+	 * form, see {@link org.apache.flink.streaming.runtime.streamrecord.SerializedStreamRecord}.
+	 */
+	public boolean isRecordDependent() {
+		return true;
+	}
 }
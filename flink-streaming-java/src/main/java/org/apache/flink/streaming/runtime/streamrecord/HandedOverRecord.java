@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.streamrecord;
+
+import org.apache.flink.annotation.Internal;
+
+/**
+ * A placeholder for a {@link StreamRecord} that the producer handed over by reference to a
+ * consumer in the same task manager, instead of serializing it.
+ *
+ * <p>The placeholder is written by {@link StreamElementSerializer} as a single tag byte in place
+ * of the record, which keeps the record in order with the other elements of the channel. The
+ * consumer replaces the placeholder by the next record of the object handoff of the channel.
+ */
+@Internal
+public final class HandedOverRecord extends StreamElement {
+
+	public static final HandedOverRecord INSTANCE = new HandedOverRecord();
+
+	private HandedOverRecord() {}
+
+	@Override
+	public String toString() {
+		return "HandedOverRecord";
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.streamrecord;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link StreamRecord} in the binary form written by {@link StreamElementSerializer}.
+ *
+ * <p>Serialized records are used on the feedback edges of iterations: the iteration tail
+ * serializes each record once, and the iteration head writes the bytes as they are to all outputs
+ * whose partitioning does not depend on the record. The context of the record is kept alongside
+ * the bytes so that termination strategies can observe it without deserializing the record.
+ */
+@Internal
+public final class SerializedStreamRecord extends StreamElement {
+
+	private final byte[] bytes;
+
+	private final TimeContext context;
+
+	private SerializedStreamRecord(byte[] bytes, TimeContext context) {
+		this.bytes = bytes;
+		this.context = context;
+	}
+
+	/**
+	 * Serializes the given record.
+	 *
+	 * @param record The record to serialize.
+	 * @param serializer The serializer for stream elements of the record's type.
+	 * @param buffer A reusable buffer for the serialization.
+	 */
+	public static <T> SerializedStreamRecord serialize(
+			StreamRecord<T> record,
+			StreamElementSerializer<T> serializer,
+			DataOutputSerializer buffer) throws IOException {
+
+		buffer.clear();
+		serializer.serialize(record, buffer);
+		return new SerializedStreamRecord(buffer.getCopyOfBuffer(), record.getContext());
+	}
+
+	/**
+	 * Returns the context of the record.
+	 */
+	public TimeContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Advances the timestamp of the record by one, like {@link StreamRecord#forwardTimestamp()}.
+	 */
+	public void forwardTimestamp() {
+		if (bytes[0] == StreamElementSerializer.TAG_REC_WITH_TIMESTAMP) {
+			long timestamp = 0;
+			for (int i = 1; i <= 8; i++) {
+				timestamp = (timestamp << 8) | (bytes[i] & 0xff);
+			}
+			timestamp++;
+			for (int i = 8; i >= 1; i--) {
+				bytes[i] = (byte) timestamp;
+				timestamp >>>= 8;
+			}
+		}
+	}
+
+	/**
+	 * Writes the serialized record to the given target.
+	 */
+	public void write(DataOutputView target) throws IOException {
+		target.write(bytes);
+	}
+
+	/**
+	 * Deserializes the record.
+	 */
+	public <T> StreamRecord<T> deserialize(StreamElementSerializer<T> serializer) throws IOException {
+		return serializer.deserialize(new DataInputDeserializer(bytes)).asRecord();
+	}
+
+	/**
+	 * Returns the size of the serialized record in bytes.
+	 */
+	public int getSize() {
+		return bytes.length;
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		return Arrays.equals(bytes, ((SerializedStreamRecord) o).bytes);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "SerializedRecord @ " + context + " (" + bytes.length + " bytes)";
+	}
+}
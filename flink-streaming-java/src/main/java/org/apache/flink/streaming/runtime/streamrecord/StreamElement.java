@@ -60,6 +60,14 @@ public abstract class StreamElement {
 		return getClass() == LatencyMarker.class;
 	}
 
+	/**
+	 * Checks whether this element is a serialized record.
+	 * @return True, if this element is a serialized record, false otherwise.
+	 */
+	public final boolean isSerializedRecord() {
+		return getClass() == SerializedStreamRecord.class;
+	}
+
 	/**
 	 * Casts this element into a StreamRecord.
 	 * @return This element as a stream record.
@@ -96,4 +104,13 @@ public abstract class StreamElement {
 	public final LatencyMarker asLatencyMarker() {
 		return (LatencyMarker) this;
 	}
+
+	/**
+	 * Casts this element into a SerializedStreamRecord.
+	 * @return This element as a SerializedStreamRecord.
+	 * @throws java.lang.ClassCastException Thrown, if this element is actually not a SerializedStreamRecord.
+	 */
+	public final SerializedStreamRecord asSerializedRecord() {
+		return (SerializedStreamRecord) this;
+	}
 }
@@ -32,10 +32,9 @@ import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.jobgraph.OperatorID;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamstatus.StreamStatus;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
 
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
 
 import static java.util.Objects.requireNonNull;
 
@@ -53,15 +52,22 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 
 	private static final long serialVersionUID = 1L;
 
-	private static final int TAG_REC_WITH_TIMESTAMP = 0;
+	static final int TAG_REC_WITH_TIMESTAMP = 0;
 	private static final int TAG_REC_WITHOUT_TIMESTAMP = 1;
 	private static final int TAG_WATERMARK = 2;
 	private static final int TAG_LATENCY_MARKER = 3;
 	private static final int TAG_STREAM_STATUS = 4;
+	private static final int TAG_HANDED_OVER_RECORD = 5;
 
 
+	/** Initial size of the buffer that contexts are read into before they are interned. */
+	private static final int CONTEXT_BUFFER_SIZE = 8;
+
 	private final TypeSerializer<T> typeSerializer;
 
+	/** Reusable buffer for reading contexts, serializers are not shared between threads. */
+	private transient long[] contextBuffer;
+
 	public StreamElementSerializer(TypeSerializer<T> serializer) {
 		if (serializer instanceof StreamElementSerializer) {
 			throw new RuntimeException("StreamRecordSerializer given to StreamRecordSerializer as value TypeSerializer: " + serializer);
@@ -84,8 +90,8 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 
 	@Override
 	public StreamElementSerializer<T> duplicate() {
-		TypeSerializer<T> copy = typeSerializer.duplicate();
-		return (copy == typeSerializer) ? this : new StreamElementSerializer<T>(copy);
+		// always duplicate, the context buffer must not be shared between threads
+		return new StreamElementSerializer<T>(typeSerializer.duplicate());
 	}
 
 	// ------------------------------------------------------------------------
@@ -145,11 +151,7 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 		if (tag == TAG_REC_WITH_TIMESTAMP) {
 			// move timestamp
 			target.writeLong(source.readLong());
-			int contextSize = source.readInt();
-			target.writeInt(contextSize);
-			for(int i=0; i<contextSize; i++) {
-				target.writeLong(source.readLong());
-			}
+			TimeContext.copy(source, target);
 			typeSerializer.copy(source, target);
 		}
 		else if (tag == TAG_REC_WITHOUT_TIMESTAMP) {
@@ -159,10 +161,11 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			target.writeLong(source.readLong());
 			target.writeBoolean(source.readBoolean());
 			target.writeBoolean(source.readBoolean());
-			int contextSize = source.readInt();
-			target.writeInt(contextSize);
-			for(int i=0; i<contextSize; i++) {
-				target.writeLong(source.readLong());
+			TimeContext.copy(source, target);
+			boolean hasAggregates = source.readBoolean();
+			target.writeBoolean(hasAggregates);
+			if (hasAggregates) {
+				IterationAggregates.copy(source, target);
 			}
 		}
 		else if (tag == TAG_STREAM_STATUS) {
@@ -172,7 +175,7 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			target.writeLong(source.readLong());
 			target.writeInt(source.readInt());
 			target.writeInt(source.readInt());
-		} else {
+		} else if (tag != TAG_HANDED_OVER_RECORD) {
 			throw new IOException("Corrupt stream, found tag: " + tag);
 		}
 	}
@@ -185,10 +188,7 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			if (record.hasTimestamp()) {
 				target.write(TAG_REC_WITH_TIMESTAMP);
 				target.writeLong(record.getTimestamp());
-				target.writeInt(record.getContext().size());
-				for(long contextElement : record.getContext()) {
-					target.writeLong(contextElement);
-				}
+				record.getContext().write(target);
 			} else {
 				target.write(TAG_REC_WITHOUT_TIMESTAMP);
 			}
@@ -199,15 +199,23 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			target.writeLong(value.asWatermark().getTimestamp());
 			target.writeBoolean(value.asWatermark().iterationDone());
 			target.writeBoolean(value.asWatermark().iterationOnly());
-			target.writeInt(value.asWatermark().getContext().size());
-			for(long contextElement : value.asWatermark().getContext()) {
-				target.writeLong(contextElement);
+			TimeContext.of(value.asWatermark().getContext()).write(target);
+			IterationAggregates aggregates = value.asWatermark().getAggregates();
+			if (aggregates == null) {
+				target.writeBoolean(false);
+			} else {
+				target.writeBoolean(true);
+				aggregates.write(target);
 			}
 		}
 		else if (value.isStreamStatus()) {
 			target.write(TAG_STREAM_STATUS);
 			target.writeInt(value.asStreamStatus().getStatus());
 		}
+		else if (value.isSerializedRecord()) {
+			// already in the binary form of a record
+			value.asSerializedRecord().write(target);
+		}
 		else if (value.isLatencyMarker()) {
 			target.write(TAG_LATENCY_MARKER);
 			target.writeLong(value.asLatencyMarker().getMarkedTime());
@@ -215,6 +223,9 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			target.writeLong(value.asLatencyMarker().getOperatorId().getUpperPart());
 			target.writeInt(value.asLatencyMarker().getSubtaskIndex());
 		}
+		else if (value == HandedOverRecord.INSTANCE) {
+			target.write(TAG_HANDED_OVER_RECORD);
+		}
 		else {
 			throw new RuntimeException();
 		}
@@ -225,11 +236,7 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 		int tag = source.readByte();
 		if (tag == TAG_REC_WITH_TIMESTAMP) {
 			long timestamp = source.readLong();
-			List<Long> context = new LinkedList<>();
-			int arraySize = source.readInt();
-			for(int i=0; i<arraySize; i++) {
-				context.add(source.readLong());
-			}
+			TimeContext context = readContext(source);
 			return new StreamRecord<T>(typeSerializer.deserialize(source), context, timestamp);
 		}
 		else if (tag == TAG_REC_WITHOUT_TIMESTAMP) {
@@ -239,12 +246,8 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			long timestamp = source.readLong();
 			boolean iterationDone = source.readBoolean();
 			boolean iterationOnly = source.readBoolean();
-			List<Long> context = new LinkedList<>();
-			int arraySize = source.readInt();
-			for(int i=0; i<arraySize; i++) {
-				context.add(source.readLong());
-			}
-			return new Watermark(context, timestamp, iterationDone, iterationOnly);
+			TimeContext context = readContext(source);
+			return readAggregates(new Watermark(context, timestamp, iterationDone, iterationOnly), source);
 		}
 		else if (tag == TAG_STREAM_STATUS) {
 			return new StreamStatus(source.readInt());
@@ -252,6 +255,9 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 		else if (tag == TAG_LATENCY_MARKER) {
 			return new LatencyMarker(source.readLong(), new OperatorID(source.readLong(), source.readLong()), source.readInt());
 		}
+		else if (tag == TAG_HANDED_OVER_RECORD) {
+			return HandedOverRecord.INSTANCE;
+		}
 		else {
 			throw new IOException("Corrupt stream, found tag: " + tag);
 		}
@@ -262,13 +268,9 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 		int tag = source.readByte();
 		if (tag == TAG_REC_WITH_TIMESTAMP) {
 			long timestamp = source.readLong();
+			TimeContext context = readContext(source);
 			T value = typeSerializer.deserialize(source);
 			StreamRecord<T> reuseRecord = reuse.asRecord();
-			List<Long> context = new LinkedList<>();
-			int arraySize = source.readInt();
-			for(int i=0; i<arraySize; i++) {
-				context.add(source.readLong());
-			}
 			reuseRecord.replace(value, context, timestamp);
 			return reuseRecord;
 		}
@@ -282,21 +284,34 @@ public final class StreamElementSerializer<T> extends TypeSerializer<StreamEleme
 			long timestamp = source.readLong();
 			boolean iterationDone = source.readBoolean();
 			boolean iterationOnly = source.readBoolean();
-			List<Long> context = new LinkedList<>();
-			int arraySize = source.readInt();
-			for(int i=0; i<arraySize; i++) {
-				context.add(source.readLong());
-			}
-			return new Watermark(context, timestamp, iterationDone, iterationOnly);
+			TimeContext context = readContext(source);
+			return readAggregates(new Watermark(context, timestamp, iterationDone, iterationOnly), source);
 		}
 		else if (tag == TAG_LATENCY_MARKER) {
 			return new LatencyMarker(source.readLong(), new OperatorID(source.readLong(), source.readLong()), source.readInt());
 		}
+		else if (tag == TAG_HANDED_OVER_RECORD) {
+			return HandedOverRecord.INSTANCE;
+		}
 		else {
 			throw new IOException("Corrupt stream, found tag: " + tag);
 		}
 	}
 
+	private static Watermark readAggregates(Watermark watermark, DataInputView source) throws IOException {
+		if (source.readBoolean()) {
+			watermark.setAggregates(IterationAggregates.read(source));
+		}
+		return watermark;
+	}
+
+	private TimeContext readContext(DataInputView source) throws IOException {
+		if (contextBuffer == null) {
+			contextBuffer = new long[CONTEXT_BUFFER_SIZE];
+		}
+		return TimeContext.read(source, contextBuffer);
+	}
+
 	// ------------------------------------------------------------------------
 	//  Utilities
 	// ------------------------------------------------------------------------
@@ -20,7 +20,6 @@ package org.apache.flink.streaming.runtime.streamrecord;
 import org.apache.flink.annotation.Internal;
 
 import java.io.Serializable;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -38,7 +37,7 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 	private long timestamp;
 
 	/** The context of the record ('outer timestamp') */
-	private List<Long> context;
+	private TimeContext context;
 
 	/** Flag whether the timestamp is actually set */
 	private boolean hasTimestamp;
@@ -48,7 +47,7 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 	 */
 	public StreamRecord(T value) {
 		this.value = value;
-		this.context = new LinkedList<>();
+		this.context = TimeContext.EMPTY;
 	}
 
 	/**
@@ -59,7 +58,7 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 	 * @param timestamp The timestamp in milliseconds
 	 */
 	public StreamRecord(T value, long timestamp) {
-		this(value, new LinkedList<Long>(), timestamp);
+		this(value, TimeContext.EMPTY, timestamp);
 	}
 
 	/**
@@ -73,7 +72,7 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 		this.value = value;
 		this.timestamp = timestamp;
 		this.hasTimestamp = true;
-		this.context = new LinkedList<>(context);
+		this.context = TimeContext.of(context);
 	}
 
 	// ------------------------------------------------------------------------
@@ -102,17 +101,13 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 	}
 	public List<Long> getFullTimestamp() {
 		if(hasTimestamp) {
-			List<Long> fullTimestamp = new LinkedList<>(context);
-			fullTimestamp.add(timestamp);
-			return fullTimestamp;
+			return context.append(timestamp);
 		} else {
-			LinkedList<Long> result = new LinkedList<>();
-			result.add(Long.MIN_VALUE);
-			return result;
+			return TimeContext.of(Long.MIN_VALUE);
 		}
 	}
 
-	public List<Long> getContext() {
+	public TimeContext getContext() {
 		return context;
 	}
 
@@ -166,7 +161,7 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 
 	public <X> StreamRecord<X> replace(X value, List<Long> context, long timestamp) {
 		this.timestamp = timestamp;
-		this.context = context;
+		this.context = TimeContext.of(context);
 		this.value = (T) value;
 		this.hasTimestamp = true;
 
@@ -179,20 +174,21 @@ public final class StreamRecord<T> extends StreamElement implements Serializable
 	}
 
 	public void setContext(List<Long> context) {
-		this.context = context;
+		this.context = TimeContext.of(context);
 	}
 
 	public void addNestedTimestamp(long timestamp) {
 		if(!hasTimestamp) {
 			setTimestamp(timestamp);
 		} else {
-			this.context.add(this.timestamp);
+			this.context = this.context.append(this.timestamp);
 			this.timestamp = timestamp;
 		}
 	}
 	public void removeNestedTimestamp() {
 		if(this.context.size() > 0) {
-			this.timestamp = this.context.remove(this.context.size()-1);
+			this.timestamp = this.context.getLast();
+			this.context = this.context.removeLast();
 		}
 	}
 
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.streamrecord;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable representation of the nested ('outer') timestamps of a {@link StreamRecord} or a
+ * {@link org.apache.flink.streaming.api.watermark.Watermark} inside (nested) iterations.
+ *
+ * <p>The timestamps are kept in a primitive {@code long[]} and the hash code is computed once on
+ * construction, so contexts are cheap to use as keys of hash based structures. Because contexts are
+ * immutable they can be shared freely between elements: entering and leaving a scope returns cached
+ * instances and deserialization goes through a small interning table, so that in the common case
+ * no object is allocated per element.
+ *
+ * <p>A {@code TimeContext} is a {@link List} and follows the {@link List#equals(Object)} and
+ * {@link List#hashCode()} contracts, i.e. it can be used interchangeably with any other
+ * {@code List<Long>} holding the same timestamps.
+ */
+@Internal
+public final class TimeContext extends AbstractList<Long> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The context of elements that are not inside of any iteration. */
+	public static final TimeContext EMPTY = new TimeContext(new long[0], null);
+
+	/** Number of slots of the interning table, must be a power of two. */
+	private static final int INTERN_TABLE_SIZE = 1024;
+
+	/** Direct-mapped, lossy interning table. Entries are immutable, so racy access is benign. */
+	private static final TimeContext[] INTERN_TABLE = new TimeContext[INTERN_TABLE_SIZE];
+
+	private final long[] timestamps;
+
+	private final int hash;
+
+	/** The context this one was derived from by {@link #append(long)}, if any. */
+	private transient TimeContext parent;
+
+	/** The last context that was derived from this one by {@link #append(long)}, if any. */
+	private transient TimeContext lastChild;
+
+	private TimeContext(long[] timestamps, TimeContext parent) {
+		this.timestamps = timestamps;
+		this.hash = hash(timestamps, timestamps.length);
+		this.parent = parent;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Factories
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the context holding the given timestamps. If the given list is already a
+	 * {@code TimeContext} it is returned as is.
+	 */
+	public static TimeContext of(List<Long> timestamps) {
+		if (timestamps instanceof TimeContext) {
+			return (TimeContext) timestamps;
+		}
+		if (timestamps == null || timestamps.isEmpty()) {
+			return EMPTY;
+		}
+		long[] values = new long[timestamps.size()];
+		int i = 0;
+		for (Long timestamp : timestamps) {
+			values[i++] = timestamp;
+		}
+		return intern(values, values.length);
+	}
+
+	/**
+	 * Returns the context holding the given timestamps.
+	 */
+	public static TimeContext of(long... timestamps) {
+		return intern(timestamps, timestamps.length);
+	}
+
+	/**
+	 * Returns the context holding the first {@code length} timestamps of the given array. The array
+	 * is not retained, so callers may reuse it as a scratch buffer.
+	 */
+	public static TimeContext intern(long[] timestamps, int length) {
+		if (length == 0) {
+			return EMPTY;
+		}
+
+		final int hash = hash(timestamps, length);
+		final int slot = (hash ^ (hash >>> 16)) & (INTERN_TABLE_SIZE - 1);
+
+		TimeContext cached = INTERN_TABLE[slot];
+		if (cached != null && cached.hash == hash && cached.matches(timestamps, length)) {
+			return cached;
+		}
+
+		long[] copy = new long[length];
+		System.arraycopy(timestamps, 0, copy, 0, length);
+		TimeContext context = new TimeContext(copy, null);
+		INTERN_TABLE[slot] = context;
+		return context;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Scope entry and exit
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the context that additionally holds the given timestamp as innermost timestamp.
+	 */
+	public TimeContext append(long timestamp) {
+		TimeContext child = lastChild;
+		if (child != null && child.timestamps[timestamps.length] == timestamp) {
+			return child;
+		}
+
+		long[] values = new long[timestamps.length + 1];
+		System.arraycopy(timestamps, 0, values, 0, timestamps.length);
+		values[timestamps.length] = timestamp;
+		child = new TimeContext(values, this);
+		lastChild = child;
+		return child;
+	}
+
+	/**
+	 * Returns the context without its innermost timestamp.
+	 *
+	 * @throws IllegalStateException if this context is empty
+	 */
+	public TimeContext removeLast() {
+		if (timestamps.length == 0) {
+			throw new IllegalStateException("Cannot remove a timestamp from an empty context.");
+		}
+		TimeContext result = parent;
+		if (result == null) {
+			result = intern(timestamps, timestamps.length - 1);
+			parent = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the innermost timestamp of this context.
+	 *
+	 * @throws IllegalStateException if this context is empty
+	 */
+	public long getLast() {
+		if (timestamps.length == 0) {
+			throw new IllegalStateException("Empty context has no timestamp.");
+		}
+		return timestamps[timestamps.length - 1];
+	}
+
+	/**
+	 * Returns the timestamp at the given position as a primitive.
+	 */
+	public long getLong(int index) {
+		return timestamps[index];
+	}
+
+	// ------------------------------------------------------------------------
+	//  (De)serialization
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes the context as its length followed by the timestamps.
+	 */
+	public void write(DataOutputView target) throws IOException {
+		target.writeInt(timestamps.length);
+		for (long timestamp : timestamps) {
+			target.writeLong(timestamp);
+		}
+	}
+
+	/**
+	 * Reads a context that was written with {@link #write(DataOutputView)}. Timestamps are read
+	 * into the given scratch buffer if it is large enough, which makes reading contexts that are
+	 * already interned allocation free.
+	 *
+	 * @param source The input to read from.
+	 * @param scratch A reusable buffer, may be {@code null}.
+	 */
+	public static TimeContext read(DataInputView source, long[] scratch) throws IOException {
+		final int length = source.readInt();
+		if (length == 0) {
+			return EMPTY;
+		}
+		long[] buffer = scratch != null && scratch.length >= length ? scratch : new long[length];
+		for (int i = 0; i < length; i++) {
+			buffer[i] = source.readLong();
+		}
+		return intern(buffer, length);
+	}
+
+	/**
+	 * Copies a context that was written with {@link #write(DataOutputView)}.
+	 */
+	public static void copy(DataInputView source, DataOutputView target) throws IOException {
+		final int length = source.readInt();
+		target.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			target.writeLong(source.readLong());
+		}
+	}
+
+	private Object readResolve() throws ObjectStreamException {
+		return intern(timestamps, timestamps.length);
+	}
+
+	// ------------------------------------------------------------------------
+	//  List
+	// ------------------------------------------------------------------------
+
+	@Override
+	public Long get(int index) {
+		return timestamps[index];
+	}
+
+	@Override
+	public int size() {
+		return timestamps.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return timestamps.length == 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof TimeContext) {
+			TimeContext that = (TimeContext) o;
+			return hash == that.hash && matches(that.timestamps, that.timestamps.length);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < timestamps.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(timestamps[i]);
+		}
+		return builder.append(']').toString();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utilities
+	// ------------------------------------------------------------------------
+
+	private boolean matches(long[] other, int length) {
+		if (timestamps.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (timestamps[i] != other[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Computes the hash code as defined by {@link List#hashCode()}. */
+	private static int hash(long[] timestamps, int length) {
+		int result = 1;
+		for (int i = 0; i < length; i++) {
+			long timestamp = timestamps[i];
+			result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
+		}
+		return result;
+	}
+}
@@ -76,6 +76,17 @@ public class StatusWatermarkValve {
 	 * @param outputHandler the customized output handler for the valve
 	 */
 	public StatusWatermarkValve(int numInputChannels, ValveOutputHandler outputHandler) {
+		this(numInputChannels, outputHandler, new ProgressTrackingHandler(numInputChannels));
+	}
+
+	/**
+	 * Returns a new {@code StatusWatermarkValve} that aligns the watermarks with the given handler.
+	 *
+	 * @param numInputChannels the number of input channels that this valve will need to handle
+	 * @param outputHandler the customized output handler for the valve
+	 * @param progressHandler the handler that aligns the watermarks of the input channels
+	 */
+	public StatusWatermarkValve(int numInputChannels, ValveOutputHandler outputHandler, ProgressTrackingHandler progressHandler) {
 		checkArgument(numInputChannels > 0);
 		this.channelStatuses = new InputChannelStatus[numInputChannels];
 		for (int i = 0; i < numInputChannels; i++) {
@@ -89,7 +100,7 @@ public class StatusWatermarkValve {
 
 		this.lastOutputWatermark = Long.MIN_VALUE;
 		this.lastOutputStreamStatus = StreamStatus.ACTIVE;
-		this.progressHandler = new ProgressTrackingHandler(numInputChannels);
+		this.progressHandler = checkNotNull(progressHandler);
 	}
 
 	/**
@@ -103,9 +114,10 @@ public class StatusWatermarkValve {
 		// ignore the input watermark if its input channel, or all input channels are idle (i.e. overall the valve is idle).
 		if (lastOutputStreamStatus.isActive() && channelStatuses[channelIndex].streamStatus.isActive()) {
 			Watermark next = progressHandler.getNextWatermark(watermark, channelIndex);
-			if(next != null){
+			while (next != null) {
 				lastOutputWatermark = next.getTimestamp();
 				outputHandler.handleWatermark(next);
+				next = progressHandler.pollWatermark();
 			}
 			
 //			long watermarkMillis = watermark.getTimestamp();
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The operator of a {@link StreamIterationHead}, which keeps the feedback that was in flight
+ * during a checkpoint as operator state. The head emits the feedback itself, the operator only
+ * takes part in snapshots and restores.
+ *
+ * <p>The log of a checkpoint contains the serialized feedback elements that the head took from
+ * the feedback channel after it emitted the barrier and before the barrier came back through the
+ * {@link StreamIterationTail}. These elements were emitted by the loop before its snapshot and had
+ * not been processed by the loop at the time of the snapshot, so the head emits them again first
+ * when it is restored.
+ *
+ * @param <OUT> The type of the feedback.
+ */
+@Internal
+public class FeedbackLogOperator<OUT> extends AbstractStreamOperator<OUT> implements OneInputStreamOperator<OUT, OUT> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ListState<byte[]> logState;
+
+	/** The logs of the checkpoints whose barriers came back, by checkpoint ID. */
+	private transient Map<Long, List<byte[]>> completedLogs;
+
+	/** The log of the checkpoint that the operator was restored from. */
+	private transient List<byte[]> restoredLog;
+
+	public FeedbackLogOperator() {
+		// the head emits to its outputs directly
+		this.chainingStrategy = ChainingStrategy.NEVER;
+	}
+
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		logState = context.getOperatorStateStore().getListState(
+			new ListStateDescriptor<>("feedback-log", BytePrimitiveArraySerializer.INSTANCE));
+		completedLogs = new HashMap<>();
+		restoredLog = new ArrayList<>();
+		if (context.isRestored()) {
+			for (byte[] element : logState.get()) {
+				restoredLog.add(element);
+			}
+		}
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+
+		logState.clear();
+		List<byte[]> log = completedLogs.remove(context.getCheckpointId());
+		if (log != null) {
+			logState.addAll(log);
+		}
+	}
+
+	/**
+	 * Sets the log of the given checkpoint, which is snapshotted next.
+	 */
+	void setLog(long checkpointId, List<byte[]> log) {
+		completedLogs.put(checkpointId, log);
+	}
+
+	/**
+	 * Returns the log of the checkpoint that the operator was restored from and forgets it.
+	 */
+	List<byte[]> takeRestoredLog() {
+		List<byte[]> log = restoredLog;
+		restoredLog = new ArrayList<>();
+		return log;
+	}
+
+	@Override
+	public void processElement(StreamRecord<OUT> element) {
+		throw new UnsupportedOperationException("The feedback log has no input.");
+	}
+}
@@ -386,7 +386,9 @@ public class OperatorChain<OUT, OP extends StreamOperator<OUT>> implements Strea
 			outSerializer = upStreamConfig.getTypeSerializerOut(taskEnvironment.getUserClassLoader());
 		}
 
-		return new RecordWriterOutput<>(streamRecordWriter, outSerializer, sideOutputTag, this);
+		return new RecordWriterOutput<>(streamRecordWriter, outSerializer, sideOutputTag, this,
+			!edge.getPartitioner().isRecordDependent(),
+			taskEnvironment.getExecutionConfig().isUseLocalObjectHandoff());
 	}
 
 	// ------------------------------------------------------------------------
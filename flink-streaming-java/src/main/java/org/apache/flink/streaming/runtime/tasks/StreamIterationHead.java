@@ -19,35 +19,90 @@ package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.streaming.api.graph.StreamEdge;
 import org.apache.flink.streaming.api.watermark.Watermark;
-import org.apache.flink.streaming.runtime.io.BlockingQueueBroker;
-import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
+import org.apache.flink.streaming.runtime.io.FeedbackChannelBroker;
 import org.apache.flink.streaming.runtime.io.RecordWriterOutput;
+import org.apache.flink.streaming.runtime.streamrecord.SerializedStreamRecord;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
 import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A special {@link StreamTask} that is used for executing feedback edges. This is used in
  * combination with {@link StreamIterationTail}.
+ *
+ * <p>Checkpoints of the loop follow the barrier around the cycle: the head emits the barrier into
+ * the loop when the checkpoint is triggered and logs the feedback it emits until the tail marks the
+ * barrier in the {@link FeedbackChannel}. That feedback was in flight when the operators of the loop
+ * took their snapshots, so the head takes its snapshot with the log in its {@link FeedbackLogOperator}
+ * and emits the log again when it is restored.
  */
 @Internal
 public class StreamIterationHead<OUT> extends OneInputStreamTask<OUT, OUT> {
 
 	private static final Logger LOG = LoggerFactory.getLogger(StreamIterationHead.class);
 
+	/** The metric of the number of feedback elements that are kept in memory. */
+	public static final String FEEDBACK_QUEUE_LENGTH = "feedbackQueueLength";
+
+	/** The metric of the number of feedback elements that were spilled. */
+	public static final String FEEDBACK_SPILLED = "feedbackSpilled";
+
+	/** The minimum number of feedback elements that are taken from the channel at once. */
+	private static final int MIN_DRAIN_SIZE = 1024;
+
 	private volatile boolean running = true;
 //	private StreamIterationTermination termination = new StructuredIterationTermination(20);
 	
 	private StreamIterationTermination termination;
 
+	private StreamElementSerializer<OUT> elementSerializer;
+
+	private int numberOfHeads;
+
+	private int subtaskIndex;
+
+	/** The output to the receiver of the progress coordinator, {@code null} if there is none. */
+	private RecordWriterOutput<OUT> coordinatedOutput;
+
+	private final List<RecordWriterOutput<OUT>> recordOutputs = new ArrayList<>();
+
+	private final List<RecordWriterOutput<OUT>> watermarkOutputs = new ArrayList<>();
+
+	private final Map<List<Long>, BitSet> usedChannels = new HashMap<>();
+
+	/** Carries the context of serialized records to the termination strategy. */
+	private final StreamRecord<OUT> contextCarrier = new StreamRecord<>(null);
+
+	/** The operator that keeps the logged feedback, {@code null} if the loop is not checkpointed. */
+	private FeedbackLogOperator<OUT> feedbackLog;
+
+	/** The checkpoints whose barriers are in the loop, by checkpoint ID. */
+	private final TreeMap<Long, PendingCheckpoint> pendingCheckpoints = new TreeMap<>();
+
+	private final DataOutputSerializer logBuffer = new DataOutputSerializer(128);
+
 	public StreamIterationHead(Environment env) {
 		super(env);
 	}
@@ -68,58 +123,221 @@ public class StreamIterationHead<OUT> extends OneInputStreamTask<OUT, OUT> {
 		final long iterationWaitTime = getConfiguration().getIterationWaitTime();
 		final boolean shouldWait = iterationWaitTime > 0;
 
-		final BlockingQueue<StreamElement> dataChannel = new ArrayBlockingQueue<>(100000);
+		final ClassLoader userCodeClassLoader = getUserCodeClassLoader();
+		elementSerializer =
+			new StreamElementSerializer<>(getConfiguration().<OUT>getTypeSerializerOut(userCodeClassLoader));
+		final FeedbackChannel<StreamElement> dataChannel = new FeedbackChannel<>(
+			getConfiguration().getIterationFeedbackCapacity(),
+			elementSerializer,
+			getEnvironment().getIOManager());
 
-		// offer the queue for the tail
-		BlockingQueueBroker.INSTANCE.handIn(brokerID, dataChannel);
-		LOG.info("Iteration head {} added feedback queue under {}", getName(), brokerID);
+		getEnvironment().getMetricGroup().gauge(FEEDBACK_QUEUE_LENGTH, dataChannel::getNumberOfBufferedElements);
+		getEnvironment().getMetricGroup().gauge(FEEDBACK_SPILLED, dataChannel::getNumberOfSpilledElements);
+
+		// offer the channel for the tail
+		FeedbackChannelBroker.INSTANCE.handIn(brokerID, dataChannel);
+		LOG.info("Iteration head {} added feedback channel under {}", getName(), brokerID);
 
 		// do the work
 		try {
 			@SuppressWarnings("unchecked")
 			RecordWriterOutput<OUT>[] outputs = (RecordWriterOutput<OUT>[]) getStreamOutputs();
 
-			while (running) {
-				StreamElement nextElement = shouldWait ?
-					dataChannel.poll(iterationWaitTime, TimeUnit.MILLISECONDS) :
-					dataChannel.take();
+			final int drainSize = Math.max(getConfiguration().getIterationFeedbackBatchSize(), MIN_DRAIN_SIZE);
+			numberOfHeads = getEnvironment().getTaskInfo().getNumberOfParallelSubtasks();
+			final List<StreamElement> batch = new ArrayList<>(drainSize);
 
-				if (nextElement != null) {
-					if(nextElement.isWatermark()) {
-						Watermark mark = nextElement.asWatermark();
+			// if a coordinator aligns the watermarks of the heads, the loop operator only receives
+			// the watermarks of the channels that records were sent to, see IterationProgressCoordinator
+			subtaskIndex = getEnvironment().getTaskInfo().getIndexOfThisSubtask();
+			final int progressCoordinator = getConfiguration().getIterationProgressCoordinator();
+			final int progressReceiver = getConfiguration().getIterationProgressReceiver();
+			List<StreamEdge> outEdges = getConfiguration().getOutEdgesInOrder(userCodeClassLoader);
+			for (int i = 0; i < outputs.length; i++) {
+				int target = outEdges.get(i).getTargetId();
+				if (progressCoordinator >= 0 && target == progressReceiver) {
+					coordinatedOutput = outputs[i];
+				} else if (progressCoordinator >= 0 && target == progressCoordinator) {
+					watermarkOutputs.add(outputs[i]);
+				} else {
+					recordOutputs.add(outputs[i]);
+					watermarkOutputs.add(outputs[i]);
+				}
+			}
 
-						termination.observeWatermark(mark);
-						if(termination.terminate(mark.getContext())) {
-							mark.setIterationDone(true);
-						}
+			// the feedback that was in flight during the restored checkpoint goes first
+			if (feedbackLog != null) {
+				synchronized (getCheckpointLock()) {
+					for (byte[] serialized : feedbackLog.takeRestoredLog()) {
+						processElement(elementSerializer.deserialize(new DataInputDeserializer(serialized)));
+					}
+				}
+			}
 
-						mark.forwardTimestamp();
-						LOG.info("@HEAD: " + mark);
-						for (RecordWriterOutput<OUT> output : outputs) {
-							output.emitWatermark(mark);
-						}
-					} else if(nextElement.isRecord()) {
-						StreamRecord record = nextElement.asRecord();
-						termination.observeRecord(record);
-						record.forwardTimestamp();
-						for (RecordWriterOutput<OUT> output : outputs) {
-							output.collect(record);
+			while (running) {
+				final long numConsumed = dataChannel.getNumberOfConsumedElements();
+				int numElements = shouldWait ?
+					dataChannel.drainTo(batch, drainSize, iterationWaitTime, TimeUnit.MILLISECONDS) :
+					dataChannel.takeAll(batch, drainSize);
+
+				synchronized (getCheckpointLock()) {
+					long nextCheckpointPosition = dataChannel.getNextCheckpointPosition();
+					for (int i = 0; i < numElements; i++) {
+						if (numConsumed + i >= nextCheckpointPosition) {
+							completeCheckpoints(dataChannel, numConsumed + i);
+							nextCheckpointPosition = dataChannel.getNextCheckpointPosition();
 						}
+						processElement(batch.get(i));
+					}
+					batch.clear();
+
+					if (!completeCheckpoints(dataChannel, numConsumed + numElements) && numElements == 0) {
+						// done
+						break;
 					}
-				}
-				else {
-					// done
-					break;
 				}
 			}
 		}
 		finally {
-			// make sure that we remove the queue from the broker, to prevent a resource leak
-			BlockingQueueBroker.INSTANCE.remove(brokerID);
-			LOG.info("Iteration head {} removed feedback queue under {}", getName(), brokerID);
+			// make sure that we remove the channel from the broker, to prevent a resource leak
+			FeedbackChannelBroker.INSTANCE.remove(brokerID);
+			dataChannel.close();
+			LOG.info("Iteration head {} removed feedback channel under {}", getName(), brokerID);
 		}
 	}
 
+	private void processElement(StreamElement nextElement) throws Exception {
+		if (!pendingCheckpoints.isEmpty()) {
+			// serialize before emitting, the head updates the watermarks it forwards
+			logBuffer.clear();
+			elementSerializer.serialize(nextElement, logBuffer);
+			byte[] serialized = logBuffer.getCopyOfBuffer();
+			for (PendingCheckpoint pending : pendingCheckpoints.values()) {
+				pending.log.add(serialized);
+			}
+		}
+
+		if(nextElement.isWatermark()) {
+			Watermark mark = nextElement.asWatermark();
+
+			termination.observeWatermark(mark);
+			if(termination.terminate(mark.getContext())) {
+				mark.setIterationDone(true);
+			}
+			termination.attachProgress(mark, subtaskIndex, numberOfHeads);
+
+			mark.forwardTimestamp();
+			LOG.debug("Iteration head {} emits {}", getName(), mark);
+			if (coordinatedOutput != null) {
+				BitSet channels = usedChannels.remove(mark.getContext());
+				if (channels != null) {
+					coordinatedOutput.emitWatermark(new Watermark(
+						mark.getContext(), mark.getTimestamp(), mark.iterationDone(), mark.iterationOnly()), channels);
+					if (mark.getAggregates() == null) {
+						mark.setAggregates(new IterationAggregates());
+					}
+					mark.getAggregates().addRoute(subtaskIndex, mark.getTimestamp(), channels);
+				}
+			}
+			for (RecordWriterOutput<OUT> output : watermarkOutputs) {
+				output.emitWatermark(mark);
+			}
+		} else if(nextElement.isRecord()) {
+			StreamRecord record = nextElement.asRecord();
+			termination.observeRecord(record);
+			record.forwardTimestamp();
+			if (coordinatedOutput != null) {
+				coordinatedOutput.collect(record, getUsedChannels(usedChannels, record.getContext()));
+			}
+			for (RecordWriterOutput<OUT> output : recordOutputs) {
+				output.collect(record);
+			}
+		} else if (nextElement.isSerializedRecord()) {
+			SerializedStreamRecord record = nextElement.asSerializedRecord();
+			contextCarrier.setContext(record.getContext());
+			termination.observeRecord(contextCarrier);
+			record.forwardTimestamp();
+
+			// only deserialize if an output needs to look at the record
+			StreamRecord<OUT> deserialized = null;
+			if (coordinatedOutput != null) {
+				deserialized = record.deserialize(elementSerializer);
+				coordinatedOutput.collect(deserialized, getUsedChannels(usedChannels, record.getContext()));
+			}
+			for (RecordWriterOutput<OUT> output : recordOutputs) {
+				if (output.forwardsSerializedRecords()) {
+					output.collectSerialized(record);
+				} else {
+					if (deserialized == null) {
+						deserialized = record.deserialize(elementSerializer);
+					}
+					output.collect(deserialized);
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Checkpointing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Emits the barrier of the checkpoint into the loop. The snapshot is taken once the barrier
+	 * comes back through the feedback channel, together with the log of the feedback that the head
+	 * emits until then.
+	 */
+	@Override
+	public boolean triggerCheckpoint(CheckpointMetaData checkpointMetaData, CheckpointOptions checkpointOptions) throws Exception {
+		if (feedbackLog == null) {
+			return super.triggerCheckpoint(checkpointMetaData, checkpointOptions);
+		}
+
+		synchronized (getCheckpointLock()) {
+			if (!isRunning()) {
+				// lets the downstream operators know that they should not wait for the barrier
+				return super.triggerCheckpoint(checkpointMetaData, checkpointOptions);
+			}
+
+			operatorChain.broadcastCheckpointBarrier(
+				checkpointMetaData.getCheckpointId(),
+				checkpointMetaData.getTimestamp(),
+				checkpointOptions);
+			pendingCheckpoints.put(
+				checkpointMetaData.getCheckpointId(),
+				new PendingCheckpoint(checkpointMetaData, checkpointOptions));
+			return true;
+		}
+	}
+
+	/**
+	 * Takes the snapshots of all checkpoints whose barriers precede the given position in the
+	 * feedback channel.
+	 *
+	 * @return Whether a barrier preceded the position.
+	 */
+	private boolean completeCheckpoints(FeedbackChannel<StreamElement> dataChannel, long position) throws Exception {
+		boolean completed = false;
+		while (dataChannel.getNextCheckpointPosition() <= position) {
+			long checkpointId = dataChannel.takeCheckpoint();
+			PendingCheckpoint pending = pendingCheckpoints.remove(checkpointId);
+
+			// the barriers of aborted checkpoints may never come back
+			pendingCheckpoints.headMap(checkpointId).clear();
+
+			if (pending != null) {
+				feedbackLog.setLog(checkpointId, pending.log);
+
+				// the barrier went around the loop without alignment at the head
+				CheckpointMetrics checkpointMetrics = new CheckpointMetrics()
+					.setBytesBufferedInAlignment(0L)
+					.setAlignmentDurationNanos(0L);
+				checkpointState(pending.checkpointMetaData, pending.checkpointOptions, checkpointMetrics);
+			}
+			completed = true;
+		}
+		return completed;
+	}
+
 	@Override
 	protected void cancelTask() {
 		running = false;
@@ -128,8 +346,12 @@ public class StreamIterationHead<OUT> extends OneInputStreamTask<OUT, OUT> {
 	// ------------------------------------------------------------------------
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public void init() {
-		// does not hold any resources, no initialization necessary
+		// does not hold any resources, only looks up the operator that keeps the feedback log
+		if (headOperator instanceof FeedbackLogOperator) {
+			feedbackLog = (FeedbackLogOperator<OUT>) headOperator;
+		}
 	}
 
 	@Override
@@ -141,9 +363,18 @@ public class StreamIterationHead<OUT> extends OneInputStreamTask<OUT, OUT> {
 	//  Utilities
 	// ------------------------------------------------------------------------
 
+	private static BitSet getUsedChannels(Map<List<Long>, BitSet> usedChannels, List<Long> context) {
+		BitSet channels = usedChannels.get(context);
+		if (channels == null) {
+			channels = new BitSet();
+			usedChannels.put(context, channels);
+		}
+		return channels;
+	}
+
 	/**
-	 * Creates the identification string with which head and tail task find the shared blocking
-	 * queue for the back channel. The identification string is unique per parallel head/tail pair
+	 * Creates the identification string with which head and tail task find the shared
+	 * {@link FeedbackChannel} for the back channel. The identification string is unique per parallel head/tail pair
 	 * per iteration per job.
 	 *
 	 * @param jid The job ID.
@@ -155,4 +386,22 @@ public class StreamIterationHead<OUT> extends OneInputStreamTask<OUT, OUT> {
 		return jid + "-" + iterationID + "-" + subtaskIndex;
 	}
 
+	/**
+	 * A checkpoint whose barrier was emitted into the loop and did not come back yet.
+	 */
+	private static final class PendingCheckpoint {
+
+		final CheckpointMetaData checkpointMetaData;
+
+		final CheckpointOptions checkpointOptions;
+
+		/** The serialized feedback that the head emitted since the barrier. */
+		final List<byte[]> log = new ArrayList<>();
+
+		PendingCheckpoint(CheckpointMetaData checkpointMetaData, CheckpointOptions checkpointOptions) {
+			this.checkpointMetaData = checkpointMetaData;
+			this.checkpointOptions = checkpointOptions;
+		}
+	}
+
 }
@@ -18,22 +18,29 @@
 package org.apache.flink.streaming.runtime.tasks;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.streaming.api.watermark.Watermark;
-import org.apache.flink.streaming.runtime.io.BlockingQueueBroker;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
+import org.apache.flink.streaming.runtime.io.FeedbackChannelBroker;
 import org.apache.flink.streaming.runtime.streamrecord.LatencyMarker;
+import org.apache.flink.streaming.runtime.streamrecord.SerializedStreamRecord;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.util.OutputTag;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A special {@link StreamTask} that is used for executing feedback edges. This is used in
@@ -44,6 +51,8 @@ public class StreamIterationTail<IN> extends OneInputStreamTask<IN, IN> {
 
 	private static final Logger LOG = LoggerFactory.getLogger(StreamIterationTail.class);
 
+	private IterationTailOutput<IN> feedbackOutput;
+
 	public StreamIterationTail(Environment environment) {
 		super(environment);
 	}
@@ -59,22 +68,59 @@ public class StreamIterationTail<IN> extends OneInputStreamTask<IN, IN> {
 		final String brokerID = StreamIterationHead.createBrokerIdString(getEnvironment().getJobID(), iterationId,
 				getEnvironment().getTaskInfo().getIndexOfThisSubtask());
 
-		final long iterationWaitTime = getConfiguration().getIterationWaitTime();
-
-		LOG.info("Iteration tail {} trying to acquire feedback queue under {}", getName(), brokerID);
+		LOG.info("Iteration tail {} trying to acquire feedback channel under {}", getName(), brokerID);
 
 		@SuppressWarnings("unchecked")
-		BlockingQueue<StreamElement> dataChannel =
-				(BlockingQueue<StreamElement>) BlockingQueueBroker.INSTANCE.get(brokerID);
-		LOG.info("Iteration tail {} acquired feedback queue {}", getName(), brokerID);
+		FeedbackChannel<StreamElement> dataChannel =
+				(FeedbackChannel<StreamElement>) FeedbackChannelBroker.INSTANCE.get(brokerID);
+		LOG.info("Iteration tail {} acquired feedback channel {}", getName(), brokerID);
+
+		final int batchSize = getConfiguration().getIterationFeedbackBatchSize();
+		final long batchTimeout = getConfiguration().getIterationFeedbackBatchTimeout();
+
+		final StreamElementSerializer<IN> recordSerializer = getConfiguration().isIterationFeedbackSerialized() ?
+			new StreamElementSerializer<>(getConfiguration().<IN>getTypeSerializerIn1(getUserCodeClassLoader())) :
+			null;
+
+		this.feedbackOutput = new IterationTailOutput<>(dataChannel, batchSize, recordSerializer);
+		if (batchSize > 1 && batchTimeout > 0) {
+			// timers fire under the checkpoint lock, so they never interleave with emitted elements
+			getProcessingTimeService().scheduleAtFixedRate(
+				timestamp -> feedbackOutput.flush(), batchTimeout, batchTimeout);
+		}
 
 		this.headOperator = new RecordPusher<>();
-		this.headOperator.setup(this, getConfiguration(), new IterationTailOutput<IN>(dataChannel, iterationWaitTime));
+		this.headOperator.setup(this, getConfiguration(), feedbackOutput);
 
 		// call super.init() last because that needs this.headOperator to be set up
 		super.init();
 	}
 
+	@Override
+	protected void run() throws Exception {
+		super.run();
+
+		// hand over the elements of the last, incomplete batch
+		synchronized (getCheckpointLock()) {
+			feedbackOutput.flush();
+		}
+	}
+
+	/**
+	 * Marks the barrier in the feedback channel, after the feedback that preceded it.
+	 */
+	@Override
+	public void triggerCheckpointOnBarrier(
+			CheckpointMetaData checkpointMetaData,
+			CheckpointOptions checkpointOptions,
+			CheckpointMetrics checkpointMetrics) throws Exception {
+
+		synchronized (getCheckpointLock()) {
+			feedbackOutput.markCheckpoint(checkpointMetaData.getCheckpointId());
+		}
+		super.triggerCheckpointOnBarrier(checkpointMetaData, checkpointOptions, checkpointMetrics);
+	}
+
 	private static class RecordPusher<IN> extends AbstractStreamOperator<IN> implements OneInputStreamOperator<IN, IN> {
 
 		private static final long serialVersionUID = 1L;
@@ -95,23 +141,42 @@ public class StreamIterationTail<IN> extends OneInputStreamTask<IN, IN> {
 		}
 	}
 
+	/**
+	 * Output that hands the elements over to the {@link FeedbackChannel}. If the batch size is
+	 * larger than one, elements are collected into batches that are handed over at once when the
+	 * batch is full, after a watermark, or when {@link #flush()} is called. If a record serializer
+	 * is given, records are handed over as {@link SerializedStreamRecord}s.
+	 */
 	private static class IterationTailOutput<IN> implements Output<StreamRecord<IN>> {
 
 		@SuppressWarnings("NonSerializableFieldInSerializableClass")
-		private final BlockingQueue<StreamElement> dataChannel;
-		private final long iterationWaitTime;
+		private final FeedbackChannel<StreamElement> dataChannel;
+
+		/** The current batch, {@code null} if elements are handed over one by one. */
+		private final StreamElement[] batch;
 
-		private final boolean shouldWait;
+		private int batchFill;
 
-		IterationTailOutput(BlockingQueue<StreamElement> dataChannel, long iterationWaitTime) {
+		/** The serializer for records, {@code null} if records are handed over as objects. */
+		private final StreamElementSerializer<IN> recordSerializer;
+
+		private final DataOutputSerializer serializationBuffer;
+
+		IterationTailOutput(
+				FeedbackChannel<StreamElement> dataChannel,
+				int batchSize,
+				StreamElementSerializer<IN> recordSerializer) {
 			this.dataChannel = dataChannel;
-			this.iterationWaitTime = iterationWaitTime;
-			this.shouldWait =  iterationWaitTime > 0;
+			this.batch = batchSize > 1 ? new StreamElement[batchSize] : null;
+			this.recordSerializer = recordSerializer;
+			this.serializationBuffer = recordSerializer != null ? new DataOutputSerializer(128) : null;
 		}
 
 		@Override
 		public void emitWatermark(Watermark mark) {
 			sendStreamElement(mark);
+			// watermarks drive the progress of the loop and must not wait for the batch to fill up
+			flush();
 		}
 
 		@Override
@@ -120,22 +185,60 @@ public class StreamIterationTail<IN> extends OneInputStreamTask<IN, IN> {
 
 		@Override
 		public void collect(StreamRecord<IN> record) {
-			sendStreamElement(record);
+			if (recordSerializer == null) {
+				sendStreamElement(record);
+			} else {
+				try {
+					sendStreamElement(SerializedStreamRecord.serialize(record, recordSerializer, serializationBuffer));
+				} catch (IOException e) {
+					throw new RuntimeException("Could not serialize feedback record.", e);
+				}
+			}
 		}
 
 		private void sendStreamElement(StreamElement element) {
 			try {
-				if (shouldWait) {
-					dataChannel.offer(element, iterationWaitTime, TimeUnit.MILLISECONDS);
-				}
-				else {
+				if (batch == null) {
 					dataChannel.put(element);
+				} else {
+					batch[batchFill++] = element;
+					if (batchFill == batch.length) {
+						flushBatch();
+					}
 				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not spill feedback element.", e);
 			}
 		}
 
+		/**
+		 * Hands over the elements of the current batch.
+		 */
+		void flush() {
+			if (batchFill > 0) {
+				try {
+					flushBatch();
+				} catch (IOException e) {
+					throw new RuntimeException("Could not spill feedback elements.", e);
+				}
+			}
+		}
+
+		/**
+		 * Hands over the elements of the current batch and marks the barrier of the given
+		 * checkpoint after them.
+		 */
+		void markCheckpoint(long checkpointId) {
+			flush();
+			dataChannel.markCheckpoint(checkpointId);
+		}
+
+		private void flushBatch() throws IOException {
+			dataChannel.putAll(batch, batchFill);
+			Arrays.fill(batch, 0, batchFill, null);
+			batchFill = 0;
+		}
+
 		@Override
 		public <X> void collect(OutputTag<X> outputTag, StreamRecord<X> record) {
 			throw new UnsupportedOperationException("Side outputs not used in iteration tail");
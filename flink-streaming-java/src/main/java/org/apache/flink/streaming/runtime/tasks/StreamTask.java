@@ -708,7 +708,12 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		}
 	}
 
-	private void checkpointState(
+	/**
+	 * Takes the snapshots of all operators of the task and acknowledges the checkpoint once they
+	 * are written. Must be called under the checkpoint lock. Tasks that take their snapshot after
+	 * they emitted the barriers, like the {@link StreamIterationHead}, call this directly.
+	 */
+	protected void checkpointState(
 			CheckpointMetaData checkpointMetaData,
 			CheckpointOptions checkpointOptions,
 			CheckpointMetrics checkpointMetrics) throws Exception {
@@ -1209,9 +1214,16 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 			}
 		}
 
+		boolean adaptiveFlushing = environment.getExecutionConfig().isUseAdaptiveOutputFlushing();
+
 		StreamRecordWriter<SerializationDelegate<StreamRecord<OUT>>> output =
-			new StreamRecordWriter<>(bufferWriter, outputPartitioner, bufferTimeout, taskName);
+			new StreamRecordWriter<>(bufferWriter, outputPartitioner, bufferTimeout, taskName, adaptiveFlushing);
 		output.setMetricGroup(environment.getMetricGroup().getIOMetricGroup());
+		if (adaptiveFlushing) {
+			// similar to the detailed network metrics of the task
+			output.registerFlushIntervalMetrics(environment.getMetricGroup().getIOMetricGroup()
+				.addGroup("Network").addGroup("Output").addGroup(outputIndex));
+		}
 		return output;
 	}
 }
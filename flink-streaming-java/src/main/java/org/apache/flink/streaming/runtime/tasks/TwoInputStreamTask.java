@@ -25,6 +25,8 @@ import org.apache.flink.runtime.metrics.MetricNames;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.graph.StreamEdge;
 import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.runtime.io.CoordinatedProgressTrackingHandler;
+import org.apache.flink.streaming.runtime.io.ProgressTrackingHandler;
 import org.apache.flink.streaming.runtime.io.StreamTwoInputProcessor;
 import org.apache.flink.streaming.runtime.metrics.MinWatermarkGauge;
 import org.apache.flink.streaming.runtime.metrics.WatermarkGauge;
@@ -88,6 +90,28 @@ public class TwoInputStreamTask<IN1, IN2, OUT> extends StreamTask<OUT, TwoInputS
 			}
 		}
 
+		// the progress of the iteration heads on the second input may be aligned by a coordinator
+		ProgressTrackingHandler progressHandler2 = null;
+		int progressCoordinator = configuration.getIterationProgressCoordinator();
+		if (progressCoordinator >= 0) {
+			List<Integer> channelSources = new ArrayList<>();
+			for (int i = 0; i < numberOfInputs; i++) {
+				if (inEdges.get(i).getTypeNumber() == 2) {
+					boolean fromCoordinator = inEdges.get(i).getSourceId() == progressCoordinator;
+					int numberOfChannels = getEnvironment().getInputGate(i).getNumberOfInputChannels();
+					for (int channel = 0; channel < numberOfChannels; channel++) {
+						channelSources.add(fromCoordinator ? -1 : channel);
+					}
+				}
+			}
+			int[] headOfChannel = new int[channelSources.size()];
+			for (int channel = 0; channel < headOfChannel.length; channel++) {
+				headOfChannel[channel] = channelSources.get(channel);
+			}
+			progressHandler2 = new CoordinatedProgressTrackingHandler(
+				headOfChannel, getEnvironment().getTaskInfo().getIndexOfThisSubtask());
+		}
+
 		this.inputProcessor = new StreamTwoInputProcessor<>(
 				inputList1, inputList2,
 				inputDeserializer1, inputDeserializer2,
@@ -100,7 +124,8 @@ public class TwoInputStreamTask<IN1, IN2, OUT> extends StreamTask<OUT, TwoInputS
 				this.headOperator,
 				getEnvironment().getMetricGroup().getIOMetricGroup(),
 				input1WatermarkGauge,
-				input2WatermarkGauge);
+				input2WatermarkGauge,
+				progressHandler2);
 
 		headOperator.getMetricGroup().gauge(MetricNames.IO_CURRENT_INPUT_WATERMARK, minInputWatermarkGauge);
 		headOperator.getMetricGroup().gauge(MetricNames.IO_CURRENT_INPUT_1_WATERMARK, input1WatermarkGauge);
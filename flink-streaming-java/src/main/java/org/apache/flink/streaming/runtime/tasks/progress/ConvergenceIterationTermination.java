@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks.progress;
+
+import org.apache.flink.api.common.aggregators.ConvergenceCriterion;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.types.Value;
+import org.apache.flink.util.FlinkRuntimeException;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Terminates an iteration context as soon as the combined value of an aggregator satisfies a
+ * {@link ConvergenceCriterion}, e.g. when the sum of the deltas of a superstep drops below a
+ * threshold.
+ *
+ * <p>The combined value of a superstep is computed from the partial values of all parallel loop
+ * operators and travels with the next watermark to the iteration heads. Every head therefore
+ * sees the same value and terminates the context in the same superstep.
+ */
+public class ConvergenceIterationTermination implements StreamIterationTermination {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String aggregatorName;
+	private final ConvergenceCriterion<Value> convergenceCriterion;
+	private final Set<List<Long>> converged = new HashSet<>();
+
+	@SuppressWarnings("unchecked")
+	public ConvergenceIterationTermination(String aggregatorName, ConvergenceCriterion<? extends Value> convergenceCriterion) {
+		if (aggregatorName == null || convergenceCriterion == null) {
+			throw new IllegalArgumentException("Aggregator name and convergence criterion must not be null");
+		}
+		this.aggregatorName = aggregatorName;
+		this.convergenceCriterion = (ConvergenceCriterion<Value>) convergenceCriterion;
+	}
+
+	public boolean terminate(List<Long> timeContext) {
+		return converged.contains(timeContext);
+	}
+
+	public void observeRecord(StreamRecord record) {}
+
+	public void observeWatermark(Watermark watermark) {
+		if(watermark.getTimestamp() == Long.MAX_VALUE) {
+			converged.remove(watermark.getContext());
+			return;
+		}
+
+		IterationAggregates aggregates = watermark.getAggregates();
+		if (aggregates != null) {
+			Value value;
+			try {
+				// heads run with the user code class loader as context class loader
+				value = aggregates.getCombined(aggregatorName, Thread.currentThread().getContextClassLoader());
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Could not read the aggregate " + aggregatorName, e);
+			}
+			if (value != null && convergenceCriterion.isConverged((int) watermark.getTimestamp(), value)) {
+				converged.add(watermark.getContext());
+			}
+		}
+	}
+
+	public String getAggregatorName() {
+		return aggregatorName;
+	}
+}
@@ -9,9 +9,18 @@ import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
 
+/**
+ * Terminates an iteration context once a superstep produces no feedback records.
+ *
+ * <p>Every head counts the feedback records it receives per superstep and attaches the count to
+ * the watermark it forwards. Where the watermarks of all heads are aligned, the counts are summed
+ * up, so the superstep without any records in flight is detected once for all parallel instances.
+ * The local check of a head remains as a fallback for heads that do not reach the alignment.
+ */
 public class FixpointIterationTermination implements StreamIterationTermination {
 	private Map<List<Long>, Boolean> convergedTracker = new HashMap<>();
 	private Set<List<Long>> done = new HashSet<>();
+	private Map<List<Long>, long[]> feedbackRecords = new HashMap<>();
 
 	public boolean terminate(List<Long> timeContext) {
 		return done.contains(timeContext);
@@ -20,6 +29,27 @@ public class FixpointIterationTermination implements StreamIterationTermination
 	public void observeRecord(StreamRecord record) {
 		done.remove(record.getContext()); // if this partition is "back alive"
 		convergedTracker.put(record.getContext(), false);
+
+		long[] count = feedbackRecords.get(record.getContext());
+		if (count == null) {
+			feedbackRecords.put(record.getContext(), new long[] {1L});
+		} else {
+			count[0]++;
+		}
+	}
+
+	public void attachProgress(Watermark watermark, int head, int numberOfHeads) {
+		if (watermark.getTimestamp() == Long.MAX_VALUE) {
+			return;
+		}
+		long[] count = feedbackRecords.remove(watermark.getContext());
+
+		IterationAggregates aggregates = watermark.getAggregates();
+		if (aggregates == null) {
+			aggregates = new IterationAggregates();
+			watermark.setAggregates(aggregates);
+		}
+		aggregates.setFeedbackRecords(head, watermark.getTimestamp(), count == null ? 0L : count[0], numberOfHeads);
 	}
 
 	public void observeWatermark(Watermark watermark) {
@@ -27,6 +57,7 @@ public class FixpointIterationTermination implements StreamIterationTermination
 			// clean up
 			convergedTracker.remove(watermark.getContext());
 			done.remove(watermark.getContext());
+			feedbackRecords.remove(watermark.getContext());
 		} else {
 			Boolean converged = convergedTracker.get(watermark.getContext());
 			if(converged != null && converged) {
@@ -0,0 +1,519 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks.progress;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.aggregators.Aggregator;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.Value;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregates of an iteration that travel with the watermarks of a loop context.
+ *
+ * <p>A watermark that completes a superstep carries the <i>partial</i> aggregates of that
+ * superstep, one set per parallel loop operator. When the watermarks of all parallel iteration
+ * heads are aligned, the partials of all of them are merged, so that every loop operator can
+ * combine them into the same global aggregates. The <i>combined</i> aggregates of the previous
+ * superstep are then sent back to the iteration heads, where termination strategies such as
+ * {@link ConvergenceIterationTermination} can consume them.
+ *
+ * <p>Besides the values of aggregators, the iteration heads report the number of feedback records
+ * they received per superstep. Once the reports of all heads are merged, a superstep without any
+ * feedback records shows that the iteration context reached its fixpoint.
+ *
+ * <p>Partials and reports are kept per origin, i.e. per loop operator or head and superstep. A
+ * watermark that passes an all-to-all connection inside the loop is merged from every upstream
+ * channel, so the aggregates of an origin arrive several times at the next merge. Merging takes
+ * the value of each origin only once.
+ *
+ * <p>If the watermarks of the heads are aligned by an
+ * {@link org.apache.flink.streaming.api.operators.IterationProgressCoordinator} instead
+ * of being broadcast, each head also reports the channels of the loop operator it sent feedback
+ * records to, so that every channel knows which heads it has to wait for.
+ *
+ * <p>Values are kept in serialized form together with their class name, similar to the
+ * aggregators of the batch iterations, so that watermarks can be serialized without access to
+ * the user code class loader.
+ */
+@Internal
+public final class IterationAggregates {
+
+	/** The partials per loop operator and superstep. */
+	private final Map<Origin, List<Aggregate>> partials;
+
+	private final List<Aggregate> combined;
+
+	/** The number of feedback records per head and superstep. */
+	private final Map<Origin, Long> feedbackRecords;
+
+	/** The number of parallel heads of the iteration, zero if no head reported yet. */
+	private int numberOfHeads;
+
+	/** The channels that the heads sent feedback records to before their watermarks. */
+	private final List<Route> routes;
+
+	public IterationAggregates() {
+		this(new LinkedHashMap<>(), new ArrayList<>(), new LinkedHashMap<>(), new ArrayList<>());
+	}
+
+	private IterationAggregates(
+			Map<Origin, List<Aggregate>> partials,
+			List<Aggregate> combined,
+			Map<Origin, Long> feedbackRecords,
+			List<Route> routes) {
+		this.partials = partials;
+		this.combined = combined;
+		this.feedbackRecords = feedbackRecords;
+		this.routes = routes;
+	}
+
+	/**
+	 * Sets the number of feedback records that the given head received in the superstep that is
+	 * completed by the watermark with the given timestamp. Reports of other heads are replaced.
+	 */
+	public void setFeedbackRecords(int head, long timestamp, long count, int numberOfHeads) {
+		this.feedbackRecords.clear();
+		this.feedbackRecords.put(new Origin(head, timestamp), count);
+		this.numberOfHeads = numberOfHeads;
+	}
+
+	/**
+	 * Returns whether all heads reported and none of them received a feedback record in the
+	 * superstep, i.e. whether no records of the iteration context are in flight.
+	 *
+	 * <p>A head may report several supersteps if its watermarks were merged before the ones of
+	 * other heads, so this compares the set of reporting heads, not the number of reports.
+	 */
+	public boolean isQuiescent() {
+		int reportingHeads = getFeedbackReports();
+		return reportingHeads > 0 && reportingHeads == numberOfHeads && getFeedbackRecords() == 0;
+	}
+
+	/**
+	 * Returns the number of feedback records over all reports.
+	 */
+	public long getFeedbackRecords() {
+		long count = 0;
+		for (long records : feedbackRecords.values()) {
+			count += records;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of distinct heads that reported their feedback records.
+	 */
+	public int getFeedbackReports() {
+		BitSet reportingHeads = new BitSet(numberOfHeads);
+		for (Origin head : feedbackRecords.keySet()) {
+			reportingHeads.set(head.subtaskIndex);
+		}
+		return reportingHeads.cardinality();
+	}
+
+	/**
+	 * Records that a head sent feedback records to the given channels of the loop operator before
+	 * its watermark with the given timestamp.
+	 */
+	public void addRoute(int head, long timestamp, BitSet channels) {
+		addRoute(new Route(head, timestamp, channels.toLongArray()));
+	}
+
+	private void addRoute(Route route) {
+		for (Route existing : routes) {
+			if (existing.equals(route)) {
+				return;
+			}
+		}
+		routes.add(route);
+	}
+
+	/**
+	 * Returns per head the watermark that the given channel has to receive from the head before
+	 * the watermark carrying these aggregates is complete at the channel, or
+	 * {@link Long#MIN_VALUE} if the head did not send feedback records to the channel.
+	 */
+	public long[] getRequiredWatermarks(int channel, int numberOfHeads) {
+		long[] required = new long[numberOfHeads];
+		Arrays.fill(required, Long.MIN_VALUE);
+		for (Route route : routes) {
+			if (route.contains(channel)) {
+				required[route.head] = Math.max(required[route.head], route.timestamp);
+			}
+		}
+		return required;
+	}
+
+	public void clearRoutes() {
+		routes.clear();
+	}
+
+	/**
+	 * Adds a partial aggregate of the given loop operator for the superstep that is completed by
+	 * the watermark with the given timestamp. The value is copied.
+	 */
+	public void addPartial(int subtaskIndex, long timestamp, String name, Value value) throws IOException {
+		partials.computeIfAbsent(new Origin(subtaskIndex, timestamp), origin -> new ArrayList<>())
+			.add(Aggregate.of(name, value));
+	}
+
+	/**
+	 * Sets the combined aggregate of the previous superstep. The value is copied.
+	 */
+	public void setCombined(String name, Value value) throws IOException {
+		for (int i = 0; i < combined.size(); i++) {
+			if (combined.get(i).name.equals(name)) {
+				combined.set(i, Aggregate.of(name, value));
+				return;
+			}
+		}
+		combined.add(Aggregate.of(name, value));
+	}
+
+	/**
+	 * Adds the partials and reports of the given aggregates to these ones. Partials and reports of
+	 * an origin that is already present are the same and therefore skipped. The combined
+	 * aggregates are the same for all merged watermarks, so they are only taken over if not
+	 * present yet.
+	 */
+	public void merge(IterationAggregates other) {
+		for (Map.Entry<Origin, List<Aggregate>> partial : other.partials.entrySet()) {
+			partials.putIfAbsent(partial.getKey(), partial.getValue());
+		}
+		if (combined.isEmpty()) {
+			combined.addAll(other.combined);
+		}
+		for (Map.Entry<Origin, Long> report : other.feedbackRecords.entrySet()) {
+			feedbackRecords.putIfAbsent(report.getKey(), report.getValue());
+		}
+		numberOfHeads = Math.max(numberOfHeads, other.numberOfHeads);
+		for (Route route : other.routes) {
+			addRoute(route);
+		}
+	}
+
+	/**
+	 * Aggregates all partials into the aggregator that is registered under the same name.
+	 * Partials without an aggregator are ignored.
+	 */
+	@SuppressWarnings("unchecked")
+	public void aggregatePartials(Map<String, Aggregator<?>> aggregators, ClassLoader classLoader) throws IOException {
+		for (List<Aggregate> partialsOfOrigin : partials.values()) {
+			for (Aggregate partial : partialsOfOrigin) {
+				Aggregator<Value> aggregator = (Aggregator<Value>) aggregators.get(partial.name);
+				if (aggregator != null) {
+					aggregator.aggregate(partial.getValue(classLoader));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the combined aggregate of the previous superstep, or {@code null} if there is none
+	 * under the given name.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Value> T getCombined(String name, ClassLoader classLoader) throws IOException {
+		for (Aggregate aggregate : combined) {
+			if (aggregate.name.equals(name)) {
+				return (T) aggregate.getValue(classLoader);
+			}
+		}
+		return null;
+	}
+
+	public int getNumberOfPartials() {
+		int count = 0;
+		for (List<Aggregate> partialsOfOrigin : partials.values()) {
+			count += partialsOfOrigin.size();
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return partials.isEmpty() && combined.isEmpty() && feedbackRecords.isEmpty() && routes.isEmpty();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Serialization
+	// ------------------------------------------------------------------------
+
+	public void write(DataOutputView target) throws IOException {
+		target.writeInt(numberOfHeads);
+		target.writeInt(feedbackRecords.size());
+		for (Map.Entry<Origin, Long> report : feedbackRecords.entrySet()) {
+			report.getKey().write(target);
+			target.writeLong(report.getValue());
+		}
+		target.writeInt(partials.size());
+		for (Map.Entry<Origin, List<Aggregate>> partial : partials.entrySet()) {
+			partial.getKey().write(target);
+			writeAggregates(partial.getValue(), target);
+		}
+		writeAggregates(combined, target);
+
+		target.writeInt(routes.size());
+		for (Route route : routes) {
+			target.writeInt(route.head);
+			target.writeLong(route.timestamp);
+			target.writeInt(route.channels.length);
+			for (long word : route.channels) {
+				target.writeLong(word);
+			}
+		}
+	}
+
+	public static IterationAggregates read(DataInputView source) throws IOException {
+		int numberOfHeads = source.readInt();
+		int numberOfReports = source.readInt();
+		Map<Origin, Long> feedbackRecords = new LinkedHashMap<>();
+		for (int i = 0; i < numberOfReports; i++) {
+			feedbackRecords.put(Origin.read(source), source.readLong());
+		}
+		int numberOfOrigins = source.readInt();
+		Map<Origin, List<Aggregate>> partials = new LinkedHashMap<>();
+		for (int i = 0; i < numberOfOrigins; i++) {
+			partials.put(Origin.read(source), readAggregates(source));
+		}
+		List<Aggregate> combined = readAggregates(source);
+
+		int numberOfRoutes = source.readInt();
+		List<Route> routes = new ArrayList<>(numberOfRoutes);
+		for (int i = 0; i < numberOfRoutes; i++) {
+			int head = source.readInt();
+			long timestamp = source.readLong();
+			long[] channels = new long[source.readInt()];
+			for (int word = 0; word < channels.length; word++) {
+				channels[word] = source.readLong();
+			}
+			routes.add(new Route(head, timestamp, channels));
+		}
+
+		IterationAggregates aggregates = new IterationAggregates(partials, combined, feedbackRecords, routes);
+		aggregates.numberOfHeads = numberOfHeads;
+		return aggregates;
+	}
+
+	public static void copy(DataInputView source, DataOutputView target) throws IOException {
+		target.writeInt(source.readInt());
+		int numberOfReports = source.readInt();
+		target.writeInt(numberOfReports);
+		// origin and count of each report
+		target.write(source, numberOfReports * (Origin.SIZE + 8));
+		int numberOfOrigins = source.readInt();
+		target.writeInt(numberOfOrigins);
+		for (int i = 0; i < numberOfOrigins; i++) {
+			target.write(source, Origin.SIZE);
+			copyAggregates(source, target);
+		}
+		copyAggregates(source, target);
+
+		int numberOfRoutes = source.readInt();
+		target.writeInt(numberOfRoutes);
+		for (int i = 0; i < numberOfRoutes; i++) {
+			target.writeInt(source.readInt());
+			target.writeLong(source.readLong());
+			int words = source.readInt();
+			target.writeInt(words);
+			target.write(source, 8 * words);
+		}
+	}
+
+	private static void copyAggregates(DataInputView source, DataOutputView target) throws IOException {
+		int size = source.readInt();
+		target.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			target.writeUTF(source.readUTF());
+			target.writeUTF(source.readUTF());
+			int length = source.readInt();
+			target.writeInt(length);
+			target.write(source, length);
+		}
+	}
+
+	private static void writeAggregates(List<Aggregate> aggregates, DataOutputView target) throws IOException {
+		target.writeInt(aggregates.size());
+		for (Aggregate aggregate : aggregates) {
+			target.writeUTF(aggregate.name);
+			target.writeUTF(aggregate.className);
+			target.writeInt(aggregate.bytes.length);
+			target.write(aggregate.bytes);
+		}
+	}
+
+	private static List<Aggregate> readAggregates(DataInputView source) throws IOException {
+		int size = source.readInt();
+		List<Aggregate> aggregates = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			String name = source.readUTF();
+			String className = source.readUTF();
+			byte[] bytes = new byte[source.readInt()];
+			source.readFully(bytes);
+			aggregates.add(new Aggregate(name, className, bytes));
+		}
+		return aggregates;
+	}
+
+	@Override
+	public String toString() {
+		return "IterationAggregates {partials: " + partials + ", combined: " + combined +
+			", feedback records: " + getFeedbackRecords() + " from " + getFeedbackReports() + "/" + numberOfHeads + " heads" +
+			", routes: " + routes.size() + "}";
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The parallel instance (a loop operator or a head) and the superstep that partials or a
+	 * report stem from.
+	 */
+	private static final class Origin {
+
+		/** The serialized size in bytes. */
+		static final int SIZE = 12;
+
+		final int subtaskIndex;
+
+		final long timestamp;
+
+		Origin(int subtaskIndex, long timestamp) {
+			this.subtaskIndex = subtaskIndex;
+			this.timestamp = timestamp;
+		}
+
+		void write(DataOutputView target) throws IOException {
+			target.writeInt(subtaskIndex);
+			target.writeLong(timestamp);
+		}
+
+		static Origin read(DataInputView source) throws IOException {
+			return new Origin(source.readInt(), source.readLong());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Origin that = (Origin) o;
+			return subtaskIndex == that.subtaskIndex && timestamp == that.timestamp;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * subtaskIndex + Long.hashCode(timestamp);
+		}
+
+		@Override
+		public String toString() {
+			return subtaskIndex + "@" + timestamp;
+		}
+	}
+
+	private static final class Route {
+
+		final int head;
+
+		final long timestamp;
+
+		/** The channels as in {@link BitSet#toLongArray()}. */
+		final long[] channels;
+
+		Route(int head, long timestamp, long[] channels) {
+			this.head = head;
+			this.timestamp = timestamp;
+			this.channels = channels;
+		}
+
+		boolean contains(int channel) {
+			int word = channel >>> 6;
+			return word < channels.length && (channels[word] & (1L << channel)) != 0;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Route that = (Route) o;
+			return head == that.head && timestamp == that.timestamp && Arrays.equals(channels, that.channels);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * head + Long.hashCode(timestamp)) + Arrays.hashCode(channels);
+		}
+	}
+
+	private static final class Aggregate {
+
+		final String name;
+
+		final String className;
+
+		final byte[] bytes;
+
+		Aggregate(String name, String className, byte[] bytes) {
+			this.name = name;
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		static Aggregate of(String name, Value value) throws IOException {
+			DataOutputSerializer out = new DataOutputSerializer(16);
+			value.write(out);
+			return new Aggregate(name, value.getClass().getName(), out.getCopyOfBuffer());
+		}
+
+		Value getValue(ClassLoader classLoader) throws IOException {
+			Value value;
+			try {
+				Class<? extends Value> valueClass = Class.forName(className, true, classLoader).asSubclass(Value.class);
+				value = InstantiationUtil.instantiate(valueClass, Value.class);
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Could not load the class of aggregate " + name + ": " + className, e);
+			}
+			value.read(new DataInputDeserializer(bytes));
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return name + " (" + className + ")";
+		}
+	}
+}
@@ -10,4 +10,14 @@ public interface StreamIterationTermination extends Serializable {
 	boolean terminate(List<Long> timeContext);
 	void observeRecord(StreamRecord record);
 	void observeWatermark(Watermark watermark);
+
+	/**
+	 * Called before the head forwards a watermark. Strategies that decide together with the other
+	 * parallel heads attach their local progress to the watermark, see {@link IterationAggregates}.
+	 *
+	 * @param watermark The watermark that is forwarded.
+	 * @param head The index of the head.
+	 * @param numberOfHeads The number of parallel heads of the iteration.
+	 */
+	default void attachProgress(Watermark watermark, int head, int numberOfHeads) {}
 }
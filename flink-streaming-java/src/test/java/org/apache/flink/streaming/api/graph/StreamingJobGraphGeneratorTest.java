@@ -159,6 +159,46 @@ public class StreamingJobGraphGeneratorTest extends TestLogger {
 		assertTrue(printConfig.isChainEnd());
 	}
 
+	/**
+	 * Verifies that operators in equal scopes are chained, even if the scopes are different
+	 * instances, and that operators in a nested scope are not chained.
+	 */
+	@Test
+	public void testChainingComparesScopesByValue() throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(2);
+		env.fromElements(1, 2, 3)
+			.map(new MapFunction<Integer, Integer>() {
+				@Override
+				public Integer map(Integer value) {
+					return value;
+				}
+			})
+			.map(new MapFunction<Integer, Integer>() {
+				@Override
+				public Integer map(Integer value) {
+					return value;
+				}
+			});
+
+		StreamGraph streamGraph = env.getStreamGraph();
+		StreamEdge edge = null;
+		for (StreamNode node : streamGraph.getStreamNodes()) {
+			if (node.getOperatorName().equals("Map") && !node.getOutEdges().isEmpty()) {
+				edge = node.getOutEdges().get(0);
+			}
+		}
+		StreamNode downstream = edge.getTargetVertex();
+
+		// an equal scope of another instance does not prevent chaining
+		downstream.setScope(new StreamScope(edge.getSourceVertex().getScope()));
+		assertTrue(StreamingJobGraphGenerator.isChainable(edge, streamGraph));
+
+		// elements that enter a loop need their context adapted, which chained operators do not do
+		downstream.setScope(edge.getSourceVertex().getScope().nest());
+		assertFalse(StreamingJobGraphGenerator.isChainable(edge, streamGraph));
+	}
+
 	/**
 	 * Verifies that the resources are merged correctly for chained operators (covers source and sink cases)
 	 * when generating job graph.
@@ -484,6 +484,137 @@ public class HeapInternalTimerServiceTest {
 		assertEquals(0, timerService.numEventTimeTimers());
 	}
 
+	/**
+	 * Verify that timers with the same key, namespace and timestamp in different
+	 * contexts are kept and fired separately.
+	 */
+	@Test
+	public void testEventTimeTimersArePartitionedByContext() throws Exception {
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable = mock(Triggerable.class);
+
+		TestKeyContext keyContext = new TestKeyContext();
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+		HeapInternalTimerService<Integer, String> timerService =
+				createTimerService(mockTriggerable, keyContext, processingTimeService, testKeyGroupRange, maxParallelism);
+
+		int key = getKeyInKeyGroupRange(testKeyGroupRange, maxParallelism);
+		List<Long> context1 = Collections.singletonList(1L);
+		List<Long> context2 = Collections.singletonList(2L);
+
+		keyContext.setCurrentKey(key);
+		timerService.registerEventTimeTimer("hello", context1, 10);
+		timerService.registerEventTimeTimer("hello", context2, 10);
+		timerService.registerEventTimeTimer("hello", context2, 20);
+
+		assertEquals(3, timerService.numEventTimeTimers());
+		assertEquals(2, timerService.numEventTimeTimerContexts());
+
+		timerService.deleteEventTimeTimer("hello", context2, 20);
+		timerService.advanceWatermark(context1, 20);
+
+		verify(mockTriggerable, times(1)).onEventTime(anyInternalTimer());
+		verify(mockTriggerable, times(1)).onEventTime(eq(new InternalTimer<>(context1, 10, key, "hello")));
+		assertEquals(20, timerService.currentWatermark(context1));
+		assertEquals(Long.MIN_VALUE, timerService.currentWatermark(context2));
+
+		timerService.advanceWatermark(context2, 10);
+
+		verify(mockTriggerable, times(2)).onEventTime(anyInternalTimer());
+		verify(mockTriggerable, times(1)).onEventTime(eq(new InternalTimer<>(context2, 10, key, "hello")));
+		assertEquals(0, timerService.numEventTimeTimers());
+		assertEquals(0, timerService.numEventTimeTimerContexts());
+	}
+
+	/**
+	 * Verify that the final watermark of an iteration context fires its timers and
+	 * then drops the context, while the context outside of any iteration is kept.
+	 */
+	@Test
+	public void testFinishedContextIsRetired() throws Exception {
+		TestKeyContext keyContext = new TestKeyContext();
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+
+		List<Long> context = Collections.singletonList(1L);
+		final List<InternalTimer<Integer, String>> fired = new ArrayList<>();
+		final HeapInternalTimerService<Integer, String> timerService = createTimerService(
+			new Triggerable<Integer, String>() {
+				@Override
+				public void onEventTime(InternalTimer<Integer, String> timer) {
+					fired.add(timer);
+				}
+
+				@Override
+				public void onProcessingTime(InternalTimer<Integer, String> timer) {
+				}
+			},
+			keyContext, processingTimeService, testKeyGroupRange, maxParallelism);
+
+		int key = getKeyInKeyGroupRange(testKeyGroupRange, maxParallelism);
+		keyContext.setCurrentKey(key);
+		timerService.registerEventTimeTimer("hello", context, 10);
+		timerService.registerEventTimeTimer("ciao", context, 20);
+		timerService.registerEventTimeTimer("hello", new LinkedList<Long>(), 10);
+
+		timerService.advanceWatermark(context, 10);
+		timerService.advanceWatermark(new LinkedList<Long>(), Long.MAX_VALUE);
+		assertEquals(2, timerService.numTimeContexts());
+
+		timerService.advanceWatermark(context, Long.MAX_VALUE);
+
+		assertEquals(3, fired.size());
+		assertEquals(new InternalTimer<>(context, 20, key, "ciao"), fired.get(2));
+		assertEquals(0, timerService.numEventTimeTimers());
+		assertEquals(0, timerService.numEventTimeTimerContexts());
+		assertEquals(1, timerService.numTimeContexts());
+		assertEquals(Long.MAX_VALUE, timerService.currentWatermark(new LinkedList<Long>()));
+	}
+
+	/**
+	 * Verify that restored event time timers fire in the context they were registered in.
+	 */
+	@Test
+	public void testSnapshotAndRestoreKeepsContexts() throws Exception {
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable = mock(Triggerable.class);
+
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService =
+			createTimerService(mockTriggerable, keyContext, new TestProcessingTimeService(), testKeyGroupRange, maxParallelism);
+
+		int key = getKeyInKeyGroupRange(testKeyGroupRange, maxParallelism);
+		List<Long> context = Arrays.asList(1L, 2L);
+		keyContext.setCurrentKey(key);
+		timerService.registerEventTimeTimer("hello", context, 10);
+
+		Map<Integer, byte[]> snapshot = new HashMap<>();
+		for (Integer keyGroupIndex : testKeyGroupRange) {
+			try (ByteArrayOutputStream outStream = new ByteArrayOutputStream()) {
+				InternalTimersSnapshotReaderWriters
+					.getWriterForVersion(InternalTimerServiceSerializationProxy.VERSION, timerService.snapshotTimersForKeyGroup(keyGroupIndex))
+					.writeTimersSnapshot(new DataOutputViewStreamWrapper(outStream));
+				snapshot.put(keyGroupIndex, outStream.toByteArray());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable2 = mock(Triggerable.class);
+		timerService = restoreTimerService(
+			snapshot,
+			InternalTimerServiceSerializationProxy.VERSION,
+			mockTriggerable2,
+			new TestKeyContext(),
+			new TestProcessingTimeService(),
+			testKeyGroupRange,
+			maxParallelism);
+
+		timerService.advanceWatermark(new LinkedList<Long>(), 10);
+		verify(mockTriggerable2, never()).onEventTime(anyInternalTimer());
+
+		timerService.advanceWatermark(context, 10);
+		verify(mockTriggerable2, times(1)).onEventTime(eq(new InternalTimer<>(context, 10, key, "hello")));
+	}
+
 	/**
 	 * This also verifies that we don't have leakage between keys/namespaces.
 	 *
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tests for {@link WatermarkResequencializer}.
+ */
+public class WatermarkResequencializerTest {
+
+	private static final List<Long> CONTEXT_A = Collections.singletonList(1L);
+	private static final List<Long> CONTEXT_B = Collections.singletonList(2L);
+
+	@Test
+	public void testWatermarksAreEmittedInOrder() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 1));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 4));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 3));
+		testHarness.processWatermark(new Watermark(CONTEXT_B, 7));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new Watermark(CONTEXT_A, 1));
+		expectedOutput.add(new Watermark(CONTEXT_B, 7));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// the missing watermark releases the ones that waited for it
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 3));
+		expectedOutput.add(new Watermark(CONTEXT_A, 4));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// watermarks that were emitted already are dropped
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 3));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testGapsAreFilledOutOfOrder() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 1));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 6));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 3));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 5));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new Watermark(CONTEXT_A, 1));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// fills the first gap only
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 3));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 4));
+		expectedOutput.add(new Watermark(CONTEXT_A, 4));
+		expectedOutput.add(new Watermark(CONTEXT_A, 5));
+		expectedOutput.add(new Watermark(CONTEXT_A, 6));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testEndOfContextFollowsBufferedWatermarks() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 1));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 3));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, Long.MAX_VALUE));
+		testHarness.processWatermark(new Watermark(CONTEXT_B, 1));
+		testHarness.processWatermark(new Watermark(CONTEXT_B, Long.MAX_VALUE));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new Watermark(CONTEXT_A, 1));
+		expectedOutput.add(new Watermark(CONTEXT_B, 1));
+		expectedOutput.add(new Watermark(CONTEXT_B, Long.MAX_VALUE));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 3));
+		expectedOutput.add(new Watermark(CONTEXT_A, Long.MAX_VALUE));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// the ended contexts are removed, nothing of them is kept in the snapshot
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+
+		testHarness = createHarness();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 7));
+
+		expectedOutput.clear();
+		expectedOutput.add(new Watermark(CONTEXT_A, 7));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testBufferedWatermarksAreRestored() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 1));
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 3));
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+
+		testHarness = createHarness();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+		testHarness.processWatermark(new Watermark(CONTEXT_A, 2));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new Watermark(CONTEXT_A, 2));
+		expectedOutput.add(new Watermark(CONTEXT_A, 3));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	private static OneInputStreamOperatorTestHarness<String, String> createHarness() throws Exception {
+		return new OneInputStreamOperatorTestHarness<>(new WatermarkResequencializer<>(), StringSerializer.INSTANCE);
+	}
+}
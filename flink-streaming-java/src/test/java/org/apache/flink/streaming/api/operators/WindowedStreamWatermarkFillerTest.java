@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tests for {@link WindowedStreamWatermarkFiller}.
+ */
+public class WindowedStreamWatermarkFillerTest {
+
+	private static final List<Long> CONTEXT = Collections.emptyList();
+
+	/** An epoch timestamp in milliseconds, far away from the start of the filler. */
+	private static final long EPOCH = 1_500_000_000_000L;
+
+	@Test
+	public void testRecordsAreEmittedInTimestampOrder() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>("c", EPOCH + 1000));
+		testHarness.processElement(new StreamRecord<>("a", EPOCH));
+		testHarness.processElement(new StreamRecord<>("b", EPOCH));
+		testHarness.processWatermark(new Watermark(CONTEXT, EPOCH + 500));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>("a", EPOCH));
+		expectedOutput.add(new StreamRecord<>("b", EPOCH));
+		expectedOutput.add(new Watermark(CONTEXT, EPOCH, false, true));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.processWatermark(new Watermark(CONTEXT, Long.MAX_VALUE - 1));
+		expectedOutput.add(new StreamRecord<>("c", EPOCH + 1000));
+		expectedOutput.add(new Watermark(CONTEXT, EPOCH + 1000, false, true));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testBufferedRecordsAreRestored() throws Exception {
+		OneInputStreamOperatorTestHarness<String, String> testHarness = createHarness();
+		testHarness.open();
+		testHarness.processElement(new StreamRecord<>("a", EPOCH));
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+
+		testHarness = createHarness();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+		testHarness.processWatermark(new Watermark(CONTEXT, EPOCH));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>("a", EPOCH));
+		expectedOutput.add(new Watermark(CONTEXT, EPOCH, false, true));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	private static OneInputStreamOperatorTestHarness<String, String> createHarness() throws Exception {
+		return new OneInputStreamOperatorTestHarness<>(new WindowedStreamWatermarkFiller<>(), StringSerializer.INSTANCE);
+	}
+}
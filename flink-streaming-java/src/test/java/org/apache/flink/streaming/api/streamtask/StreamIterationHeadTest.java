@@ -18,12 +18,26 @@
 package org.apache.flink.streaming.api.streamtask;
 
 import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.core.testutils.OneShotLatch;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
+import org.apache.flink.streaming.runtime.io.FeedbackChannelBroker;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.FeedbackLogOperator;
 import org.apache.flink.streaming.runtime.tasks.StreamIterationHead;
 import org.apache.flink.streaming.runtime.tasks.StreamTaskTestHarness;
+import org.apache.flink.streaming.runtime.tasks.progress.FixpointIterationTermination;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -46,4 +60,59 @@ public class StreamIterationHeadTest {
 		assertEquals(1, harness.getOutput().size());
 		assertEquals(new Watermark(Long.MAX_VALUE), harness.getOutput().peek());
 	}
+
+	@Test
+	public void testFeedbackInTransitIsRestored() throws Exception {
+		StreamTaskTestHarness<Integer> harness = createHarnessWithFeedbackLog();
+		OneShotLatch acknowledged = new OneShotLatch();
+		harness.getTaskStateManager().setWaitForReportLatch(acknowledged);
+		harness.invoke();
+		harness.waitForTaskRunning();
+
+		@SuppressWarnings("unchecked")
+		FeedbackChannel<StreamElement> channel = (FeedbackChannel<StreamElement>) FeedbackChannelBroker.INSTANCE.get(
+			StreamIterationHead.createBrokerIdString(harness.getTask().getEnvironment().getJobID(), "1", 0));
+
+		harness.getTask().triggerCheckpoint(new CheckpointMetaData(1L, 1L), CheckpointOptions.forCheckpointWithDefaultLocation());
+		channel.put(new StreamRecord<>(1, Collections.singletonList(0L), 0L));
+		channel.put(new StreamRecord<>(2, Collections.singletonList(0L), 0L));
+		// the barrier came back after the first two records
+		channel.markCheckpoint(1L);
+		channel.put(new StreamRecord<>(3, Collections.singletonList(0L), 0L));
+
+		acknowledged.await();
+		harness.waitForTaskCompletion();
+		assertEquals(1L, harness.getTaskStateManager().getReportedCheckpointId());
+		assertEquals(Arrays.asList(1, 2, 3), getRecordValues(harness));
+
+		StreamTaskTestHarness<Integer> restoredHarness = createHarnessWithFeedbackLog();
+		restoredHarness.setTaskStateSnapshot(1L, harness.getTaskStateManager().getLastJobManagerTaskStateSnapshot());
+		restoredHarness.invoke();
+		restoredHarness.waitForTaskCompletion();
+
+		// the loop processed the third record after the checkpoint
+		assertEquals(Arrays.asList(1, 2), getRecordValues(restoredHarness));
+	}
+
+	private static StreamTaskTestHarness<Integer> createHarnessWithFeedbackLog() {
+		StreamTaskTestHarness<Integer> harness = new StreamTaskTestHarness<>(
+				StreamIterationHead::new,
+				BasicTypeInfo.INT_TYPE_INFO);
+		harness.setupOutputForSingletonOperatorChain();
+		harness.getStreamConfig().setStreamOperator(new FeedbackLogOperator<Integer>());
+		harness.getStreamConfig().setIterationId("1");
+		harness.getStreamConfig().setIterationWaitTime(1000);
+		harness.getStreamConfig().setTerminationFunction(new FixpointIterationTermination());
+		return harness;
+	}
+
+	private static List<Integer> getRecordValues(StreamTaskTestHarness<Integer> harness) {
+		List<Integer> values = new ArrayList<>();
+		for (Object element : harness.getOutput()) {
+			if (element instanceof StreamRecord) {
+				values.add((Integer) ((StreamRecord<?>) element).getValue());
+			}
+		}
+		return values;
+	}
 }
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AdaptiveFlushPolicy}.
+ */
+public class AdaptiveFlushPolicyTest {
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	private static final long TIMEOUT = 100;
+
+	/**
+	 * Tests that a channel whose consumer has a backlog is only flushed at the timeout.
+	 */
+	@Test
+	public void testFlushAtTimeoutWithBacklog() {
+		ResultPartitionWriter writer = createWriter(1);
+		AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(writer, TIMEOUT);
+		assertEquals(10, policy.getCheckInterval());
+
+		when(writer.getNumberOfUnflushedBytes(0)).thenReturn(100);
+		when(writer.getBuffersInBacklog(0)).thenReturn(1);
+
+		for (long now = 0; now < TIMEOUT; now += policy.getCheckInterval()) {
+			policy.checkAndFlush(now);
+		}
+		verify(writer, never()).flush(0);
+		assertEquals(TIMEOUT, policy.getFlushInterval(0));
+
+		policy.checkAndFlush(TIMEOUT);
+		verify(writer, times(1)).flush(0);
+	}
+
+	/**
+	 * Tests that the interval of a channel whose consumer waits for data shrinks, so that a
+	 * channel with a low data rate is flushed before the timeout.
+	 */
+	@Test
+	public void testFlushBeforeTimeoutWithoutBacklog() {
+		ResultPartitionWriter writer = createWriter(2);
+		AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(writer, TIMEOUT);
+
+		when(writer.getNumberOfUnflushedBytes(0)).thenReturn(100);
+		when(writer.getBuffersInBacklog(1)).thenReturn(1);
+
+		policy.checkAndFlush(0);
+		policy.checkAndFlush(10);
+		verify(writer, never()).flush(0);
+
+		policy.checkAndFlush(20);
+		verify(writer, times(1)).flush(0);
+		assertEquals(12, policy.getFlushInterval(0));
+
+		policy.checkAndFlush(30);
+		assertEquals(10, policy.getFlushInterval(0));
+
+		// the other channel has no data
+		verify(writer, never()).flush(1);
+		assertEquals(TIMEOUT, policy.getFlushInterval(1));
+	}
+
+	/**
+	 * Tests that a channel is not flushed while its data rate fills the buffer within the interval.
+	 */
+	@Test
+	public void testNoFlushWhileRateFillsBuffer() {
+		ResultPartitionWriter writer = createWriter(1);
+		AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(writer, TIMEOUT);
+
+		// 10000 bytes per check
+		when(writer.getNumberOfUnflushedBytes(0)).thenReturn(10000, 20000, 30000, 7232, 7232);
+
+		policy.checkAndFlush(0);
+		policy.checkAndFlush(10);
+		policy.checkAndFlush(20);
+		policy.checkAndFlush(30);
+		verify(writer, never()).flush(0);
+
+		// no more data
+		policy.checkAndFlush(40);
+		verify(writer, times(1)).flush(0);
+	}
+
+	@Test
+	public void testFlushAtTimeoutIfUnflushedBytesAreUnknown() {
+		ResultPartitionWriter writer = createWriter(1);
+		AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(writer, TIMEOUT);
+
+		when(writer.getNumberOfUnflushedBytes(0)).thenReturn(-1);
+
+		policy.checkAndFlush(0);
+		policy.checkAndFlush(TIMEOUT - 1);
+		verify(writer, never()).flush(0);
+
+		policy.checkAndFlush(TIMEOUT);
+		verify(writer, times(1)).flush(0);
+	}
+
+	private static ResultPartitionWriter createWriter(int numChannels) {
+		ResultPartitionWriter writer = mock(ResultPartitionWriter.class);
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+		when(writer.getNumberOfSubpartitions()).thenReturn(numChannels);
+		when(writer.getBufferProvider()).thenReturn(bufferProvider);
+		when(bufferProvider.getMemorySegmentSize()).thenReturn(BUFFER_SIZE);
+		return writer;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CoordinatedProgressTrackingHandler}.
+ */
+public class CoordinatedProgressTrackingHandlerTest {
+
+	private static final List<Long> CONTEXT = Collections.singletonList(1L);
+
+	/** Two heads on channels 0 and 1, the coordinator on channel 2. */
+	private static final int[] CHANNELS = {0, 1, -1};
+
+	private static final int COORDINATOR = 2;
+
+	private final StreamElementSerializer<String> serializer = new StreamElementSerializer<>(StringSerializer.INSTANCE);
+
+	@Test
+	public void testWithoutRoutesTheCoordinatorIsEnough() {
+		CoordinatedProgressTrackingHandler handler = new CoordinatedProgressTrackingHandler(CHANNELS, 0);
+
+		assertEquals(new Watermark(CONTEXT, 1), handler.getNextWatermark(new Watermark(CONTEXT, 1), COORDINATOR));
+		assertEquals(new Watermark(CONTEXT, 2), handler.getNextWatermark(new Watermark(CONTEXT, 2), COORDINATOR));
+		assertNull(handler.pollWatermark());
+	}
+
+	@Test
+	public void testWaitsForRoutedHeads() throws Exception {
+		CoordinatedProgressTrackingHandler handler = new CoordinatedProgressTrackingHandler(CHANNELS, 1);
+
+		// head 0 sent records to the loop operators 0 and 1, head 1 only to 0
+		assertNull(handler.getNextWatermark(fromCoordinator(1, route(0, 1, 0, 1), route(1, 1, 0)), COORDINATOR));
+		Watermark next = handler.getNextWatermark(new Watermark(CONTEXT, 1), 0);
+		assertEquals(new Watermark(CONTEXT, 1), next);
+		// the routes are not passed on
+		assertNull(next.getAggregates());
+	}
+
+	@Test
+	public void testHeadWatermarkBeforeCoordinator() throws Exception {
+		CoordinatedProgressTrackingHandler handler = new CoordinatedProgressTrackingHandler(CHANNELS, 0);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT, 1), 1));
+		assertEquals(new Watermark(CONTEXT, 1), handler.getNextWatermark(fromCoordinator(1, route(1, 1, 0)), COORDINATOR));
+	}
+
+	@Test
+	public void testPendingWatermarksAreReleasedInOrder() throws Exception {
+		CoordinatedProgressTrackingHandler handler = new CoordinatedProgressTrackingHandler(CHANNELS, 0);
+
+		assertNull(handler.getNextWatermark(fromCoordinator(1, route(0, 1, 0)), COORDINATOR));
+		assertNull(handler.getNextWatermark(fromCoordinator(2, route(1, 2, 0)), COORDINATOR));
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT, 2), 1));
+
+		// the watermark of head 0 completes both supersteps
+		assertEquals(new Watermark(CONTEXT, 1), handler.getNextWatermark(new Watermark(CONTEXT, 1), 0));
+		assertEquals(new Watermark(CONTEXT, 2), handler.pollWatermark());
+		assertNull(handler.pollWatermark());
+	}
+
+	@Test
+	public void testCoordinatedSuperstep() throws Exception {
+		int parallelism = 2;
+		ProgressTrackingHandler coordinator = new ProgressTrackingHandler(parallelism);
+		CoordinatedProgressTrackingHandler[] loop = new CoordinatedProgressTrackingHandler[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			loop[i] = new CoordinatedProgressTrackingHandler(CHANNELS, i);
+		}
+
+		// head 0 sent records to loop operator 1, head 1 sent none
+		Watermark fromHead0 = new Watermark(CONTEXT, 4);
+		fromHead0.setAggregates(route(0, 4, 1));
+		Watermark fromHead1 = new Watermark(CONTEXT, 4);
+
+		assertNull(coordinator.getNextWatermark(roundTrip(fromHead0), 0));
+		Watermark aligned = coordinator.getNextWatermark(roundTrip(fromHead1), 1);
+		assertEquals(new Watermark(CONTEXT, 4), aligned);
+
+		assertEquals(new Watermark(CONTEXT, 4), loop[0].getNextWatermark(roundTrip(aligned), COORDINATOR));
+		assertNull(loop[1].getNextWatermark(roundTrip(aligned), COORDINATOR));
+		assertEquals(new Watermark(CONTEXT, 4), loop[1].getNextWatermark(new Watermark(CONTEXT, 4), 0));
+	}
+
+	@Test
+	public void testFinishedContextIsRetired() throws Exception {
+		CoordinatedProgressTrackingHandler handler = new CoordinatedProgressTrackingHandler(CHANNELS, 0);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT, 1), 0));
+		assertEquals(1, handler.getNumberOfActiveContexts());
+
+		Watermark done = new Watermark(CONTEXT, 1, true);
+		done.setAggregates(route(0, 1, 0));
+		Watermark next = handler.getNextWatermark(done, COORDINATOR);
+		assertTrue(next.iterationDone());
+		assertEquals(0, handler.getNumberOfActiveContexts());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static IterationAggregates route(int head, long timestamp, int... channels) {
+		BitSet bits = new BitSet();
+		for (int channel : channels) {
+			bits.set(channel);
+		}
+		IterationAggregates aggregates = new IterationAggregates();
+		aggregates.addRoute(head, timestamp, bits);
+		return aggregates;
+	}
+
+	private Watermark fromCoordinator(long timestamp, IterationAggregates... routes) throws Exception {
+		IterationAggregates merged = new IterationAggregates();
+		for (IterationAggregates route : routes) {
+			merged.merge(route);
+		}
+		Watermark mark = new Watermark(CONTEXT, timestamp);
+		mark.setAggregates(merged);
+		return roundTrip(mark);
+	}
+
+	private Watermark roundTrip(Watermark mark) throws Exception {
+		DataOutputSerializer out = new DataOutputSerializer(64);
+		serializer.serialize(mark, out);
+		return (Watermark) serializer.deserialize(new DataInputDeserializer(out.getCopyOfBuffer()));
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.core.testutils.CheckedThread;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FeedbackChannel}.
+ */
+public class FeedbackChannelTest {
+
+	private static IOManager ioManager;
+
+	@BeforeClass
+	public static void setup() {
+		ioManager = new IOManagerAsync();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		ioManager.shutdown();
+	}
+
+	@Test
+	public void testCapacityIsRoundedUp() {
+		assertEquals(8, new FeedbackChannel<>(5, LongSerializer.INSTANCE, ioManager).getCapacity());
+		assertEquals(8, new FeedbackChannel<>(8, LongSerializer.INSTANCE, ioManager).getCapacity());
+	}
+
+	@Test
+	public void testOrderWithoutSpilling() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(16, LongSerializer.INSTANCE, ioManager);
+
+		for (long round = 0; round < 10; round++) {
+			for (long i = 0; i < 16; i++) {
+				channel.put(round * 16 + i);
+			}
+			assertEquals(16, channel.getNumberOfBufferedElements());
+			for (long i = 0; i < 16; i++) {
+				assertEquals(Long.valueOf(round * 16 + i), channel.poll());
+			}
+			assertNull(channel.poll());
+		}
+		assertEquals(0, channel.getNumberOfSpilledElements());
+		channel.close();
+	}
+
+	@Test
+	public void testOverflowIsSpilledInOrder() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(4, LongSerializer.INSTANCE, ioManager);
+
+		long produced = 0;
+		long consumed = 0;
+		for (int round = 0; round < 20; round++) {
+			// interleave producing and consuming so that the channel repeatedly starts and stops spilling
+			for (int i = 0; i < 10000 + round; i++) {
+				channel.put(produced++);
+			}
+			for (int i = 0; i < 5000; i++) {
+				assertEquals(Long.valueOf(consumed++), channel.poll());
+			}
+		}
+
+		Long next;
+		while ((next = channel.poll()) != null) {
+			assertEquals(Long.valueOf(consumed++), next);
+		}
+		assertEquals(produced, consumed);
+		assertTrue(channel.getNumberOfSpilledElements() > 0);
+		channel.close();
+	}
+
+	@Test
+	public void testBatchesAreSpilledInOrder() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(32, LongSerializer.INSTANCE, ioManager);
+		Long[] batch = new Long[10];
+		List<Long> drained = new ArrayList<>();
+
+		long produced = 0;
+		for (int round = 0; round < 100; round++) {
+			for (int b = 0; b < 5; b++) {
+				int count = 1 + (round + b) % batch.length;
+				for (int i = 0; i < count; i++) {
+					batch[i] = produced++;
+				}
+				channel.putAll(batch, count);
+			}
+			channel.drainTo(drained, 7);
+			channel.drainTo(drained, 50);
+		}
+		int count;
+		do {
+			count = channel.drainTo(drained, 16);
+		} while (count > 0);
+
+		assertEquals(produced, drained.size());
+		for (int i = 0; i < drained.size(); i++) {
+			assertEquals(Long.valueOf(i), drained.get(i));
+		}
+		assertTrue(channel.getNumberOfSpilledElements() > 0);
+		channel.close();
+	}
+
+	@Test
+	public void testConcurrentBatches() throws Exception {
+		final FeedbackChannel<Long> channel = new FeedbackChannel<>(128, LongSerializer.INSTANCE, ioManager);
+		final int numBatches = 20000;
+		final int batchSize = 25;
+
+		CheckedThread producer = new CheckedThread() {
+			@Override
+			public void go() throws Exception {
+				Long[] batch = new Long[batchSize];
+				long next = 0;
+				for (int b = 0; b < numBatches; b++) {
+					for (int i = 0; i < batchSize; i++) {
+						batch[i] = next++;
+					}
+					channel.putAll(batch, batchSize);
+				}
+			}
+		};
+		producer.start();
+
+		List<Long> drained = new ArrayList<>();
+		long expected = 0;
+		while (expected < (long) numBatches * batchSize) {
+			assertTrue(channel.drainTo(drained, 100, 10, TimeUnit.SECONDS) > 0);
+			for (Long element : drained) {
+				assertEquals(Long.valueOf(expected++), element);
+			}
+			drained.clear();
+		}
+		producer.sync();
+		assertEquals(0, channel.drainTo(drained, 100, 1, TimeUnit.MILLISECONDS));
+		channel.close();
+	}
+
+	@Test
+	public void testStreamElementsAreSpilled() throws Exception {
+		FeedbackChannel<StreamElement> channel = new FeedbackChannel<>(
+			1, new StreamElementSerializer<>(LongSerializer.INSTANCE), ioManager);
+
+		StreamRecord<Long> record = new StreamRecord<>(17L, 3L);
+		record.addNestedTimestamp(5L);
+		Watermark watermark = new Watermark(Arrays.asList(1L, 2L), 9L, true, false);
+
+		channel.put(new StreamRecord<>(1L));
+		channel.put(record);
+		channel.put(watermark);
+
+		assertEquals(new StreamRecord<>(1L), channel.poll());
+		StreamElement spilledRecord = channel.poll();
+		assertEquals(record, spilledRecord);
+		assertEquals(record.getContext(), spilledRecord.asRecord().getContext());
+		StreamElement spilledWatermark = channel.poll();
+		assertEquals(watermark, spilledWatermark);
+		assertTrue(spilledWatermark.asWatermark().iterationDone());
+		assertNull(channel.poll());
+		channel.close();
+	}
+
+	/**
+	 * The producer spills and the consumer reads stream elements at the same time, which must not
+	 * share the context buffer of the serializer.
+	 */
+	@Test
+	public void testConcurrentSpillingOfStreamElements() throws Exception {
+		final FeedbackChannel<StreamElement> channel = new FeedbackChannel<>(
+			2, new StreamElementSerializer<>(LongSerializer.INSTANCE), ioManager);
+		final long numElements = 100000;
+
+		CheckedThread producer = new CheckedThread() {
+			@Override
+			public void go() throws Exception {
+				for (long i = 0; i < numElements; i++) {
+					StreamRecord<Long> record = new StreamRecord<>(i, i + 2);
+					record.setContext(Arrays.asList(i, i + 1));
+					channel.put(record);
+				}
+			}
+		};
+		producer.start();
+
+		for (long i = 0; i < numElements; i++) {
+			StreamElement next = channel.poll(10, TimeUnit.SECONDS);
+			assertEquals(Arrays.asList(i, i + 1), next.asRecord().getContext());
+			assertEquals(i + 2, next.asRecord().getTimestamp());
+		}
+		producer.sync();
+		assertNull(channel.poll(1, TimeUnit.MILLISECONDS));
+		channel.close();
+	}
+
+	@Test
+	public void testConcurrentProducerAndConsumer() throws Exception {
+		final FeedbackChannel<Long> channel = new FeedbackChannel<>(64, LongSerializer.INSTANCE, ioManager);
+		final long numElements = 500000;
+
+		CheckedThread producer = new CheckedThread() {
+			@Override
+			public void go() throws Exception {
+				for (long i = 0; i < numElements; i++) {
+					channel.put(i);
+				}
+			}
+		};
+		producer.start();
+
+		for (long i = 0; i < numElements; i++) {
+			Long next = channel.poll(10, TimeUnit.SECONDS);
+			assertEquals(Long.valueOf(i), next);
+		}
+		producer.sync();
+		assertNull(channel.poll(1, TimeUnit.MILLISECONDS));
+		channel.close();
+	}
+
+	@Test
+	public void testCheckpointBarriersKeepTheirPosition() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(4, LongSerializer.INSTANCE, ioManager);
+		assertEquals(Long.MAX_VALUE, channel.getNextCheckpointPosition());
+
+		// the second barrier follows spilled elements
+		channel.put(0L);
+		channel.put(1L);
+		channel.markCheckpoint(1L);
+		for (long i = 2; i < 1000; i++) {
+			channel.put(i);
+		}
+		channel.markCheckpoint(2L);
+
+		List<Long> drained = new ArrayList<>();
+		channel.drainTo(drained, 1);
+		assertEquals(2, channel.getNextCheckpointPosition());
+		channel.drainTo(drained, 1);
+		assertEquals(2, channel.getNumberOfConsumedElements());
+		assertEquals(1L, channel.takeCheckpoint());
+
+		while (channel.drainTo(drained, 64) > 0) {
+			assertTrue(channel.getNumberOfConsumedElements() <= channel.getNextCheckpointPosition());
+		}
+		assertEquals(1000, channel.getNumberOfConsumedElements());
+		assertEquals(1000, channel.getNextCheckpointPosition());
+		assertEquals(2L, channel.takeCheckpoint());
+		assertEquals(Long.MAX_VALUE, channel.getNextCheckpointPosition());
+		assertTrue(channel.getNumberOfSpilledElements() > 0);
+		channel.close();
+	}
+
+	@Test
+	public void testWaitingEndsAtCheckpointBarrier() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(16, LongSerializer.INSTANCE, ioManager);
+		channel.put(0L);
+		channel.markCheckpoint(1L);
+
+		List<Long> drained = new ArrayList<>();
+		assertEquals(1, channel.takeAll(drained, 16));
+		// returns without an element instead of waiting for the next one
+		assertEquals(0, channel.takeAll(drained, 16));
+		assertEquals(0, channel.drainTo(drained, 16, 1, TimeUnit.HOURS));
+		assertEquals(1L, channel.takeCheckpoint());
+		channel.close();
+	}
+
+	@Test
+	public void testCloseDeletesSpillFiles() throws Exception {
+		FeedbackChannel<Long> channel = new FeedbackChannel<>(2, LongSerializer.INSTANCE, ioManager);
+		for (long i = 0; i < 10000; i++) {
+			channel.put(i);
+		}
+		assertEquals(Long.valueOf(0L), channel.poll());
+		assertEquals(Long.valueOf(1L), channel.poll());
+		// take over the spill file
+		assertEquals(Long.valueOf(2L), channel.poll());
+		// and start a new one
+		for (long i = 0; i < 10000; i++) {
+			channel.put(i);
+		}
+
+		channel.close();
+		for (File dir : ioManager.getSpillingDirectories()) {
+			String[] files = dir.list();
+			assertTrue(files == null || files.length == 0);
+		}
+
+		// elements added after closing are discarded
+		channel.put(1L);
+		assertEquals(0, channel.getNumberOfBufferedElements());
+	}
+}
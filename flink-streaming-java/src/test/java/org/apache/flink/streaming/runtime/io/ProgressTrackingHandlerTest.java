@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProgressTrackingHandler} and {@link ContextProgress}.
+ */
+public class ProgressTrackingHandlerTest {
+
+	private static final List<Long> CONTEXT_A = Collections.singletonList(1L);
+	private static final List<Long> CONTEXT_B = Collections.singletonList(2L);
+
+	@Test
+	public void testMinimumOverChannels() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(3);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 5), 0));
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 3), 1));
+		assertEquals(new Watermark(CONTEXT_A, 3), handler.getNextWatermark(new Watermark(CONTEXT_A, 4), 2));
+
+		// the minimum does not change
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 7), 0));
+		// stale watermarks are ignored
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 2), 1));
+
+		assertEquals(new Watermark(CONTEXT_A, 4), handler.getNextWatermark(new Watermark(CONTEXT_A, 6), 1));
+		assertEquals(new Watermark(CONTEXT_A, 6), handler.getNextWatermark(new Watermark(CONTEXT_A, 8), 2));
+	}
+
+	@Test
+	public void testContextsAreIndependent() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(2);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 1), 0));
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_B, 1), 1));
+		assertEquals(new Watermark(CONTEXT_A, 1), handler.getNextWatermark(new Watermark(CONTEXT_A, 1), 1));
+		assertEquals(new Watermark(CONTEXT_B, 1), handler.getNextWatermark(new Watermark(CONTEXT_B, 2), 0));
+		assertEquals(2, handler.getNumberOfActiveContexts());
+	}
+
+	@Test
+	public void testIterationDoneOnAllChannels() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(2);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 3, true), 0));
+		Watermark next = handler.getNextWatermark(new Watermark(CONTEXT_A, 3, true), 1);
+
+		assertEquals(new Watermark(CONTEXT_A, Long.MAX_VALUE), next);
+		assertTrue(next.iterationDone());
+	}
+
+	@Test
+	public void testSuperstepWithoutFeedbackRecordsEndsIteration() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(2);
+
+		assertNull(handler.getNextWatermark(fromHead(0, 1, 0, 2), 0));
+		Watermark next = handler.getNextWatermark(fromHead(1, 1, 3, 2), 1);
+		assertEquals(new Watermark(CONTEXT_A, 1), next);
+		assertFalse(next.iterationDone());
+		assertEquals(3, next.getAggregates().getFeedbackRecords());
+
+		assertNull(handler.getNextWatermark(fromHead(1, 2, 0, 2), 1));
+		next = handler.getNextWatermark(fromHead(0, 2, 0, 2), 0);
+		assertEquals(new Watermark(CONTEXT_A, 2), next);
+		assertTrue(next.iterationDone());
+	}
+
+	@Test
+	public void testFeedbackRecordsOfSomeHeadsDoNotEndIteration() {
+		// e.g. a task behind a forward connection to one of three heads
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(1);
+
+		Watermark next = handler.getNextWatermark(fromHead(0, 1, 0, 3), 0);
+		assertFalse(next.iterationDone());
+		assertEquals(1, next.getAggregates().getFeedbackReports());
+	}
+
+	@Test
+	public void testHeadReportingSeveralSuperstepsEndsIteration() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(2);
+
+		// the first head reports two supersteps before the second head reports any
+		assertNull(handler.getNextWatermark(fromHead(0, 1, 0, 2), 0));
+		assertNull(handler.getNextWatermark(fromHead(0, 2, 0, 2), 0));
+		Watermark next = handler.getNextWatermark(fromHead(1, 2, 0, 2), 1);
+
+		assertEquals(new Watermark(CONTEXT_A, 2), next);
+		assertEquals(2, next.getAggregates().getFeedbackReports());
+		assertTrue(next.iterationDone());
+	}
+
+	@Test
+	public void testFinishedContextIsRetired() {
+		ProgressTrackingHandler handler = new ProgressTrackingHandler(2);
+
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, 1), 0));
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, Long.MAX_VALUE), 0));
+		assertEquals(1, handler.getNumberOfActiveContexts());
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_A, Long.MAX_VALUE), 1));
+		assertEquals(0, handler.getNumberOfActiveContexts());
+
+		// a reused progress instance starts from scratch
+		assertNull(handler.getNextWatermark(new Watermark(CONTEXT_B, 0), 0));
+		assertEquals(new Watermark(CONTEXT_B, 0), handler.getNextWatermark(new Watermark(CONTEXT_B, 0), 1));
+	}
+
+	@Test
+	public void testContextProgressMinimum() {
+		int channels = 13;
+		ContextProgress progress = new ContextProgress(channels);
+		long[] watermarks = new long[channels];
+
+		for (int round = 0; round < 50; round++) {
+			for (int channel = 0; channel < channels; channel++) {
+				int target = (channel * 7 + round * 3) % channels;
+				watermarks[target] += target + 1;
+				progress.advance(target, watermarks[target], false);
+				if (progress.allChannelsSeen()) {
+					assertEquals(Arrays.stream(watermarks).min().getAsLong(), progress.getMinWatermark());
+				}
+			}
+		}
+		assertTrue(progress.allChannelsSeen());
+	}
+
+	private static Watermark fromHead(int head, long timestamp, long feedbackRecords, int numberOfHeads) {
+		Watermark watermark = new Watermark(CONTEXT_A, timestamp);
+		IterationAggregates aggregates = new IterationAggregates();
+		aggregates.setFeedbackRecords(head, timestamp, feedbackRecords, numberOfHeads);
+		watermark.setAggregates(aggregates);
+		return watermark;
+	}
+}
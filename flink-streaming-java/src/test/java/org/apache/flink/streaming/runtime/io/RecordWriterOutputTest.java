@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
+import org.apache.flink.streaming.runtime.streamrecord.HandedOverRecord;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.streamstatus.StreamStatusProvider;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the handoff of records by reference in {@link RecordWriterOutput} and
+ * {@link HandedOverRecords}.
+ */
+public class RecordWriterOutputTest {
+
+	/**
+	 * Tests that a record of an immutable type is handed over to a channel with an object handoff
+	 * and that the placeholder is resolved to the record on the consumer side.
+	 */
+	@Test
+	public void testHandOverRecord() throws Exception {
+		Queue<Object> objectHandoff = new ConcurrentLinkedQueue<>();
+		StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> writer = createWriter(1, objectHandoff);
+		RecordWriterOutput<String> output = createOutput(writer, StringSerializer.INSTANCE);
+
+		StreamRecord<String> record = new StreamRecord<>("value", 42L);
+		output.collect(record);
+
+		ArgumentCaptor<SerializationDelegate> placeholder = ArgumentCaptor.forClass(SerializationDelegate.class);
+		verify(writer).emit(placeholder.capture(), eq(1));
+		assertSame(HandedOverRecord.INSTANCE, placeholder.getValue().getInstance());
+		assertEquals(1, objectHandoff.size());
+
+		InputGate inputGate = mock(InputGate.class);
+		when(inputGate.getNumberOfInputChannels()).thenReturn(2);
+		when(inputGate.getObjectHandoff(1)).thenReturn(objectHandoff);
+		HandedOverRecords handedOverRecords = new HandedOverRecords(inputGate);
+
+		StreamElement handedOver = handedOverRecords.resolve(HandedOverRecord.INSTANCE, 1);
+		// the record may be reused by the producer, the value is shared
+		assertNotSame(record, handedOver);
+		assertEquals(record, handedOver);
+		assertSame(record.getValue(), handedOver.asRecord().getValue());
+		assertTrue(objectHandoff.isEmpty());
+
+		StreamRecord<String> other = new StreamRecord<>("other");
+		assertSame(other, handedOverRecords.resolve(other, 0));
+	}
+
+	/**
+	 * Tests that a record is serialized if the consumer has not taken enough of the handed over
+	 * records yet.
+	 */
+	@Test
+	public void testSerializeRecordIfObjectHandoffIsFull() throws Exception {
+		Queue<Object> objectHandoff = new ArrayBlockingQueue<>(1);
+		objectHandoff.add(new StreamRecord<>("first"));
+		StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> writer = createWriter(0, objectHandoff);
+		RecordWriterOutput<String> output = createOutput(writer, StringSerializer.INSTANCE);
+
+		StreamRecord<String> record = new StreamRecord<>("second");
+		output.collect(record);
+
+		ArgumentCaptor<SerializationDelegate> delegate = ArgumentCaptor.forClass(SerializationDelegate.class);
+		verify(writer).emit(delegate.capture(), any(int[].class));
+		verify(writer, never()).emit(any(SerializationDelegate.class), anyInt());
+		assertSame(record, delegate.getValue().getInstance());
+		assertEquals(1, objectHandoff.size());
+	}
+
+	@Test
+	public void testEmitRecordWithoutObjectHandoff() throws Exception {
+		StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> writer = createWriter(1, null);
+		RecordWriterOutput<String> output = createOutput(writer, StringSerializer.INSTANCE);
+
+		StreamRecord<String> record = new StreamRecord<>("value");
+		output.collect(record);
+
+		ArgumentCaptor<SerializationDelegate> delegate = ArgumentCaptor.forClass(SerializationDelegate.class);
+		verify(writer).emit(delegate.capture(), any(int[].class));
+		assertSame(record, delegate.getValue().getInstance());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSerializeRecordOfMutableType() throws Exception {
+		Queue<Object> objectHandoff = new ConcurrentLinkedQueue<>();
+		StreamRecordWriter<SerializationDelegate<StreamRecord<ArrayList>>> writer =
+			(StreamRecordWriter) createWriter(0, objectHandoff);
+		TypeSerializer<ArrayList> serializer = new KryoSerializer<>(ArrayList.class, new ExecutionConfig());
+		RecordWriterOutput<ArrayList> output = new RecordWriterOutput<>(
+			writer, serializer, null, mock(StreamStatusProvider.class), true, true);
+
+		output.collect(new StreamRecord<>(new ArrayList<>()));
+
+		verify(writer).emit(any(SerializationDelegate.class));
+		verify(writer, never()).emit(any(SerializationDelegate.class), anyInt());
+		assertTrue(objectHandoff.isEmpty());
+	}
+
+	// ------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private static StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> createWriter(
+			int channel, Queue<Object> objectHandoff) {
+
+		StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> writer = mock(StreamRecordWriter.class);
+		when(writer.selectChannels(any(SerializationDelegate.class))).thenReturn(new int[] {channel});
+		when(writer.getObjectHandoff(channel)).thenReturn(objectHandoff);
+		return writer;
+	}
+
+	private static RecordWriterOutput<String> createOutput(
+			StreamRecordWriter<SerializationDelegate<StreamRecord<String>>> writer,
+			TypeSerializer<String> serializer) {
+
+		return new RecordWriterOutput<>(writer, serializer, null, mock(StreamStatusProvider.class), true, true);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.core.testutils.CheckedThread;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.streaming.runtime.io.FeedbackChannel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feedback queue benchmarks executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ *
+ * <p>A producer thread hands over batches of elements to the {@link FeedbackChannel}, like the
+ * iteration tail does, while the calling thread drains them like the iteration head. If the
+ * capacity of the channel is small compared to the batches, the benchmark includes spilling.
+ */
+public class FeedbackChannelBenchmark {
+
+	private IOManager ioManager;
+
+	private FeedbackChannel<Long> channel;
+
+	private int batchSize;
+
+	private int drainSize;
+
+	/**
+	 * Initializes the benchmark with the given parameters.
+	 *
+	 * @param capacity number of elements that the channel keeps in memory
+	 * @param batchSize number of elements that the producer hands over at once
+	 * @param drainSize maximum number of elements that the consumer takes at once
+	 */
+	public void setUp(int capacity, int batchSize, int drainSize) {
+		this.ioManager = new IOManagerAsync();
+		this.channel = new FeedbackChannel<>(capacity, LongSerializer.INSTANCE, ioManager);
+		this.batchSize = batchSize;
+		this.drainSize = drainSize;
+	}
+
+	/**
+	 * Executes the benchmark with the given number of elements.
+	 *
+	 * @return the sum of the elements that were taken
+	 */
+	public long executeBenchmark(final long elements) throws Exception {
+		CheckedThread producer = new CheckedThread("feedback producer") {
+			@Override
+			public void go() throws Exception {
+				Long[] batch = new Long[batchSize];
+				long produced = 0;
+				while (produced < elements) {
+					int count = (int) Math.min(batchSize, elements - produced);
+					for (int i = 0; i < count; i++) {
+						batch[i] = produced++;
+					}
+					channel.putAll(batch, count);
+				}
+			}
+		};
+		producer.start();
+
+		List<Long> drained = new ArrayList<>(drainSize);
+		long sum = 0;
+		long consumed = 0;
+		while (consumed < elements) {
+			consumed += channel.takeAll(drained, drainSize);
+			for (Long element : drained) {
+				sum += element;
+			}
+			drained.clear();
+		}
+		producer.sync();
+		return sum;
+	}
+
+	public void tearDown() throws IOException {
+		channel.close();
+		ioManager.shutdown();
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link FeedbackChannelBenchmark}.
+ */
+public class FeedbackChannelBenchmarkTest {
+
+	@Test
+	public void inMemoryBenchmark() throws Exception {
+		FeedbackChannelBenchmark benchmark = new FeedbackChannelBenchmark();
+		benchmark.setUp(1 << 16, 64, 1024);
+		try {
+			assertEquals(9_999L * 10_000 / 2, benchmark.executeBenchmark(10_000));
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@Test
+	public void spillingBenchmark() throws Exception {
+		FeedbackChannelBenchmark benchmark = new FeedbackChannelBenchmark();
+		benchmark.setUp(64, 256, 1024);
+		try {
+			assertEquals(99_999L * 100_000 / 2, benchmark.executeBenchmark(100_000));
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.io.ProgressTrackingHandler;
+
+import java.util.Collections;
+
+/**
+ * Watermark alignment benchmarks executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ *
+ * <p>Every superstep each input channel reports the next watermark of every context, in the
+ * same way the superstep watermarks of an iteration arrive at a task inside the loop.
+ */
+public class ProgressTrackingBenchmark {
+
+	/**
+	 * The watermark alignment implementation to benchmark.
+	 */
+	public enum Mode {
+		/** The {@link ProgressTrackingHandler}. */
+		INDEXED,
+		/** The {@link HashMapProgressTrackingHandler} baseline. */
+		HASH_MAP
+	}
+
+	private ProgressTrackingHandler indexedHandler;
+	private HashMapProgressTrackingHandler hashMapHandler;
+
+	private Watermark[] watermarks;
+	private int channels;
+
+	/**
+	 * Initializes the benchmark with the given parameters.
+	 *
+	 * @param mode the implementation to benchmark
+	 * @param channels number of input channels of the task
+	 * @param contexts number of concurrently active contexts
+	 */
+	public void setUp(Mode mode, int channels, int contexts) {
+		this.channels = channels;
+		this.indexedHandler = mode == Mode.INDEXED ? new ProgressTrackingHandler(channels) : null;
+		this.hashMapHandler = mode == Mode.HASH_MAP ? new HashMapProgressTrackingHandler(channels) : null;
+
+		watermarks = new Watermark[contexts];
+		for (int i = 0; i < contexts; i++) {
+			watermarks[i] = new Watermark(Collections.singletonList((long) i), 0L);
+		}
+	}
+
+	/**
+	 * Executes the benchmark for the given number of supersteps.
+	 *
+	 * @return the number of watermarks emitted by the alignment
+	 */
+	public long executeBenchmark(long supersteps) {
+		long emitted = 0;
+		for (long step = 0; step < supersteps; step++) {
+			for (Watermark watermark : watermarks) {
+				watermark.forwardTimestamp();
+				for (int channel = 0; channel < channels; channel++) {
+					Watermark next = indexedHandler != null ?
+						indexedHandler.getNextWatermark(watermark, channel) :
+						hashMapHandler.getNextWatermark(watermark, channel);
+					if (next != null) {
+						emitted++;
+					}
+				}
+			}
+		}
+		return emitted;
+	}
+
+	public void tearDown() {
+		indexedHandler = null;
+		hashMapHandler = null;
+		watermarks = null;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.streamrecord.TimeContext;
+
+import java.io.IOException;
+
+/**
+ * Context encoding benchmarks executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ *
+ * <p>Records of the given contexts are written into a buffer and read back with a reused
+ * record, in the same way the records of a loop pass the network stack, with a watermark after
+ * every batch of records of a context.
+ */
+public class StreamElementSerializerBenchmark {
+
+	private static final int BATCH_SIZE = 256;
+
+	private StreamElementSerializer<Long> serializer;
+
+	private TimeContext[] contexts;
+
+	private DataOutputSerializer output;
+
+	private DataInputDeserializer input;
+
+	/**
+	 * Initializes the benchmark with the given parameters.
+	 *
+	 * @param contextDepth number of nested timestamps of each context
+	 * @param contexts number of concurrently active contexts
+	 */
+	public void setUp(int contextDepth, int contexts) {
+		this.serializer = new StreamElementSerializer<>(LongSerializer.INSTANCE);
+		this.contexts = new TimeContext[contexts];
+		for (int i = 0; i < contexts; i++) {
+			long[] timestamps = new long[contextDepth];
+			for (int depth = 0; depth < contextDepth; depth++) {
+				timestamps[depth] = i * 1000L + depth;
+			}
+			this.contexts[i] = TimeContext.of(timestamps);
+		}
+		this.output = new DataOutputSerializer(BATCH_SIZE * (32 + 8 * contextDepth));
+		this.input = new DataInputDeserializer();
+	}
+
+	/**
+	 * Executes the benchmark for the given number of records.
+	 *
+	 * @return the sum of the values read back
+	 */
+	public long executeBenchmark(long records) throws IOException {
+		StreamRecord<Long> reuse = new StreamRecord<>(0L);
+		long sum = 0;
+		long written = 0;
+		int context = 0;
+		while (written < records) {
+			int batch = (int) Math.min(BATCH_SIZE, records - written);
+			TimeContext timeContext = contexts[context];
+			context = (context + 1) % contexts.length;
+
+			output.clear();
+			for (int i = 0; i < batch; i++) {
+				serializer.serialize(new StreamRecord<>(written + i, timeContext, written), output);
+			}
+			serializer.serialize(new Watermark(timeContext, written), output);
+
+			input.setBuffer(output.getSharedBuffer(), 0, output.length());
+			for (int i = 0; i < batch; i++) {
+				StreamElement element = serializer.deserialize(reuse, input);
+				sum += element.<Long>asRecord().getValue();
+			}
+			serializer.deserialize(input);
+			written += batch;
+		}
+		return sum;
+	}
+
+	public void tearDown() {
+		serializer = null;
+		contexts = null;
+		output = null;
+		input = null;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link FeedbackCombiner}.
+ */
+public class FeedbackCombinerTest {
+
+	private static final List<Long> FIRST = Collections.singletonList(1L);
+
+	private static final List<Long> SECOND = Collections.singletonList(2L);
+
+	private FeedbackCombiner<Long, Tuple2<Long, Double>> combiner;
+
+	@Before
+	public void setUp() throws Exception {
+		combiner = new FeedbackCombiner<>(
+			(a, b) -> new Tuple2<>(a.f0, a.f1 + b.f1),
+			value -> value.f0,
+			new TupleTypeInfo<Tuple2<Long, Double>>(BasicTypeInfo.LONG_TYPE_INFO, BasicTypeInfo.DOUBLE_TYPE_INFO)
+				.createSerializer(new ExecutionConfig()));
+		combiner.open(mock(RuntimeContext.class));
+	}
+
+	@Test
+	public void testFeedbackIsCombinedPerContextSuperstepAndKey() throws Exception {
+		combiner.add(new StreamRecord<>(Tuple2.of(1L, 0.5), FIRST, 3L));
+		combiner.add(new StreamRecord<>(Tuple2.of(2L, 1.0), FIRST, 3L));
+		combiner.add(new StreamRecord<>(Tuple2.of(1L, 0.25), FIRST, 3L));
+		combiner.add(new StreamRecord<>(Tuple2.of(1L, 2.0), FIRST, 4L));
+		combiner.add(new StreamRecord<>(Tuple2.of(1L, 4.0), SECOND, 3L));
+
+		List<StreamRecord<Tuple2<Long, Double>>> emitted = new ArrayList<>();
+		combiner.emit(FIRST, emitted::add);
+		assertEquals(Arrays.asList(
+			new StreamRecord<>(Tuple2.of(1L, 0.75), FIRST, 3L),
+			new StreamRecord<>(Tuple2.of(2L, 1.0), FIRST, 3L),
+			new StreamRecord<>(Tuple2.of(1L, 2.0), FIRST, 4L)),
+			emitted);
+
+		// the other contexts are still combined
+		emitted.clear();
+		combiner.add(new StreamRecord<>(Tuple2.of(1L, 1.0), SECOND, 3L));
+		combiner.emitAll(emitted::add);
+		assertEquals(Collections.singletonList(new StreamRecord<>(Tuple2.of(1L, 5.0), SECOND, 3L)), emitted);
+
+		emitted.clear();
+		combiner.emitAll(emitted::add);
+		assertTrue(emitted.isEmpty());
+	}
+
+	@Test
+	public void testReusedRecordsAreNotCombinedWithThemselves() throws Exception {
+		Tuple2<Long, Double> reuse = new Tuple2<>();
+		StreamRecord<Tuple2<Long, Double>> record = new StreamRecord<>(reuse, FIRST, 1L);
+		for (double value = 1.0; value <= 3.0; value++) {
+			reuse.setFields(7L, value);
+			combiner.add(record);
+		}
+
+		List<StreamRecord<Tuple2<Long, Double>>> emitted = new ArrayList<>();
+		combiner.emit(FIRST, emitted::add);
+		assertEquals(Collections.singletonList(new StreamRecord<>(Tuple2.of(7L, 6.0), FIRST, 1L)), emitted);
+	}
+}
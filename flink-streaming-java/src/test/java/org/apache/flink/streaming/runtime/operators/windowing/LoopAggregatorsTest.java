@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.aggregators.AggregatorRegistry;
+import org.apache.flink.api.common.aggregators.DoubleSumAggregator;
+import org.apache.flink.api.common.aggregators.LongSumAggregator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.io.ProgressTrackingHandler;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.progress.FixpointIterationTermination;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
+import org.apache.flink.types.DoubleValue;
+import org.apache.flink.types.LongValue;
+import org.apache.flink.util.InstantiationUtil;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link LoopAggregators} and the way {@link IterationAggregates} travel with watermarks.
+ */
+public class LoopAggregatorsTest {
+
+	private static final List<Long> CONTEXT = Collections.singletonList(7L);
+
+	private final StreamElementSerializer<String> serializer = new StreamElementSerializer<>(StringSerializer.INSTANCE);
+
+	@Test
+	public void testAggregatesAreCombinedOverParallelInstances() throws Exception {
+		int parallelism = 3;
+		LoopAggregators[] instances = new LoopAggregators[parallelism];
+		ProgressTrackingHandler[] inputs = new ProgressTrackingHandler[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			instances[i] = createAggregators(i);
+			inputs[i] = new ProgressTrackingHandler(parallelism);
+		}
+
+		for (long superstep = 1; superstep <= 3; superstep++) {
+			// every instance updates its aggregators and forwards the watermark to its head
+			Watermark[] fromHeads = new Watermark[parallelism];
+			for (int i = 0; i < parallelism; i++) {
+				LoopContext<String> loopContext = instances[i].createLoopContext(CONTEXT, superstep, "key");
+				loopContext.<DoubleSumAggregator>getIterationAggregator("delta").aggregate(superstep * (i + 1));
+				loopContext.<LongSumAggregator>getIterationAggregator("count").aggregate(1L);
+
+				Watermark mark = new Watermark(CONTEXT, superstep);
+				mark.setAggregates(instances[i].snapshot(CONTEXT, superstep));
+				mark = roundTrip(mark);
+				mark.forwardTimestamp();
+				fromHeads[i] = mark;
+			}
+
+			// the heads broadcast their watermarks, the instances combine once all are aligned
+			for (int i = 0; i < parallelism; i++) {
+				Watermark aligned = null;
+				for (int head = 0; head < parallelism; head++) {
+					aligned = inputs[i].getNextWatermark(roundTrip(fromHeads[head]), head);
+				}
+				// one partial per aggregator and head
+				assertEquals(2 * parallelism, aligned.getAggregates().getNumberOfPartials());
+				instances[i].combine(CONTEXT, aligned.getAggregates());
+
+				LoopContext<String> next = instances[i].createLoopContext(CONTEXT, superstep + 1, "key");
+				assertEquals(new DoubleValue(superstep * 6.0), next.getPreviousIterationAggregate("delta"));
+				assertEquals(new LongValue(parallelism), next.getPreviousIterationAggregate("count"));
+			}
+		}
+
+		// the combined aggregates of the previous superstep travel back to the heads
+		IterationAggregates toHead = roundTrip(watermarkWith(instances[0].snapshot(CONTEXT, 4L))).getAggregates();
+		assertEquals(new DoubleValue(18.0), toHead.getCombined("delta", getClass().getClassLoader()));
+	}
+
+	/**
+	 * The loop body of parallelism 2 is connected all-to-all to the heads, which broadcast to the
+	 * loop operators. Every hop merges the aggregates of all upstream instances, which must not
+	 * count a partial or a report more than once.
+	 */
+	@Test
+	public void testAggregatesAreNotDuplicatedByAllToAllConnections() throws Exception {
+		int parallelism = 2;
+		LoopAggregators[] instances = new LoopAggregators[parallelism];
+		ProgressTrackingHandler[] bodyInputs = new ProgressTrackingHandler[parallelism];
+		ProgressTrackingHandler[] entryInputs = new ProgressTrackingHandler[parallelism];
+		FixpointIterationTermination[] heads = new FixpointIterationTermination[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			instances[i] = createAggregators(i);
+			bodyInputs[i] = new ProgressTrackingHandler(parallelism);
+			entryInputs[i] = new ProgressTrackingHandler(parallelism);
+			heads[i] = new FixpointIterationTermination();
+		}
+
+		for (long superstep = 1; superstep <= 2; superstep++) {
+			Watermark[] fromLoop = new Watermark[parallelism];
+			for (int i = 0; i < parallelism; i++) {
+				LoopContext<String> loopContext = instances[i].createLoopContext(CONTEXT, superstep, "key");
+				loopContext.<DoubleSumAggregator>getIterationAggregator("delta").aggregate(superstep * (i + 1));
+				loopContext.<LongSumAggregator>getIterationAggregator("count").aggregate(1L);
+
+				Watermark mark = new Watermark(CONTEXT, superstep);
+				mark.setAggregates(instances[i].snapshot(CONTEXT, superstep));
+				fromLoop[i] = mark;
+			}
+
+			// the loop body sends all-to-all to the heads, every head receives the partials of all
+			Watermark[] fromHeads = new Watermark[parallelism];
+			for (int head = 0; head < parallelism; head++) {
+				Watermark aligned = null;
+				for (int i = 0; i < parallelism; i++) {
+					aligned = bodyInputs[head].getNextWatermark(roundTrip(fromLoop[i]), i);
+				}
+				if (superstep == 1 && head == 0) {
+					heads[head].observeRecord(new StreamRecord<>("feedback", CONTEXT, 1L));
+				}
+				heads[head].attachProgress(aligned, head, parallelism);
+				aligned = roundTrip(aligned);
+				aligned.forwardTimestamp();
+				fromHeads[head] = aligned;
+			}
+
+			// the heads broadcast to the loop operators, each of which receives all aggregates twice
+			for (int i = 0; i < parallelism; i++) {
+				Watermark aligned = null;
+				for (int head = 0; head < parallelism; head++) {
+					aligned = entryInputs[i].getNextWatermark(roundTrip(fromHeads[head]), head);
+				}
+				IterationAggregates aggregates = aligned.getAggregates();
+				// one partial per aggregator and loop operator, one report per head
+				assertEquals(2 * parallelism, aggregates.getNumberOfPartials());
+				assertEquals(parallelism, aggregates.getFeedbackReports());
+				assertEquals(superstep == 1 ? 1L : 0L, aggregates.getFeedbackRecords());
+				assertEquals(superstep == 2, aligned.iterationDone());
+
+				instances[i].combine(CONTEXT, aggregates);
+				LoopContext<String> next = instances[i].createLoopContext(CONTEXT, superstep + 1, "key");
+				assertEquals(new DoubleValue(superstep * 3.0), next.getPreviousIterationAggregate("delta"));
+				assertEquals(new LongValue(parallelism), next.getPreviousIterationAggregate("count"));
+			}
+		}
+	}
+
+	@Test
+	public void testFirstSuperstepHasNoPreviousAggregate() throws Exception {
+		LoopAggregators aggregators = createAggregators(0);
+		LoopContext<String> loopContext = aggregators.createLoopContext(CONTEXT, 0, "key");
+
+		assertNull(loopContext.getPreviousIterationAggregate("delta"));
+		assertNull(aggregators.snapshot(CONTEXT, 0L).getCombined("delta", getClass().getClassLoader()));
+	}
+
+	@Test
+	public void testWatermarksWithoutAggregates() throws Exception {
+		Watermark mark = roundTrip(new Watermark(CONTEXT, 3L, true, false));
+		assertNull(mark.getAggregates());
+
+		// aggregates are dropped when the watermark leaves the iteration
+		Watermark withAggregates = watermarkWith(new IterationAggregates());
+		withAggregates.removeNestedTimestamp();
+		assertNull(withAggregates.getAggregates());
+	}
+
+	@Test
+	public void testCopyWatermarkWithAggregates() throws Exception {
+		IterationAggregates aggregates = new IterationAggregates();
+		aggregates.addPartial(0, 1L, "delta", new DoubleValue(1.5));
+		aggregates.setCombined("delta", new DoubleValue(4.0));
+
+		DataOutputSerializer out = new DataOutputSerializer(64);
+		serializer.serialize(watermarkWith(aggregates), out);
+		DataOutputSerializer copy = new DataOutputSerializer(64);
+		serializer.copy(new DataInputDeserializer(out.getCopyOfBuffer()), copy);
+
+		Watermark copied = (Watermark) serializer.deserialize(new DataInputDeserializer(copy.getCopyOfBuffer()));
+		assertEquals(1, copied.getAggregates().getNumberOfPartials());
+		assertEquals(new DoubleValue(4.0), copied.getAggregates().getCombined("delta", getClass().getClassLoader()));
+	}
+
+	// ------------------------------------------------------------------------
+
+	private LoopAggregators createAggregators(int subtaskIndex) throws Exception {
+		AggregatorRegistry registry = new AggregatorRegistry();
+		registry.registerAggregator("delta", new DoubleSumAggregator());
+		registry.registerAggregator("count", new LongSumAggregator());
+
+		// the aggregators are shipped with the operator
+		LoopAggregators aggregators = InstantiationUtil.clone(new LoopAggregators(registry));
+		aggregators.open(getClass().getClassLoader(), subtaskIndex);
+		return aggregators;
+	}
+
+	private static Watermark watermarkWith(IterationAggregates aggregates) {
+		Watermark mark = new Watermark(CONTEXT, 1L);
+		mark.setAggregates(aggregates);
+		return mark;
+	}
+
+	private Watermark roundTrip(Watermark mark) throws Exception {
+		DataOutputSerializer out = new DataOutputSerializer(64);
+		serializer.serialize(mark, out);
+		return (Watermark) serializer.deserialize(new DataInputDeserializer(out.getCopyOfBuffer()));
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.runtime.metrics.util.InterceptingOperatorMetricGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link LoopMetrics}.
+ */
+public class LoopMetricsTest {
+
+	private static final List<Long> FIRST = Collections.singletonList(1L);
+
+	private static final List<Long> SECOND = Collections.singletonList(2L);
+
+	private InterceptingOperatorMetricGroup metricGroup;
+
+	private LoopMetrics metrics;
+
+	@Before
+	public void setUp() {
+		metricGroup = new InterceptingOperatorMetricGroup();
+		metrics = new LoopMetrics(metricGroup, () -> 3);
+	}
+
+	@Test
+	public void testSuperstepsAreRecordedPerContext() {
+		metrics.entered(FIRST);
+		metrics.entered(SECOND);
+
+		for (int i = 0; i < 5; i++) {
+			metrics.recordFeedback(FIRST);
+		}
+		// an equal context in a different list
+		metrics.recordFeedback(new ArrayList<>(FIRST));
+		metrics.recordFeedback(SECOND);
+		metrics.superstepCompleted(FIRST);
+		metrics.superstepCompleted(SECOND);
+		metrics.recordFeedback(FIRST);
+		metrics.superstepCompleted(FIRST);
+
+		assertEquals(3L, ((Counter) metricGroup.get(LoopMetrics.SUPERSTEPS)).getCount());
+		assertEquals(3, ((Gauge<?>) metricGroup.get(LoopMetrics.ACTIVE_CONTEXTS)).getValue());
+
+		Histogram recordsPerSuperstep = (Histogram) metricGroup.get(LoopMetrics.RECORDS_PER_SUPERSTEP);
+		assertEquals(3, recordsPerSuperstep.getCount());
+		assertEquals(6L, recordsPerSuperstep.getStatistics().getMax());
+		assertEquals(1L, recordsPerSuperstep.getStatistics().getMin());
+		assertEquals(3, ((Histogram) metricGroup.get(LoopMetrics.SUPERSTEP_DURATION)).getCount());
+
+		metrics.terminated(FIRST);
+		Histogram superstepsPerContext = (Histogram) metricGroup.get(LoopMetrics.SUPERSTEPS_PER_CONTEXT);
+		assertEquals(1, superstepsPerContext.getCount());
+		assertEquals(2L, superstepsPerContext.getStatistics().getMax());
+		assertEquals(1, ((Histogram) metricGroup.get(LoopMetrics.TIME_TO_TERMINATION)).getCount());
+
+		// a terminated context starts over
+		metrics.recordFeedback(FIRST);
+		metrics.superstepCompleted(FIRST);
+		assertEquals(1L, recordsPerSuperstep.getStatistics().getMin());
+		metrics.terminated(FIRST);
+		assertEquals(1L, superstepsPerContext.getStatistics().getMin());
+	}
+
+	@Test
+	public void testContextsThatNeverIteratedAreNotRecorded() {
+		metrics.terminated(FIRST);
+		assertEquals(0, ((Histogram) metricGroup.get(LoopMetrics.SUPERSTEPS_PER_CONTEXT)).getCount());
+		assertEquals(0, ((Histogram) metricGroup.get(LoopMetrics.TIME_TO_TERMINATION)).getCount());
+	}
+}
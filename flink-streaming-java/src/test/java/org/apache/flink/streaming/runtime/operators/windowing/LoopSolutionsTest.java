@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LoopSolutions}, which carry the solutions of an incremental iteration from one
+ * context to the next.
+ */
+public class LoopSolutionsTest {
+
+	private static final List<Long> FIRST = Collections.singletonList(1L);
+
+	private static final List<Long> SECOND = Collections.singletonList(2L);
+
+	private AbstractKeyedStateBackend<String> backend;
+
+	private LoopSolutions<String, Integer, Long> solutions;
+
+	@Before
+	public void setUp() throws Exception {
+		backend = new MemoryStateBackend().createKeyedStateBackend(
+			new DummyEnvironment("test", 1, 0),
+			new JobID(),
+			"test",
+			StringSerializer.INSTANCE,
+			1,
+			new KeyGroupRange(0, 0),
+			null);
+		solutions = new LoopSolutions<>(LongSerializer.INSTANCE);
+		solutions.open(backend, IntSerializer.INSTANCE);
+	}
+
+	@After
+	public void tearDown() {
+		backend.dispose();
+	}
+
+	@Test
+	public void testOnlyChangedEntryInputActivatesKey() throws Exception {
+		backend.setCurrentKey("a");
+		assertTrue(solutions.updateEntry(Arrays.asList(1, 2)));
+		assertFalse(solutions.updateEntry(Arrays.asList(1, 2)));
+		// the same records in another order
+		assertFalse(solutions.updateEntry(Arrays.asList(2, 1)));
+		// the same records, but not equally often
+		assertTrue(solutions.updateEntry(Arrays.asList(2, 1, 1)));
+		assertTrue(solutions.updateEntry(Arrays.asList(2, 2, 1)));
+		assertFalse(solutions.updateEntry(Arrays.asList(1, 2, 2)));
+		assertTrue(solutions.updateEntry(Collections.singletonList(3)));
+		assertEquals(Collections.singletonList("a"), solutions.getKeysWithPreviousEntry());
+
+		// a key without input in a context changed as well, but is not kept any longer
+		assertTrue(solutions.updateEntry(Collections.<Integer>emptyList()));
+		assertTrue(solutions.getKeysWithPreviousEntry().isEmpty());
+		assertFalse(solutions.updateEntry(Collections.<Integer>emptyList()));
+	}
+
+	@Test
+	public void testSolutionsArePromotedWhenContextTerminates() throws Exception {
+		LoopContext<String> first = new LoopContext<>(FIRST, 1, "a", solutions);
+		first.updateSolution(5L);
+		new LoopContext<>(FIRST, 1, "b", solutions).updateSolution(6L);
+
+		// the solutions of a running context are not visible to other contexts
+		assertNull(new LoopContext<>(SECOND, 0, "a", solutions).getPreviousSolution());
+
+		solutions.promote(FIRST);
+		assertEquals(Long.valueOf(5L), new LoopContext<>(SECOND, 0, "a", solutions).<Long>getPreviousSolution());
+		assertEquals(Long.valueOf(6L), new LoopContext<>(SECOND, 0, "b", solutions).<Long>getPreviousSolution());
+
+		// keys that were not activated in a context keep their solution
+		new LoopContext<>(SECOND, 1, "a", solutions).updateSolution(7L);
+		solutions.promote(SECOND);
+		assertEquals(Long.valueOf(7L), solutions.<Long>getPrevious("a"));
+		assertEquals(Long.valueOf(6L), solutions.<Long>getPrevious("b"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSolutionsRequireIncrementalIteration() throws Exception {
+		new LoopContext<>(FIRST, 0, "a").getPreviousSolution();
+	}
+}
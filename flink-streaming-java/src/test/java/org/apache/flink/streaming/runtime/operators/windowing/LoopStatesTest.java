@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.OperatorStateBackend;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link LoopStates}, the keyed state that loop functions access through their
+ * {@link LoopContext}.
+ */
+public class LoopStatesTest {
+
+	private static final List<Long> FIRST = Collections.singletonList(1L);
+
+	private static final List<Long> SECOND = Collections.singletonList(2L);
+
+	private final ValueStateDescriptor<Double> rankDescriptor = new ValueStateDescriptor<>("rank", Double.class);
+
+	private final ListStateDescriptor<Long> neighboursDescriptor = new ListStateDescriptor<>("neighbours", Long.class);
+
+	private final MapStateDescriptor<Long, Double> messagesDescriptor = new MapStateDescriptor<>("messages", Long.class, Double.class);
+
+	private AbstractKeyedStateBackend<String> backend;
+
+	private OperatorStateBackend operatorStateBackend;
+
+	private LoopStates<String> states;
+
+	@Before
+	public void setUp() throws Exception {
+		DummyEnvironment environment = new DummyEnvironment("test", 1, 0);
+		backend = new MemoryStateBackend().createKeyedStateBackend(
+			environment,
+			new JobID(),
+			"test",
+			StringSerializer.INSTANCE,
+			1,
+			new KeyGroupRange(0, 0),
+			null);
+		operatorStateBackend = new MemoryStateBackend().createOperatorStateBackend(environment, "test");
+		states = createStates();
+	}
+
+	@After
+	public void tearDown() {
+		backend.dispose();
+		operatorStateBackend.dispose();
+	}
+
+	@Test
+	public void testStateIsScopedByContextAndKey() throws Exception {
+		new LoopContext<>(FIRST, 1, "a", null, states).getState(rankDescriptor).update(0.5);
+		new LoopContext<>(FIRST, 1, "b", null, states).getState(rankDescriptor).update(0.25);
+		new LoopContext<>(SECOND, 1, "a", null, states).getState(rankDescriptor).update(1.0);
+
+		// the state of a key is the same in all supersteps of a context
+		assertEquals(0.5, new LoopContext<>(FIRST, 2, "a", null, states).getState(rankDescriptor).value(), 0.0);
+		assertEquals(0.25, new LoopContext<>(FIRST, 2, "b", null, states).getState(rankDescriptor).value(), 0.0);
+		assertEquals(1.0, new LoopContext<>(SECOND, 2, "a", null, states).getState(rankDescriptor).value(), 0.0);
+		assertNull(new LoopContext<>(SECOND, 2, "b", null, states).getState(rankDescriptor).value());
+	}
+
+	@Test
+	public void testStateOfTerminatedContextIsCleared() throws Exception {
+		for (String key : Arrays.asList("a", "b")) {
+			LoopContext<String> loopContext = new LoopContext<>(FIRST, 0, key, null, states);
+			loopContext.getState(rankDescriptor).update(1.0);
+			loopContext.getListState(neighboursDescriptor).add(7L);
+			loopContext.getMapState(messagesDescriptor).put(7L, 0.5);
+		}
+		new LoopContext<>(SECOND, 0, "a", null, states).getState(rankDescriptor).update(2.0);
+
+		states.clear(FIRST);
+
+		for (String key : Arrays.asList("a", "b")) {
+			LoopContext<String> loopContext = new LoopContext<>(FIRST, 1, key, null, states);
+			assertNull(loopContext.getState(rankDescriptor).value());
+			Iterable<Long> neighbours = loopContext.getListState(neighboursDescriptor).get();
+			assertFalse(neighbours != null && neighbours.iterator().hasNext());
+			assertFalse(loopContext.getMapState(messagesDescriptor).contains(7L));
+		}
+		assertEquals(0, backend.getKeys(rankDescriptor.getName(), FIRST).count());
+		assertEquals(2.0, new LoopContext<>(SECOND, 1, "a", null, states).getState(rankDescriptor).value(), 0.0);
+	}
+
+	/**
+	 * The states of a context are cleared although they were not accessed since the operator was
+	 * restored, e.g. because the context terminates right after restoring.
+	 */
+	@Test
+	public void testStateIsClearedWithoutAccessAfterRestore() throws Exception {
+		new LoopContext<>(FIRST, 0, "a", null, states).getState(rankDescriptor).update(1.0);
+		new LoopContext<>(FIRST, 0, "b", null, states).getListState(neighboursDescriptor).add(7L);
+
+		// the restored instance has not seen any of the states
+		LoopStates<String> restored = createStates();
+		restored.clear(FIRST);
+
+		assertEquals(0, backend.getKeys(rankDescriptor.getName(), FIRST).count());
+		assertEquals(0, backend.getKeys(neighboursDescriptor.getName(), FIRST).count());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStateRequiresLoop() throws Exception {
+		new LoopContext<>(FIRST, 0, "a").getState(rankDescriptor);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private LoopStates<String> createStates() throws Exception {
+		LoopStates<String> loopStates = new LoopStates<>();
+		loopStates.open(backend, operatorStateBackend, new ExecutionConfig(), getClass().getClassLoader());
+		return loopStates;
+	}
+}
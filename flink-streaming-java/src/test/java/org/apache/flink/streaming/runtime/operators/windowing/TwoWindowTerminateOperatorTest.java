@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.FeedbackBuilder;
+import org.apache.flink.streaming.api.datastream.KeyedStream;
+import org.apache.flink.streaming.api.datastream.WindowedStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+import org.apache.flink.streaming.api.functions.windowing.WindowLoopFunction;
+import org.apache.flink.streaming.api.graph.StreamConfig;
+import org.apache.flink.streaming.api.transformations.StreamTransformation;
+import org.apache.flink.streaming.api.transformations.TwoInputTransformation;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
+import org.apache.flink.streaming.runtime.tasks.progress.StructuredIterationTermination;
+import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.Collector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link TwoWindowTerminateOperator}, the loop operator of the window iterations.
+ */
+public class TwoWindowTerminateOperatorTest {
+
+	private static final TypeInformation<Tuple2<String, Long>> TYPE =
+		new TupleTypeInfo<>(BasicTypeInfo.STRING_TYPE_INFO, BasicTypeInfo.LONG_TYPE_INFO);
+
+	private static final List<Long> FIRST = Collections.singletonList(0L);
+
+	private static final List<Long> SECOND = Collections.singletonList(1L);
+
+	/** The calls of the loop functions, e.g. "entry [0] a [1, 2]". */
+	private static final ConcurrentLinkedQueue<String> CALLS = new ConcurrentLinkedQueue<>();
+
+	@Before
+	public void clearCalls() {
+		CALLS.clear();
+	}
+
+	@Test
+	public void testEntryBuffersAndActiveContextsAreRestored() throws Exception {
+		OperatorSubtaskState snapshot;
+		try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+				createHarness(createOperator(), 1, 1, 0)) {
+			harness.open();
+			harness.processElement1(new StreamRecord<>(Tuple2.of("a", 1L), FIRST, 0L));
+			harness.processElement1(new StreamRecord<>(Tuple2.of("a", 2L), FIRST, 0L));
+			harness.processElement1(new StreamRecord<>(Tuple2.of("b", 3L), SECOND, 0L));
+			snapshot = harness.snapshot(0L, 0L);
+		}
+		assertTrue(CALLS.isEmpty());
+
+		TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> operator = createOperator();
+		try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+				createHarness(operator, 1, 1, 0)) {
+			harness.initializeState(snapshot);
+			harness.open();
+
+			assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND)), operator.activeIterations);
+			assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND)), operator.entryContexts);
+
+			harness.processWatermark1(new Watermark(FIRST, 0L));
+			assertEquals(Collections.singletonList("entry [0] a [1, 2]"), takeCalls());
+
+			// feedback of a restored active context reaches the step function
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 5L), FIRST, 1L));
+			harness.processWatermark2(new Watermark(FIRST, 1L));
+			assertEquals(Collections.singletonList("step [0] 2 a [5]"), takeCalls());
+
+			harness.processWatermark1(new Watermark(SECOND, 0L));
+			assertEquals(Collections.singletonList("entry [1] b [3]"), takeCalls());
+		}
+	}
+
+	/**
+	 * Every instance restores all active contexts when rescaling, the entry buffers are split by key.
+	 */
+	@Test
+	public void testActiveContextsAreKeptWhenRescaling() throws Exception {
+		int maxParallelism = 10;
+		List<String> keys = Arrays.asList("a", "b", "c", "d", "e", "f");
+
+		OperatorSubtaskState snapshot;
+		try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+				createHarness(createOperator(), maxParallelism, 1, 0)) {
+			harness.open();
+			for (int i = 0; i < keys.size(); i++) {
+				harness.processElement1(new StreamRecord<>(Tuple2.of(keys.get(i), (long) i), FIRST, 0L));
+			}
+			harness.processElement1(new StreamRecord<>(Tuple2.of("a", 10L), SECOND, 0L));
+			snapshot = harness.snapshot(0L, 0L);
+		}
+
+		List<String> entries = new ArrayList<>();
+		for (int subtask = 0; subtask < 2; subtask++) {
+			TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> operator = createOperator();
+			try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+					createHarness(operator, maxParallelism, 2, subtask)) {
+				harness.initializeState(snapshot);
+				harness.open();
+
+				// also the instance without a key of the second context keeps it
+				assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND)), operator.activeIterations);
+				assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND)), operator.entryContexts);
+
+				harness.processWatermark1(new Watermark(FIRST, 0L));
+				List<String> calls = takeCalls();
+				assertFalse(calls.isEmpty());
+				for (String call : calls) {
+					String key = call.split(" ")[2];
+					assertEquals(subtask, KeyGroupRangeAssignment.assignKeyToParallelOperator(key, maxParallelism, 2));
+					entries.add(call);
+				}
+			}
+		}
+
+		Collections.sort(entries);
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < keys.size(); i++) {
+			expected.add("entry [0] " + keys.get(i) + " [" + i + "]");
+		}
+		assertEquals(expected, entries);
+	}
+
+	/**
+	 * In an asynchronous iteration, feedback records reach the step function as they arrive, the
+	 * watermarks of the heads only decide when the termination strategy ends the context.
+	 */
+	@Test
+	public void testAsyncIterationStepsOnFeedbackRecords() throws Exception {
+		StreamIterationTermination termination = new StructuredIterationTermination(2);
+		try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+				createHarness(createAsyncOperator(), 1, 1, 0)) {
+			harness.open();
+			harness.processElement1(new StreamRecord<>(Tuple2.of("a", 1L), FIRST, 0L));
+			harness.processWatermark1(new Watermark(FIRST, 0L));
+			assertEquals(Collections.singletonList("entry [0] a [1]"), takeCalls());
+
+			// no superstep watermark is needed to call step
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 5L), FIRST, 1L));
+			assertEquals(Collections.singletonList("step [0] 2 a [5]"), takeCalls());
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 6L), FIRST, 2L));
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 7L), FIRST, 2L));
+			assertEquals(Arrays.asList("step [0] 3 a [6]", "step [0] 3 a [7]"), takeCalls());
+
+			harness.processWatermark2(fromHead(termination, new Watermark(FIRST, 0L)));
+			assertTrue(CALLS.isEmpty());
+
+			// the termination strategy ends the context after two supersteps
+			Watermark done = fromHead(termination, new Watermark(FIRST, 1L));
+			assertTrue(done.iterationDone());
+			harness.processWatermark2(done);
+			assertEquals(Collections.singletonList("terminate [0] 2"), takeCalls());
+			assertTrue(harness.extractOutputStreamRecords().stream().anyMatch(record -> "done [0]".equals(record.getValue())));
+
+			// feedback of the terminated context is dropped
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 8L), FIRST, 3L));
+			assertTrue(CALLS.isEmpty());
+		}
+	}
+
+	/**
+	 * With a slack, the windows fire up to slack supersteps ahead of the watermark of the heads and
+	 * records for windows that fired already reach the step function as they arrive.
+	 */
+	@Test
+	public void testWindowsFireAheadByTheSlack() throws Exception {
+		try (KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+				createHarness(createStaleOperator(2L), 1, 1, 0)) {
+			harness.open();
+			harness.processElement1(new StreamRecord<>(Tuple2.of("a", 1L), FIRST, 0L));
+			harness.processWatermark1(new Watermark(FIRST, 0L));
+			assertEquals(Collections.singletonList("entry [0] a [1]"), takeCalls());
+
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 5L), FIRST, 1L));
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 6L), FIRST, 2L));
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 7L), FIRST, 3L));
+			assertTrue(CALLS.isEmpty());
+
+			harness.getOutput().clear();
+			harness.processWatermark2(new Watermark(FIRST, 0L));
+			assertEquals(Arrays.asList("step [0] 2 a [5]", "step [0] 3 a [6]"), takeCalls());
+			// the heads still see the aligned superstep
+			assertTrue(harness.getOutput().contains(new Watermark(FIRST, 0L)));
+
+			// a late record is not held back until the heads catch up
+			harness.processElement2(new StreamRecord<>(Tuple2.of("a", 8L), FIRST, 1L));
+			assertEquals(Collections.singletonList("step [0] 2 a [8]"), takeCalls());
+
+			// the last watermark of the context fires all windows instead of overflowing
+			harness.processWatermark2(new Watermark(FIRST, Long.MAX_VALUE));
+			assertEquals(Collections.singletonList("step [0] 4 a [7]"), takeCalls());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static List<String> takeCalls() {
+		List<String> calls = new ArrayList<>(CALLS);
+		CALLS.clear();
+		return calls;
+	}
+
+	/**
+	 * Does what the iteration head does with a watermark of the loop body.
+	 */
+	private static Watermark fromHead(StreamIterationTermination termination, Watermark mark) {
+		termination.observeWatermark(mark);
+		if (termination.terminate(mark.getContext())) {
+			mark.setIterationDone(true);
+		}
+		mark.forwardTimestamp();
+		return mark;
+	}
+
+	/**
+	 * Creates the loop operator of a synchronous iteration through the API.
+	 */
+	private static TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> createOperator() throws Exception {
+		return getLoopOperator(window().iterateSync(
+			new RecordingLoopFunction(), new StructuredIterationTermination(10), new KeyedFeedback(), TYPE));
+	}
+
+	/**
+	 * Creates the loop operator of a stale synchronous iteration through the API.
+	 */
+	private static TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> createStaleOperator(long slack) throws Exception {
+		return getLoopOperator(window().iterateSync(
+			new RecordingLoopFunction(), new StructuredIterationTermination(10), slack, new KeyedFeedback(), TYPE));
+	}
+
+	/**
+	 * Creates the loop operator of an asynchronous iteration through the API.
+	 */
+	private static TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> createAsyncOperator() throws Exception {
+		return getLoopOperator(window().iterateAsync(
+			new RecordingLoopFunction(), new StructuredIterationTermination(10), new KeyedFeedback(), TYPE));
+	}
+
+	private static WindowedStream<Tuple2<String, Long>, String, TimeWindow> window() {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		DataStream<Tuple2<String, Long>> input = env.fromElements(Tuple2.of("a", 1L)).returns(TYPE);
+		return input.keyBy(new FirstField()).timeWindow(Time.milliseconds(1));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> getLoopOperator(DataStream<String> result) {
+		for (StreamTransformation<?> transformation : result.getTransformation().getTransitivePredecessors()) {
+			if (transformation instanceof TwoInputTransformation) {
+				return (TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?>)
+					((TwoInputTransformation<?, ?, ?>) transformation).getOperator();
+			}
+		}
+		throw new IllegalStateException("The iteration has no loop operator.");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> createHarness(
+			TwoWindowTerminateOperator<String, ?, ?, ?, ?, ?, String, ?, ?> operator,
+			int maxParallelism, int parallelism, int subtaskIndex) throws Exception {
+
+		KeyedTwoInputStreamOperatorTestHarness<String, Tuple2<String, Long>, Tuple2<String, Long>, String> harness =
+			new KeyedTwoInputStreamOperatorTestHarness<>(
+				(TwoWindowTerminateOperator<String, Tuple2<String, Long>, Tuple2<String, Long>, ?, ?, ?, String, ?, ?>) operator,
+				new FirstField(), new FirstField(), BasicTypeInfo.STRING_TYPE_INFO,
+				maxParallelism, parallelism, subtaskIndex);
+		new StreamConfig(harness.getEnvironment().getTaskConfiguration())
+			.setTypeSerializerIn1(TYPE.createSerializer(harness.getExecutionConfig()));
+		harness.setup(BasicTypeInfo.STRING_TYPE_INFO.createSerializer(harness.getExecutionConfig()));
+		return harness;
+	}
+
+	private static final class FirstField implements KeySelector<Tuple2<String, Long>, String> {
+
+		@Override
+		public String getKey(Tuple2<String, Long> value) {
+			return value.f0;
+		}
+	}
+
+	private static final class KeyedFeedback implements FeedbackBuilder<Tuple2<String, Long>, String> {
+
+		@Override
+		public KeyedStream<Tuple2<String, Long>, String> feedback(DataStream<Tuple2<String, Long>> input) {
+			return input.keyBy(new FirstField());
+		}
+	}
+
+	/**
+	 * Records its calls and sends every input record back as feedback.
+	 */
+	private static final class RecordingLoopFunction implements
+			WindowLoopFunction<Tuple2<String, Long>, Tuple2<String, Long>, String, Tuple2<String, Long>, String, TimeWindow> {
+
+		@Override
+		public void entry(LoopContext<String> ctx, Iterable<Tuple2<String, Long>> input,
+				Collector<Either<Tuple2<String, Long>, String>> out) {
+			CALLS.add("entry " + ctx.getContext() + " " + ctx.getKey() + " " + values(input));
+			for (Tuple2<String, Long> record : input) {
+				out.collect(Either.Left(record));
+			}
+		}
+
+		@Override
+		public void step(LoopContext<String> ctx, Iterable<Tuple2<String, Long>> input,
+				Collector<Either<Tuple2<String, Long>, String>> out) {
+			CALLS.add("step " + ctx.getContext() + " " + ctx.getSuperstep() + " " + ctx.getKey() + " " + values(input));
+			for (Tuple2<String, Long> record : input) {
+				out.collect(Either.Left(record));
+			}
+		}
+
+		@Override
+		public void onTermination(List<Long> timeContext, long superstep, Collector<Either<Tuple2<String, Long>, String>> out) {
+			CALLS.add("terminate " + timeContext + " " + superstep);
+			out.collect(Either.Right("done " + timeContext));
+		}
+
+		private static List<Long> values(Iterable<Tuple2<String, Long>> input) {
+			List<Long> values = new ArrayList<>();
+			for (Tuple2<String, Long> record : input) {
+				values.add(record.f1);
+			}
+			return values;
+		}
+	}
+}
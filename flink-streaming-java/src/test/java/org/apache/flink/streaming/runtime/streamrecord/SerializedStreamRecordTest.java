@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.streamrecord;
+
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.streaming.runtime.partitioner.ForwardPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.KeyGroupStreamPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.RebalancePartitioner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SerializedStreamRecord}.
+ */
+public class SerializedStreamRecordTest {
+
+	private final StreamElementSerializer<String> serializer =
+		new StreamElementSerializer<>(StringSerializer.INSTANCE);
+
+	private final DataOutputSerializer buffer = new DataOutputSerializer(16);
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		StreamRecord<String> record = new StreamRecord<>("vertex", 42L);
+		record.addNestedTimestamp(3L);
+
+		SerializedStreamRecord serialized = SerializedStreamRecord.serialize(record, serializer, buffer);
+
+		assertTrue(serialized.isSerializedRecord());
+		assertFalse(serialized.isRecord());
+		assertEquals(record.getContext(), serialized.getContext());
+
+		StreamRecord<String> deserialized = serialized.deserialize(serializer);
+		assertEquals(record, deserialized);
+		assertEquals(record.getContext(), deserialized.getContext());
+	}
+
+	@Test
+	public void testForwardTimestamp() throws Exception {
+		for (long timestamp : new long[] {0L, -1L, 255L, 0xffffffffL, Long.MIN_VALUE}) {
+			StreamRecord<String> record = new StreamRecord<>("a", timestamp);
+			SerializedStreamRecord serialized = SerializedStreamRecord.serialize(record, serializer, buffer);
+
+			serialized.forwardTimestamp();
+			record.forwardTimestamp();
+
+			assertEquals(record, serialized.deserialize(serializer));
+		}
+
+		// records without timestamp are not affected
+		StreamRecord<String> record = new StreamRecord<>("b");
+		SerializedStreamRecord serialized = SerializedStreamRecord.serialize(record, serializer, buffer);
+		serialized.forwardTimestamp();
+		assertEquals(record, serialized.deserialize(serializer));
+	}
+
+	@Test
+	public void testStreamElementSerializerWritesBytes() throws Exception {
+		StreamRecord<String> record = new StreamRecord<>("edge", 7L);
+		record.addNestedTimestamp(1L);
+		SerializedStreamRecord serialized = SerializedStreamRecord.serialize(record, serializer, buffer);
+
+		DataOutputSerializer output = new DataOutputSerializer(32);
+		serializer.serialize(serialized, output);
+		assertEquals(serialized.getSize(), output.length());
+
+		StreamElement deserialized = serializer.deserialize(
+			new DataInputDeserializer(output.getByteArray(), 0, output.length()));
+		assertEquals(record, deserialized);
+		assertEquals(record.getContext(), deserialized.asRecord().getContext());
+	}
+
+	@Test
+	public void testRecordDependentPartitioners() {
+		assertFalse(new ForwardPartitioner<String>().isRecordDependent());
+		assertFalse(new RebalancePartitioner<String>().isRecordDependent());
+		assertTrue(new KeyGroupStreamPartitioner<String, String>(value -> value, 128).isRecordDependent());
+	}
+}
@@ -28,10 +28,13 @@ import org.apache.flink.streaming.api.watermark.Watermark;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -89,6 +92,44 @@ public class StreamElementSerializerTest {
 
 		Watermark negativeWatermark = new Watermark(-4647654567676555876L);
 		assertEquals(negativeWatermark, serializeAndDeserialize(negativeWatermark, serializer));
+
+		StreamRecord<String> nestedRecord = new StreamRecord<>("nested", Arrays.asList(5L, 3L), 2L);
+		assertEquals(nestedRecord, serializeAndDeserialize(nestedRecord, serializer));
+
+		Watermark nestedWatermark = new Watermark(Arrays.asList(5L, 3L), 2L, true, false);
+		Watermark deserializedWatermark = serializeAndDeserialize(nestedWatermark, serializer);
+		assertEquals(nestedWatermark, deserializedWatermark);
+		assertTrue(deserializedWatermark.iterationDone());
+	}
+
+	@Test
+	public void testDeserializationWithReuse() throws Exception {
+		final StreamElementSerializer<String> serializer =
+				new StreamElementSerializer<String>(StringSerializer.INSTANCE);
+
+		StreamRecord<String> nestedRecord = new StreamRecord<>("nested", Arrays.asList(5L, 3L), 2L);
+
+		DataOutputSerializer output = new DataOutputSerializer(32);
+		serializer.serialize(nestedRecord, output);
+
+		DataInputDeserializer input = new DataInputDeserializer(output.getByteArray(), 0, output.length());
+		StreamElement reuse = serializer.createInstance();
+		assertEquals(nestedRecord, serializer.deserialize(reuse, input));
+	}
+
+	@Test
+	public void testHandedOverRecordSerialization() throws Exception {
+		final StreamElementSerializer<String> serializer =
+				new StreamElementSerializer<String>(StringSerializer.INSTANCE);
+
+		DataOutputSerializer output = new DataOutputSerializer(32);
+		serializer.serialize(HandedOverRecord.INSTANCE, output);
+		assertEquals(1, output.length());
+
+		assertSame(HandedOverRecord.INSTANCE, serializeAndDeserialize(HandedOverRecord.INSTANCE, serializer));
+
+		DataInputDeserializer input = new DataInputDeserializer(output.getByteArray(), 0, output.length());
+		assertSame(HandedOverRecord.INSTANCE, serializer.deserialize(serializer.createInstance(), input));
 	}
 
 	@SuppressWarnings("unchecked")
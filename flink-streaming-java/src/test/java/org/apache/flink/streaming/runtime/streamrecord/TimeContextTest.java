@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.streamrecord;
+
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.util.InstantiationUtil;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TimeContext}.
+ */
+public class TimeContextTest {
+
+	@Test
+	public void testListContract() {
+		List<Long> list = new LinkedList<>(Arrays.asList(3L, -7L, Long.MAX_VALUE));
+		TimeContext context = TimeContext.of(3L, -7L, Long.MAX_VALUE);
+
+		assertEquals(list, context);
+		assertEquals(context, list);
+		assertEquals(list.hashCode(), context.hashCode());
+		assertEquals(list.toString(), context.toString());
+
+		assertEquals(new LinkedList<Long>().hashCode(), TimeContext.EMPTY.hashCode());
+		assertEquals(new LinkedList<Long>(), TimeContext.EMPTY);
+	}
+
+	@Test
+	public void testAppendAndRemoveAreCached() {
+		TimeContext outer = TimeContext.of(12L);
+		TimeContext inner = outer.append(0L);
+
+		assertEquals(Arrays.asList(12L, 0L), inner);
+		assertEquals(0L, inner.getLast());
+		assertSame(inner, outer.append(0L));
+		assertSame(outer, inner.removeLast());
+		assertSame(TimeContext.EMPTY, outer.removeLast());
+	}
+
+	@Test
+	public void testOfReturnsSameInstance() {
+		TimeContext context = TimeContext.of(1L, 2L);
+		assertSame(context, TimeContext.of((List<Long>) context));
+		assertSame(TimeContext.EMPTY, TimeContext.of(new LinkedList<Long>()));
+	}
+
+	@Test
+	public void testReadIsInterned() throws Exception {
+		TimeContext context = TimeContext.of(42L, 17L, 5L);
+
+		DataOutputSerializer output = new DataOutputSerializer(32);
+		context.write(output);
+		context.write(output);
+
+		DataInputDeserializer input = new DataInputDeserializer(output.getByteArray(), 0, output.length());
+		long[] scratch = new long[2];
+		TimeContext first = TimeContext.read(input, scratch);
+		TimeContext second = TimeContext.read(input, scratch);
+
+		assertEquals(context, first);
+		assertSame(first, second);
+	}
+
+	@Test
+	public void testJavaSerialization() throws Exception {
+		TimeContext context = TimeContext.of(8L, 9L);
+		TimeContext copy = InstantiationUtil.clone(context);
+
+		assertEquals(context, copy);
+		assertTrue(copy.append(1L).removeLast() == copy);
+	}
+}
@@ -1,10 +1,14 @@
 package org.apache.flink.streaming.runtime.tasks;
 
+import org.apache.flink.api.common.aggregators.DoubleZeroConvergence;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.progress.ConvergenceIterationTermination;
 import org.apache.flink.streaming.runtime.tasks.progress.FixpointIterationTermination;
+import org.apache.flink.streaming.runtime.tasks.progress.IterationAggregates;
 import org.apache.flink.streaming.runtime.tasks.progress.StreamIterationTermination;
 import org.apache.flink.streaming.runtime.tasks.progress.StructuredIterationTermination;
+import org.apache.flink.types.DoubleValue;
 import org.junit.Test;
 
 import java.util.LinkedList;
@@ -69,4 +73,61 @@ public class StreamIterationTerminationTest {
 		termination.observeWatermark(watermark01);
 		assert termination.terminate(context0) == true;
 	}
+
+	@Test
+	public void convergenceProgressTest() throws Exception {
+		ConvergenceIterationTermination termination =
+			new ConvergenceIterationTermination("delta", new DoubleZeroConvergence());
+
+		List<Long> context0 = new LinkedList<>();
+		context0.add(new Long(0));
+
+		// no combined aggregate in the first superstep
+		Watermark watermark01 = new Watermark(context0, 1);
+		watermark01.setAggregates(new IterationAggregates());
+		termination.observeWatermark(watermark01);
+		assert !termination.terminate(context0);
+
+		Watermark watermark02 = new Watermark(context0, 2);
+		IterationAggregates aggregates = new IterationAggregates();
+		aggregates.setCombined("delta", new DoubleValue(0.5));
+		watermark02.setAggregates(aggregates);
+		termination.observeWatermark(watermark02);
+		assert !termination.terminate(context0);
+
+		Watermark watermark03 = new Watermark(context0, 3);
+		aggregates = new IterationAggregates();
+		aggregates.setCombined("delta", new DoubleValue(0.0));
+		watermark03.setAggregates(aggregates);
+		termination.observeWatermark(watermark03);
+		assert termination.terminate(context0);
+
+		// the context is cleaned up once it is finished
+		termination.observeWatermark(new Watermark(context0, Long.MAX_VALUE));
+		assert !termination.terminate(context0);
+	}
+
+	@Test
+	public void fixpointFeedbackRecordsTest() {
+		FixpointIterationTermination termination = new FixpointIterationTermination();
+
+		List<Long> context0 = new LinkedList<>();
+		context0.add(new Long(0));
+
+		termination.observeRecord(new StreamRecord<>("", context0, 1));
+		termination.observeRecord(new StreamRecord<>("", context0, 1));
+
+		Watermark watermark01 = new Watermark(context0, 1);
+		termination.observeWatermark(watermark01);
+		termination.attachProgress(watermark01, 0, 4);
+		assert watermark01.getAggregates().getFeedbackRecords() == 2;
+		assert !watermark01.getAggregates().isQuiescent();
+
+		// the count starts anew with every superstep
+		Watermark watermark02 = new Watermark(context0, 2);
+		termination.observeWatermark(watermark02);
+		termination.attachProgress(watermark02, 0, 1);
+		assert watermark02.getAggregates().getFeedbackRecords() == 0;
+		assert watermark02.getAggregates().isQuiescent();
+	}
 }
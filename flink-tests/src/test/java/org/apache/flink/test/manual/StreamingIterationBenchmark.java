@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.test.manual;
+
+import org.apache.flink.api.common.JobExecutionResult;
+import org.apache.flink.api.common.accumulators.LongCounter;
+import org.apache.flink.api.common.accumulators.LongMaximum;
+import org.apache.flink.api.common.accumulators.LongMinimum;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.ListTypeInfo;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
+import org.apache.flink.api.java.utils.ParameterTool;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.TaskManagerOptions;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.HistogramStatistics;
+import org.apache.flink.metrics.Metric;
+import org.apache.flink.metrics.MetricConfig;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.reporter.MetricReporter;
+import org.apache.flink.streaming.api.TimeCharacteristic;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.FeedbackBuilder;
+import org.apache.flink.streaming.api.datastream.KeyedStream;
+import org.apache.flink.streaming.api.datastream.WindowedStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+import org.apache.flink.streaming.api.functions.windowing.LoopContext;
+import org.apache.flink.streaming.api.functions.windowing.WindowLoopFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.LoopMetrics;
+import org.apache.flink.test.util.MiniClusterResource;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.Collector;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Manual benchmark of windowed loops on a MiniCluster. It runs PageRank or connected components
+ * on windows of synthetic random graphs and reports the throughput, the superstep latency from
+ * the loop metrics and the garbage collection of the run.
+ *
+ * <p>Parameters: {@code --algorithm pagerank|cc --vertices <n> --degree <n> --windows <n>
+ * --window-size <ms> --parallelism <n> --supersteps <n> --seed <n>}. The number of supersteps
+ * only applies to PageRank, connected components run until no label changes.
+ */
+public class StreamingIterationBenchmark {
+
+	private static final String START_TIME = "start-time";
+
+	private static final String END_TIME = "end-time";
+
+	private static final String TERMINATIONS = "terminations";
+
+	public static void main(String[] args) throws Exception {
+		ParameterTool params = ParameterTool.fromArgs(args);
+		String algorithm = params.get("algorithm", "pagerank");
+		int vertices = params.getInt("vertices", 10_000);
+		int degree = params.getInt("degree", 8);
+		int windows = params.getInt("windows", 10);
+		long windowSize = params.getLong("window-size", 1000L);
+		int parallelism = params.getInt("parallelism", 4);
+		int supersteps = params.getInt("supersteps", 10);
+		long seed = params.getLong("seed", 42L);
+
+		Configuration config = new Configuration();
+		config.setInteger(TaskManagerOptions.NETWORK_NUM_BUFFERS, 8192);
+		config.setString(ConfigConstants.METRICS_REPORTER_PREFIX + "loop." +
+			ConfigConstants.METRICS_REPORTER_CLASS_SUFFIX, LoopMetricsCollector.class.getName());
+
+		MiniClusterResource cluster = new MiniClusterResource(
+			new MiniClusterResource.MiniClusterResourceConfiguration(config, 1, parallelism));
+		cluster.before();
+
+		try {
+			StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+			env.setParallelism(parallelism);
+			env.setStreamTimeCharacteristic(TimeCharacteristic.EventTime);
+
+			WindowedStream<Tuple2<Long, List<Long>>, Long, TimeWindow> graphs = env
+				.addSource(new RandomGraphSource(vertices, degree, windows, windowSize, seed))
+				.keyBy(new VertexKey<List<Long>>())
+				.timeWindow(Time.milliseconds(windowSize));
+
+			DataStream<Long> terminations;
+			if (algorithm.equals("pagerank")) {
+				terminations = graphs.iterateSyncFor(
+					supersteps,
+					new PageRank(),
+					new VertexFeedback<Double>(),
+					new TupleTypeInfo<Tuple2<Long, Double>>(BasicTypeInfo.LONG_TYPE_INFO, BasicTypeInfo.DOUBLE_TYPE_INFO));
+			} else if (algorithm.equals("cc")) {
+				terminations = graphs.iterateSyncDelta(
+					new ConnectedComponents(),
+					new VertexFeedback<Long>(),
+					new TupleTypeInfo<Tuple2<Long, Long>>(BasicTypeInfo.LONG_TYPE_INFO, BasicTypeInfo.LONG_TYPE_INFO));
+			} else {
+				throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+			}
+			terminations.addSink(new TerminationSink());
+
+			long gcCountBefore = getGarbageCollections();
+			long gcTimeBefore = getGarbageCollectionTime();
+
+			JobExecutionResult result = env.execute("Streaming iteration benchmark");
+
+			long runtime = result.<Long>getAccumulatorResult(END_TIME) - result.<Long>getAccumulatorResult(START_TIME);
+			long edges = (long) vertices * degree * windows;
+			System.out.println("Algorithm:           " + algorithm);
+			System.out.println("Graph:               " + vertices + " vertices, " + degree + " edges per vertex, " + windows + " windows");
+			System.out.println("Parallelism:         " + parallelism);
+			System.out.println("Runtime:             " + runtime + " ms (job " + result.getNetRuntime() + " ms)");
+			System.out.println("Throughput:          " + (edges * 1000 / Math.max(runtime, 1)) + " edges/s");
+			System.out.println("Terminations:        " + result.getAccumulatorResult(TERMINATIONS));
+			System.out.println("GC:                  " + (getGarbageCollections() - gcCountBefore) + " collections, " +
+				(getGarbageCollectionTime() - gcTimeBefore) + " ms");
+			for (String metric : Arrays.asList(
+					LoopMetrics.SUPERSTEP_DURATION, LoopMetrics.RECORDS_PER_SUPERSTEP,
+					LoopMetrics.SUPERSTEPS_PER_CONTEXT, LoopMetrics.TIME_TO_TERMINATION)) {
+				System.out.println(LoopMetricsCollector.summarize(metric));
+			}
+		} finally {
+			cluster.after();
+		}
+	}
+
+	private static long getGarbageCollections() {
+		long collections = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collections += Math.max(gc.getCollectionCount(), 0);
+		}
+		return collections;
+	}
+
+	private static long getGarbageCollectionTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(gc.getCollectionTime(), 0);
+		}
+		return time;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Graph generator
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Emits a random graph per window as the adjacency lists of its vertices, each vertex with
+	 * the same number of random out-edges. The vertices are split between the parallel instances.
+	 */
+	private static class RandomGraphSource extends RichParallelSourceFunction<Tuple2<Long, List<Long>>>
+			implements ResultTypeQueryable<Tuple2<Long, List<Long>>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int vertices;
+		private final int degree;
+		private final int windows;
+		private final long windowSize;
+		private final long seed;
+
+		private volatile boolean running = true;
+
+		RandomGraphSource(int vertices, int degree, int windows, long windowSize, long seed) {
+			this.vertices = vertices;
+			this.degree = degree;
+			this.windows = windows;
+			this.windowSize = windowSize;
+			this.seed = seed;
+		}
+
+		@Override
+		public void open(Configuration parameters) {
+			getRuntimeContext().addAccumulator(START_TIME, new LongMinimum());
+		}
+
+		@Override
+		public void run(SourceContext<Tuple2<Long, List<Long>>> ctx) {
+			getRuntimeContext().<Long, Long>getAccumulator(START_TIME).add(System.currentTimeMillis());
+
+			int parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+			int subtask = getRuntimeContext().getIndexOfThisSubtask();
+			for (int window = 0; window < windows && running; window++) {
+				Random random = new Random(seed + window);
+				synchronized (ctx.getCheckpointLock()) {
+					for (long vertex = 0; vertex < vertices; vertex++) {
+						List<Long> neighbours = new ArrayList<>(degree);
+						for (int i = 0; i < degree; i++) {
+							neighbours.add((long) random.nextInt(vertices));
+						}
+						if (vertex % parallelism == subtask) {
+							ctx.collectWithTimestamp(Tuple2.of(vertex, neighbours), window * windowSize);
+						}
+					}
+					ctx.emitWatermark(new Watermark((window + 1) * windowSize - 1));
+				}
+			}
+		}
+
+		@Override
+		public void cancel() {
+			running = false;
+		}
+
+		@Override
+		public TypeInformation<Tuple2<Long, List<Long>>> getProducedType() {
+			return new TupleTypeInfo<>(BasicTypeInfo.LONG_TYPE_INFO, new ListTypeInfo<>(BasicTypeInfo.LONG_TYPE_INFO));
+		}
+	}
+
+	private static class VertexKey<V> implements KeySelector<Tuple2<Long, V>, Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long getKey(Tuple2<Long, V> value) {
+			return value.f0;
+		}
+	}
+
+	private static class VertexFeedback<V> implements FeedbackBuilder<Tuple2<Long, V>, Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public KeyedStream<Tuple2<Long, V>, Long> feedback(DataStream<Tuple2<Long, V>> input) {
+			return input.keyBy(new VertexKey<V>());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Loops
+	// ------------------------------------------------------------------------
+
+	/**
+	 * PageRank for a fixed number of supersteps. Every superstep each vertex sums up the rank it
+	 * received and sends it on to its neighbours.
+	 */
+	private static class PageRank implements WindowLoopFunction<
+			Tuple2<Long, List<Long>>, Tuple2<Long, Double>, Long, Tuple2<Long, Double>, Long, TimeWindow> {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final ListStateDescriptor<Long> NEIGHBOURS = new ListStateDescriptor<>("neighbours", Long.class);
+
+		private static final ValueStateDescriptor<Double> RANK = new ValueStateDescriptor<>("rank", Double.class);
+
+		@Override
+		public void entry(LoopContext<Long> ctx, Iterable<Tuple2<Long, List<Long>>> input,
+				Collector<Either<Tuple2<Long, Double>, Long>> out) throws Exception {
+			ListState<Long> neighbours = ctx.getListState(NEIGHBOURS);
+			for (Tuple2<Long, List<Long>> adjacency : input) {
+				neighbours.addAll(adjacency.f1);
+			}
+			ctx.getState(RANK).update(1.0);
+			distribute(neighbours, 1.0, out);
+		}
+
+		@Override
+		public void step(LoopContext<Long> ctx, Iterable<Tuple2<Long, Double>> input,
+				Collector<Either<Tuple2<Long, Double>, Long>> out) throws Exception {
+			double sum = 0.0;
+			for (Tuple2<Long, Double> message : input) {
+				sum += message.f1;
+			}
+			double rank = 0.15 + 0.85 * sum;
+			ctx.getState(RANK).update(rank);
+			distribute(ctx.getListState(NEIGHBOURS), rank, out);
+		}
+
+		private static void distribute(ListState<Long> neighbours, double rank,
+				Collector<Either<Tuple2<Long, Double>, Long>> out) throws Exception {
+			Iterable<Long> targets = neighbours.get();
+			if (targets == null) {
+				return;
+			}
+			List<Long> targetList = new ArrayList<>();
+			targets.forEach(targetList::add);
+			for (Long target : targetList) {
+				out.collect(Either.Left(Tuple2.of(target, rank / targetList.size())));
+			}
+		}
+
+		@Override
+		public void onTermination(List<Long> timeContext, long superstep,
+				Collector<Either<Tuple2<Long, Double>, Long>> out) {
+			out.collect(Either.Right(timeContext.get(0)));
+		}
+	}
+
+	/**
+	 * Connected components by propagating the minimum vertex ID along the edges, until no label
+	 * changes any more.
+	 */
+	private static class ConnectedComponents implements WindowLoopFunction<
+			Tuple2<Long, List<Long>>, Tuple2<Long, Long>, Long, Tuple2<Long, Long>, Long, TimeWindow> {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final ListStateDescriptor<Long> NEIGHBOURS = new ListStateDescriptor<>("neighbours", Long.class);
+
+		private static final ValueStateDescriptor<Long> LABEL = new ValueStateDescriptor<>("label", Long.class);
+
+		@Override
+		public void entry(LoopContext<Long> ctx, Iterable<Tuple2<Long, List<Long>>> input,
+				Collector<Either<Tuple2<Long, Long>, Long>> out) throws Exception {
+			ListState<Long> neighbours = ctx.getListState(NEIGHBOURS);
+			for (Tuple2<Long, List<Long>> adjacency : input) {
+				neighbours.addAll(adjacency.f1);
+			}
+			ctx.getState(LABEL).update(ctx.getKey());
+			propagate(neighbours, ctx.getKey(), out);
+		}
+
+		@Override
+		public void step(LoopContext<Long> ctx, Iterable<Tuple2<Long, Long>> input,
+				Collector<Either<Tuple2<Long, Long>, Long>> out) throws Exception {
+			ValueState<Long> label = ctx.getState(LABEL);
+			long current = label.value() != null ? label.value() : ctx.getKey();
+			long min = current;
+			for (Tuple2<Long, Long> message : input) {
+				min = Math.min(min, message.f1);
+			}
+			if (min < current || label.value() == null) {
+				label.update(min);
+				propagate(ctx.getListState(NEIGHBOURS), min, out);
+			}
+		}
+
+		private static void propagate(ListState<Long> neighbours, long label,
+				Collector<Either<Tuple2<Long, Long>, Long>> out) throws Exception {
+			Iterable<Long> targets = neighbours.get();
+			if (targets != null) {
+				for (Long target : targets) {
+					out.collect(Either.Left(Tuple2.of(target, label)));
+				}
+			}
+		}
+
+		@Override
+		public void onTermination(List<Long> timeContext, long superstep,
+				Collector<Either<Tuple2<Long, Long>, Long>> out) {
+			out.collect(Either.Right(timeContext.get(0)));
+		}
+	}
+
+	/**
+	 * Counts the terminations of the loop instances and records the time of the last one.
+	 */
+	private static class TerminationSink extends RichSinkFunction<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LongCounter terminations = new LongCounter();
+
+		private final LongMaximum endTime = new LongMaximum();
+
+		@Override
+		public void open(Configuration parameters) {
+			getRuntimeContext().addAccumulator(TERMINATIONS, terminations);
+			getRuntimeContext().addAccumulator(END_TIME, endTime);
+		}
+
+		@Override
+		public void invoke(Long window, Context context) {
+			terminations.add(1L);
+			endTime.add(System.currentTimeMillis());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Metrics
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Keeps the histograms of the loop metrics of all operator instances, the MiniCluster runs in
+	 * the same JVM as the benchmark.
+	 */
+	public static class LoopMetricsCollector implements MetricReporter {
+
+		private static final Map<String, List<Histogram>> HISTOGRAMS = new ConcurrentHashMap<>();
+
+		@Override
+		public void open(MetricConfig config) {}
+
+		@Override
+		public void close() {}
+
+		@Override
+		public void notifyOfAddedMetric(Metric metric, String metricName, MetricGroup group) {
+			if (metric instanceof Histogram && metricName.startsWith("loop")) {
+				HISTOGRAMS.computeIfAbsent(metricName, name -> new CopyOnWriteArrayList<>()).add((Histogram) metric);
+			}
+		}
+
+		@Override
+		public void notifyOfRemovedMetric(Metric metric, String metricName, MetricGroup group) {
+			// the histograms are read after the job finished
+		}
+
+		static String summarize(String metricName) {
+			long count = 0;
+			double sum = 0.0;
+			double p99 = 0.0;
+			long max = 0;
+			for (Histogram histogram : HISTOGRAMS.getOrDefault(metricName, new ArrayList<>())) {
+				HistogramStatistics statistics = histogram.getStatistics();
+				count += histogram.getCount();
+				sum += statistics.getMean() * statistics.size();
+				p99 = Math.max(p99, statistics.getQuantile(0.99));
+				max = Math.max(max, statistics.getMax());
+			}
+			return String.format("%-24s count %d, mean %.2f, p99 %.2f, max %d",
+				metricName + ":", count, sum / Math.max(count, 1), p99, max);
+		}
+	}
+}